@@ -87,6 +87,8 @@ public class SSLChannel implements InboundChannel, OutboundChannel, Discriminato
     protected boolean isZOS = false;
     /** PK16095 - save the last SSLSessionContext created for this channel */
     private SSLSessionContext sessionContext = null;
+    /** Tracker of the session cache of the last seen SSLSessionContext */
+    private SSLSessionCacheTracker sessionTracker = null;
     /** Factory used to create this channel */
     private SSLChannelFactoryImpl myFactory = null;
     /**
@@ -682,6 +684,7 @@ public class SSLChannel implements InboundChannel, OutboundChannel, Discriminato
         this.discProcess = null;
         this.sslConfig = null;
         this.sessionContext = null; // PK16095
+        this.sessionTracker = null;
     }
 
 /*
@@ -978,15 +981,14 @@ public class SSLChannel implements InboundChannel, OutboundChannel, Discriminato
      * Utility method to be called when an SSL handshake has finished.
      *
      * @param engine
+     * @param link the connection that completed the handshake
      */
-    protected void onHandshakeFinish(SSLEngine engine) {
+    protected void onHandshakeFinish(SSLEngine engine, SSLConnectionLink link) {
         // PK16095 - control the SSLSession cache inside the JSSE2 code
 
         // security is creating the contexts, which should not change but might.
-        // we keep the last seen in an attempt to set these values only once
-        // per context. The alternative is to keep a list of each unique one
-        // seen but who knows how large that might grow to, so simply update
-        // based on last seen.
+        // we keep the last seen in an attempt to look up the tracker only once
+        // per context. The tracker is shared by all channels using the context.
         SSLSessionContext context = null;
         try {
             final SSLEngine localEngine = engine;
@@ -1004,19 +1006,28 @@ public class SSLChannel implements InboundChannel, OutboundChannel, Discriminato
             }
             return;
         }
-        if (null == context || context.equals(this.sessionContext)) {
+        if (null == context) {
             return;
         }
 
-        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-            Tr.debug(tc, "Channel [" + this + "] saving context: " + context);
+        SSLSessionCacheTracker tracker = this.sessionTracker;
+        if (null == tracker || !context.equals(this.sessionContext)) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Channel [" + this + "] saving context: " + context);
+            }
+            tracker = SSLSessionCacheTracker.getTracker(context, getConfig().getSSLSessionCacheSize(), getConfig().getSSLSessionTimeout());
+            this.sessionTracker = tracker;
+            this.sessionContext = context;
         }
-        this.sessionContext = context;
-        context.setSessionCacheSize(getConfig().getSSLSessionCacheSize());
-        context.setSessionTimeout(getConfig().getSSLSessionTimeout());
-        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-            Tr.debug(tc, "Session cache size set to " + context.getSessionCacheSize());
-            Tr.debug(tc, "Session timeout set to " + context.getSessionTimeout());
+
+        long startTime = link.getHandshakeStartTime();
+        if (0L != startTime) {
+            // a resumed session keeps the creation time of the handshake that created it
+            boolean resumed = engine.getSession().getCreationTime() < startTime;
+            tracker.handshakeFinished(resumed, System.nanoTime() - link.getHandshakeStartNanos());
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Handshake finished, resumed=" + resumed + " " + tracker);
+            }
         }
     }
 
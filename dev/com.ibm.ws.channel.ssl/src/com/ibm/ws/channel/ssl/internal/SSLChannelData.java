@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2008 IBM Corporation and others.
+ * Copyright (c) 2003, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -38,12 +38,17 @@ public class SSLChannelData {
     private static final String SSLSESSION_CACHE_SIZE = "SSLSessionCacheSize";
     private static final String SSLSESSION_TIMEOUT = "SSLSessionTimeout";
     private static final String SSLSESSION_TIMEOUT_8500 = "sessionTimeout";
+    private static final String RECORDS_PER_WRITE = "recordsPerWrite";
+    private static final String COALESCE_READ_RECORDS = "coalesceReadRecords";
 
     /** Defaults for some properties. */
     private static final String DEFAULT_ENCRYPT_BUFFERS_DIRECT = "true";
     private static final String DEFAULT_DECRYPT_BUFFERS_DIRECT = "false";
     private static final int DEFAULT_SSLSESSION_CACHE_SIZE = 100;
     private static final int DEFAULT_SSLSESSION_TIMEOUT = 86400;
+    private static final int DEFAULT_RECORDS_PER_WRITE = 2;
+    private static final int MAX_RECORDS_PER_WRITE = 16;
+    private static final String DEFAULT_COALESCE_READ_RECORDS = "false";
 
     static final String ALIAS_KEY = "alias";
 
@@ -65,6 +70,10 @@ public class SSLChannelData {
     private int sslSessionCacheSize = 0;
     /** Timeout to apply to the SSLSessions, default it 24 hours */
     private int sslSessionTimeout = 0;
+    /** Number of TLS records encrypted into one buffer before it is written */
+    private final int recordsPerWrite;
+    /** Whether a read decrypts all complete records it received, rather than just enough for the request */
+    private final boolean coalesceReadRecords;
 
     /**
      * Method used for debug.
@@ -80,6 +89,8 @@ public class SSLChannelData {
         sb.append("\n\tclientAuthentication = ").append(this.clientAuthentication);
         sb.append("\n\tsession cache size = ").append(this.sslSessionCacheSize);
         sb.append("\n\tsession timeout = ").append(this.sslSessionTimeout);
+        sb.append("\n\trecords per write = ").append(this.recordsPerWrite);
+        sb.append("\n\tcoalesce read records = ").append(this.coalesceReadRecords);
         return sb.toString();
     }
 
@@ -118,6 +129,11 @@ public class SSLChannelData {
 
         this.sslSessionCacheSize = getIntProperty(SSLSESSION_CACHE_SIZE, true, DEFAULT_SSLSESSION_CACHE_SIZE, errors);
         this.sslSessionTimeout = getIntProperty(SSLSESSION_TIMEOUT, true, DEFAULT_SSLSESSION_TIMEOUT, errors);
+        this.recordsPerWrite = getIntProperty(RECORDS_PER_WRITE, true, DEFAULT_RECORDS_PER_WRITE, errors);
+        if (this.recordsPerWrite < 1 || this.recordsPerWrite > MAX_RECORDS_PER_WRITE) {
+            errors.append(RECORDS_PER_WRITE).append(':').append(this.recordsPerWrite).append('\n');
+        }
+        this.coalesceReadRecords = getBooleanProperty(COALESCE_READ_RECORDS, DEFAULT_COALESCE_READ_RECORDS, errors);
 
         // Throw an exception if errors were found in reading data.
         if (errors.length() != 0) {
@@ -236,6 +252,26 @@ public class SSLChannelData {
         return this.sslSessionTimeout;
     }
 
+    /**
+     * Query the number of TLS records that are encrypted into one buffer
+     * before it is written to the network.
+     * 
+     * @return int
+     */
+    public int getRecordsPerWrite() {
+        return this.recordsPerWrite;
+    }
+
+    /**
+     * Query whether a read should decrypt every complete record that is
+     * available, rather than stop once the requested amount is decrypted.
+     * 
+     * @return boolean
+     */
+    public boolean getCoalesceReadRecords() {
+        return this.coalesceReadRecords;
+    }
+
     /**
      * Query the inbound vs outbound flow of this channel.
      * 
@@ -386,6 +422,14 @@ public class SSLChannelData {
      * @return int
      */
     private int getIntProperty(String key, boolean defaultProvided, int defaultValue, StringBuilder errors) {
+        Object objectValue = this.properties.get(key);
+        if (objectValue instanceof Integer) {
+            // metatype attributes of type Integer are not converted to strings
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Property " + key + " set to " + objectValue);
+            }
+            return ((Integer) objectValue).intValue();
+        }
         String value = getStringProperty(key);
         if (null != value) {
             try {
@@ -102,6 +102,9 @@ public class SSLConnectionLink extends OutboundProtocolLink implements Connectio
     private ThirdPartyAlpnNegotiator alpnNegotiator = null;
 
     private final Lock cleanupLock = new ReentrantLock();
+    /** Wall clock and nano time when the initial handshake started, 0 if unknown */
+    private long handshakeStartTime = 0L;
+    private long handshakeStartNanos = 0L;
 
     /**
      * Constructor. Fields assigned here stay the same for the life of
@@ -298,6 +301,8 @@ public class SSLConnectionLink extends OutboundProtocolLink implements Connectio
                         // Discrimination has happened. Save already existing sslEngine.
                         sslEngine = discState.getEngine();
                         sslContext = discState.getSSLContext();
+                        handshakeStartTime = discState.getStartTime();
+                        handshakeStartNanos = discState.getStartNanos();
                         setLinkConfig((SSLLinkConfig) stateMap.get(SSLConnectionLink.LINKCONFIG));
                     } else if (sslContext == null || getSSLEngine() == null) {
                         // Create a new SSL context based on the current properties in the ssl config.
@@ -307,6 +312,7 @@ public class SSLConnectionLink extends OutboundProtocolLink implements Connectio
                                                           sslChannel.getConfig().getFlowType(),
                                                           getLinkConfig(),
                                                           this);
+                        markHandshakeStart();
                     }
                 } else {
                     // Outbound connect is ready. Ensure we have an sslContext and sslEngine.
@@ -320,6 +326,7 @@ public class SSLConnectionLink extends OutboundProtocolLink implements Connectio
                                                                   targetAddress.getRemoteAddress().getPort(),
                                                                   this);
                     }
+                    markHandshakeStart();
                 }
                 if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                     Tr.debug(tc, "SSL engine hc=" + getSSLEngine().hashCode() + " associated with vc=" + getVCHash());
@@ -697,7 +704,7 @@ public class SSLConnectionLink extends OutboundProtocolLink implements Connectio
             AlpnSupportUtils.getAlpnResult(getSSLEngine(), this);
 
             // PK16095 - take certain actions when the handshake completes
-            getChannel().onHandshakeFinish(getSSLEngine());
+            getChannel().onHandshakeFinish(getSSLEngine(), this);
 
             // Handshake complete. Now get the request. Use our read interface so unwrap already done.
             // Check if data exists in the network buffer still. This would be app data beyond handshake.
@@ -859,7 +866,7 @@ public class SSLConnectionLink extends OutboundProtocolLink implements Connectio
         AlpnSupportUtils.getAlpnResult(getSSLEngine(), this);
 
         // PK16095 - take certain actions when the handshake completes
-        getChannel().onHandshakeFinish(getSSLEngine());
+        getChannel().onHandshakeFinish(getSSLEngine(), this);
 
         // Null out the buffer references on the device side so they don't wrongly reused later.
         getDeviceReadInterface().setBuffers(null);
@@ -992,6 +999,7 @@ public class SSLConnectionLink extends OutboundProtocolLink implements Connectio
         }
 
         // Now do the SSL handshake.
+        markHandshakeStart();
         readyOutbound(getVirtualConnection(), false);
         if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
             Tr.exit(tc, "connect");
@@ -1120,6 +1128,29 @@ public class SSLConnectionLink extends OutboundProtocolLink implements Connectio
         return this.sslChannel;
     }
 
+    private void markHandshakeStart() {
+        this.handshakeStartTime = System.currentTimeMillis();
+        this.handshakeStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Query the wall clock time when the initial handshake of this connection started.
+     *
+     * @return long, 0 if unknown
+     */
+    public long getHandshakeStartTime() {
+        return this.handshakeStartTime;
+    }
+
+    /**
+     * Query the System.nanoTime() when the initial handshake of this connection started.
+     *
+     * @return long
+     */
+    public long getHandshakeStartNanos() {
+        return this.handshakeStartNanos;
+    }
+
     /**
      * Fetch the SSL engine associated with this link.
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2007 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -36,6 +36,9 @@ public class SSLDiscriminatorState {
     private int netBufferPosition = 0;
     /** Network buffer limit after call to decrypt. */
     private int netBufferLimit = 0;
+    /** Wall clock and nano time when discrimination, and so the handshake, started. */
+    private final long startTime = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
 
     /**
      * Constructor
@@ -97,6 +100,24 @@ public class SSLDiscriminatorState {
         return this.sslContext;
     }
 
+    /**
+     * Access the wall clock time when discrimination started.
+     * 
+     * @return long
+     */
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * Access the System.nanoTime() when discrimination started.
+     * 
+     * @return long
+     */
+    public long getStartNanos() {
+        return this.startNanos;
+    }
+
     /**
      * Access the ssl engine result object.
      * 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2008 IBM Corporation and others.
+ * Copyright (c) 2003, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -827,6 +827,45 @@ public class SSLReadServiceContext extends SSLBaseServiceContext implements TCPR
         return available;
     }
 
+    /**
+     * When records are coalesced, check whether the network buffer holds another
+     * complete application data record and the output buffers have room to
+     * decrypt it without being expanded. This is called after a successful
+     * unwrap, while the output buffers are flipped for reading.
+     *
+     * @param appBufferSize space the SSL engine requires for one record
+     * @return boolean
+     */
+    private boolean canDecryptNextRecord(int appBufferSize) {
+        if (!getConfig().getCoalesceReadRecords()) {
+            return false;
+        }
+        final int remaining = this.netBuffer.remaining();
+        if (remaining < SSLUtils.TLS_RECORD_HEADER_SIZE) {
+            return false;
+        }
+        final int pos = this.netBuffer.position();
+        if (SSLUtils.TLS_APPLICATION_DATA != this.netBuffer.get(pos)) {
+            // leave alerts and handshake messages to the next read
+            return false;
+        }
+        final int length = ((this.netBuffer.get(pos + 3) & 0xff) << 8) | (this.netBuffer.get(pos + 4) & 0xff);
+        if (remaining < SSLUtils.TLS_RECORD_HEADER_SIZE + length) {
+            return false;
+        }
+        // space between the decrypted data and the original limits
+        int space = 0;
+        for (int i = 0; i < decryptedNetBuffers.length && i < decryptedNetLimitInfo.length; i++) {
+            if (null != decryptedNetBuffers[i]) {
+                space += decryptedNetLimitInfo[i] - decryptedNetBuffers[i].limit();
+            }
+        }
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "next record length=" + length + " space=" + space);
+        }
+        return space >= appBufferSize;
+    }
+
     /**
      * Get the buffers that will be used for output from the SSL engine. If read
      * buffers were supplied by the calling application channel, then they will
@@ -1311,6 +1350,12 @@ public class SSLReadServiceContext extends SSLBaseServiceContext implements TCPR
                         // More data is available. Loop around and decrypt again.
                         continue;
                     }
+                    if (0 < result.bytesProduced() && canDecryptNextRecord(appBufferSize)) {
+                        // Decrypt the next record now as well, rather than on a later read.
+                        SSLUtils.positionToLimit(decryptedNetBuffers);
+                        SSLUtils.setBufferLimits(decryptedNetBuffers, decryptedNetLimitInfo);
+                        continue;
+                    }
                     // Data has been decrypted.
                     break;
                 }
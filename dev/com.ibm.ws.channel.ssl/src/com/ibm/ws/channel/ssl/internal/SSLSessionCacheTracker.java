@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.channel.ssl.internal;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLSessionContext;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+
+/**
+ * Tracks the server side session cache of an SSLSessionContext, which is
+ * shared by every SSL channel that uses the same SSL configuration, since the
+ * security service hands out a single SSLContext per configuration.
+ *
+ * The cache limits of the context are the largest of the limits configured on
+ * the channels that use it, so that an endpoint with a small cache does not
+ * shrink the cache of another endpoint that shares the context. The tracker
+ * also counts the full and the resumed handshakes, and the time they took.
+ */
+public class SSLSessionCacheTracker {
+
+    private static final TraceComponent tc = Tr.register(SSLSessionCacheTracker.class,
+                                                         SSLChannelConstants.SSL_TRACE_NAME,
+                                                         SSLChannelConstants.SSL_BUNDLE);
+
+    /** Trackers by session context; the contexts are owned by the security service */
+    private static final Map<SSLSessionContext, SSLSessionCacheTracker> trackers = new WeakHashMap<SSLSessionContext, SSLSessionCacheTracker>();
+
+    private final String contextName;
+    /** Cache size applied to the context, where 0 means no limit */
+    private int cacheSize = -1;
+    /** Session timeout applied to the context in seconds, where 0 means no limit */
+    private int sessionTimeout = -1;
+
+    private final AtomicLong fullHandshakes = new AtomicLong();
+    private final AtomicLong resumedHandshakes = new AtomicLong();
+    private final AtomicLong fullHandshakeNanos = new AtomicLong();
+    private final AtomicLong resumedHandshakeNanos = new AtomicLong();
+
+    private SSLSessionCacheTracker(SSLSessionContext context) {
+        this.contextName = context.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(context));
+    }
+
+    /**
+     * Access the tracker of a session context, and make sure the cache limits of
+     * the context are at least those provided.
+     *
+     * @param context
+     * @param size the session cache size configured on the channel, 0 for no limit
+     * @param timeout the session timeout configured on the channel in seconds, 0 for no limit
+     * @return SSLSessionCacheTracker
+     */
+    public static SSLSessionCacheTracker getTracker(SSLSessionContext context, int size, int timeout) {
+        SSLSessionCacheTracker tracker;
+        synchronized (trackers) {
+            tracker = trackers.get(context);
+            if (null == tracker) {
+                tracker = new SSLSessionCacheTracker(context);
+                trackers.put(context, tracker);
+            }
+        }
+        tracker.applyLimits(context, size, timeout);
+        return tracker;
+    }
+
+    private synchronized void applyLimits(SSLSessionContext context, int size, int timeout) {
+        int newSize = larger(this.cacheSize, size);
+        int newTimeout = larger(this.sessionTimeout, timeout);
+        if (newSize != this.cacheSize) {
+            this.cacheSize = newSize;
+            context.setSessionCacheSize(newSize);
+        }
+        if (newTimeout != this.sessionTimeout) {
+            this.sessionTimeout = newTimeout;
+            context.setSessionTimeout(newTimeout);
+        }
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "Session cache of " + this.contextName + " size=" + context.getSessionCacheSize()
+                         + " timeout=" + context.getSessionTimeout());
+        }
+    }
+
+    /**
+     * Pick the larger of two limits, where 0 means no limit and -1 means not set.
+     */
+    private static int larger(int current, int requested) {
+        if (current == -1) {
+            return requested;
+        }
+        if (current == 0 || requested == 0) {
+            return 0;
+        }
+        return Math.max(current, requested);
+    }
+
+    /**
+     * Record a completed handshake.
+     *
+     * @param resumed whether the handshake resumed a cached session
+     * @param elapsedNanos the time the handshake took
+     */
+    public void handshakeFinished(boolean resumed, long elapsedNanos) {
+        if (resumed) {
+            this.resumedHandshakes.incrementAndGet();
+            this.resumedHandshakeNanos.addAndGet(elapsedNanos);
+        } else {
+            this.fullHandshakes.incrementAndGet();
+            this.fullHandshakeNanos.addAndGet(elapsedNanos);
+        }
+    }
+
+    /**
+     * Query the number of handshakes that could not resume a cached session.
+     *
+     * @return long
+     */
+    public long getFullHandshakeCount() {
+        return this.fullHandshakes.get();
+    }
+
+    /**
+     * Query the number of handshakes that resumed a cached session.
+     *
+     * @return long
+     */
+    public long getResumedHandshakeCount() {
+        return this.resumedHandshakes.get();
+    }
+
+    /**
+     * Query the average time of a full handshake.
+     *
+     * @return long in microseconds, or 0 if there were none
+     */
+    public long getAverageFullHandshakeTime() {
+        long count = this.fullHandshakes.get();
+        return (0 == count) ? 0L : this.fullHandshakeNanos.get() / count / 1000L;
+    }
+
+    /**
+     * Query the average time of a resumed handshake.
+     *
+     * @return long in microseconds, or 0 if there were none
+     */
+    public long getAverageResumedHandshakeTime() {
+        long count = this.resumedHandshakes.get();
+        return (0 == count) ? 0L : this.resumedHandshakeNanos.get() / count / 1000L;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SSLSessionCacheTracker[context=" + this.contextName + " cacheSize=" + this.cacheSize
+               + " timeout=" + this.sessionTimeout + " full=" + getFullHandshakeCount()
+               + " resumed=" + getResumedHandshakeCount() + " fullMicros=" + getAverageFullHandshakeTime()
+               + " resumedMicros=" + getAverageResumedHandshakeTime() + "]";
+    }
+}
@@ -51,6 +51,10 @@ public class SSLUtils {
                                                          SSLChannelConstants.SSL_BUNDLE);
     /** Name of class used in various calls to FFDC. */
     private static final String CLASS_NAME = SSLUtils.class.getCanonicalName();
+    /** Size of the header of a TLS record: content type, version and length. */
+    public static final int TLS_RECORD_HEADER_SIZE = 5;
+    /** Content type of a TLS record carrying application data. */
+    public static final byte TLS_APPLICATION_DATA = 23;
     /** Empty buffer used in wrap(null, blah) calls */
     private static ByteBuffer emptyBuffer;
     static {
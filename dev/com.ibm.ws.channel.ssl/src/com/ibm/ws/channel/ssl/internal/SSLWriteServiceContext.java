@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2008 IBM Corporation and others.
+ * Copyright (c) 2003, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -136,8 +136,8 @@ public class SSLWriteServiceContext extends SSLBaseServiceContext implements TCP
         // make sure we have an output buffer of the target size ready
         final int packetSize = getConnLink().getPacketBufferSize();
         if (numBytesLeft > packetSize) {
-            // need >1 packet, do blocks of up to 2 at a time
-            getEncryptedAppBuffer(packetSize * 2);
+            // need >1 packet, do blocks of up to the configured number of records at a time
+            getEncryptedAppBuffer(packetSize * getRecordsPerBuffer(numBytesLeft, packetSize));
         } else {
             // one packet is fine
             getEncryptedAppBuffer(1);
@@ -416,7 +416,7 @@ public class SSLWriteServiceContext extends SSLBaseServiceContext implements TCP
             // make sure we have an output buffer of the target size ready
             final int packetSize = getConnLink().getPacketBufferSize();
             if (numBytesLeft > packetSize) {
-                getEncryptedAppBuffer(packetSize * 2);
+                getEncryptedAppBuffer(packetSize * getRecordsPerBuffer(numBytesLeft, packetSize));
             } else {
                 getEncryptedAppBuffer(1);
             }
@@ -749,6 +749,18 @@ public class SSLWriteServiceContext extends SSLBaseServiceContext implements TCP
         }
     }
 
+    /**
+     * Find how many records to encrypt into the output buffer before it is
+     * written, so that a large write goes out in fewer, larger network writes.
+     *
+     * @param numBytes bytes left to write
+     * @param packetSize
+     * @return int
+     */
+    private int getRecordsPerBuffer(long numBytes, int packetSize) {
+        return (int) Math.min(numBytes / packetSize + 1, getConfig().getRecordsPerWrite());
+    }
+
     /**
      * Make sure that an output buffer is ready for encryption use. This will always
      * allocate a minimum of the current SSLSession packet size.
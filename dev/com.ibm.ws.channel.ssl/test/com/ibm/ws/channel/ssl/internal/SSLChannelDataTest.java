@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 IBM Corporation and others.
+ * Copyright (c) 2009, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -83,6 +83,8 @@ public class SSLChannelDataTest {
             configMap.put("decryptBuffersDirect", "true");
             configMap.put("SSLSessionCacheSize", "10");
             configMap.put("SSLSessionTimeout", "1000");
+            configMap.put("recordsPerWrite", Integer.valueOf(8));
+            configMap.put("coalesceReadRecords", Boolean.TRUE);
             configMap.put("testvalue", "false");
             mocker.checking(new Expectations()
             {
@@ -105,6 +107,8 @@ public class SSLChannelDataTest {
             assertTrue(config.getEncryptBuffersDirect());
             assertTrue(10 == config.getSSLSessionCacheSize());
             assertTrue(1000 == config.getSSLSessionTimeout());
+            assertEquals(8, config.getRecordsPerWrite());
+            assertTrue(config.getCoalesceReadRecords());
             assertEquals(FlowType.INBOUND, config.getFlowType());
             assertTrue(config.getBooleanProperty("encryptBuffersDirect"));
             assertFalse(config.getBooleanProperty("testvalue"));
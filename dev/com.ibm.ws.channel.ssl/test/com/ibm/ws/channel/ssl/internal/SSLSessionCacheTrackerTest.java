@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.channel.ssl.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import test.common.SharedOutputManager;
+
+/**
+ * Test the session cache shared by the channels that use the same SSL context.
+ */
+public class SSLSessionCacheTrackerTest {
+    static final SharedOutputManager outputMgr = SharedOutputManager.getInstance();
+    @Rule
+    public TestRule managerRule = outputMgr;
+
+    private static SSLSessionContext newSessionContext() throws Exception {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, null, null);
+        return context.getServerSessionContext();
+    }
+
+    /**
+     * Channels sharing a context share one tracker, and the largest limits win.
+     */
+    @Test
+    public void testSharedLimits() throws Exception {
+        SSLSessionContext context = newSessionContext();
+        SSLSessionCacheTracker first = SSLSessionCacheTracker.getTracker(context, 100, 86400);
+        assertEquals(100, context.getSessionCacheSize());
+        assertEquals(86400, context.getSessionTimeout());
+
+        SSLSessionCacheTracker second = SSLSessionCacheTracker.getTracker(context, 5000, 600);
+        assertSame(first, second);
+        assertEquals(5000, context.getSessionCacheSize());
+        assertEquals(86400, context.getSessionTimeout());
+
+        // a smaller size does not shrink the cache, and 0 removes the limit
+        SSLSessionCacheTracker.getTracker(context, 10, 0);
+        assertEquals(5000, context.getSessionCacheSize());
+        assertEquals(0, context.getSessionTimeout());
+
+        assertNotSame(first, SSLSessionCacheTracker.getTracker(newSessionContext(), 100, 86400));
+    }
+
+    /**
+     * Full and resumed handshakes are counted separately.
+     */
+    @Test
+    public void testHandshakeCounts() throws Exception {
+        SSLSessionCacheTracker tracker = SSLSessionCacheTracker.getTracker(newSessionContext(), 100, 86400);
+        tracker.handshakeFinished(false, 4000000L);
+        tracker.handshakeFinished(false, 2000000L);
+        tracker.handshakeFinished(true, 500000L);
+
+        assertEquals(2, tracker.getFullHandshakeCount());
+        assertEquals(1, tracker.getResumedHandshakeCount());
+        assertEquals(3000, tracker.getAverageFullHandshakeTime());
+        assertEquals(500, tracker.getAverageResumedHandshakeTime());
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -36,6 +36,8 @@ public class FCWsByteBufferImpl extends WsByteBufferImpl {
     private int status = 0;
     private int fcLimit = 0;
     private int fcSize = 0;
+    /** whether a limit was set while in transferTo mode, so only the file up to it is written */
+    private boolean fcLimitSet = false;
     private FileChannel fc = null;
 
     private static final TraceComponent tc = Tr.register(FCWsByteBufferImpl.class,
@@ -124,6 +126,17 @@ public class FCWsByteBufferImpl extends WsByteBufferImpl {
         return this.fc;
     }
 
+    /**
+     * Query whether a limit was set on this buffer while it was in transferTo
+     * mode. Only then is the FileChannel written up to the limit, rather than
+     * to the current end of the file.
+     * 
+     * @return boolean
+     */
+    public boolean isLimitSet() {
+        return this.fcLimitSet;
+    }
+
     /**
      * If the buffer has not already been converted from a TRANSFER_TO buffer back
      * to the more common base BUFFER, then do so now.
@@ -526,6 +539,7 @@ public class FCWsByteBufferImpl extends WsByteBufferImpl {
             }
             // set our FC limit
             this.fcLimit = newLimit;
+            this.fcLimitSet = true;
             return this;
         }
         return super.limit(newLimit);
@@ -0,0 +1,418 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.bytebuffer.internal;
+
+import java.io.PrintWriter;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+
+/**
+ * Allocator of direct ByteBuffers for the pooled WsByteBuffer sizes that carves
+ * the buffers out of a small number of large direct regions, rather than
+ * allocating each buffer separately.
+ *
+ * Each pool size is a size class with its own bin of free buffers. A buffer
+ * that is released goes back to the bin of its size class and is handed out
+ * again by the next allocation of that size, so native memory does not depend
+ * on the garbage collector to be reclaimed and does not fragment. New regions
+ * are only allocated while the total stays within the configured limit, after
+ * which allocate returns null and the caller must fail the allocation or use
+ * some other storage.
+ *
+ * Each size class has its own lock, and the regions have another one that is
+ * only taken when a bin is empty, so allocations of different sizes do not
+ * contend with each other.
+ *
+ * A buffer can be allocated for an owner, the object that holds on to it.
+ * If the owner is garbage collected without the buffer being released, for
+ * example a WsByteBuffer that was never released or one that was left in the
+ * cache of a thread that ended, the buffer goes back to its bin the next time
+ * that bin is empty.
+ */
+public class SlabAllocator {
+
+    private static final TraceComponent tc = Tr.register(SlabAllocator.class,
+                                                         MessageConstants.WSBB_TRACE_NAME,
+                                                         MessageConstants.WSBB_BUNDLE);
+
+    /**
+     * State of a buffer that was carved from a region.
+     */
+    private static final class Slot {
+        final ByteBuffer buffer;
+        final SizeClass sizeClass;
+        boolean free;
+        /** Reference to the owner while the buffer is handed out, or null */
+        Owner owner;
+
+        Slot(ByteBuffer buffer, SizeClass sizeClass) {
+            this.buffer = buffer;
+            this.sizeClass = sizeClass;
+        }
+    }
+
+    /**
+     * Weak reference to the owner of a buffer that is handed out, which is
+     * queued once the owner is garbage collected.
+     */
+    private static final class Owner extends WeakReference<Object> {
+        final Slot slot;
+
+        Owner(Object owner, Slot slot, ReferenceQueue<Object> queue) {
+            super(owner, queue);
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * Buffers of one size. All fields are guarded by the size class itself.
+     */
+    private static final class SizeClass {
+        final int size;
+
+        /** Free buffers */
+        final ArrayDeque<ByteBuffer> bin = new ArrayDeque<ByteBuffer>();
+
+        /** Every buffer of this size carved from a region, by identity */
+        final IdentityHashMap<ByteBuffer, Slot> carved = new IdentityHashMap<ByteBuffer, Slot>();
+
+        /** Number of buffers handed out */
+        int inUse = 0;
+
+        /** Number of buffers handed out, released and reclaimed from lost owners */
+        long allocations = 0;
+        long releases = 0;
+        long reclaimed = 0;
+
+        /** Number of allocations that were refused because of the memory limit */
+        long limitReached = 0;
+
+        SizeClass(int size) {
+            this.size = size;
+        }
+    }
+
+    /** Size classes, smallest to largest */
+    private final SizeClass[] sizeClasses;
+
+    /** Owners of handed out buffers that were garbage collected */
+    private final ReferenceQueue<Object> lostOwners = new ReferenceQueue<Object>();
+
+    /** Size of each region in bytes */
+    private final int regionSize;
+
+    /** Limit on the total size of all regions in bytes */
+    private final long memoryLimit;
+
+    /** Guards the current region and the region count */
+    private final Object regionLock = new Object() {};
+
+    /** Region from which buffers are currently carved, or null if none */
+    private ByteBuffer region = null;
+
+    /** Number of regions that have been allocated */
+    private int regionCount = 0;
+
+    /**
+     * Create an allocator.
+     *
+     * @param sizes buffer sizes of each size class, smallest to largest
+     * @param regionSize size of each region in bytes, at least the largest size class
+     * @param memoryLimit limit on the total size of all regions in bytes
+     */
+    public SlabAllocator(int[] sizes, int regionSize, long memoryLimit) {
+        this.regionSize = Math.max(regionSize, sizes.length == 0 ? 0 : sizes[sizes.length - 1]);
+        this.memoryLimit = memoryLimit;
+        this.sizeClasses = new SizeClass[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            this.sizeClasses[i] = new SizeClass(sizes[i]);
+        }
+        if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+            Tr.event(tc, "Creating slab allocator: regionSize=" + this.regionSize + " memoryLimit=" + memoryLimit);
+        }
+    }
+
+    /**
+     * Obtain a direct buffer whose capacity is exactly one of the size classes.
+     *
+     * @param size the capacity, which must match a size class
+     * @return ByteBuffer, or null if the size is not a size class or the memory limit has been reached
+     */
+    public ByteBuffer allocate(int size) {
+        return allocate(size, null);
+    }
+
+    /**
+     * Obtain a direct buffer whose capacity is exactly one of the size classes,
+     * for an owner. The buffer goes back to its bin if the owner is garbage
+     * collected before the buffer is released.
+     *
+     * @param size the capacity, which must match a size class
+     * @param owner the object that holds on to the buffer, or null
+     * @return ByteBuffer, or null if the size is not a size class or the memory limit has been reached
+     */
+    public ByteBuffer allocate(int size, Object owner) {
+        SizeClass sizeClass = sizeClassOf(size);
+        if (sizeClass == null) {
+            return null;
+        }
+        ByteBuffer buffer = take(sizeClass, owner);
+        if (buffer == null && reclaim() > 0) {
+            buffer = take(sizeClass, owner);
+        }
+        if (buffer == null) {
+            buffer = carve(size);
+            synchronized (sizeClass) {
+                if (buffer == null) {
+                    sizeClass.limitReached++;
+                    return null;
+                }
+                Slot slot = new Slot(buffer, sizeClass);
+                sizeClass.carved.put(buffer, slot);
+                handOut(slot, owner);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Take a free buffer from the bin of a size class.
+     *
+     * @return ByteBuffer, or null if the bin is empty
+     */
+    private ByteBuffer take(SizeClass sizeClass, Object owner) {
+        synchronized (sizeClass) {
+            ByteBuffer buffer = sizeClass.bin.pollFirst();
+            if (buffer != null) {
+                handOut(sizeClass.carved.get(buffer), owner);
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Mark a slot as handed out; the size class must be locked.
+     */
+    private void handOut(Slot slot, Object owner) {
+        slot.free = false;
+        slot.owner = (owner == null) ? null : new Owner(owner, slot, lostOwners);
+        slot.sizeClass.allocations++;
+        slot.sizeClass.inUse++;
+    }
+
+    /**
+     * Put a slot back into the bin of its size class; the size class must be locked.
+     */
+    private void putBack(Slot slot) {
+        if (slot.owner != null) {
+            // the owner is done with the buffer, so it must not be reclaimed later
+            slot.owner.clear();
+            slot.owner = null;
+        }
+        slot.free = true;
+        slot.buffer.clear();
+        slot.sizeClass.bin.addFirst(slot.buffer);
+        slot.sizeClass.inUse--;
+    }
+
+    /**
+     * Return a buffer to the bin of its size class.
+     *
+     * @param buffer
+     * @return true if the buffer belongs to this allocator, otherwise false
+     */
+    public boolean release(ByteBuffer buffer) {
+        SizeClass sizeClass = sizeClassOf(buffer.capacity());
+        if (sizeClass == null) {
+            return false;
+        }
+        synchronized (sizeClass) {
+            Slot slot = sizeClass.carved.get(buffer);
+            if (slot == null) {
+                return false;
+            }
+            if (!slot.free) {
+                putBack(slot);
+                sizeClass.releases++;
+            }
+            // else already released
+            return true;
+        }
+    }
+
+    /**
+     * Put the buffers whose owners were garbage collected without releasing
+     * them back into their bins.
+     *
+     * @return int, the number of buffers that were reclaimed
+     */
+    public int reclaim() {
+        int count = 0;
+        Reference<?> ref;
+        while ((ref = lostOwners.poll()) != null) {
+            Slot slot = ((Owner) ref).slot;
+            synchronized (slot.sizeClass) {
+                // the slot may have been released and handed out again since
+                if (slot.owner == ref && !slot.free) {
+                    putBack(slot);
+                    slot.sizeClass.reclaimed++;
+                    count++;
+                }
+            }
+        }
+        if (count > 0 && TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+            Tr.event(tc, "Reclaimed " + count + " slab buffers that were not released");
+        }
+        return count;
+    }
+
+    /**
+     * Carve a new buffer from the current region, allocating a new region if
+     * the current one is exhausted and the limit allows.
+     *
+     * @return ByteBuffer, or null if the memory limit has been reached
+     */
+    private ByteBuffer carve(int size) {
+        synchronized (regionLock) {
+            if (region == null || region.remaining() < size) {
+                if ((long) (regionCount + 1) * regionSize > memoryLimit) {
+                    return null;
+                }
+                // the unused end of the previous region is given up
+                region = ByteBuffer.allocateDirect(regionSize);
+                regionCount++;
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                    Tr.event(tc, "Allocated slab region " + regionCount + " of " + regionSize + " bytes");
+                }
+            }
+            int start = region.position();
+            region.limit(start + size);
+            ByteBuffer buffer = region.slice();
+            region.limit(region.capacity());
+            region.position(start + size);
+            return buffer;
+        }
+    }
+
+    private SizeClass sizeClassOf(int size) {
+        for (SizeClass sizeClass : sizeClasses) {
+            if (sizeClass.size == size) {
+                return sizeClass;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Query the total size of all regions in bytes.
+     *
+     * @return long
+     */
+    public long getReservedBytes() {
+        synchronized (regionLock) {
+            return (long) regionCount * regionSize;
+        }
+    }
+
+    /**
+     * Query the bytes of the slab that are handed out.
+     *
+     * @return long
+     */
+    public long getInUseBytes() {
+        long inUseBytes = 0;
+        for (SizeClass sizeClass : sizeClasses) {
+            synchronized (sizeClass) {
+                inUseBytes += (long) sizeClass.inUse * sizeClass.size;
+            }
+        }
+        return inUseBytes;
+    }
+
+    /**
+     * Query the number of allocations that were refused because of the memory limit.
+     *
+     * @return long
+     */
+    public long getLimitReachedCount() {
+        long limitReached = 0;
+        for (SizeClass sizeClass : sizeClasses) {
+            synchronized (sizeClass) {
+                limitReached += sizeClass.limitReached;
+            }
+        }
+        return limitReached;
+    }
+
+    /**
+     * Query the number of buffers that were put back into their bins because
+     * their owners were garbage collected without releasing them.
+     *
+     * @return long
+     */
+    public long getReclaimedCount() {
+        long reclaimed = 0;
+        for (SizeClass sizeClass : sizeClasses) {
+            synchronized (sizeClass) {
+                reclaimed += sizeClass.reclaimed;
+            }
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Write the usage statistics of the slab.
+     *
+     * @param out
+     */
+    public void introspect(PrintWriter out) {
+        int regions;
+        synchronized (regionLock) {
+            regions = regionCount;
+        }
+        long inUseBytes = 0;
+        long allocations = 0;
+        long releases = 0;
+        long reclaimed = 0;
+        long limitReached = 0;
+        int[] free = new int[sizeClasses.length];
+        for (int i = 0; i < sizeClasses.length; i++) {
+            SizeClass sizeClass = sizeClasses[i];
+            synchronized (sizeClass) {
+                inUseBytes += (long) sizeClass.inUse * sizeClass.size;
+                allocations += sizeClass.allocations;
+                releases += sizeClass.releases;
+                reclaimed += sizeClass.reclaimed;
+                limitReached += sizeClass.limitReached;
+                free[i] = sizeClass.bin.size();
+            }
+        }
+        out.println("  slab: memoryLimit=" + memoryLimit
+                    + " regionSize=" + regionSize
+                    + " regions=" + regions
+                    + " reservedBytes=" + (long) regions * regionSize
+                    + " inUseBytes=" + inUseBytes
+                    + " allocations=" + allocations
+                    + " releases=" + releases
+                    + " reclaimed=" + reclaimed
+                    + " limitReached=" + limitReached);
+        for (int i = 0; i < sizeClasses.length; i++) {
+            out.println("    sizeClass " + sizeClasses[i].size + " free=" + free[i]);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,13 @@
  *******************************************************************************/
 package com.ibm.ws.bytebuffer.internal;
 
+import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
@@ -20,6 +25,17 @@ import com.ibm.ws.kernel.service.util.ConcurrentObjectPool;
 /**
  * A Pool of WsByteBuffers. The size of the entries and the pool depth are
  * configurable.
+ *
+ * Optionally, each thread keeps a small cache of entries in front of the
+ * shared pool. Entries are obtained from and released to the cache of the
+ * current thread without touching the shared pool. When the cache is empty
+ * it is refilled from the shared pool with several entries at once, and when
+ * it is full half of it is spilled back to the shared pool.
+ *
+ * The entries in the cache of a thread that has ended are moved back to the
+ * shared pool the next time a thread creates its cache, or when the
+ * statistics of the pool are read. Until then, at most the cache depth of
+ * entries is held for each thread that ended.
  */
 public class WsByteBufferPool {
     private final int intEntrySize;
@@ -27,6 +43,57 @@ public class WsByteBufferPool {
     private final boolean isDirectPool;
     private final ConcurrentObjectPool<PooledWsByteBufferImpl> pool;
 
+    /**
+     * Cache of entries that is kept by a single thread.
+     */
+    private static final class LocalCache {
+        final PooledWsByteBufferImpl[] entries;
+        int count;
+
+        /** Thread that uses the cache */
+        final WeakReference<Thread> owner;
+
+        /**
+         * Number of entries obtained from the cache, and of requests that found
+         * it empty. Only written by the owning thread, so they are approximate
+         * when read by another thread.
+         */
+        long hits;
+        long misses;
+
+        LocalCache(int depth) {
+            this.entries = new PooledWsByteBufferImpl[depth];
+            this.owner = new WeakReference<Thread>(Thread.currentThread());
+        }
+
+        boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+    }
+
+    /** Maximum number of entries in the cache of each thread, or 0 if threads do not cache entries */
+    private final int localDepth;
+
+    /** Per thread caches, or null if threads do not cache entries */
+    private final ThreadLocal<LocalCache> localCache;
+
+    /** Caches of all threads, to add up their counts and reclaim the entries of threads that ended */
+    private final Set<LocalCache> localCaches = Collections.newSetFromMap(new ConcurrentHashMap<LocalCache, Boolean>());
+
+    /** Counts of the caches of threads that ended */
+    private final AtomicLong endedHits = new AtomicLong();
+    private final AtomicLong endedMisses = new AtomicLong();
+
+    /** Number of entries moved from the caches of threads that ended back to the shared pool */
+    private final AtomicLong reclaimed = new AtomicLong();
+
+    /** Number of entries moved from the cache of a thread back to the shared pool */
+    private final AtomicLong spills = new AtomicLong();
+
+    /** Number of entries that were created because none were pooled */
+    private final AtomicLong created = new AtomicLong();
+
     /**
      * When {@link #inUseTracking} is enabled, this table records poolable objects that were previously created, but
      * are currently not in the pool. An entry is placed in this table for a {@link #get()} and removed for a
@@ -50,19 +117,45 @@ public class WsByteBufferPool {
      * @param isDirectPool
      */
     public WsByteBufferPool(int entrySizeIn, int _globalPoolSize, boolean tracking, boolean isDirectPool) { // @427758C
+        this(entrySizeIn, _globalPoolSize, 0, tracking, isDirectPool);
+    }
+
+    /**
+     * Create the pool and obtain the values for the size of the pool
+     * entries, the pool depth, and the depth of the cache of each thread.
+     *
+     * @param entrySizeIn
+     * @param _globalPoolSize
+     * @param _localDepth maximum entries cached by each thread, 0 to disable
+     * @param tracking
+     * @param isDirectPool
+     */
+    public WsByteBufferPool(int entrySizeIn, int _globalPoolSize, int _localDepth, boolean tracking, boolean isDirectPool) {
 
         this.intEntrySize = entrySizeIn;
         this.globalPoolSize = _globalPoolSize;
         this.isDirectPool = isDirectPool;
+        this.localDepth = Math.max(0, _localDepth);
         if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
             Tr.event(tc, "Creating : " +
                          this.toString() +
                          " direct=" + isDirectPool +
-                         " backing pool size: " + this.globalPoolSize);
+                         " backing pool size: " + this.globalPoolSize +
+                         " thread cache depth: " + this.localDepth);
         }
 
         this.pool = new ConcurrentObjectPool<>(globalPoolSize);
         this.inUseTable = tracking ? new Hashtable<PooledWsByteBufferImpl, PooledWsByteBufferImpl>(globalPoolSize * 2) : null;
+        this.localCache = this.localDepth == 0 ? null : new ThreadLocal<LocalCache>() {
+            @Override
+            protected LocalCache initialValue() {
+                // threads come and go together, so look for ones that ended
+                reclaimEndedThreads();
+                LocalCache cache = new LocalCache(localDepth);
+                localCaches.add(cache);
+                return cache;
+            }
+        };
     }
 
     private WsByteBufferPoolManagerImpl wsbbPoolManager = null;
@@ -100,8 +193,9 @@ public class WsByteBufferPool {
      * @return PooledWsByteBufferImpl
      */
     public PooledWsByteBufferImpl getEntry() {
-        PooledWsByteBufferImpl returnValue = pool.get();
+        PooledWsByteBufferImpl returnValue = localCache == null ? pool.get() : getLocalEntry();
         if (returnValue == null) {
+            created.incrementAndGet();
             returnValue = create();
         }
         if (inUseTable != null) {
@@ -110,6 +204,34 @@ public class WsByteBufferPool {
         return returnValue;
     }
 
+    /**
+     * Take an entry from the cache of the current thread. If the cache is
+     * empty, refill up to half of it from the shared pool.
+     *
+     * @return PooledWsByteBufferImpl, or null if none are pooled
+     */
+    private PooledWsByteBufferImpl getLocalEntry() {
+        LocalCache cache = localCache.get();
+        if (cache.count > 0) {
+            cache.hits++;
+            PooledWsByteBufferImpl entry = cache.entries[--cache.count];
+            cache.entries[cache.count] = null;
+            return entry;
+        }
+
+        cache.misses++;
+        PooledWsByteBufferImpl entry = pool.get();
+        if (entry != null) {
+            for (int refill = localDepth / 2; cache.count < refill;) {
+                PooledWsByteBufferImpl next = pool.get();
+                if (next == null)
+                    break;
+                cache.entries[cache.count++] = next;
+            }
+        }
+        return entry;
+    }
+
     /**
      * Return a buffer to the pool or free the buffer to be garbage
      * collected if the pool is full.
@@ -121,12 +243,152 @@ public class WsByteBufferPool {
         if (inUseTable != null) {
             inUseTable.remove(buffer);
         }
+        if (localCache != null) {
+            LocalCache cache = localCache.get();
+            if (cache.count == localDepth) {
+                // spill the older half of the cache to the shared pool
+                int spill = Math.max(1, localDepth / 2);
+                for (int i = 0; i < spill; i++) {
+                    putShared(cache.entries[i]);
+                }
+                System.arraycopy(cache.entries, spill, cache.entries, 0, localDepth - spill);
+                cache.count -= spill;
+                for (int i = cache.count; i < localDepth; i++) {
+                    cache.entries[i] = null;
+                }
+                spills.addAndGet(spill);
+            }
+            cache.entries[cache.count++] = buffer;
+        } else {
+            putShared(buffer);
+        }
+    }
+
+    /**
+     * Move the entries in the caches of threads that ended back to the shared
+     * pool, and keep their counts.
+     *
+     * @return int, the number of entries that were moved
+     */
+    public int reclaimEndedThreads() {
+        int count = 0;
+        for (LocalCache cache : localCaches) {
+            // only the one thread that removes the cache moves its entries
+            if (!cache.isOwnerAlive() && localCaches.remove(cache)) {
+                endedHits.addAndGet(cache.hits);
+                endedMisses.addAndGet(cache.misses);
+                for (int i = 0; i < cache.count; i++) {
+                    putShared(cache.entries[i]);
+                    cache.entries[i] = null;
+                }
+                count += cache.count;
+                cache.count = 0;
+            }
+        }
+        if (count > 0) {
+            reclaimed.addAndGet(count);
+            if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                Tr.event(tc, "Reclaimed " + count + " entries from the caches of ended threads of " + this);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return a buffer to the shared pool, or destroy it if the pool is full.
+     *
+     * @param buffer
+     */
+    private void putShared(PooledWsByteBufferImpl buffer) {
         boolean pooled = pool.put(buffer);
         if (isDirectPool && !pooled) {
             destroy(buffer);
         }
     }
 
+    /**
+     * Query the size of the entries in this pool.
+     *
+     * @return int
+     */
+    public int getEntrySize() {
+        return this.intEntrySize;
+    }
+
+    /**
+     * Query whether this pool holds direct buffers.
+     *
+     * @return boolean
+     */
+    public boolean isDirectPool() {
+        return this.isDirectPool;
+    }
+
+    /**
+     * Query the maximum number of entries cached by each thread.
+     *
+     * @return int, 0 if threads do not cache entries
+     */
+    public int getLocalDepth() {
+        return this.localDepth;
+    }
+
+    /**
+     * Query the number of entries obtained from the cache of the requesting thread.
+     *
+     * @return long
+     */
+    public long getLocalHits() {
+        reclaimEndedThreads();
+        long hits = this.endedHits.get();
+        for (LocalCache cache : localCaches) {
+            hits += cache.hits;
+        }
+        return hits;
+    }
+
+    /**
+     * Query the number of requests that found the cache of the requesting thread empty.
+     *
+     * @return long
+     */
+    public long getLocalMisses() {
+        reclaimEndedThreads();
+        long misses = this.endedMisses.get();
+        for (LocalCache cache : localCaches) {
+            misses += cache.misses;
+        }
+        return misses;
+    }
+
+    /**
+     * Query the number of entries that were spilled from thread caches to the shared pool.
+     *
+     * @return long
+     */
+    public long getSpills() {
+        return this.spills.get();
+    }
+
+    /**
+     * Query the number of entries that were moved from the caches of threads
+     * that ended back to the shared pool.
+     *
+     * @return long
+     */
+    public long getReclaimed() {
+        return this.reclaimed.get();
+    }
+
+    /**
+     * Query the number of entries that were created because the pool was empty.
+     *
+     * @return long
+     */
+    public long getCreated() {
+        return this.created.get();
+    }
+
     /**
      * Return the inUse table.
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@ package com.ibm.ws.bytebuffer.internal;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Date;
@@ -86,6 +87,10 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
     private static final String POOL_SIZES = "poolSizes";
     private static final String POOL_DEPTHS = "poolDepths";
     private static final String CLEAN_UP = "cleanUp";
+    private static final String THREAD_CACHE_DEPTH = "threadCacheDepth";
+    private static final String SLAB_MEMORY_LIMIT = "slabMemoryLimit";
+    private static final String SLAB_REGION_SIZE = "slabRegionSize";
+    private static final String SLAB_OVERFLOW = "slabOverflow";
     private static final String CONFIG_ALIAS = "bytebuffer";
 
     private boolean trustedUsers = false;
@@ -94,6 +99,25 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
     private String leakDetectionOutput = null;
     private final Object leakDetectionSyncObject = new Object() {};
 
+    /** Maximum number of entries of each pool that a thread caches, 0 to disable thread caching */
+    private int threadCacheDepth = 0;
+
+    /** Limit in bytes on the direct memory of the slab allocator, 0 to not use a slab allocator */
+    private long slabMemoryLimit = 0L;
+
+    /** Size in bytes of each region of the slab allocator */
+    private int slabRegionSize = 4 * 1024 * 1024;
+
+    /**
+     * Whether pooled direct buffers that do not fit within the slab memory
+     * limit are allocated separately, outside the slab. If false, the limit is
+     * a hard ceiling and such allocations fail with an OutOfMemoryError.
+     */
+    private boolean slabOverflow = false;
+
+    /** Allocator for the direct buffers of the pools, or null to allocate each buffer separately */
+    private SlabAllocator slab = null;
+
     /**
      * Create the one WsByteBufferPool Manager that is to be used.
      *
@@ -173,6 +197,35 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
                     continue;
                 }
 
+                if (key.equalsIgnoreCase(SLAB_MEMORY_LIMIT)) {
+                    this.slabMemoryLimit = MetatypeUtils.parseLong(CONFIG_ALIAS, SLAB_MEMORY_LIMIT, value, this.slabMemoryLimit);
+                    if (this.slabMemoryLimit < 0) {
+                        result = VALIDATE_ERROR;
+                    }
+                    continue;
+                }
+
+                if (key.equalsIgnoreCase(SLAB_REGION_SIZE)) {
+                    this.slabRegionSize = MetatypeUtils.parseInteger(CONFIG_ALIAS, SLAB_REGION_SIZE, value, this.slabRegionSize);
+                    if (this.slabRegionSize <= 0) {
+                        result = VALIDATE_ERROR;
+                    }
+                    continue;
+                }
+
+                if (key.equalsIgnoreCase(SLAB_OVERFLOW)) {
+                    this.slabOverflow = MetatypeUtils.parseBoolean(CONFIG_ALIAS, SLAB_OVERFLOW, value, this.slabOverflow);
+                    continue;
+                }
+
+                if (key.equalsIgnoreCase(THREAD_CACHE_DEPTH)) {
+                    this.threadCacheDepth = MetatypeUtils.parseInteger(CONFIG_ALIAS, THREAD_CACHE_DEPTH, value, this.threadCacheDepth);
+                    if (this.threadCacheDepth < 0) {
+                        result = VALIDATE_ERROR;
+                    }
+                    continue;
+                }
+
                 Tr.warning(tc, MessageConstants.UNRECOGNIZED_CUSTOM_PROPERTY, new Object[] { key });
             }
         } catch (NumberFormatException x) {
@@ -301,11 +354,15 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
         this.poolSizes = new int[len];
         for (int i = 0; i < len; i++) {
             // make backing pool 10 times larger than local pools
-            this.pools[i] = new WsByteBufferPool(bSizes[i], bDepths[i] * 10, tracking, false);
-            this.poolsDirect[i] = new WsByteBufferPool(bSizes[i], bDepths[i] * 10, tracking, true);
+            this.pools[i] = new WsByteBufferPool(bSizes[i], bDepths[i] * 10, Math.min(threadCacheDepth, bDepths[i]), tracking, false);
+            this.poolsDirect[i] = new WsByteBufferPool(bSizes[i], bDepths[i] * 10, Math.min(threadCacheDepth, bDepths[i]), tracking, true);
             this.poolSizes[i] = bSizes[i];
         }
 
+        if (this.slabMemoryLimit > 0) {
+            this.slab = new SlabAllocator(bSizes, this.slabRegionSize, this.slabMemoryLimit);
+        }
+
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
             Tr.debug(tc, "Number of pools created: " + this.poolSizes.length);
         }
@@ -449,7 +506,13 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
                     }
                     // allocate the ByteBuffer and store it in the PoolEntry
                     if (direct) {
-                        allocateBufferDirect(pooledWSBB, intPoolSize, false);
+                        try {
+                            allocateBufferDirect(pooledWSBB, intPoolSize, false);
+                        } catch (OutOfMemoryError e) {
+                            // the entry has no buffer, so it is not handed out
+                            oWsByteBufferPool.removeFromInUse(pooledWSBB);
+                            throw e;
+                        }
                         pooledWSBB.setIsDirectPool(true);
                     } else {
                         bytebufferFromPool = ByteBuffer.allocate(intPoolSize);
@@ -549,6 +612,23 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
      */
     protected WsByteBufferImpl allocateBufferDirect(WsByteBufferImpl buffer,
                                                     int size, boolean overrideRefCount) {
+        if (this.slab != null && !overrideRefCount) {
+            // pooled size: carve from the slab, which gets the buffer back if
+            // the entry is lost without being released
+            ByteBuffer byteBuffer = this.slab.allocate(size, buffer);
+            if (byteBuffer != null) {
+                buffer.setByteBufferNonSafe(byteBuffer);
+                return buffer;
+            }
+            if (!this.slabOverflow) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                    Tr.event(tc, "Slab memory limit of " + this.slabMemoryLimit + " bytes reached allocating " + size);
+                }
+                throw new OutOfMemoryError("Direct buffer memory limit of the slab allocator reached: " + this.slabMemoryLimit);
+            }
+            // otherwise allocate it separately, outside the slab
+        }
+
         DirectByteBufferHelper directByteBufferHelper = this.directByteBufferHelper.get();
         ByteBuffer byteBuffer;
         if (directByteBufferHelper != null) {
@@ -620,6 +700,9 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
      */
     protected void releasing(ByteBuffer buffer) {
         if (buffer != null && buffer.isDirect()) {
+            if (this.slab != null && this.slab.release(buffer)) {
+                return;
+            }
             DirectByteBufferHelper directByteBufferHelper = this.directByteBufferHelper.get();
             if (directByteBufferHelper != null) {
                 directByteBufferHelper.releaseDirectByteBuffer(buffer);
@@ -926,6 +1009,33 @@ public class WsByteBufferPoolManagerImpl implements WsByteBufferPoolManager {
         }
     }
 
+    /**
+     * Write the configuration and usage statistics of each pool.
+     *
+     * @param out
+     */
+    public void introspect(PrintWriter out) {
+        out.println(getClass().getName());
+        out.println("  threadCacheDepth = " + this.threadCacheDepth);
+        out.println("  leakDetectionInterval = " + this.leakDetectionInterval);
+        if (this.slab != null) {
+            this.slab.introspect(out);
+        }
+        for (int i = 0; i < this.poolSizes.length; i++) {
+            introspect(out, this.pools[i]);
+            introspect(out, this.poolsDirect[i]);
+        }
+    }
+
+    private void introspect(PrintWriter out, WsByteBufferPool pool) {
+        out.println("  " + pool + (pool.isDirectPool() ? " direct" : " heap")
+                    + " threadCacheHits=" + pool.getLocalHits()
+                    + " threadCacheMisses=" + pool.getLocalMisses()
+                    + " spills=" + pool.getSpills()
+                    + " reclaimed=" + pool.getReclaimed()
+                    + " created=" + pool.getCreated());
+    }
+
     private String fillOutStackTrace(String starter, StackTraceElement[] _ste) {
         StringBuilder sb = new StringBuilder(starter);
 
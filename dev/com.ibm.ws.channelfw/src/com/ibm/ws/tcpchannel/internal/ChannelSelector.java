@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,6 +19,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.ibm.websphere.channelfw.osgi.CHFWBundle;
 import com.ibm.websphere.ras.Tr;
@@ -71,7 +72,9 @@ public abstract class ChannelSelector implements Runnable, FFDCSelfIntrospectabl
     private Queue<Object> workQueue2 = null;
     private final Object queueLock = new QueueLock();
 
-    protected boolean wakeupPending = false;
+    // set when a wakeup has been issued since the selector last returned from
+    // select, so that further work added in the meantime need not wake it again
+    protected final AtomicBoolean wakeupPending = new AtomicBoolean(false);
 
     boolean checkCancel = false;
 
@@ -123,7 +126,7 @@ public abstract class ChannelSelector implements Runnable, FFDCSelfIntrospectabl
                     Thread.yield();
                 }
 
-                wakeupPending = false;
+                wakeupPending.set(false);
                 if (checkCancel && forceSelect) {
                     if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                         Tr.debug(this, tc, "selectNow() forced");
@@ -150,7 +153,7 @@ public abstract class ChannelSelector implements Runnable, FFDCSelfIntrospectabl
                     nothingTimedOut = false;
                     numEmptySelects = 0;
                 }
-                wakeupPending = false;
+                wakeupPending.set(false);
                 // if any keys were cancelled on the last time through
                 // the selector should now be updated, so notfiy anyone
                 // anyone waiting on the cancels
@@ -487,6 +490,16 @@ public abstract class ChannelSelector implements Runnable, FFDCSelfIntrospectabl
         this.selector.wakeup();
     }
 
+    /**
+     * Wakeup the selector, unless a wakeup has already been issued since it
+     * last returned from select.
+     */
+    protected void wakeupIfNotPending() {
+        if (this.wakeupPending.compareAndSet(false, true)) {
+            this.selector.wakeup();
+        }
+    }
+
     /**
      * Set the next timeout marker to the provided value if appropriate.
      * 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -46,7 +46,7 @@ public class NioTCPChannel extends TCPChannel {
         // create WorkQueueMgr if this is the first NonBlocking Channel that
         // is being created.
         if (workQueueManager == null) {
-            workQueueManager = new WorkQueueManager();
+            workQueueManager = new WorkQueueManager(config.getSelectorShards());
         }
         if (!config.isInbound()) {
             connectionManager = new ConnectionManager(this, workQueueManager);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,7 +16,9 @@ import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 
@@ -36,6 +38,12 @@ public class SocketRWChannelSelector extends ChannelSelector implements Runnable
     private final int wakeupOption;
     private boolean wakeupNeeded = false;
 
+    // when set, the requests that are ready in a select are collected and
+    // dispatched together once all the selected keys have been examined
+    private final boolean batched;
+    private final List<TCPBaseRequestContext> batchRequests;
+    private final List<SelectionKey> batchKeys;
+
     /**
      * Create a new SocketRWChannelSelector.
      * 
@@ -60,6 +68,14 @@ public class SocketRWChannelSelector extends ChannelSelector implements Runnable
         this.channelType = _channelType;
         this.wakeupOption = _wakeupOption;
         this.wakeupNeeded = (_wakeupOption == ValidateUtils.SELECTOR_WAKEUP_WHEN_NEEDED);
+        this.batched = TCPFactoryConfiguration.getBatchedSelector();
+        if (this.batched) {
+            this.batchRequests = new ArrayList<TCPBaseRequestContext>();
+            this.batchKeys = new ArrayList<SelectionKey>();
+        } else {
+            this.batchRequests = null;
+            this.batchKeys = null;
+        }
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
             Tr.debug(this, tc, "Created RW selector: " + this);
         }
@@ -73,10 +89,7 @@ public class SocketRWChannelSelector extends ChannelSelector implements Runnable
     protected void addWork(Object toAdd) {
         addToWorkQueue(toAdd);
         if (wakeupNeeded || (wakeupOption == ValidateUtils.SELECTOR_WAKEUP_IF_NO_FORCE_QUEUE && ((TCPBaseRequestContext) toAdd).isForceQueue() == false)) {
-            if (wakeupPending != true) {
-                wakeupPending = true;
-                wakeup();
-            }
+            wakeupIfNotPending();
         }
     }
 
@@ -127,6 +140,12 @@ public class SocketRWChannelSelector extends ChannelSelector implements Runnable
             }
 
             if (completeOperation) {
+                if (batched) {
+                    // dispatched with the rest of the batch below
+                    batchRequests.add(req);
+                    batchKeys.add(selectedKey);
+                    continue;
+                }
                 // try to dispatch request. if it fails, just leave key alone,
                 // and it should get selected and tried again the next time through
                 // the selector.
@@ -154,9 +173,34 @@ public class SocketRWChannelSelector extends ChannelSelector implements Runnable
             }
         }
 
+        if (batched && !batchKeys.isEmpty()) {
+            dispatchBatch();
+        }
+
         return false;
     }
 
+    /**
+     * Dispatch the requests collected from the selected keys. Keys of requests
+     * that could not be dispatched are left alone, so they are selected and
+     * tried again the next time through the selector.
+     */
+    private void dispatchBatch() {
+        try {
+            final int dispatched = wqm.dispatchBatch(batchRequests);
+            for (int i = 0; i < dispatched; i++) {
+                try {
+                    batchKeys.get(i).interestOps(0);
+                } catch (CancelledKeyException cke) {
+                    // ignore, since we already got the key and the data
+                }
+            }
+        } finally {
+            batchRequests.clear();
+            batchKeys.clear();
+        }
+    }
+
     /*
      * @see com.ibm.ws.tcpchannel.internal.ChannelSelector#updateSelector()
      */
@@ -365,8 +409,9 @@ public class SocketRWChannelSelector extends ChannelSelector implements Runnable
             Tr.debug(this, tc, "checkForTimeouts - checking " + selectorKeys.size() + " keys for timeouts");
         }
         if (selectorKeys.isEmpty()) {
-            // if this isn't the primary (first) selector, see if it should be closed
-            if (countIndex > 0) {
+            // if this isn't a primary selector (the first one, or one of the
+            // shards), see if it should be closed
+            if (countIndex >= wqm.getSelectorShards()) {
                 // if we have already been waiting, and still no keys, and this
                 // isn't the primary selector, we should close this
                 if (waitingToQuit) {
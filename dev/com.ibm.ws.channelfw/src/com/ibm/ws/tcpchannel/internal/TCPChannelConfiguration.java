@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -41,6 +41,7 @@ public class TCPChannelConfiguration implements TCPConfigConstants, FFDCSelfIntr
     protected static final String COMM_OPTION = "commOption";
     protected static final String DUMP_STATS_INTERVAL = "dumpStatsInterval";
     protected static final String GROUPNAME = "workGroup";
+    protected static final String SELECTOR_SHARDS = "selectorShards";
 
     // internal custom properties
     protected static final String ENDPOINT_NAME = "endPointName";
@@ -78,6 +79,8 @@ public class TCPChannelConfiguration implements TCPConfigConstants, FFDCSelfIntr
     private boolean acceptThread = false;
     private boolean waitToAccept = false;
     private int dumpStatsInterval = 0;
+    // 0 means the selector shards of the factory are used
+    private int selectorShards = 0;
     private String endPointName = null;
 
     private static final int COMM_OPTION_FORCE_NIO = 0;
@@ -402,6 +405,16 @@ public class TCPChannelConfiguration implements TCPConfigConstants, FFDCSelfIntr
                     continue;
                 }
 
+                if (key.equalsIgnoreCase(SELECTOR_SHARDS)) {
+                    // convert and check
+                    keyType = ValidateUtils.KEY_TYPE_INT;
+                    minValue = ValidateUtils.SELECTOR_SHARDS_MIN;
+                    maxValue = ValidateUtils.SELECTOR_SHARDS_MAX;
+                    this.selectorShards = convertIntegerValue(value);
+                    result = ValidateUtils.testSelectorShards(this.selectorShards);
+                    continue;
+                }
+
                 if (key.equalsIgnoreCase(KEEP_ALIVE)) {
                     // convert and check
                     keyType = ValidateUtils.KEY_TYPE_BOOLEAN;
@@ -759,6 +772,16 @@ public class TCPChannelConfiguration implements TCPConfigConstants, FFDCSelfIntr
                     continue;
                 }
 
+                if (key.equalsIgnoreCase(SELECTOR_SHARDS)) {
+                    // convert and check
+                    keyType = ValidateUtils.KEY_TYPE_INT;
+                    oldValue = this.selectorShards;
+                    if (convertIntegerValue(value) != oldValue) {
+                        result = ValidateUtils.VALIDATE_NOT_EQUAL;
+                    }
+                    continue;
+                }
+
                 if (key.equalsIgnoreCase(KEEP_ALIVE)) {
                     // convert and check
                     keyType = ValidateUtils.KEY_TYPE_BOOLEAN;
@@ -1097,6 +1120,7 @@ public class TCPChannelConfiguration implements TCPConfigConstants, FFDCSelfIntr
         Tr.debug(tc, SEND_BUFF_SIZE + ": " + getSendBufferSize());
         Tr.debug(tc, COMM_OPTION + ": " + this.commOption);
         Tr.debug(tc, LINGER + ": " + getSoLinger());
+        Tr.debug(tc, SELECTOR_SHARDS + ": " + getSelectorShards());
     }
 
     @Override
@@ -1126,6 +1150,7 @@ public class TCPChannelConfiguration implements TCPConfigConstants, FFDCSelfIntr
         output.add(SEND_BUFF_SIZE + "=" + this.sendBufferSize);
         output.add(COMM_OPTION + "=" + this.commOption);
         output.add(LINGER + "=" + this.soLinger);
+        output.add(SELECTOR_SHARDS + "=" + this.selectorShards);
         return output.toArray(new String[output.size()]);
     }
 
@@ -1162,6 +1187,18 @@ public class TCPChannelConfiguration implements TCPConfigConstants, FFDCSelfIntr
         return this.sendBufferSize;
     }
 
+    /**
+     * Query the number of read and write selectors of each flow that this
+     * channel spreads its connections across when the batched selector is
+     * used. Unless it is set for this channel, the number that is set for the
+     * TCP channel factory is used.
+     *
+     * @return int
+     */
+    protected int getSelectorShards() {
+        return (0 == this.selectorShards) ? TCPFactoryConfiguration.getSelectorShards() : this.selectorShards;
+    }
+
     /**
      * @return int
      */
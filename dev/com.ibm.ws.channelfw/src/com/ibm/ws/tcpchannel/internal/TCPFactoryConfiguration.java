@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -37,6 +37,8 @@ public class TCPFactoryConfiguration implements FFDCSelfIntrospectable {
     protected static final String SELECTOR_WAKEUP = "selectorWakeup";
     protected static final String CANCEL_KEY_ON_CLOSE = "cancelKeyOnClose";
     protected static final String COMBINE_SELECTORS = "combineSelectors";
+    protected static final String BATCHED_SELECTOR = "batchedSelector";
+    protected static final String SELECTOR_SHARDS = "selectorShards";
     protected static final String COMM_CLASS = "commClass";
     protected static final String EARLY_BINDS = "earlyBinds";
 
@@ -50,6 +52,8 @@ public class TCPFactoryConfiguration implements FFDCSelfIntrospectable {
     private static boolean selectorYield = false;
     private static boolean cancelKeyOnClose = false;
     private static boolean combineSelectors = false;
+    private static boolean batchedSelector = false;
+    private static int selectorShards = 1;
 
     private final static String commClassAio = "com.ibm.ws.tcpchannel.internal.AioTCPChannel";
     private final static String commClassNio = "com.ibm.ws.tcpchannel.internal.NioTCPChannel";
@@ -195,6 +199,24 @@ public class TCPFactoryConfiguration implements FFDCSelfIntrospectable {
                             continue;
                         }
 
+                        if (key.equalsIgnoreCase(BATCHED_SELECTOR)) {
+                            // convert and check
+                            keyType = ValidateUtils.KEY_TYPE_BOOLEAN;
+                            batchedSelector = Boolean.parseBoolean(value);
+                            result = ValidateUtils.VALIDATE_OK;
+                            continue;
+                        }
+
+                        if (key.equalsIgnoreCase(SELECTOR_SHARDS)) {
+                            // convert and check
+                            keyType = ValidateUtils.KEY_TYPE_INT;
+                            minValue = ValidateUtils.SELECTOR_SHARDS_MIN;
+                            maxValue = ValidateUtils.SELECTOR_SHARDS_MAX;
+                            selectorShards = Integer.parseInt(value);
+                            result = ValidateUtils.testSelectorShards(selectorShards);
+                            continue;
+                        }
+
                         if (key.equalsIgnoreCase(COMM_CLASS)) {
                             // convert and check
                             keyType = ValidateUtils.KEY_TYPE_STRING;
@@ -285,6 +307,27 @@ public class TCPFactoryConfiguration implements FFDCSelfIntrospectable {
         return combineSelectors;
     }
 
+    /**
+     * Query whether the read and write selectors process the ready keys of
+     * each select as a single batch, with coalesced wakeups.
+     *
+     * @return boolean
+     */
+    protected static boolean getBatchedSelector() {
+        return batchedSelector;
+    }
+
+    /**
+     * Query the number of selectors of each type that are started up front
+     * when the batched selector is used, across which new connections are
+     * spread.
+     *
+     * @return int
+     */
+    protected static int getSelectorShards() {
+        return selectorShards;
+    }
+
     /**
      * Access the TCP communication class to use (NIO, AIO, etc)
      *
@@ -313,12 +356,14 @@ public class TCPFactoryConfiguration implements FFDCSelfIntrospectable {
         Tr.debug(tc, SELECTOR_YIELD + ": " + selectorYield);
         Tr.debug(tc, CANCEL_KEY_ON_CLOSE + ": " + cancelKeyOnClose);
         Tr.debug(tc, COMBINE_SELECTORS + ": " + combineSelectors);
+        Tr.debug(tc, BATCHED_SELECTOR + ": " + batchedSelector);
+        Tr.debug(tc, SELECTOR_SHARDS + ": " + selectorShards);
         Tr.debug(tc, COMM_CLASS + ": " + commClass);
     }
 
     @Override
     public String[] introspectSelf() {
-        String[] rc = new String[7];
+        String[] rc = new String[9];
         rc[0] = KEYS_PER_SELECTOR + maxKeysPerSelector;
         rc[1] = SELECTOR_IDLE_TIMEOUT + channelSelectorIdleTimeout;
         rc[2] = SELECTOR_TERM_TIMEOUT + channelSelectorWaitToTerminate;
@@ -326,6 +371,8 @@ public class TCPFactoryConfiguration implements FFDCSelfIntrospectable {
         rc[4] = CANCEL_KEY_ON_CLOSE + cancelKeyOnClose;
         rc[5] = COMBINE_SELECTORS + combineSelectors;
         rc[6] = COMM_CLASS + commClass;
+        rc[7] = BATCHED_SELECTOR + batchedSelector;
+        rc[8] = SELECTOR_SHARDS + selectorShards;
         return rc;
     }
 
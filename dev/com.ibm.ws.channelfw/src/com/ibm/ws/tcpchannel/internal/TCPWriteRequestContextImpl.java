@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -153,6 +153,10 @@ public abstract class TCPWriteRequestContextImpl extends TCPBaseRequestContext i
 
         try {
             size = fc.size();
+            if (fcb.isLimitSet()) {
+                // only the region of the file up to the limit set on the buffer is written
+                size = Math.min(size, fcb.limit());
+            }
             startPosition = fc.position();
 
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -47,6 +47,8 @@ public class ValidateUtils implements TCPConfigConstants {
     protected static final int SELECTOR_WAKEUP_WHEN_NEEDED = 1;
     protected static final int SELECTOR_WAKEUP_NEVER = 2;
     protected static final int SELECTOR_WAKEUP_IF_NO_FORCE_QUEUE = 3;
+    protected static final int SELECTOR_SHARDS_MIN = 1;
+    protected static final int SELECTOR_SHARDS_MAX = 200;
     protected static final int MIN_SELECTOR_THREADS = 1;
     protected static final int MAX_SELECTOR_THREADS = 1000;
     protected static final int MIN_CONNECTION_THRESHOLD = 1;
@@ -366,6 +368,17 @@ public class ValidateUtils implements TCPConfigConstants {
         return testStringAsInt(value, SELECTOR_WAKEUP_OPTION_MIN, SELECTOR_WAKEUP_OPTION_MAX);
     }
 
+    /**
+     * Test the configuration for the number of selectors of each type to
+     * spread connections across.
+     * 
+     * @param value
+     * @return int
+     */
+    public static int testSelectorShards(int value) {
+        return testInt(value, SELECTOR_SHARDS_MIN, SELECTOR_SHARDS_MAX);
+    }
+
     /**
      * Test the configuration for the number of selector threads to create
      * for the sync manager.
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,7 @@ import java.security.PrivilegedAction;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.ibm.websphere.channelfw.osgi.CHFWBundle;
 import com.ibm.websphere.ras.Tr;
@@ -78,10 +79,27 @@ public class WorkQueueManager implements ChannelTermination, FFDCSelfIntrospecta
     protected int wakeupOption;
     private final ThreadGroup tGroup;
 
+    // number of read and write selectors of each flow that are started up front
+    // and kept for the life of the channel, across which new connections are
+    // spread round robin; 1 unless the batched selector is used
+    protected final int selectorShards;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
     /**
      * Constructor.
      */
     protected WorkQueueManager() {
+        this(TCPFactoryConfiguration.getSelectorShards());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param shards
+     *            the number of read and write selectors of each flow to spread
+     *            connections across when the batched selector is used
+     */
+    protected WorkQueueManager(int shards) {
         if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
             Tr.entry(tc, "WorkQueueManager");
         }
@@ -90,6 +108,11 @@ public class WorkQueueManager implements ChannelTermination, FFDCSelfIntrospecta
         this.checkCancel = TCPFactoryConfiguration.getCancelKeyOnClose();
         this.wakeupOption = TCPFactoryConfiguration.getSelectorWakeup();
         this.combineSelectors = TCPFactoryConfiguration.getCombineSelectors();
+        if (TCPFactoryConfiguration.getBatchedSelector()) {
+            this.selectorShards = Math.min(shards, this.maxChannelSelectorsPerFlow);
+        } else {
+            this.selectorShards = 1;
+        }
         this.tGroup = new PrivGroupCreation("TCP WQM").run();
 
         if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
@@ -151,6 +174,9 @@ public class WorkQueueManager implements ChannelTermination, FFDCSelfIntrospecta
                 createNewThread(writeInbound[0], CS_WRITE_INBOUND, 1);
                 writeInboundCount[0] = CS_OK;
 
+                startShards(readInbound, readInboundCount, CS_READ_INBOUND);
+                startShards(writeInbound, writeInboundCount, CS_WRITE_INBOUND);
+
                 if (!inBound) {
                     // for outbound so start Connect
 
@@ -191,6 +217,9 @@ public class WorkQueueManager implements ChannelTermination, FFDCSelfIntrospecta
                 writeOutboundCount[0] = CS_OK;
                 connectCount[0] = CS_OK;
 
+                startShards(readOutbound, readOutboundCount, CS_READ_OUTBOUND);
+                startShards(writeOutbound, writeOutboundCount, CS_WRITE_OUTBOUND);
+
             } else if (combineSelectors && !inBound && connect == null) {
 
                 connect = new ConnectChannelSelector[maxChannelSelectorsPerFlow]; // 269309
@@ -219,6 +248,33 @@ public class WorkQueueManager implements ChannelTermination, FFDCSelfIntrospecta
         }
     }
 
+    /**
+     * Start the selectors after the first one up to the configured number of
+     * shards, so connections are spread across them from the outset.
+     *
+     * @param CS
+     * @param channelCounts
+     * @param channelType
+     * @throws IOException
+     */
+    private void startShards(SocketRWChannelSelector[] CS, int[] channelCounts, int channelType) throws IOException {
+        for (int i = 1; i < selectorShards; i++) {
+            CS[i] = new SocketRWChannelSelector(wakeupOption, this, i, channelType, checkCancel);
+            createNewThread(CS[i], channelType, i + 1);
+            channelCounts[i] = CS_OK;
+        }
+    }
+
+    /**
+     * Query the number of selectors of each flow that are kept for the life
+     * of the channel, even when they have no keys.
+     *
+     * @return int
+     */
+    protected int getSelectorShards() {
+        return this.selectorShards;
+    }
+
     protected void updateCount(int index, int value, int channelType) {
         // should only be called by the selector threads
         if (channelType == CS_READ_INBOUND) {
@@ -246,6 +302,7 @@ public class WorkQueueManager implements ChannelTermination, FFDCSelfIntrospecta
         rc.add(dumpChannelSelectorCounts(this.writeInboundCount, "Write Inbound"));
         rc.add(dumpChannelSelectorCounts(this.writeOutboundCount, "Write Outbound"));
         rc.add(dumpChannelSelectorCounts(this.connectCount, "Connect"));
+        rc.add("Selector shards " + this.selectorShards);
         return rc;
     }
 
@@ -407,6 +464,15 @@ public class WorkQueueManager implements ChannelTermination, FFDCSelfIntrospecta
     }
 
     protected void moveIntoPosition(int[] channelCounts, ChannelSelector[] CS, Object req, int channelType) throws IOException {
+        if (selectorShards > 1 && channelType != CS_CONNECTOR) {
+            // spread new connections across the shards, rather than filling
+            // each selector before using the next one
+            int shard = (nextShard.getAndIncrement() & Integer.MAX_VALUE) % selectorShards;
+            if ((channelCounts[shard] >= CS_OK) && (channelCounts[shard] < maxKeysPerSelector)) {
+                CS[shard].addWork(req);
+                return;
+            }
+        }
         for (int i = 0; i < maxChannelSelectorsPerFlow; i++) {
             // Look for a CS that has room for another channel
             if ((channelCounts[i] >= CS_OK) && (channelCounts[i] < maxKeysPerSelector)) {
@@ -732,21 +798,66 @@ public class WorkQueueManager implements ChannelTermination, FFDCSelfIntrospecta
      * @return boolean, true if dispatched
      */
     private boolean dispatchWorker(Worker worker) {
+        ExecutorService executorService = getDispatchExecutor();
+        if (null == executorService) {
+            return false;
+        }
+
+        executorService.execute(worker);
+
+        return true;
+    }
+
+    /**
+     * Dispatches the requests that were ready in the same select as a
+     * batch. Waiting synchronous requests are notified, and each of the rest
+     * is handed to its own worker, so that a slow callback does not hold up
+     * the other connections of the batch.
+     *
+     * @param batch
+     * @return int, the number of requests from the start of the batch that were dispatched
+     */
+    protected int dispatchBatch(List<TCPBaseRequestContext> batch) {
+        ExecutorService executorService = null;
+        for (TCPBaseRequestContext req : batch) {
+            if (!req.blockedThread) {
+                executorService = getDispatchExecutor();
+                if (null == executorService) {
+                    // nothing is dispatched, the keys are tried again on the next select
+                    return 0;
+                }
+                break;
+            }
+        }
+        for (TCPBaseRequestContext req : batch) {
+            if (req.blockedThread) {
+                req.blockWait.simpleNotify();
+            } else {
+                executorService.execute(new Worker(req, null));
+            }
+        }
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "dispatchBatch dispatched " + batch.size());
+        }
+        return batch.size();
+    }
+
+    /**
+     * Access the executor used to dispatch work.
+     *
+     * @return ExecutorService, null if the framework is shutting down and it is gone
+     */
+    protected ExecutorService getDispatchExecutor() {
         ExecutorService executorService = CHFWBundle.getExecutorService();
         if (null == executorService) {
             if (FrameworkState.isValid()) {
                 Tr.error(tc, "EXECUTOR_SVC_MISSING");
                 throw new RuntimeException("Missing executor service");
-            } else {
-                // The framework is shutting down: the executor service may be
-                // missing by the time the async work is dispatched.
-                return false;
             }
+            // The framework is shutting down: the executor service may be
+            // missing by the time the async work is dispatched.
         }
-
-        executorService.execute(worker);
-
-        return true;
+        return executorService;
     }
 
     /**
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.bytebuffer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.ibm.ws.bytebuffer.internal.SlabAllocator;
+import com.ibm.ws.bytebuffer.internal.WsByteBufferPoolManagerImpl;
+import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.bytebuffer.WsByteBufferPoolManager.DirectByteBufferHelper;
+
+/**
+ * Test the slab allocator for direct buffers.
+ */
+public class SlabAllocatorTest {
+
+    /**
+     * Buffers are carved from a region and do not overlap.
+     */
+    @Test
+    public void testCarve() {
+        SlabAllocator slab = new SlabAllocator(new int[] { 32, 1024 }, 4096, 8192);
+        ByteBuffer small = slab.allocate(32);
+        ByteBuffer large = slab.allocate(1024);
+        assertTrue(small.isDirect());
+        assertEquals(32, small.capacity());
+        assertEquals(1024, large.capacity());
+        assertEquals(4096, slab.getReservedBytes());
+        assertEquals(1056, slab.getInUseBytes());
+
+        small.put(0, (byte) 1);
+        large.put(0, (byte) 2);
+        assertEquals(1, small.get(0));
+
+        assertNull(slab.allocate(100));
+    }
+
+    /**
+     * A released buffer is handed out again for the same size class, and only once.
+     */
+    @Test
+    public void testReleaseAndReuse() {
+        SlabAllocator slab = new SlabAllocator(new int[] { 1024 }, 4096, 4096);
+        ByteBuffer b = slab.allocate(1024);
+        b.position(10);
+        assertTrue(slab.release(b));
+        assertTrue(slab.release(b));
+        assertEquals(0, slab.getInUseBytes());
+
+        ByteBuffer again = slab.allocate(1024);
+        assertSame(b, again);
+        assertEquals(0, again.position());
+        assertFalse(again == slab.allocate(1024));
+
+        assertFalse(slab.release(ByteBuffer.allocateDirect(1024)));
+    }
+
+    /**
+     * No more regions are allocated once the memory limit is reached.
+     */
+    @Test
+    public void testMemoryLimit() {
+        SlabAllocator slab = new SlabAllocator(new int[] { 1024 }, 2048, 4096);
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        for (int i = 0; i < 4; i++) {
+            buffers.add(slab.allocate(1024));
+        }
+        assertEquals(4096, slab.getReservedBytes());
+        assertNull(slab.allocate(1024));
+        assertEquals(1, slab.getLimitReachedCount());
+
+        slab.release(buffers.get(0));
+        assertSame(buffers.get(0), slab.allocate(1024));
+    }
+
+    /**
+     * Direct buffers of the pool manager come from the slab, and go back to it when the pool is full.
+     */
+    @Test
+    public void testPoolManagerWithSlab() throws Exception {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put("poolSizes", new int[] { 1024 });
+        config.put("poolDepths", new int[] { 1 });
+        config.put("slabMemoryLimit", Long.valueOf(64 * 1024));
+        config.put("slabRegionSize", Integer.valueOf(16 * 1024));
+        WsByteBufferPoolManagerImpl mgr = new WsByteBufferPoolManagerImpl(new AtomicReference<DirectByteBufferHelper>(), config);
+
+        List<WsByteBuffer> buffers = new ArrayList<WsByteBuffer>();
+        for (int i = 0; i < 12; i++) {
+            WsByteBuffer buffer = mgr.allocateDirect(1000);
+            assertTrue(buffer.isDirect());
+            buffers.add(buffer);
+        }
+        for (WsByteBuffer buffer : buffers) {
+            buffer.release();
+        }
+
+        // the backing pool holds 10 entries, so 2 go back to the slab
+        StringWriter sw = new StringWriter();
+        mgr.introspect(new PrintWriter(sw, true));
+        String stats = sw.toString();
+        assertTrue(stats, stats.contains("allocations=12 releases=2"));
+        assertTrue(stats, stats.contains("inUseBytes=10240"));
+    }
+
+    /**
+     * A buffer whose owner is garbage collected without releasing it goes back to its bin.
+     */
+    @Test
+    public void testReclaimLostOwner() throws Exception {
+        SlabAllocator slab = new SlabAllocator(new int[] { 1024 }, 1024, 1024);
+        Object owner = new Object();
+        ByteBuffer b = slab.allocate(1024, owner);
+        assertNull(slab.allocate(1024));
+
+        // a released buffer is not reclaimed when its owner goes away
+        Object other = new Object();
+        slab.release(b);
+        assertSame(b, slab.allocate(1024, other));
+        owner = null;
+        other = null;
+        for (int i = 0; i < 50 && slab.getReclaimedCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+            slab.reclaim();
+        }
+        assertEquals(1, slab.getReclaimedCount());
+        assertEquals(0, slab.getInUseBytes());
+        assertSame(b, slab.allocate(1024));
+        assertEquals(1, slab.getReclaimedCount());
+    }
+
+    /**
+     * Allocations of different size classes proceed in parallel and each buffer is handed out once.
+     */
+    @Test
+    public void testConcurrentAllocations() throws Exception {
+        final SlabAllocator slab = new SlabAllocator(new int[] { 32, 1024 }, 64 * 1024, 1024 * 1024);
+        final Map<ByteBuffer, Boolean> held = Collections.synchronizedMap(new IdentityHashMap<ByteBuffer, Boolean>());
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int size = (t % 2 == 0) ? 32 : 1024;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 10000; i++) {
+                            ByteBuffer b = slab.allocate(size, this);
+                            if (held.put(b, Boolean.TRUE) != null) {
+                                throw new AssertionError("buffer handed out twice");
+                            }
+                            held.remove(b);
+                            slab.release(b);
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure[0]);
+        assertEquals(0, slab.getInUseBytes());
+    }
+
+    /**
+     * Pooled direct buffers that do not fit within the limit of the slab fail to be allocated.
+     */
+    @Test
+    public void testPoolManagerPastSlabLimit() throws Exception {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put("poolSizes", new int[] { 1024 });
+        config.put("poolDepths", new int[] { 1 });
+        config.put("slabMemoryLimit", Long.valueOf(4 * 1024));
+        config.put("slabRegionSize", Integer.valueOf(4 * 1024));
+        WsByteBufferPoolManagerImpl mgr = new WsByteBufferPoolManagerImpl(new AtomicReference<DirectByteBufferHelper>(), config);
+
+        List<WsByteBuffer> buffers = new ArrayList<WsByteBuffer>();
+        for (int i = 0; i < 4; i++) {
+            buffers.add(mgr.allocateDirect(1000));
+        }
+        try {
+            mgr.allocateDirect(1000);
+            fail("allocated past the slab memory limit");
+        } catch (OutOfMemoryError e) {
+            // expected
+        }
+        // buffers that are not pooled are not limited
+        assertTrue(mgr.allocateDirect(2000).isDirect());
+
+        buffers.get(0).release();
+        assertTrue(mgr.allocateDirect(1000).isDirect());
+    }
+
+    /**
+     * Pooled direct buffers that do not fit within the limit of the slab are allocated
+     * separately when overflow is allowed.
+     */
+    @Test
+    public void testPoolManagerSlabOverflow() throws Exception {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put("poolSizes", new int[] { 1024 });
+        config.put("poolDepths", new int[] { 1 });
+        config.put("slabMemoryLimit", Long.valueOf(4 * 1024));
+        config.put("slabRegionSize", Integer.valueOf(4 * 1024));
+        config.put("slabOverflow", Boolean.TRUE);
+        WsByteBufferPoolManagerImpl mgr = new WsByteBufferPoolManagerImpl(new AtomicReference<DirectByteBufferHelper>(), config);
+
+        List<WsByteBuffer> buffers = new ArrayList<WsByteBuffer>();
+        for (int i = 0; i < 6; i++) {
+            WsByteBuffer buffer = mgr.allocateDirect(1000);
+            assertTrue(buffer.isDirect());
+            buffers.add(buffer);
+        }
+        for (WsByteBuffer buffer : buffers) {
+            buffer.release();
+        }
+
+        StringWriter sw = new StringWriter();
+        mgr.introspect(new PrintWriter(sw, true));
+        String stats = sw.toString();
+        assertTrue(stats, stats.contains("allocations=4 "));
+    }
+}
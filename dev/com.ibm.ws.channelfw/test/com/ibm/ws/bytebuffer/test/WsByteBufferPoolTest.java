@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.bytebuffer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ibm.ws.bytebuffer.internal.PooledWsByteBufferImpl;
+import com.ibm.ws.bytebuffer.internal.WsByteBufferPool;
+
+/**
+ * Test the per thread cache in front of a WsByteBufferPool.
+ */
+public class WsByteBufferPoolTest {
+
+    /**
+     * An entry released by a thread is obtained again by the same thread from its cache.
+     */
+    @Test
+    public void testThreadCacheHit() {
+        WsByteBufferPool pool = new WsByteBufferPool(1024, 100, 4, false, false);
+        PooledWsByteBufferImpl entry = pool.getEntry();
+        assertEquals(1, pool.getLocalMisses());
+        assertEquals(1, pool.getCreated());
+
+        pool.release(entry);
+        assertSame(entry, pool.getEntry());
+        assertEquals(1, pool.getLocalHits());
+        assertEquals(1, pool.getCreated());
+    }
+
+    /**
+     * When the cache of a thread is full, half of it is spilled to the shared pool, from
+     * which other threads obtain the entries.
+     */
+    @Test
+    public void testSpillToSharedPool() throws Exception {
+        final WsByteBufferPool pool = new WsByteBufferPool(1024, 100, 4, false, false);
+        List<PooledWsByteBufferImpl> entries = new ArrayList<PooledWsByteBufferImpl>();
+        for (int i = 0; i < 5; i++) {
+            entries.add(pool.getEntry());
+        }
+        assertEquals(5, pool.getCreated());
+        for (PooledWsByteBufferImpl entry : entries) {
+            pool.release(entry);
+        }
+        assertEquals(2, pool.getSpills());
+
+        final List<PooledWsByteBufferImpl> obtained = new ArrayList<PooledWsByteBufferImpl>();
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                obtained.add(pool.getEntry());
+                obtained.add(pool.getEntry());
+                obtained.add(pool.getEntry());
+            }
+        };
+        other.start();
+        other.join();
+
+        // the oldest two were spilled and are reused by the other thread, which then has to create
+        assertSame(entries.get(0), obtained.get(0));
+        assertSame(entries.get(1), obtained.get(1));
+        assertEquals(6, pool.getCreated());
+        assertNotSame(entries.get(2), obtained.get(2));
+    }
+
+    /**
+     * The entries in the cache of a thread that ended go back to the shared pool, and the
+     * counts of that thread are kept.
+     */
+    @Test
+    public void testReclaimEndedThread() throws Exception {
+        final WsByteBufferPool pool = new WsByteBufferPool(1024, 100, 4, false, false);
+        final List<PooledWsByteBufferImpl> entries = new ArrayList<PooledWsByteBufferImpl>();
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 3; i++) {
+                    entries.add(pool.getEntry());
+                }
+                for (PooledWsByteBufferImpl entry : entries) {
+                    pool.release(entry);
+                }
+                pool.getEntry();
+            }
+        };
+        other.start();
+        other.join();
+        assertEquals(1, pool.getLocalHits());
+        assertEquals(3, pool.getLocalMisses());
+        assertEquals(2, pool.getReclaimed());
+        assertEquals(0, pool.reclaimEndedThreads());
+
+        // this thread misses its empty cache, and refills it with the reclaimed entries
+        pool.getEntry();
+        pool.getEntry();
+        assertEquals(3, pool.getCreated());
+        assertEquals(2, pool.getLocalHits());
+        assertEquals(4, pool.getLocalMisses());
+    }
+
+    /**
+     * Entries held in a thread cache are not reported as in use by leak tracking.
+     */
+    @Test
+    public void testTrackingWithThreadCache() {
+        WsByteBufferPool pool = new WsByteBufferPool(1024, 100, 4, true, true);
+        PooledWsByteBufferImpl entry = pool.getEntry();
+        assertEquals(1, pool.getInUse().length);
+        pool.release(entry);
+        assertEquals(0, pool.getInUse().length);
+        pool.getEntry();
+        assertEquals(1, pool.getInUse().length);
+    }
+
+    /**
+     * Without a thread cache, entries go directly to and from the shared pool.
+     */
+    @Test
+    public void testNoThreadCache() {
+        WsByteBufferPool pool = new WsByteBufferPool(1024, 100, false, false);
+        PooledWsByteBufferImpl entry = pool.getEntry();
+        pool.release(entry);
+        assertSame(entry, pool.getEntry());
+        assertEquals(0, pool.getLocalHits());
+        assertEquals(0, pool.getLocalMisses());
+        assertEquals(1, pool.getCreated());
+    }
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.tcpchannel.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.websphere.channelfw.ChannelData;
+import com.ibm.ws.bytebuffer.internal.FCWsByteBufferImpl;
+import com.ibm.wsspi.channelfw.VirtualConnection;
+import com.ibm.wsspi.tcpchannel.TCPWriteRequestContext;
+
+/**
+ * Test that a file channel buffer is written to the socket with transferTo, either whole
+ * or the region of the file between its position and limit.
+ */
+public class FileChannelWriteTest {
+    private File file;
+    private RandomAccessFile raf;
+    private SocketChannel client;
+    private SocketChannel peer;
+    private TCPWriteRequestContext writer;
+
+    @Before
+    public void setUp() throws Exception {
+        byte[] content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        file = File.createTempFile("FileChannelWriteTest", ".bin");
+        raf = new RandomAccessFile(file, "rw");
+        raf.write(content);
+
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress("localhost", 0));
+        client = SocketChannel.open(server.socket().getLocalSocketAddress());
+        peer = server.accept();
+        server.close();
+
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method m, Object[] args) {
+                if (m.getName().equals("isFileChannelCapable") || m.getName().equals("isInbound")) {
+                    return Boolean.TRUE;
+                } else if (m.getName().equals("getPropertyBag")) {
+                    return new HashMap<Object, Object>();
+                } else if (m.getName().equals("getExternalName")) {
+                    return "FileChannelWriteTest";
+                }
+                return null;
+            }
+        };
+        VirtualConnection vc = (VirtualConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { VirtualConnection.class }, handler);
+        ChannelData data = (ChannelData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ChannelData.class }, handler);
+        TCPChannelConfiguration config = new TCPChannelConfiguration(data);
+        NioTCPChannel channel = new NioTCPChannel();
+        channel.config = config;
+        TCPConnLink link = new TCPConnLink(vc, channel, config, 0);
+        link.setSocketIOChannel(NioSocketIOChannel.createIOChannel(client.socket(), channel));
+        writer = link.getWriteInterface();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        peer.close();
+        raf.close();
+        file.delete();
+    }
+
+    private byte[] receive(int length) throws Exception {
+        ByteBuffer received = ByteBuffer.allocate(length);
+        while (received.hasRemaining() && peer.read(received) != -1) {}
+        return received.array();
+    }
+
+    private byte[] content(int from, int to) throws Exception {
+        byte[] expected = new byte[to - from];
+        raf.seek(from);
+        raf.readFully(expected);
+        return expected;
+    }
+
+    /**
+     * Only the region between the position and the limit set on the buffer is written.
+     */
+    @Test
+    public void testWriteRegion() throws Exception {
+        FileChannel fc = raf.getChannel();
+        FCWsByteBufferImpl fcb = new FCWsByteBufferImpl(fc);
+        fcb.limit(600);
+        fcb.position(100);
+        writer.setBuffer(fcb);
+        assertEquals(500, writer.write(TCPWriteRequestContext.WRITE_ALL_DATA, 10000));
+        assertEquals(600, fc.position());
+
+        // the next byte on the socket is the one written after the region
+        client.write(ByteBuffer.wrap(new byte[] { -1 }));
+        byte[] expected = Arrays.copyOf(content(100, 600), 501);
+        expected[500] = -1;
+        assertArrayEquals(expected, receive(501));
+    }
+
+    /**
+     * Without a limit set on the buffer the file is written up to its current end, even if it
+     * grew after the buffer was created.
+     */
+    @Test
+    public void testWriteWholeFile() throws Exception {
+        FileChannel fc = raf.getChannel();
+        FCWsByteBufferImpl fcb = new FCWsByteBufferImpl(fc);
+        raf.seek(1000);
+        raf.write(new byte[200]);
+        fc.position(0);
+        writer.setBuffer(fcb);
+        assertEquals(1200, writer.write(TCPWriteRequestContext.WRITE_ALL_DATA, 10000));
+        assertArrayEquals(content(0, 1200), receive(1200));
+    }
+}
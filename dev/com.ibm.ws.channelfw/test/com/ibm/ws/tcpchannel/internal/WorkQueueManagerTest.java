@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.tcpchannel.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests of the batched and sharded selector modes of the work queue manager.
+ */
+public class WorkQueueManagerTest {
+
+    /**
+     * Executor that keeps the work it is given, for the test to run.
+     */
+    private static class RecordingExecutor extends AbstractExecutorService {
+        final List<Runnable> submitted = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            submitted.add(command);
+        }
+
+        @Override
+        public void shutdown() {}
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return submitted;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    /**
+     * Work queue manager that dispatches to a recording executor, and records the requests that its workers run.
+     */
+    private static class TestWorkQueueManager extends WorkQueueManager {
+        RecordingExecutor executor = new RecordingExecutor();
+        final List<TCPBaseRequestContext> ran = new ArrayList<TCPBaseRequestContext>();
+
+        TestWorkQueueManager() {
+            super();
+        }
+
+        TestWorkQueueManager(int shards) {
+            super(shards);
+        }
+
+        @Override
+        protected ExecutorService getDispatchExecutor() {
+            return executor;
+        }
+
+        @Override
+        void workerRun(TCPBaseRequestContext req, IOException ioe) {
+            ran.add(req);
+        }
+    }
+
+    /**
+     * Selector that records the work that is added to it.
+     */
+    private static class RecordingSelector extends ChannelSelector {
+        final List<Object> added = new ArrayList<Object>();
+
+        RecordingSelector() throws IOException {
+            super(false);
+        }
+
+        @Override
+        protected void addWork(Object toAdd) {
+            added.add(toAdd);
+        }
+
+        @Override
+        void updateCount() {}
+
+        @Override
+        void channelSelectorClose() {}
+
+        @Override
+        boolean performRequest() {
+            return false;
+        }
+
+        @Override
+        void updateSelector() {}
+
+        @Override
+        void checkForTimeouts() {}
+    }
+
+    private static void configure(String batchedSelector, String selectorShards) throws Exception {
+        Map<Object, Object> props = new HashMap<Object, Object>();
+        props.put(TCPFactoryConfiguration.BATCHED_SELECTOR, batchedSelector);
+        props.put(TCPFactoryConfiguration.SELECTOR_SHARDS, selectorShards);
+        new TCPFactoryConfiguration(props);
+    }
+
+    private static TCPBaseRequestContext newRequest(boolean blocked) {
+        TCPBaseRequestContext req = (TCPBaseRequestContext) new TCPConnLink(null, new NioTCPChannel(), null, 0).getReadInterface();
+        if (blocked) {
+            req.blockedThread = true;
+            req.blockWait = new SimpleSync();
+        }
+        return req;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        configure("false", "1");
+    }
+
+    /**
+     * Each asynchronous request of a batch is handed to its own worker, and the synchronous requests
+     * of the batch are notified.
+     */
+    @Test
+    public void testDispatchBatch() throws Exception {
+        configure("true", "1");
+        TestWorkQueueManager wqm = new TestWorkQueueManager();
+
+        TCPBaseRequestContext first = newRequest(false);
+        TCPBaseRequestContext blocked = newRequest(true);
+        TCPBaseRequestContext second = newRequest(false);
+        TCPBaseRequestContext third = newRequest(false);
+
+        assertEquals(4, wqm.dispatchBatch(Arrays.asList(first, blocked, second, third)));
+        assertTrue(blocked.blockWait.notifyOn);
+        assertEquals(3, wqm.executor.submitted.size());
+        assertTrue(wqm.ran.isEmpty());
+
+        // the workers are independent of each other
+        wqm.executor.submitted.get(2).run();
+        assertEquals(Arrays.asList(third), wqm.ran);
+        wqm.executor.submitted.get(0).run();
+        wqm.executor.submitted.get(1).run();
+        assertEquals(Arrays.asList(third, first, second), wqm.ran);
+    }
+
+    /**
+     * A batch of only synchronous requests is not handed to a worker.
+     */
+    @Test
+    public void testDispatchBatchBlockedOnly() throws Exception {
+        configure("true", "1");
+        TestWorkQueueManager wqm = new TestWorkQueueManager();
+
+        TCPBaseRequestContext blocked = newRequest(true);
+        assertEquals(1, wqm.dispatchBatch(Arrays.asList(blocked)));
+        assertTrue(blocked.blockWait.notifyOn);
+        assertTrue(wqm.executor.submitted.isEmpty());
+    }
+
+    /**
+     * Nothing of the batch is dispatched when there is no executor, so that all the keys are selected again.
+     */
+    @Test
+    public void testDispatchBatchWithoutExecutor() throws Exception {
+        configure("true", "1");
+        TestWorkQueueManager wqm = new TestWorkQueueManager();
+        wqm.executor = null;
+
+        TCPBaseRequestContext blocked = newRequest(true);
+        assertEquals(0, wqm.dispatchBatch(Arrays.asList(blocked, newRequest(false))));
+        assertFalse(blocked.blockWait.notifyOn);
+    }
+
+    /**
+     * New connections are spread round robin across the shards.
+     */
+    @Test
+    public void testSelectorShards() throws Exception {
+        configure("true", "3");
+        TestWorkQueueManager wqm = new TestWorkQueueManager();
+        assertEquals(3, wqm.getSelectorShards());
+
+        RecordingSelector[] selectors = new RecordingSelector[] { new RecordingSelector(), new RecordingSelector(), new RecordingSelector() };
+        int[] counts = new int[] { WorkQueueManager.CS_OK, WorkQueueManager.CS_OK, WorkQueueManager.CS_OK };
+        List<Object> reqs = new ArrayList<Object>();
+        for (int i = 0; i < 6; i++) {
+            Object req = new Object();
+            reqs.add(req);
+            wqm.moveIntoPosition(counts, selectors, req, WorkQueueManager.CS_READ_INBOUND);
+        }
+
+        assertEquals(Arrays.asList(reqs.get(0), reqs.get(3)), selectors[0].added);
+        assertEquals(Arrays.asList(reqs.get(1), reqs.get(4)), selectors[1].added);
+        assertEquals(Arrays.asList(reqs.get(2), reqs.get(5)), selectors[2].added);
+    }
+
+    /**
+     * A full shard is skipped, and its connection goes to the first selector with room.
+     */
+    @Test
+    public void testSelectorShardFull() throws Exception {
+        configure("true", "2");
+        TestWorkQueueManager wqm = new TestWorkQueueManager();
+
+        RecordingSelector[] selectors = new RecordingSelector[] { new RecordingSelector(), new RecordingSelector() };
+        int[] counts = new int[] { TCPFactoryConfiguration.getMaxKeysPerSelector(), WorkQueueManager.CS_OK };
+        Object req = new Object();
+        wqm.moveIntoPosition(counts, selectors, req, WorkQueueManager.CS_READ_INBOUND);
+
+        assertTrue(selectors[0].added.isEmpty());
+        assertEquals(Arrays.asList(req), selectors[1].added);
+    }
+
+    /**
+     * The number of shards that is set for an endpoint overrides the one of the factory.
+     */
+    @Test
+    public void testEndpointSelectorShards() throws Exception {
+        configure("true", "3");
+        assertEquals(2, new TestWorkQueueManager(2).getSelectorShards());
+        assertEquals(3, new TestWorkQueueManager().getSelectorShards());
+    }
+
+    /**
+     * Shards are only used with the batched selector.
+     */
+    @Test
+    public void testNoShardsWithoutBatchedSelector() throws Exception {
+        configure("false", "3");
+        assertEquals(1, new TestWorkQueueManager().getSelectorShards());
+        assertEquals(1, new TestWorkQueueManager(3).getSelectorShards());
+    }
+}
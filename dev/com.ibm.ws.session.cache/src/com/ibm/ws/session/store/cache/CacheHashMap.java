@@ -17,12 +17,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivilegedAction;
 import java.io.ObjectStreamConstants;
 import java.io.StreamCorruptedException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -119,6 +123,17 @@ public class CacheHashMap extends BackedHashMap {
      */
     private String tcSessionMetaCache;
 
+    /**
+     * Near cache of the session attribute cache, or null if not enabled.
+     */
+    private NearCache<byte[]> sessionAttributeNearCache;
+
+    /**
+     * Near cache of the session meta information cache, or null if not enabled.
+     */
+    @SuppressWarnings("rawtypes")
+    private NearCache<ArrayList> sessionMetaNearCache;
+
     CacheHashMap(IStore store, SessionManagerConfig smc, CacheStoreService cacheStoreService) {
         super(store, smc);
 
@@ -238,6 +253,16 @@ public class CacheHashMap extends BackedHashMap {
                 tcReturn(cacheStoreService.tcCacheManager, create ? "createCache" : "getCache", tcSessionAttrCache, sessionAttributeCache);
 
             cacheStoreService.configureMonitoring(attrCacheName);
+
+            // Near caches
+            int nearCacheSize = cacheStoreService.nearCacheSize;
+            if (nearCacheSize > 0) {
+                sessionMetaNearCache = new NearCache<ArrayList>(metaCacheName, sessionMetaCache, nearCacheSize);
+                sessionAttributeNearCache = new NearCache<byte[]>(attrCacheName, sessionAttributeCache, nearCacheSize);
+
+                if (trace && tc.isDebugEnabled())
+                    Tr.debug(this, tc, "near caches enabled", sessionMetaNearCache, sessionAttributeNearCache);
+            }
         } catch(Exception ex) {
             //auto ffdc
             Tr.error(tc, "ERROR_SESSION_INIT", ex);
@@ -245,6 +270,28 @@ public class CacheHashMap extends BackedHashMap {
         }
     }
 
+    /**
+     * Removes the listeners and entries of the near caches, if enabled.
+     */
+    void closeNearCache() {
+        if (sessionMetaNearCache != null)
+            sessionMetaNearCache.close();
+        if (sessionAttributeNearCache != null)
+            sessionAttributeNearCache.close();
+    }
+
+    /**
+     * Checks whether the session meta information cache contains the session, first checking the near cache if enabled.
+     *
+     * @param id session id.
+     * @return true if the session is found.
+     */
+    private boolean containsSessionMeta(String id) {
+        if (sessionMetaNearCache != null && sessionMetaNearCache.get(id) != null)
+            return true;
+        return sessionMetaCache.containsKey(id);
+    }
+
     /**
      * Create a key for a session attribute, of the form: SessionId.AttributeId
      * 
@@ -325,6 +372,9 @@ public class CacheHashMap extends BackedHashMap {
                         if (trace && tc.isDebugEnabled())
                             tcReturn(tcSessionMetaCache, "remove", removed);
 
+                        if (removed)
+                            invalidateNearCache(id, null);
+
                         if (removed) {
                             //delete sub rows
                             Set<String> propIds = sessionInfo.getSessionPropertyIds();
@@ -340,6 +390,8 @@ public class CacheHashMap extends BackedHashMap {
 
                                 if (trace && tc.isDebugEnabled())
                                     tcReturn(tcSessionAttrCache, "removeAll");
+
+                                invalidateNearCache(null, propKeys);
                             }
                         }
 
@@ -395,7 +447,7 @@ public class CacheHashMap extends BackedHashMap {
             if (trace && tc.isDebugEnabled())
                 tcInvoke(tcSessionMetaCache, "get", id);
 
-            ArrayList<?> list = sessionMetaCache.get(id);
+            ArrayList<?> list = getSessionMeta(id);
 
             if (trace && tc.isDebugEnabled())
                 tcReturn(tcSessionMetaCache, "get", list);
@@ -420,7 +472,7 @@ public class CacheHashMap extends BackedHashMap {
                     if (trace && tc.isDebugEnabled())
                         tcInvoke(tcSessionAttrCache, "get", attributeKey);
 
-                    byte[] b = sessionAttributeCache.get(attributeKey);
+                    byte[] b = getSessionAttribute(attributeKey);
 
                     if (b == null) {
                         if (trace && tc.isDebugEnabled())
@@ -445,6 +497,7 @@ public class CacheHashMap extends BackedHashMap {
                         }                   
                         if (value != null) {
                             h.put(propId, value);
+                            ((CacheSession) sess).setAttributeDigest(propId, digest(b));
                         }
                     }
                 }
@@ -474,16 +527,64 @@ public class CacheHashMap extends BackedHashMap {
     }
 
     /**
-     * copied from DatabaseHashMapMR
+     * Reads a session attribute, from the near cache if enabled and the attribute is found there.
+     *
+     * @param key session attribute key.
+     * @return the serialized attribute value, or null.
+     */
+    @Trivial // return value contains customer data
+    private byte[] getSessionAttribute(String key) {
+        if (sessionAttributeNearCache == null)
+            return sessionAttributeCache.get(key);
+
+        byte[] bytes = sessionAttributeNearCache.get(key);
+        if (bytes == null) {
+            long stamp = sessionAttributeNearCache.stamp(key);
+            bytes = sessionAttributeCache.get(key);
+            sessionAttributeNearCache.putIfCurrent(key, bytes, stamp);
+        } else if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+            Tr.debug(this, tc, "found " + key + " in near cache");
+        return bytes;
+    }
+
+    /**
+     * Reads the session meta information, from the near cache if enabled and the session is found there.
+     * The value must not be modified.
+     *
+     * @param id session id.
+     * @return the session meta information, or null.
+     */
+    @SuppressWarnings("rawtypes")
+    private ArrayList<?> getSessionMeta(String id) {
+        if (sessionMetaNearCache == null)
+            return sessionMetaCache.get(id);
+
+        ArrayList value = sessionMetaNearCache.get(id);
+        if (value == null) {
+            long stamp = sessionMetaNearCache.stamp(id);
+            value = sessionMetaCache.get(id);
+            sessionMetaNearCache.putIfCurrent(id, value, stamp);
+        } else if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+            Tr.debug(this, tc, "found " + id + " in near cache");
+        return value;
+    }
+
+    /**
+     * copied from DatabaseHashMapMR, and changed to write all of the attributes of the request
+     * with a single putAll and remove them with a single removeAll.
+     * Attributes with the same serialized form as when they were last read or written are not sent.
+     * The ids of the attributes that were written and removed are added to the provided sets
+     * so that the caller can update the session meta information along with its other changes.
      */
     @SuppressWarnings({ "rawtypes", "unchecked" })
     @FFDCIgnore(Exception.class) //manually logged
-    private boolean handlePropertyHits(BackedSession session) {
+    private boolean handlePropertyHits(BackedSession session, Set<String> propIdsWritten, Set<String> propIdsRemoved) {
         final boolean trace = TraceComponent.isAnyTracingEnabled();
 
         Thread t = Thread.currentThread();
 
         String id = session.getId();
+        CacheSession cacheSession = (CacheSession) session;
 
         try {
             Set<String> propsToWrite = null;
@@ -515,14 +616,17 @@ public class CacheHashMap extends BackedHashMap {
             }
 
             if (propsToWrite != null) {
-                for (String propid : propsToWrite) {
-                    long startTime = System.nanoTime();
+                long startTime = System.nanoTime();
+                long writeSize = 0;
+                int unchanged = 0;
+                Map<String, byte[]> attrsToPut = new HashMap<String, byte[]>();
+                Map<String, byte[]> digests = new HashMap<String, byte[]>();
 
+                for (String propid : propsToWrite) {
                     if (id.equals(propid)) {
                         throw new IllegalArgumentException(propid); // internal error, should never occur
                     }
 
-                    String key = createSessionAttributeKey(id, propid);
                     Object value = session.getSwappableData().get(propid);
 
                     if (value == null) {
@@ -531,30 +635,50 @@ public class CacheHashMap extends BackedHashMap {
                             Tr.debug(this, tc, "ignoring " + propid + " because it is no longer found");
                     } else {
                         byte[] objbuf = serialize(value);
+                        byte[] digest = digest(objbuf);
+                        propIdsWritten.add(propid);
+
+                        if (Arrays.equals(digest, cacheSession.getAttributeDigest(propid))) {
+                            unchanged++;
+                            continue;
+                        }
+
+                        String key = createSessionAttributeKey(id, propid);
+                        attrsToPut.put(key, objbuf);
+                        digests.put(propid, digest);
+                        writeSize += objbuf.length;
 
                         if (trace && tc.isDebugEnabled()) {
                             @SuppressWarnings("static-access")
                             boolean hideValues = _smc.isHideSessionValues();
                             if (hideValues)
-                                tcInvoke(tcSessionAttrCache, "put", key, "byte[" + objbuf.length + "]");
+                                Tr.debug(this, tc, "write " + key, "byte[" + objbuf.length + "]");
                             else
-                                tcInvoke(tcSessionAttrCache, "put", key, objbuf, value);
+                                Tr.debug(this, tc, "write " + key, objbuf, value);
                         }
+                    }
+                }
 
-                        sessionAttributeCache.put(key, objbuf);
+                if (!attrsToPut.isEmpty()) {
+                    if (trace && tc.isDebugEnabled())
+                        tcInvoke(tcSessionAttrCache, "putAll", attrsToPut.keySet());
 
-                        if (trace && tc.isDebugEnabled())
-                            tcReturn(tcSessionAttrCache, "put");
+                    putSessionAttributes(attrsToPut);
 
-                        SessionStatistics pmiStats = _iStore.getSessionStatistics();
-                        if (pmiStats != null) {
-                            pmiStats.writeTimes(objbuf.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
-                        }
+                    if (trace && tc.isDebugEnabled())
+                        tcReturn(tcSessionAttrCache, "putAll");
+
+                    for (Map.Entry<String, byte[]> entry : digests.entrySet())
+                        cacheSession.setAttributeDigest(entry.getKey(), entry.getValue());
+
+                    SessionStatistics pmiStats = _iStore.getSessionStatistics();
+                    if (pmiStats != null) {
+                        pmiStats.writeTimes(writeSize, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
                     }
                 }
 
                 if (trace && tc.isDebugEnabled())
-                    Tr.debug(this, tc, propsToWrite.size() + " property writes are done");
+                    Tr.debug(this, tc, attrsToPut.size() + " property writes are done, " + unchanged + " unchanged properties are not written");
 
                 if (appDataTablesPerThread) {
                     if (session.appDataChanges != null)
@@ -592,20 +716,25 @@ public class CacheHashMap extends BackedHashMap {
                 }
 
                 if (propsToRemove != null && !propsToRemove.isEmpty()) {
+                    HashSet<String> propKeys = new HashSet<String>();
                     for (String propid : propsToRemove) {
                         if (trace && tc.isDebugEnabled()) {
                             Tr.debug(this, tc, "deleting prop " + propid + " for session " + id);
                         }
-                        String key = createSessionAttributeKey(id, propid);
+                        propKeys.add(createSessionAttributeKey(id, propid));
+                        cacheSession.removeAttributeDigest(propid);
+                        propIdsRemoved.add(propid);
+                    }
 
-                        if (trace && tc.isDebugEnabled())
-                            tcInvoke(tcSessionAttrCache, "remove", key);
+                    if (trace && tc.isDebugEnabled())
+                        tcInvoke(tcSessionAttrCache, "removeAll", propKeys);
 
-                        boolean removed = sessionAttributeCache.remove(key);
+                    sessionAttributeCache.removeAll(propKeys);
 
-                        if (trace && tc.isDebugEnabled())
-                            tcReturn(tcSessionAttrCache, "remove", removed);
-                    }
+                    if (trace && tc.isDebugEnabled())
+                        tcReturn(tcSessionAttrCache, "removeAll");
+
+                    invalidateNearCache(null, propKeys);
                 }
 
                 if (!appDataTablesPerThread) { // appDataTablesPerSession
@@ -622,44 +751,6 @@ public class CacheHashMap extends BackedHashMap {
                     }
                 }
             }
-
-            // Update the session's main cache entry per the identified changes
-            if (propsToWrite != null || propsToRemove != null) {
-                ArrayList<?> oldValue, newValue;
-                long backoff = 20; // allows first two attempts without delay, then a delay of 160-319ms, then a delay of 320-639 ms, ...
-                for (boolean replaced = false; !replaced; ) {
-                    if (backoff > 500 || (backoff *= 2) > 100)
-                        try {
-                            TimeUnit.MILLISECONDS.sleep(backoff + (long) Math.random() * backoff);
-                        } catch (InterruptedException x) {
-                            FFDCFilter.processException(x, getClass().getName(), "324", new Object[] { id, backoff, propsToWrite, propsToRemove });
-                            throw x;
-                        }
-                    if (trace && tc.isDebugEnabled())
-                        tcInvoke(tcSessionMetaCache, "get", id);
-
-                    oldValue = sessionMetaCache.get(id);
-
-                    if (trace && tc.isDebugEnabled())
-                        tcReturn(tcSessionMetaCache, "get", oldValue);
-                    if (oldValue == null) 
-                        break; // no need to delete corresponding entries from attributes cache. The code that deleted the session meta info will do so.
-                    SessionInfo sessionInfo = new SessionInfo(oldValue).clone();
-                    if (propsToWrite != null)
-                        sessionInfo.addSessionPropertyIds(propsToWrite);
-                    if (propsToRemove != null)
-                        sessionInfo.removeSessionPropertyIds(propsToRemove);
-                    newValue = sessionInfo.getArrayList();
-
-                    if (trace && tc.isDebugEnabled())
-                        tcInvoke(tcSessionMetaCache, "replace", id, oldValue, newValue);
-
-                    replaced = sessionMetaCache.replace(id, oldValue, newValue);
-
-                    if (trace && tc.isDebugEnabled())
-                        tcReturn(tcSessionMetaCache, "replace", replaced);
-                }
-            }
         } catch (Exception ex) {
             FFDCFilter.processException(ex, "com.ibm.ws.session.store.cache.CacheHashMap.handlePropertyHits", "656", this, new Object[] { session });
             Tr.error(tc, "PROP_HIT_ERROR", ex);
@@ -692,7 +783,7 @@ public class CacheHashMap extends BackedHashMap {
             if (trace && tc.isDebugEnabled())
                 tcInvoke(tcSessionMetaCache, "putIfAbsent", id, list);
 
-            added = sessionMetaCache.putIfAbsent(id, list);
+            added = putSessionMetaIfAbsent(id, list);
 
             if (trace && tc.isDebugEnabled())
                 tcReturn(tcSessionMetaCache, "putIfAbsent", added);     
@@ -714,6 +805,20 @@ public class CacheHashMap extends BackedHashMap {
         session.listenCntHit = false;
     }
 
+    /**
+     * Removes entries that this server removed from the caches from the near caches, if enabled.
+     *
+     * @param id session id of the session meta information. Null if none.
+     * @param propKeys session attribute keys. Null if none.
+     */
+    private void invalidateNearCache(String id, Set<String> propKeys) {
+        if (id != null && sessionMetaNearCache != null)
+            sessionMetaNearCache.invalidate(id);
+        if (propKeys != null && sessionAttributeNearCache != null)
+            for (String key : propKeys)
+                sessionAttributeNearCache.invalidate(key);
+    }
+
     /**
      * @see com.ibm.ws.session.store.common.BackedHashMap#isPresent(java.lang.String)
      */
@@ -726,7 +831,7 @@ public class CacheHashMap extends BackedHashMap {
             if (trace && tc.isDebugEnabled())
                 tcInvoke(tcSessionMetaCache, "containsKey", id);
 
-            contains = sessionMetaCache.containsKey(id);
+            contains = containsSessionMeta(id);
 
             if (trace && tc.isDebugEnabled())
                 tcReturn(tcSessionMetaCache, "containsKey", contains);
@@ -769,7 +874,7 @@ public class CacheHashMap extends BackedHashMap {
                 if (trace && tc.isDebugEnabled())
                     tcInvoke(tcSessionAttrCache, "get", key);
 
-                byte[] bytes = sessionAttributeCache.get(key);
+                byte[] bytes = getSessionAttribute(key);
 
                 if (bytes == null || bytes.length == 0) {
                     if (trace && tc.isDebugEnabled())
@@ -800,13 +905,15 @@ public class CacheHashMap extends BackedHashMap {
                 if (trace && tc.isDebugEnabled())
                     tcInvoke(tcSessionMetaCache, "containsKey", id);
 
-                boolean contains = sessionMetaCache.containsKey(id);
+                boolean contains = containsSessionMeta(id);
 
                 if (trace && tc.isDebugEnabled())
                     tcReturn(tcSessionMetaCache, "containsKey", contains);
 
                 if (!contains) {
                     value = null;
+                } else if (value != null) {
+                    ((CacheSession) sess).setAttributeDigest(attrName, digest(bytes));
                 }
             }
         } catch(Exception ex) {
@@ -840,7 +947,7 @@ public class CacheHashMap extends BackedHashMap {
                 tcInvoke(tcSessionMetaCache, "get", id);
 
             synchronized (sess) {
-                ArrayList<?> oldValue = sessionMetaCache.get(id);
+                ArrayList<?> oldValue = getSessionMeta(id);
 
                 if (trace && tc.isDebugEnabled())
                     tcReturn(tcSessionMetaCache, "get", oldValue);
@@ -861,7 +968,7 @@ public class CacheHashMap extends BackedHashMap {
                     if (trace && tc.isDebugEnabled())
                         tcInvoke(tcSessionMetaCache, "replace", id, oldValue, newValue);
 
-                    boolean replaced = sessionMetaCache.replace(id, oldValue, newValue);
+                    boolean replaced = replaceSessionMeta(id, oldValue, newValue);
 
                     if (trace && tc.isDebugEnabled())
                         tcReturn(tcSessionMetaCache, "replace", replaced);
@@ -992,15 +1099,25 @@ public class CacheHashMap extends BackedHashMap {
                 return true;
             }
 
-            if (propHit && !handlePropertyHits(session)) {
+            // the meta information is updated for the attribute changes along with the other changes to the session
+            Set<String> propIdsWritten = new HashSet<String>(), propIdsRemoved = new HashSet<String>();
+            if (propHit && !handlePropertyHits(session, propIdsWritten, propIdsRemoved)) {
                 return false;
             }
 
+            long backoff = 20; // allows first two attempts without delay, then a delay of 160-319ms, then a delay of 320-639 ms, ...
             for (boolean updated = false; !updated;) {
+                if (backoff > 500 || (backoff *= 2) > 100)
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(backoff + (long) Math.random() * backoff);
+                    } catch (InterruptedException x) {
+                        FFDCFilter.processException(x, getClass().getName(), "324", new Object[] { id, backoff, propIdsWritten, propIdsRemoved });
+                        throw x;
+                    }
                 if (trace && tc.isDebugEnabled())
                     tcInvoke(tcSessionMetaCache, "get", id);
 
-                ArrayList<?> oldValue = sessionMetaCache.get(id);
+                ArrayList<?> oldValue = getSessionMeta(id);
 
                 if (trace && tc.isDebugEnabled())
                     tcReturn(tcSessionMetaCache, "get", oldValue);
@@ -1025,6 +1142,12 @@ public class CacheHashMap extends BackedHashMap {
                     sessionInfo.setListenerTypes(session.listenerFlag);
                 }
 
+                if (!propIdsWritten.isEmpty())
+                    sessionInfo.addSessionPropertyIds(propIdsWritten);
+
+                if (!propIdsRemoved.isEmpty())
+                    sessionInfo.removeSessionPropertyIds(propIdsRemoved);
+
                 long time = session.getCurrentAccessTime();
                 if (!_smc.getEnableEOSWrite() || _smc.getScheduledInvalidation()) {
                     session.setLastWriteLastAccessTime(time);
@@ -1036,10 +1159,14 @@ public class CacheHashMap extends BackedHashMap {
 
                 ArrayList<?> newValue = sessionInfo.getArrayList();
 
+                // nothing to send if the attributes were already known and nothing else changed
+                if (newValue.equals(oldValue))
+                    break;
+
                 if (trace && tc.isDebugEnabled())
                     tcInvoke(tcSessionMetaCache, "replace", id, oldValue, newValue);
 
-                updated = sessionMetaCache.replace(id, oldValue, newValue);
+                updated = replaceSessionMeta(id, oldValue, newValue);
 
                 if (trace && tc.isDebugEnabled())
                     tcReturn(tcSessionMetaCache, "replace", updated);
@@ -1140,6 +1267,9 @@ public class CacheHashMap extends BackedHashMap {
                         if (trace && tc.isDebugEnabled())
                             tcReturn(tcSessionMetaCache, "remove", removed);
 
+                        if (removed)
+                            invalidateNearCache(id, null);
+
                         if (removed) {
                             // return of session done as a result of this call
                             session.internalInvalidate(true);
@@ -1157,6 +1287,8 @@ public class CacheHashMap extends BackedHashMap {
 
                                 if (trace && tc.isDebugEnabled())
                                     tcReturn(tcSessionAttrCache, "removeAll");
+
+                                invalidateNearCache(null, propKeys);
                             }
                         }
 
@@ -1182,6 +1314,55 @@ public class CacheHashMap extends BackedHashMap {
         }
     }
 
+    /**
+     * Writes session attributes, and adds them to the near cache if enabled.
+     *
+     * @param attrs serialized attribute values by session attribute key.
+     */
+    @Trivial // reveals customer data
+    private void putSessionAttributes(Map<String, byte[]> attrs) {
+        if (sessionAttributeNearCache == null) {
+            sessionAttributeCache.putAll(attrs);
+            return;
+        }
+
+        Map<String, Long> stamps = new HashMap<String, Long>();
+        for (Map.Entry<String, byte[]> entry : attrs.entrySet()) {
+            stamps.put(entry.getKey(), sessionAttributeNearCache.stamp(entry.getKey()));
+            sessionAttributeNearCache.writing(entry.getKey(), entry.getValue());
+        }
+        boolean written = false;
+        try {
+            sessionAttributeCache.putAll(attrs);
+            written = true;
+        } finally {
+            for (Map.Entry<String, byte[]> entry : attrs.entrySet())
+                sessionAttributeNearCache.writeDone(entry.getKey(), entry.getValue(), stamps.get(entry.getKey()), written);
+        }
+    }
+
+    /**
+     * Adds the session meta information of a new session, and adds it to the near cache if enabled.
+     *
+     * @param id session id.
+     * @param list session meta information.
+     * @return true if added, false if the cache already contains the session.
+     */
+    private boolean putSessionMetaIfAbsent(String id, ArrayList<Object> list) {
+        if (sessionMetaNearCache == null)
+            return sessionMetaCache.putIfAbsent(id, list);
+
+        long stamp = sessionMetaNearCache.stamp(id);
+        sessionMetaNearCache.writing(id, list);
+        boolean added = false;
+        try {
+            added = sessionMetaCache.putIfAbsent(id, list);
+        } finally {
+            sessionMetaNearCache.writeDone(id, list, stamp, added);
+        }
+        return added;
+    }
+
     /**
      * @see com.ibm.ws.session.store.common.BackedHashMap#readFromExternal(java.lang.String)
      */
@@ -1197,7 +1378,7 @@ public class CacheHashMap extends BackedHashMap {
             if (trace && tc.isDebugEnabled())
                 tcInvoke(tcSessionMetaCache, "get", id);
 
-            value = sessionMetaCache.get(id);
+            value = getSessionMeta(id);
 
             if (trace && tc.isDebugEnabled())
                 tcReturn(tcSessionMetaCache, "get", value);
@@ -1239,21 +1420,25 @@ public class CacheHashMap extends BackedHashMap {
             if (trace && tc.isDebugEnabled())
                 tcReturn(tcSessionMetaCache, "getAndRemove", removed);
 
+            invalidateNearCache(id, null);
+
             addToRecentlyInvalidatedList(id);
 
             Set<String> propIds = removed == null ? null : new SessionInfo(removed).getSessionPropertyIds();
-            if (propIds != null) {
-                for (String propId : propIds) {
-                    String attributeKey = createSessionAttributeKey(id, propId);
+            if (propIds != null && !propIds.isEmpty()) {
+                HashSet<String> propKeys = new HashSet<String>();
+                for (String propId : propIds)
+                    propKeys.add(createSessionAttributeKey(id, propId));
 
-                    if (trace && tc.isDebugEnabled())
-                        tcInvoke(tcSessionAttrCache, "remove", attributeKey);
+                if (trace && tc.isDebugEnabled())
+                    tcInvoke(tcSessionAttrCache, "removeAll", propKeys);
 
-                    sessionAttributeCache.remove(attributeKey);
+                sessionAttributeCache.removeAll(propKeys);
 
-                    if (trace && tc.isDebugEnabled())
-                        tcReturn(tcSessionAttrCache, "remove");
-                }
+                if (trace && tc.isDebugEnabled())
+                    tcReturn(tcSessionAttrCache, "removeAll");
+
+                invalidateNearCache(null, propKeys);
             }
         } catch(Exception ex) {
             FFDCFilter.processException(ex, "com.ibm.ws.session.store.cache.CacheHashMap.removePersistedSession", "1204", this, new Object[] { id });
@@ -1262,6 +1447,32 @@ public class CacheHashMap extends BackedHashMap {
         }
     }
 
+    /**
+     * Replaces the session meta information if it still has the expected value, and updates the near cache if enabled.
+     * If the near cache held a value that is no longer current, the replace fails and the near cache entry is removed,
+     * so that the caller reads the current value when it tries again.
+     *
+     * @param id session id.
+     * @param oldValue expected session meta information.
+     * @param newValue new session meta information.
+     * @return true if replaced.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private boolean replaceSessionMeta(String id, ArrayList<?> oldValue, ArrayList<?> newValue) {
+        if (sessionMetaNearCache == null)
+            return sessionMetaCache.replace(id, oldValue, newValue);
+
+        long stamp = sessionMetaNearCache.stamp(id);
+        sessionMetaNearCache.writing(id, newValue);
+        boolean replaced = false;
+        try {
+            replaced = sessionMetaCache.replace(id, oldValue, newValue);
+        } finally {
+            sessionMetaNearCache.writeDone(id, newValue, stamp, replaced);
+        }
+        return replaced;
+    }
+
     /*
      * setMaxInactToZero - called to set the max inactive time to zero for remote invalidateAll.
      * This will result in the session being invalidated by the next run of the background
@@ -1275,7 +1486,7 @@ public class CacheHashMap extends BackedHashMap {
             if (trace && tc.isDebugEnabled())
                 tcInvoke(tcSessionMetaCache, "get", sessId);
 
-            ArrayList<?> oldValue = sessionMetaCache.get(sessId);
+            ArrayList<?> oldValue = getSessionMeta(sessId);
 
             if (trace && tc.isDebugEnabled())
                 tcReturn(tcSessionMetaCache, "get", oldValue);
@@ -1290,7 +1501,7 @@ public class CacheHashMap extends BackedHashMap {
                 if (trace && tc.isDebugEnabled())
                     tcInvoke(tcSessionMetaCache, "replace", sessId, oldValue, newValue);
 
-                if (sessionMetaCache.replace(sessId, oldValue, newValue))
+                if (replaceSessionMeta(sessId, oldValue, newValue))
                     rc = 1;
 
                 if (trace && tc.isDebugEnabled())
@@ -1395,7 +1606,7 @@ public class CacheHashMap extends BackedHashMap {
                 if (trace && tc.isDebugEnabled())
                     tcInvoke(tcSessionMetaCache, "get", id);
 
-                ArrayList<?> oldValue = sessionMetaCache.get(id);
+                ArrayList<?> oldValue = getSessionMeta(id);
 
                 if (trace && tc.isDebugEnabled())
                     tcReturn(tcSessionMetaCache, "get", oldValue);
@@ -1410,7 +1621,7 @@ public class CacheHashMap extends BackedHashMap {
                     if (trace && tc.isDebugEnabled())
                         tcInvoke(tcSessionMetaCache, "replace", id, oldValue, newValue);
 
-                    if (sessionMetaCache.replace(id, oldValue, newValue))
+                    if (replaceSessionMeta(id, oldValue, newValue))
                         updateCount = 1;
 
                     if (trace && tc.isDebugEnabled())
@@ -1476,7 +1687,7 @@ public class CacheHashMap extends BackedHashMap {
                     if (trace && tc.isDebugEnabled())
                         tcInvoke(tcSessionMetaCache, "get", id);
 
-                    ArrayList<?> oldValue = sessionMetaCache.get(id);
+                    ArrayList<?> oldValue = getSessionMeta(id);
 
                     if (trace && tc.isDebugEnabled())
                         tcReturn(tcSessionMetaCache, "get", oldValue);
@@ -1491,7 +1702,7 @@ public class CacheHashMap extends BackedHashMap {
                         if (trace && tc.isDebugEnabled())
                             tcInvoke(tcSessionMetaCache, "replace", id, oldValue, newValue);
 
-                        if (sessionMetaCache.replace(id, oldValue, newValue))
+                        if (replaceSessionMeta(id, oldValue, newValue))
                             updateCount = 1;
 
                         if (trace && tc.isDebugEnabled())
@@ -1512,6 +1723,22 @@ public class CacheHashMap extends BackedHashMap {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Computes the digest of a serialized attribute value, which is used to tell whether the value changed
+     * since it was last read from or written to the cache.
+     *
+     * @param bytes serialized value.
+     * @return the digest.
+     */
+    @Trivial // reveals customer data
+    static byte[] digest(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException x) {
+            throw new IllegalStateException(x); // every Java platform is required to support SHA-256
+        }
+    }
+
     //Converts an object to a byte array, using enhancements when possible to reduce size
     @Trivial // reveals customer data
     public byte[] serialize(Object value) throws IOException {
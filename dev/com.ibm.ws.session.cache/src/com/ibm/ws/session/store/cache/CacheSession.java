@@ -33,6 +33,9 @@ public class CacheSession extends BackedSession {
     // The swappable data
     private Map<Object, Object> mSwappableData;
 
+    // Digests of the serialized attribute values as last read from or written to the cache
+    private final Map<String, byte[]> attributeDigests = new ConcurrentHashMap<String, byte[]>();
+
     private boolean populatedAppData;
 
     CacheSession() {
@@ -80,6 +83,10 @@ public class CacheSession extends BackedSession {
         }
     }
 
+    byte[] getAttributeDigest(String name) {
+        return attributeDigests.get(name);
+    }
+
     boolean getPopulatedAppData() {
         return populatedAppData;
     }
@@ -142,6 +149,14 @@ public class CacheSession extends BackedSession {
     }
 
 
+    void removeAttributeDigest(String name) {
+        attributeDigests.remove(name);
+    }
+
+    void setAttributeDigest(String name, byte[] digest) {
+        attributeDigests.put(name, digest);
+    }
+
     /**
      * @see com.ibm.ws.session.store.common.BackedSession#getUserTransaction()
      */
@@ -44,6 +44,15 @@ public class CacheStore extends BackedStore {
         return new CacheSession((CacheHashMap) _sessions, sessionId, _storeCallback);
     }
 
+    /**
+     * @see com.ibm.ws.session.store.common.BackedStore#stop()
+     */
+    @Override
+    public synchronized void stop() {
+        super.stop();
+        ((CacheHashMap) _sessions).closeNearCache();
+    }
+
     // Copied from DatabaseStore.
     // Set max inactive time to 0 in database so invalidator will will do inval
     // Then remove the session from cache
@@ -82,6 +82,11 @@ public class CacheStoreService implements Introspector, SessionStoreService {
 
     SerializationService serializationService;
 
+    /**
+     * Number of entries to keep in each of the near caches of an application. 0 if near caches are not used.
+     */
+    int nearCacheSize;
+
     /**
      * Indicates whether or not the caching provider supports store by reference.
      */
@@ -113,6 +118,8 @@ public class CacheStoreService implements Introspector, SessionStoreService {
         Object scheduleInvalidationSecondHour = configurationProperties.get("scheduleInvalidationSecondHour");
         Object writeContents = configurationProperties.get("writeContents");
         Object writeFrequency = configurationProperties.get("writeFrequency");
+        Object nearCacheSizeValue = configurationProperties.get("nearCacheSize");
+        nearCacheSize = nearCacheSizeValue instanceof Integer ? (Integer) nearCacheSizeValue : 0;
 
         // httpSessionCache writeContents accepts ONLY_SET_ATTRIBUTES in place of ONLY_UPDATED_ATTRIBUTES to better reflect the behavior provided
         if (writeContents == null || "ONLY_SET_ATTRIBUTES".equals(writeContents))
@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.session.store.cache;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.cache.Cache;
+import javax.cache.configuration.CacheEntryListenerConfiguration;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryExpiredListener;
+import javax.cache.event.CacheEntryRemovedListener;
+import javax.cache.event.CacheEntryUpdatedListener;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.websphere.ras.annotation.Trivial;
+import com.ibm.ws.ffdc.annotation.FFDCIgnore;
+
+/**
+ * In-JVM copy of recently used entries of one of the caches of a CacheHashMap,
+ * so that requests that are routed to this server by session affinity do not need
+ * to go to the JCache provider to read the session meta information and attributes.
+ * <p>
+ * The near cache is kept coherent with the JCache provider by a synchronous cache entry listener
+ * that invalidates entries that are updated, removed or expired by other servers.
+ * Because a value that is read from the JCache provider can be overtaken by an update, each key that is
+ * being read or written has a marker with a version stamp, which every invalidation of the key advances.
+ * A value is only added to the near cache if no invalidation of its key happened since the stamp was obtained,
+ * before the value was read or written. Events for keys that are neither in the near cache nor being read or
+ * written are ignored, so that updates to other entries do not cost anything.
+ * Updates that are made by this near cache's own writes are recognized by their value and do not invalidate.
+ * <p>
+ * The near cache is bounded. When it grows past its size, arbitrary entries are dropped.
+ */
+class NearCache<V> {
+    private static final TraceComponent tc = Tr.register(NearCache.class);
+
+    private final ConcurrentHashMap<String, V> entries = new ConcurrentHashMap<String, V>();
+
+    /**
+     * Values that are being written by this server, which are not to be invalidated when the update event arrives.
+     */
+    private final ConcurrentHashMap<String, V> pendingWrites = new ConcurrentHashMap<String, V>();
+
+    /**
+     * Markers of the keys that are being read from or written to the JCache provider.
+     */
+    private final ConcurrentHashMap<String, InFlight> inFlight = new ConcurrentHashMap<String, InFlight>();
+
+    /**
+     * Marker of a key that is being read or written.
+     */
+    @Trivial
+    private static class InFlight {
+        /**
+         * Number of reads and writes of the key that are in progress. Only accessed while the map entry is locked.
+         */
+        int count;
+
+        /**
+         * Version stamp, which advances with each invalidation of the key.
+         */
+        final AtomicLong version = new AtomicLong();
+    }
+
+    private final int maxSize;
+    private final String name;
+
+    private final CacheEntryListenerConfiguration<String, V> listenerConfig;
+
+    private final Cache<String, V> cache;
+
+    /**
+     * Creates a near cache for the specified cache and registers the listener that keeps it coherent.
+     *
+     * @param name identifies the near cache in trace.
+     * @param cache the cache.
+     * @param maxSize the most entries to keep.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    NearCache(String name, Cache<String, V> cache, int maxSize) {
+        this.name = name;
+        this.cache = cache;
+        this.maxSize = maxSize;
+        Invalidator invalidator = new Invalidator(this);
+        listenerConfig = new MutableCacheEntryListenerConfiguration<String, V>(new FactoryBuilder.SingletonFactory(invalidator), null, false, true);
+        cache.registerCacheEntryListener(listenerConfig);
+    }
+
+    /**
+     * Removes the listener and all entries.
+     */
+    @FFDCIgnore(IllegalStateException.class)
+    void close() {
+        try {
+            cache.deregisterCacheEntryListener(listenerConfig);
+        } catch (IllegalStateException x) {
+            // cache is already closed
+        }
+        invalidateAll();
+    }
+
+    /**
+     * Returns the value from the near cache, or null.
+     *
+     * @param key the key.
+     * @return the value, or null if not in the near cache.
+     */
+    @Trivial
+    V get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Marks the key as being read or written, and obtains its version stamp. Obtain the stamp before reading
+     * a value from the JCache provider, then supply it to putIfCurrent, which ends the read.
+     *
+     * @param key the key.
+     * @return the version stamp.
+     */
+    @Trivial
+    long stamp(String key) {
+        InFlight marker = inFlight.compute(key, (k, m) -> {
+            if (m == null)
+                m = new InFlight();
+            m.count++;
+            return m;
+        });
+        return marker.version.get();
+    }
+
+    /**
+     * Removes the mark of a read or write of the key, once no other read or write of it is in progress.
+     *
+     * @param key the key.
+     */
+    @Trivial
+    private void done(String key) {
+        inFlight.computeIfPresent(key, (k, m) -> --m.count > 0 ? m : null);
+    }
+
+    /**
+     * Adds a value that was read from or written to the JCache provider, unless there was an invalidation of the key
+     * since the stamp was obtained. Ends the read or write of the key.
+     *
+     * @param key the key.
+     * @param value the value.
+     * @param stamp version stamp obtained before the value was read or written.
+     */
+    @Trivial
+    void putIfCurrent(String key, V value, long stamp) {
+        try {
+            InFlight marker = inFlight.get(key);
+            if (value == null || marker == null || marker.version.get() != stamp)
+                return;
+
+            if (entries.size() >= maxSize)
+                evict();
+
+            entries.put(key, value);
+
+            // an invalidation might have come in between the check and the put
+            if (marker.version.get() != stamp)
+                entries.remove(key, value);
+        } finally {
+            done(key);
+        }
+    }
+
+    /**
+     * Indicates that this server is writing a value, so that the update event for the value does not invalidate it.
+     * Invoke writeDone after the write.
+     *
+     * @param key the key.
+     * @param value the value that is being written.
+     */
+    @Trivial
+    void writing(String key, V value) {
+        pendingWrites.put(key, value);
+    }
+
+    /**
+     * Completes a write that was started with writing. The value is added to the near cache if the write
+     * succeeded and there was no invalidation of the key since the stamp was obtained; otherwise the entry is invalidated.
+     *
+     * @param key the key.
+     * @param value the value that was written.
+     * @param stamp version stamp obtained before the write.
+     * @param success true if the value was written.
+     */
+    @Trivial
+    void writeDone(String key, V value, long stamp, boolean success) {
+        pendingWrites.remove(key, value);
+        if (success) {
+            putIfCurrent(key, value, stamp);
+        } else {
+            invalidate(key);
+            done(key);
+        }
+    }
+
+    /**
+     * Removes the entry from the near cache.
+     *
+     * @param key the key.
+     */
+    @Trivial
+    void invalidate(String key) {
+        InFlight marker = inFlight.get(key);
+        if (marker != null)
+            marker.version.incrementAndGet();
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all entries from the near cache.
+     */
+    void invalidateAll() {
+        for (InFlight marker : inFlight.values())
+            marker.version.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Drops entries to make room. The entries are not kept in order of use, so arbitrary entries are dropped,
+     * along with a tenth of the size more so that this is not done for each addition.
+     */
+    private void evict() {
+        int target = maxSize - maxSize / 10 - 1;
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext() && entries.size() > target;) {
+            it.next();
+            it.remove();
+        }
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled())
+            Tr.debug(this, tc, "evicted entries from " + name + ", size is now " + entries.size());
+    }
+
+    /**
+     * Handles an update, removal or expiry of an entry of the JCache provider.
+     */
+    @Trivial
+    private void onEvent(CacheEntryEvent<? extends String, ? extends V> event, boolean updated) {
+        String key = event.getKey();
+        // nothing is held for the key, and no value for it is about to be added
+        if (!entries.containsKey(key) && !inFlight.containsKey(key))
+            return;
+
+        if (updated) {
+            // ignore the updates that are made by this server, and the ones that match the value that is already held
+            V value = event.getValue();
+            if (sameValue(value, pendingWrites.get(key)) || sameValue(value, entries.get(key)))
+                return;
+        }
+        invalidate(key);
+    }
+
+    @Trivial
+    private static boolean sameValue(Object a, Object b) {
+        if (a == null || b == null)
+            return false;
+        if (a instanceof byte[] && b instanceof byte[])
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        return a.equals(b);
+    }
+
+    @Override
+    public String toString() {
+        return "NearCache[" + name + " entries=" + entries.size() + " maxSize=" + maxSize + " inFlight=" + inFlight.size() + "]";
+    }
+
+    /**
+     * Listener that invalidates near cache entries. The reference to the near cache is transient, so that a copy of
+     * the listener which a JCache provider might make by serializing it does nothing.
+     */
+    @Trivial
+    static class Invalidator<V> implements CacheEntryUpdatedListener<String, V>, CacheEntryRemovedListener<String, V>, CacheEntryExpiredListener<String, V>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final transient NearCache<V> nearCache;
+
+        Invalidator(NearCache<V> nearCache) {
+            this.nearCache = nearCache;
+        }
+
+        @Override
+        public void onUpdated(Iterable<CacheEntryEvent<? extends String, ? extends V>> events) {
+            if (nearCache != null)
+                for (CacheEntryEvent<? extends String, ? extends V> event : events)
+                    nearCache.onEvent(event, true);
+        }
+
+        @Override
+        public void onRemoved(Iterable<CacheEntryEvent<? extends String, ? extends V>> events) {
+            if (nearCache != null)
+                for (CacheEntryEvent<? extends String, ? extends V> event : events)
+                    nearCache.onEvent(event, false);
+        }
+
+        @Override
+        public void onExpired(Iterable<CacheEntryEvent<? extends String, ? extends V>> events) {
+            if (nearCache != null)
+                for (CacheEntryEvent<? extends String, ? extends V> event : events)
+                    nearCache.onEvent(event, false);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2015 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -37,6 +37,7 @@ import javax.servlet.http.HttpSessionListener;
 import com.ibm.websphere.servlet.session.IBMSessionListener;
 import com.ibm.ws.session.http.HttpSessionAttributeObserver;
 import com.ibm.ws.session.store.memory.MemoryStore;
+import com.ibm.ws.session.store.memory.OffHeapMemoryStore;
 import com.ibm.ws.session.store.memory.SessionSimpleHashMap;
 import com.ibm.ws.session.utils.IDGeneratorImpl;
 import com.ibm.ws.session.utils.LoggingUtil;
@@ -337,7 +338,10 @@ public class SessionContext {
             store = service.createStore(smc, smid, sc, storeHelper, _sap.getAppClassLoader(), applicationSessionStore);
         }
         if (store == null) {
-            if(!removeAttrOnInvalidate)
+            if (smc.getOffHeapStoreSize() > 0)
+                store = new OffHeapMemoryStore(smc, smid, sc, storeHelper, applicationSessionStore, removeAttrOnInvalidate, _sap.getAppClassLoader(),
+                                               smc.getOffHeapStoreSize() * 1024L * 1024L);
+            else if(!removeAttrOnInvalidate)
                 store = new MemoryStore(smc, smid, sc, storeHelper, applicationSessionStore);
             else{
                 store = new MemoryStore(smc, smid, sc, storeHelper, applicationSessionStore,removeAttrOnInvalidate);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2012 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -197,6 +197,10 @@ public class SessionManagerConfig implements Cloneable {
     private boolean useSeparateSessionInvalidatorThreadPool = true; //set default to true so that ScheduledExecutorService is used as thread scheduler
     
     private int connectionRetryCount = 2; // Feature 68570
+
+    private boolean useInvalidationExpiryIndex = false; // only check the in-memory sessions that may have timed out
+
+    private int offHeapStoreSize = 0; // megabytes of direct memory for in-memory session attributes, 0 keeps them on the heap
     
     // finished Custom Properties
 
@@ -961,6 +965,22 @@ public class SessionManagerConfig implements Cloneable {
         forceSessionInvalidationMultiple = i;
     }
 
+    public boolean getUseInvalidationExpiryIndex() {
+        return useInvalidationExpiryIndex;
+    }
+
+    public void setUseInvalidationExpiryIndex(boolean b) {
+        useInvalidationExpiryIndex = b;
+    }
+
+    public int getOffHeapStoreSize() {
+        return offHeapStoreSize;
+    }
+
+    public void setOffHeapStoreSize(int i) {
+        offHeapStoreSize = i;
+    }
+
     public boolean getPersistSessionAfterPassivation() {
         return persistSessionAfterPassivation;
     }
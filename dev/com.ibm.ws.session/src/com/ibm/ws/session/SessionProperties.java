@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2012 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -62,6 +62,8 @@ final public class SessionProperties {
         FullyQualifiedPropertiesMap.put("InvalidateOnUnauthorizedSessionRequestException", "invalidateOnUnauthorizedSessionRequestException");
         FullyQualifiedPropertiesMap.put("ExpectedCloneIds", "expectedCloneIds"); //PI18177
         FullyQualifiedPropertiesMap.put("ConnectionRetryCount ","connectionRetryCount"); //Feature 68570
+        FullyQualifiedPropertiesMap.put("UseInvalidationExpiryIndex", "useInvalidationExpiryIndex"); // not in metatype.xml yet
+        FullyQualifiedPropertiesMap.put("OffHeapStoreSize", "offHeapStoreSize"); // not in metatype.xml yet
     }
 
     private SessionProperties() {}
@@ -437,6 +439,29 @@ final public class SessionProperties {
                                                                                                                                         strProp });
             }
         } // PK38538 End
+
+        final String propUseInvalidationExpiryIndex = "UseInvalidationExpiryIndex";
+        strProp = getStringProperty(propUseInvalidationExpiryIndex, xtpProperties);
+        if (strProp != null) {
+            booleanProp = Boolean.valueOf(strProp);
+            if (shouldSetAndDoLogging(propUseInvalidationExpiryIndex, false, baseServerLevelConfig, xtpProperties, booleanProp, null, false)) {
+                smc.setUseInvalidationExpiryIndex(booleanProp.booleanValue());
+            }
+        }
+
+        // megabytes of direct memory to keep the serialized attributes of in-memory sessions in
+        final String propOffHeapStoreSize = "OffHeapStoreSize";
+        strProp = getStringProperty(propOffHeapStoreSize, xtpProperties);
+        if (strProp != null) {
+            try {
+                int offHeapSize = Integer.parseInt(strProp);
+                if (shouldSetAndDoLogging(propOffHeapStoreSize, false, baseServerLevelConfig, xtpProperties, Integer.valueOf(offHeapSize), null, false)) {
+                    smc.setOffHeapStoreSize(offHeapSize);
+                }
+            } catch (NumberFormatException nfe) {
+                LoggingUtil.SESSION_LOGGER_CORE.logp(Level.WARNING, methodClassName, methodName, invalidPropFoundMessage, new Object[] { propOffHeapStoreSize, strProp });
+            }
+        }
         
         //PI73188 Start
         final String propModifyActiveCountOnInvalidatedSession = "ModifyActiveCountOnInvalidatedSession";
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2006 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -25,6 +25,11 @@ public class SessionStatistics implements ISessionObserver, IPerformanceMetrics
     protected long _invalidAccess = 0;
     protected long _affinityBreaks = 0;
     protected long _cacheDiscards = 0;
+    protected long _invalidationScans = 0;
+    protected long _invalidationScanChecked = 0;
+    protected long _invalidationScanTime = 0;
+    protected long _lastInvalidationScanChecked = 0;
+    protected long _lastInvalidationScanTime = 0;
 
     /*
      * (non-Javadoc)
@@ -281,6 +286,40 @@ public class SessionStatistics implements ISessionObserver, IPerformanceMetrics
         return _accessed;
     }
 
+    /*
+     * Records the cost of one background invalidation run: the number of
+     * sessions that were checked for timeout and the time it took in milliseconds
+     */
+    public void invalidationScanCompleted(long checked, long time) {
+        synchronized (this) {
+            _invalidationScans++;
+            _invalidationScanChecked += checked;
+            _invalidationScanTime += time;
+            _lastInvalidationScanChecked = checked;
+            _lastInvalidationScanTime = time;
+        }
+    }
+
+    public long getInvalidationScans() {
+        return _invalidationScans;
+    }
+
+    public long getInvalidationScanCheckedSessions() {
+        return _invalidationScanChecked;
+    }
+
+    public long getInvalidationScanTime() {
+        return _invalidationScanTime;
+    }
+
+    public long getLastInvalidationScanCheckedSessions() {
+        return _lastInvalidationScanChecked;
+    }
+
+    public long getLastInvalidationScanTime() {
+        return _lastInvalidationScanTime;
+    }
+
     // The following are overwritten by our PMISessionStatistics class when in
     // WebSphere
     public void incSessionGarbageCollected(long invalidationTime) {}
@@ -295,7 +334,7 @@ public class SessionStatistics implements ISessionObserver, IPerformanceMetrics
 
     public String toHTML() {
         StringBuffer buf = new StringBuffer();
-        buf.append("<br><b>Sessions Created:</b>").append(this._created).append("<br><b>Active Count:</b>").append(this._active).append("<br><b>Session Access Count:</b>").append(this._accessed).append("<br><b>Invalidated Sessions Count:</b>").append(this._invalidated).append("<br><b>Invalidated By SessionManager:</b>").append(this._invalidatedByTO).append("<br><b>SessionAffinity Breaks:</b>").append(this._affinityBreaks).append("<br><b>Cache Discards:</b>").append(this._cacheDiscards).append("<br><b>Attempts to access non-existent sessions:</b>").append(this._invalidAccess).append("<br><b>Session count </b>").append(this._live).append("<br>");
+        buf.append("<br><b>Sessions Created:</b>").append(this._created).append("<br><b>Active Count:</b>").append(this._active).append("<br><b>Session Access Count:</b>").append(this._accessed).append("<br><b>Invalidated Sessions Count:</b>").append(this._invalidated).append("<br><b>Invalidated By SessionManager:</b>").append(this._invalidatedByTO).append("<br><b>SessionAffinity Breaks:</b>").append(this._affinityBreaks).append("<br><b>Cache Discards:</b>").append(this._cacheDiscards).append("<br><b>Attempts to access non-existent sessions:</b>").append(this._invalidAccess).append("<br><b>Session count </b>").append(this._live).append("<br><b>Invalidation runs:</b>").append(this._invalidationScans).append("<br><b>Sessions checked by the last invalidation run:</b>").append(this._lastInvalidationScanChecked).append("<br><b>Time of the last invalidation run (ms):</b>").append(this._lastInvalidationScanTime).append("<br>");
         return buf.toString();
     }
     
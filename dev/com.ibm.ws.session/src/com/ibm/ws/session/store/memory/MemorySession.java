@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2010 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -60,6 +60,8 @@ public class MemorySession implements ISession {
     protected boolean invalInProgress = false;
     protected SessionGCount _gcCount = null;
     protected SessionManagerConfig _smc;
+    // bucket of the session in the expiry index of the store, guarded by the index
+    long expiryBucket = 0;
 
     //The following strings are used for Logging
     private static final String methodClassName = "MemorySession";
@@ -436,6 +438,7 @@ public class MemorySession implements ISession {
         } else {
             _maxInactiveInterval = maxInactiveInterval;
         }
+        scheduleExpiry();
     }
 
     public void setMaxInactiveIntervalForInvalidateAll(int maxInactiveInterval) {
@@ -444,6 +447,16 @@ public class MemorySession implements ISession {
         } else {
             //truly setting it to 0 for InvalidateAll
             _maxInactiveInterval = 0;
+            scheduleExpiry();
+        }
+    }
+
+    /*
+     * Tells the store when this session can time out, after its max inactive interval changed
+     */
+    private void scheduleExpiry() {
+        if (_store instanceof MemoryStore) {
+            ((MemoryStore) _store).scheduleExpiry(this);
         }
     }
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2007 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ package com.ibm.ws.session.store.memory;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.logging.Level;
@@ -64,6 +65,9 @@ public class MemoryStore implements IStore {
     protected SessionStatistics _sessionStatistics;
 
     protected boolean _isApplicationSessionStore = false;
+
+    // sessions by the time they can time out, null when every session is checked on each invalidation run
+    private SessionExpiryIndex _expiryIndex = null;
     
 
     private static final int CREATE_SESSION = 0;
@@ -95,6 +99,9 @@ public class MemoryStore implements IStore {
                 overflowSession.setIsValid(false);
             }
             _sessions = new SessionSimpleHashMap(this, _initialTableSize, _allowOverflow);
+            if (_smc.getUseInvalidationExpiryIndex()) {
+                _expiryIndex = new SessionExpiryIndex();
+            }
         }
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
             appNameForLogging = " AppName=" + _storeId;
@@ -129,6 +136,9 @@ public class MemoryStore implements IStore {
                 overflowSession.setIsValid(false);
             }
             _sessions = new SessionSimpleHashMap(this, _initialTableSize, _allowOverflow);
+            if (_smc.getUseInvalidationExpiryIndex()) {
+                _expiryIndex = new SessionExpiryIndex();
+            }
         }
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
             appNameForLogging = " AppName=" + _storeId;
@@ -183,12 +193,12 @@ public class MemoryStore implements IStore {
         // interface.
         if ((sess == null) && (_sessions.get(id) == null)) {
             if(!_removeAttrOnInvalidate)
-                sess = new MemorySession(this, id, _storeCallback);
+                sess = newMemorySession(id, false);
             else{
                 if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
                     LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[CREATE_SESSION], "Create MemorySession with _removeAttrOnInvalidate -->" + _removeAttrOnInvalidate );
                 }
-                sess = new MemorySession(this, id, _storeCallback, _removeAttrOnInvalidate);
+                sess = newMemorySession(id, _removeAttrOnInvalidate);
             }
             sess.setUserName(ANONYMOUS_USER);
             // since this was a newly created session, we need to update the
@@ -196,6 +206,7 @@ public class MemoryStore implements IStore {
             sess.updateLastAccessTime(sess.getCreationTime());
             try {
                 _sessions.put(id, sess);
+                scheduleExpiry(sess);
             } catch (TooManySessionsException tmse) {
                 // could catch this exception if multiple threads get past the
                 // first overflow check and then attempt to do the sessions.put
@@ -215,6 +226,14 @@ public class MemoryStore implements IStore {
         return sess;
     }
 
+    /*
+     * Creates the session object for a new session, stores that keep their
+     * sessions differently return their own MemorySession subclass
+     */
+    protected MemorySession newMemorySession(String id, boolean removeAttrOnInvalidate) {
+        return new MemorySession(this, id, _storeCallback, removeAttrOnInvalidate);
+    }
+
     /*
      * @see com.ibm.wsspi.session.IStore#getSession(java.lang.String, int)
      */
@@ -397,6 +416,24 @@ public class MemoryStore implements IStore {
         Object removedEntry = _sessions.remove(id);
         if (removedEntry != null) {
             _storeCallback.sessionLiveCountDec(removedEntry);
+            if (_expiryIndex != null) {
+                _expiryIndex.remove((MemorySession) removedEntry);
+            }
+        }
+    }
+
+    /*
+     * Files the session in the expiry index by the time it can time out.
+     * A session that never times out is left out of the index.
+     */
+    void scheduleExpiry(MemorySession s) {
+        if (_expiryIndex != null) {
+            int maxInactiveInterval = s.getMaxInactiveInterval();
+            if (maxInactiveInterval == -1) {
+                _expiryIndex.remove(s);
+            } else {
+                _expiryIndex.schedule(s, s.getCurrentAccessTime() + 1000 * (long) maxInactiveInterval);
+            }
         }
     }
 
@@ -416,7 +453,8 @@ public class MemoryStore implements IStore {
          * } else {
          */
         long nowTime = System.currentTimeMillis();
-        Iterator iter = _sessions.keySet().iterator();
+        long startTime = System.nanoTime();
+        int checked = 0;
         try {
             //setThreadContext threw a NPE because we were trying to get the config from within getModuleMetaData and it was returning null
             //this only happens after the app has been shutdown.  There was a small timing window where this was possible.
@@ -439,62 +477,48 @@ public class MemoryStore implements IStore {
                 }
                 return;
             }
-            while (iter.hasNext()) {
-                String key = (String) iter.next();
-                ISession s = (ISession) _sessions.get(key);
-
-                // sync on the session and check if its active...
-                if (s != null) {
-                    synchronized (s) {
-                        if (s.isValid()) {
-                            if (s.getMaxInactiveInterval() != -1) {
-                                long currentAccessTime = s.getCurrentAccessTime(); // currentAccessTime
-                                                                                   // updated on
-                                                                                   // session
-                                                                                   // access
-                                                                                   // lastAccessedTime
-                                                                                   // updated at
-                                                                                   // releaseSession
-                                long maxinact = 1000 * (long) s.getMaxInactiveInterval();
-                                boolean active = s.getRefCount() > 0;
-                                if (_isApplicationSessionStore) {
-                                    // the RefCount is not correct when dealing with an
-                                    // applicationSessionStore
-                                    s.setRefCount(0);
-                                    active = false;
-                                }
-                                boolean timedOut = (currentAccessTime <= nowTime - maxinact);
-                                /*
-                                 * invalidate if:
-                                 * session has timedOut AND (is not active OR (the Invalidation
-                                 * Multiple has not been set to 0
-                                 * and the session is that many times the invalidation interval)
-                                 * 
-                                 * The default value for the invalidation interval is 3.
-                                 * 
-                                 * PK03711 removed check for active and always invalidated
-                                 * timedout sessions for v6.1 and earlier
-                                 * v7 CTS defect 391577 forced us to put this code back, so we
-                                 * introduced the InvalidateIfActive property
-                                 * In the service stream, the ForceSessionInvalidationMultiple was
-                                 * used, so we are using the same property
-                                 */
-                                if ((timedOut)
-                                    && ((!active) || ((_smc.getForceSessionInvalidationMultiple() != 0) && (currentAccessTime <= nowTime
-                                                                                                                                 - (_smc.getForceSessionInvalidationMultiple() * maxinact))))) {
-
-                                    _storeCallback.sessionInvalidatedByTimeout(s);
-                                    if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
-                                        String message = "Going to invalidate session with id=" + s.getId();
-                                        LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[RUN_INVALIDATION], message);
-                                    }
-                                    s.invalidate();
-                                }
+            if (_expiryIndex != null) {
+                // only the sessions that may have timed out; the others are filed again by their current access time
+                List<MemorySession> due = _expiryIndex.pollDue(nowTime);
+                try {
+                    for (; checked < due.size(); checked++) {
+                        MemorySession s = due.get(checked);
+                        synchronized (s) {
+                            long nextCheckTime = invalidateIfTimedOut(s, nowTime);
+                            if (nextCheckTime != -1 && _sessions.get(s.getId()) == s) {
+                                _expiryIndex.schedule(s, nextCheckTime);
                             }
-                        } // isValid
+                        }
+                    }
+                } finally {
+                    // sessions left unchecked by an exception are checked on the next run
+                    for (int i = checked; i < due.size(); i++) {
+                        _expiryIndex.schedule(due.get(i), nowTime + 1);
                     }
                 }
-            } // end "while"
+            } else {
+                Iterator iter = _sessions.keySet().iterator();
+                while (iter.hasNext()) {
+                    String key = (String) iter.next();
+                    ISession s = (ISession) _sessions.get(key);
+
+                    // sync on the session and check if its active...
+                    if (s != null) {
+                        synchronized (s) {
+                            invalidateIfTimedOut(s, nowTime);
+                        }
+                        checked++;
+                    }
+                } // end "while"
+            }
+            if (_sessionStatistics != null) {
+                _sessionStatistics.invalidationScanCompleted(checked, (System.nanoTime() - startTime) / 1000000);
+            }
+            if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
+                String message = "checked " + checked + " sessions in " + ((System.nanoTime() - startTime) / 1000) + " microseconds"
+                                 + ((_expiryIndex != null) ? ", " + _expiryIndex.size() + " sessions left in the expiry index" : "") + appNameForLogging;
+                LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[RUN_INVALIDATION], message);
+            }
         } finally {
             // PK99859: Unset the thread context
             unsetThreadContext();
@@ -504,6 +528,64 @@ public class MemoryStore implements IStore {
         }
     }
 
+    /*
+     * Invalidates the session if it has timed out, called with the session locked.
+     * Returns the time the session has to be checked again,
+     * or -1 if it was invalidated or can not time out
+     */
+    private long invalidateIfTimedOut(ISession s, long nowTime) {
+        if (s.isValid()) {
+            if (s.getMaxInactiveInterval() != -1) {
+                long currentAccessTime = s.getCurrentAccessTime(); // currentAccessTime
+                                                                   // updated on
+                                                                   // session
+                                                                   // access
+                                                                   // lastAccessedTime
+                                                                   // updated at
+                                                                   // releaseSession
+                long maxinact = 1000 * (long) s.getMaxInactiveInterval();
+                boolean active = s.getRefCount() > 0;
+                if (_isApplicationSessionStore) {
+                    // the RefCount is not correct when dealing with an
+                    // applicationSessionStore
+                    s.setRefCount(0);
+                    active = false;
+                }
+                boolean timedOut = (currentAccessTime <= nowTime - maxinact);
+                /*
+                 * invalidate if:
+                 * session has timedOut AND (is not active OR (the Invalidation
+                 * Multiple has not been set to 0
+                 * and the session is that many times the invalidation interval)
+                 * 
+                 * The default value for the invalidation interval is 3.
+                 * 
+                 * PK03711 removed check for active and always invalidated
+                 * timedout sessions for v6.1 and earlier
+                 * v7 CTS defect 391577 forced us to put this code back, so we
+                 * introduced the InvalidateIfActive property
+                 * In the service stream, the ForceSessionInvalidationMultiple was
+                 * used, so we are using the same property
+                 */
+                if ((timedOut)
+                    && ((!active) || ((_smc.getForceSessionInvalidationMultiple() != 0) && (currentAccessTime <= nowTime
+                                                                                                                 - (_smc.getForceSessionInvalidationMultiple() * maxinact))))) {
+
+                    _storeCallback.sessionInvalidatedByTimeout(s);
+                    if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
+                        String message = "Going to invalidate session with id=" + s.getId();
+                        LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodNames[RUN_INVALIDATION], message);
+                    }
+                    s.invalidate();
+                    return -1;
+                }
+                // an active session that timed out is checked again on the next run
+                return timedOut ? nowTime + 1 : currentAccessTime + maxinact;
+            }
+        } // isValid
+        return -1;
+    }
+
     /*
      * @see com.ibm.wsspi.session.IStore#runTimeBasedWrites()
      */
@@ -887,6 +969,9 @@ public class MemoryStore implements IStore {
         }
         removeSession(oldId);
         _sessions.put(newSession.getId(),  newSession);
+        if (newSession instanceof MemorySession) {
+            scheduleExpiry((MemorySession) newSession);
+        }
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
             LoggingUtil.SESSION_LOGGER_CORE.exiting(methodClassName, "updateSessionId", newSession.getId());
         }
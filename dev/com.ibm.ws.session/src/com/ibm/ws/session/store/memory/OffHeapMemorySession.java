@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.ibm.ws.session.store.memory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Level;
+
+import com.ibm.ws.session.utils.LoggingUtil;
+import com.ibm.wsspi.session.IStoreCallback;
+
+/*
+ * In-memory session of the OffHeapMemoryStore.
+ *
+ * Between requests the serializable attributes of the session are kept in blocks of the
+ * direct memory region of the store, and _attributes only holds the attributes that are
+ * in use by the current requests, or that can not be moved off the heap.  An attribute
+ * that was read but not changed is not written again: its serialized form is compared
+ * with the block it came from, and the block is kept when they match.
+ *
+ * All the methods that touch the blocks hold the lock of the session.
+ */
+public class OffHeapMemorySession extends MemorySession {
+
+    private static final long serialVersionUID = 2366358414811573460L;
+
+    private static final String methodClassName = "OffHeapMemorySession";
+
+    /*
+     * Location of the serialized form of an attribute in the direct memory region
+     */
+    private static final class StoredAttribute {
+        final long handle;
+        final int length;
+
+        StoredAttribute(long handle, int length) {
+            this.handle = handle;
+            this.length = length;
+        }
+    }
+
+    private final OffHeapMemoryStore _offHeapStore;
+    private final boolean _removeAttrsOnInvalidate;
+    // attributes that are in direct memory, an attribute that is also in _attributes was read during the current requests
+    private final Map<Object, StoredAttribute> _stored = new HashMap<Object, StoredAttribute>();
+
+    public OffHeapMemorySession(OffHeapMemoryStore store, String id, IStoreCallback storeCallback, boolean removeAttrOnInvalidate) {
+        super(store, id, storeCallback, removeAttrOnInvalidate);
+        _offHeapStore = store;
+        _removeAttrsOnInvalidate = removeAttrOnInvalidate;
+    }
+
+    /*
+     * Brings the attribute back onto the heap if it is only in direct memory
+     */
+    private void load(Object name) {
+        if (_attributes == null || _attributes.containsKey(name)) {
+            return;
+        }
+        StoredAttribute stored = _stored.get(name);
+        if (stored == null) {
+            return;
+        }
+        try {
+            _attributes.put(name, _offHeapStore.deserialize(_offHeapStore.getRegion().read(stored.handle, stored.length)));
+        } catch (Exception e) {
+            LoggingUtil.SESSION_LOGGER_CORE.logp(Level.SEVERE, methodClassName, "load", "CommonMessage.exception", e);
+            free(name);
+            _attributeNames.remove(name);
+        }
+    }
+
+    private void loadAll() {
+        for (Object name : new ArrayList<Object>(_stored.keySet())) {
+            load(name);
+        }
+    }
+
+    private void free(Object name) {
+        StoredAttribute stored = _stored.remove(name);
+        if (stored != null) {
+            _offHeapStore.getRegion().free(stored.handle, stored.length);
+        }
+    }
+
+    private void freeAll() {
+        OffHeapRegion region = _offHeapStore.getRegion();
+        for (StoredAttribute stored : _stored.values()) {
+            region.free(stored.handle, stored.length);
+        }
+        _stored.clear();
+    }
+
+    /*
+     * Values of these classes can not be changed, so if they came from a block they still match it
+     */
+    private static boolean isImmutable(Object value) {
+        return value instanceof String || value instanceof Number && value.getClass().getName().startsWith("java.lang.") || value instanceof Boolean
+               || value instanceof Character;
+    }
+
+    /*
+     * Moves the attributes that are on the heap into direct memory.
+     * Attributes that can not be serialized, that are binding listeners, or that do not fit
+     * in the region stay on the heap.
+     */
+    synchronized void writeBack() {
+        if (_attributes == null || _attributes.isEmpty()) {
+            return;
+        }
+        OffHeapRegion region = _offHeapStore.getRegion();
+        int written = 0, kept = 0;
+        for (Iterator it = _attributes.entrySet().iterator(); it.hasNext();) {
+            Map.Entry entry = (Map.Entry) it.next();
+            Object name = entry.getKey();
+            Object value = entry.getValue();
+            StoredAttribute stored = _stored.get(name);
+            if (stored != null && isImmutable(value)) {
+                it.remove();
+                kept++;
+                continue;
+            }
+            if (!(value instanceof Serializable) || Boolean.TRUE.equals(_attributeNames.get(name))) {
+                continue;
+            }
+            byte[] data = _offHeapStore.serialize(value);
+            if (data == null) {
+                continue;
+            }
+            if (stored != null && stored.length == data.length && region.contentEquals(stored.handle, data)) {
+                it.remove();
+                kept++;
+                continue;
+            }
+            long handle = region.allocate(data.length);
+            if (handle == OffHeapRegion.NO_BLOCK) {
+                continue;
+            }
+            region.write(handle, data);
+            if (stored != null) {
+                region.free(stored.handle, stored.length);
+            }
+            _stored.put(name, new StoredAttribute(handle, data.length));
+            it.remove();
+            written++;
+        }
+        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
+            LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, "writeBack", "written=" + written + " unchanged=" + kept + " onHeap=" + _attributes.size()
+                                                                                          + appNameAndIdString);
+        }
+    }
+
+    @Override
+    public synchronized Object getAttribute(Object name) {
+        load(name);
+        return super.getAttribute(name);
+    }
+
+    /*
+     * The old value is loaded first so that listeners are given the value that is replaced
+     */
+    @Override
+    public synchronized Object setAttribute(Object name, Object value, Boolean newIsListener) {
+        load(name);
+        free(name);
+        return super.setAttribute(name, value, newIsListener);
+    }
+
+    @Override
+    public synchronized Object removeAttribute(Object name) {
+        load(name);
+        free(name);
+        return super.removeAttribute(name);
+    }
+
+    @Override
+    public synchronized void invalidate() {
+        if (_removeAttrsOnInvalidate && isValid()) {
+            // the attributes are removed one by one, so that their listeners are called
+            loadAll();
+        }
+        try {
+            super.invalidate();
+        } finally {
+            if (!isValid()) {
+                freeAll();
+            }
+        }
+    }
+
+    @Override
+    public synchronized Map<Object, Object> getSwappableData() {
+        if (_attributes != null) {
+            loadAll();
+        }
+        return super.getSwappableData();
+    }
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.ibm.ws.session.store.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.logging.Level;
+
+import javax.servlet.ServletContext;
+
+import com.ibm.ws.session.MemoryStoreHelper;
+import com.ibm.ws.session.SessionManagerConfig;
+import com.ibm.ws.session.utils.LoggingUtil;
+import com.ibm.wsspi.session.ISession;
+
+/*
+ * In-memory store that keeps the serialized attributes of its sessions in direct memory
+ * instead of on the Java heap, so that large numbers of idle sessions do not add to the
+ * garbage collection work of the server.
+ *
+ * The sessions themselves, along with their ids, times and attribute names, stay on the
+ * heap.  An attribute is deserialized the first time it is used during a request, and is
+ * serialized back into direct memory when the last request that uses the session
+ * completes.  As with persistent sessions, the application gets a copy of the attribute
+ * in each request rather than the same object.
+ */
+public class OffHeapMemoryStore extends MemoryStore {
+
+    private static final String methodClassName = "OffHeapMemoryStore";
+
+    // size of each allocation of direct memory, and so of the largest attribute that can be kept off the heap
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private final ClassLoader _classLoader;
+    private final OffHeapRegion _region;
+
+    public OffHeapMemoryStore(SessionManagerConfig smc, String storeId, ServletContext sc, MemoryStoreHelper storeHelper, boolean isApplicationSessionStore,
+                              boolean removeAttrOnInvalidate, ClassLoader classLoader, long offHeapSize) {
+        super(smc, storeId, sc, storeHelper, isApplicationSessionStore, removeAttrOnInvalidate);
+        _classLoader = classLoader;
+        _region = new OffHeapRegion(offHeapSize, (int) Math.min(CHUNK_SIZE, offHeapSize));
+        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
+            LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, methodClassName, "offHeapSize=" + offHeapSize + appNameForLogging);
+        }
+    }
+
+    @Override
+    protected MemorySession newMemorySession(String id, boolean removeAttrOnInvalidate) {
+        return new OffHeapMemorySession(this, id, _storeCallback, removeAttrOnInvalidate);
+    }
+
+    OffHeapRegion getRegion() {
+        return _region;
+    }
+
+    /*
+     * Moves the attributes of the session into direct memory once no request uses it.
+     * Called by SessionManager.releaseSession while it holds the lock of the session.
+     */
+    @Override
+    public void releaseSession(ISession session) {
+        if (session instanceof OffHeapMemorySession && session.getRefCount() <= 0 && session.isValid()) {
+            ((OffHeapMemorySession) session).writeBack();
+        }
+    }
+
+    /*
+     * Returns the serialized form of the value, or null if it can not be serialized
+     */
+    byte[] serialize(Object value) {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(baos);
+            oos.writeObject(value);
+            oos.close();
+            return baos.toByteArray();
+        } catch (IOException e) {
+            // the value stays on the heap
+            if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && LoggingUtil.SESSION_LOGGER_CORE.isLoggable(Level.FINE)) {
+                LoggingUtil.SESSION_LOGGER_CORE.logp(Level.FINE, methodClassName, "serialize", "could not serialize " + value.getClass().getName() + " " + e);
+            }
+            return null;
+        }
+    }
+
+    Object deserialize(byte[] data) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                ClassLoader classLoader = _isApplicationSessionStore ? Thread.currentThread().getContextClassLoader() : _classLoader;
+                if (classLoader != null) {
+                    try {
+                        return Class.forName(desc.getName(), false, classLoader);
+                    } catch (ClassNotFoundException e) {
+                        // try the default resolution, for primitive types and the classes of the JDK
+                    }
+                }
+                return super.resolveClass(desc);
+            }
+        };
+        try {
+            return ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        super.stop();
+        _region.clear();
+    }
+
+    @Override
+    public String toHTML() {
+        StringBuffer buf = new StringBuffer();
+        buf.append("<br><b>Off-heap bytes in use:</b>").append(_region.getUsed()).append("<br><b>Off-heap bytes allocated:</b>").append(_region.getReserved()).append("<br><b>Off-heap bytes free in allocated chunks:</b>").append(_region.getStranded()).append("<br><b>Off-heap bytes maximum:</b>").append(_region.getMaxSize()).append("<br>");
+        return buf.toString();
+    }
+}
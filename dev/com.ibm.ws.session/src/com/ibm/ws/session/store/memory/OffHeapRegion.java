@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.ibm.ws.session.store.memory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/*
+ * Region of direct memory that holds serialized session attributes outside of the Java heap.
+ *
+ * The region is made of chunks of direct memory, which are allocated as they are needed up to
+ * the size of the region.  Blocks are carved out of the chunks in power of two sizes by buddy
+ * allocation: a larger free block is split in halves to make a smaller one, and a freed block is
+ * merged with its buddy when that is free too, so that freed memory can be reused for blocks of
+ * any size.  A chunk whose blocks are all free is returned, along with its direct memory.
+ *
+ * A block is identified by a handle that holds the generation of the region, the index of its
+ * chunk and its offset in the chunk.  The generation advances when the region is cleared, so
+ * that the blocks from before are not freed a second time.
+ */
+class OffHeapRegion {
+
+    static final long NO_BLOCK = -1L;
+
+    private static final int MIN_BLOCK_SHIFT = 6; // 64 bytes
+
+    // handles hold the generation in the top 16 bits, the chunk index in the next 16 and the offset in the low 32
+    private static final int MAX_CHUNKS = 1 << 16;
+
+    private final long maxSize;
+    private final int chunkSize;
+    // size class of a whole chunk
+    private final int chunkClass;
+
+    // chunks by index, null for an index that is not in use
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private int chunkCount = 0;
+    // free blocks by size class, as handles without the generation
+    private final LinkedHashSet<Long>[] freeBlocks;
+
+    private int generation = 0;
+    private long used = 0;
+
+    /*
+     * maxSize - the most direct memory to allocate, in bytes
+     * chunkSize - the size of each allocation of direct memory, which is also the largest block
+     */
+    @SuppressWarnings("unchecked")
+    OffHeapRegion(long maxSize, int chunkSize) {
+        this.maxSize = maxSize;
+        this.chunkSize = Integer.highestOneBit(chunkSize);
+        chunkClass = sizeClass(this.chunkSize);
+        freeBlocks = new LinkedHashSet[chunkClass + 1];
+        for (int i = 0; i <= chunkClass; i++) {
+            freeBlocks[i] = new LinkedHashSet<Long>();
+        }
+    }
+
+    private static int sizeClass(int length) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1);
+        return Math.max(shift, MIN_BLOCK_SHIFT) - MIN_BLOCK_SHIFT;
+    }
+
+    private static int blockSize(int sizeClass) {
+        return 1 << (sizeClass + MIN_BLOCK_SHIFT);
+    }
+
+    /*
+     * Allocates a block that holds the provided number of bytes.
+     * Returns NO_BLOCK if the value is too large or the region is full.
+     */
+    synchronized long allocate(int length) {
+        if (length > chunkSize) {
+            return NO_BLOCK;
+        }
+        int sizeClass = sizeClass(length);
+        int from = sizeClass;
+        while (from <= chunkClass && freeBlocks[from].isEmpty()) {
+            from++;
+        }
+        long block;
+        if (from <= chunkClass) {
+            Iterator<Long> it = freeBlocks[from].iterator();
+            block = it.next();
+            it.remove();
+        } else {
+            block = addChunk();
+            if (block == NO_BLOCK) {
+                return NO_BLOCK;
+            }
+            from = chunkClass;
+        }
+        // split, keeping the lower half and freeing the upper
+        while (from > sizeClass) {
+            from--;
+            freeBlocks[from].add(block + blockSize(from));
+        }
+        used += blockSize(sizeClass);
+        return ((long) generation << 48) | block;
+    }
+
+    /*
+     * Allocates the direct memory of a new chunk, and returns its block
+     * without the generation, or NO_BLOCK if the region is full
+     */
+    private long addChunk() {
+        if ((long) (chunkCount + 1) * chunkSize > maxSize) {
+            return NO_BLOCK;
+        }
+        ByteBuffer[] current = chunks;
+        int index = 0;
+        while (index < current.length && current[index] != null) {
+            index++;
+        }
+        if (index == MAX_CHUNKS) {
+            return NO_BLOCK;
+        }
+        ByteBuffer[] updated = Arrays.copyOf(current, Math.max(current.length, index + 1));
+        updated[index] = ByteBuffer.allocateDirect(chunkSize);
+        chunks = updated;
+        chunkCount++;
+        return (long) index << 32;
+    }
+
+    /*
+     * Returns the block to the region, length is the number of bytes it was allocated for.
+     * Blocks from before the region was cleared are ignored.
+     */
+    synchronized void free(long handle, int length) {
+        if ((int) (handle >>> 48) != generation) {
+            return;
+        }
+        long block = handle & 0xFFFFFFFFFFFFL;
+        int sizeClass = sizeClass(length);
+        used -= blockSize(sizeClass);
+        // merge with the buddy for as long as it is free
+        while (sizeClass < chunkClass) {
+            long buddy = block ^ blockSize(sizeClass);
+            if (!freeBlocks[sizeClass].remove(buddy)) {
+                break;
+            }
+            block = Math.min(block, buddy);
+            sizeClass++;
+        }
+        if (sizeClass == chunkClass) {
+            // the whole chunk is free, return its direct memory
+            ByteBuffer[] updated = chunks.clone();
+            updated[(int) (block >>> 32)] = null;
+            chunks = updated;
+            chunkCount--;
+        } else {
+            freeBlocks[sizeClass].add(block);
+        }
+    }
+
+    private ByteBuffer block(long handle) {
+        ByteBuffer buffer = chunks[(int) (handle >>> 32) & (MAX_CHUNKS - 1)].duplicate();
+        buffer.position((int) handle);
+        return buffer;
+    }
+
+    void write(long handle, byte[] data) {
+        block(handle).put(data);
+    }
+
+    byte[] read(long handle, int length) {
+        byte[] data = new byte[length];
+        block(handle).get(data);
+        return data;
+    }
+
+    /*
+     * Compares the content of a block with the provided bytes
+     */
+    boolean contentEquals(long handle, byte[] data) {
+        ByteBuffer buffer = block(handle);
+        for (int i = 0; i < data.length; i++) {
+            if (buffer.get() != data[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Drops all blocks and the direct memory that holds them
+     */
+    synchronized void clear() {
+        chunks = new ByteBuffer[0];
+        chunkCount = 0;
+        for (LinkedHashSet<Long> free : freeBlocks) {
+            free.clear();
+        }
+        generation = (generation + 1) & 0xFFFF;
+        used = 0;
+    }
+
+    /*
+     * Returns the number of bytes in allocated blocks
+     */
+    synchronized long getUsed() {
+        return used;
+    }
+
+    /*
+     * Returns the number of bytes of direct memory that was allocated
+     */
+    synchronized long getReserved() {
+        return (long) chunkCount * chunkSize;
+    }
+
+    /*
+     * Returns the number of free bytes in chunks that also hold allocated blocks,
+     * which are allocated but can not be returned until those blocks are freed
+     */
+    synchronized long getStranded() {
+        return (long) chunkCount * chunkSize - used;
+    }
+
+    long getMaxSize() {
+        return maxSize;
+    }
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.ibm.ws.session.store.memory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Index of in-memory sessions by the time they are due to be checked for timeout,
+ * so the invalidator only looks at the sessions that may have timed out instead of
+ * at every session in the store.
+ *
+ * Sessions are kept in buckets of one second.  The index is not updated when a
+ * session is accessed.  When the bucket of a session comes due, the invalidator
+ * either invalidates the session or files it again by its current access time, so
+ * a session is looked at about once per max inactive interval however often it is used.
+ */
+class SessionExpiryIndex {
+
+    private static final long BUCKET_MILLIS = 1000L;
+
+    private final TreeMap<Long, HashSet<MemorySession>> buckets = new TreeMap<Long, HashSet<MemorySession>>();
+    private int size = 0;
+
+    /*
+     * Files the session to be checked at the provided time, replacing its previous entry
+     */
+    synchronized void schedule(MemorySession s, long dueTime) {
+        long bucket = ((dueTime + BUCKET_MILLIS - 1) / BUCKET_MILLIS) * BUCKET_MILLIS;
+        if (s.expiryBucket == bucket) {
+            return;
+        }
+        removeFromBucket(s);
+        HashSet<MemorySession> sessions = buckets.get(bucket);
+        if (sessions == null) {
+            sessions = new HashSet<MemorySession>();
+            buckets.put(bucket, sessions);
+        }
+        sessions.add(s);
+        s.expiryBucket = bucket;
+        size++;
+    }
+
+    /*
+     * Removes the session, if it is in the index
+     */
+    synchronized void remove(MemorySession s) {
+        removeFromBucket(s);
+    }
+
+    private void removeFromBucket(MemorySession s) {
+        if (s.expiryBucket != 0) {
+            HashSet<MemorySession> sessions = buckets.get(s.expiryBucket);
+            if (sessions != null && sessions.remove(s)) {
+                size--;
+                if (sessions.isEmpty()) {
+                    buckets.remove(s.expiryBucket);
+                }
+            }
+            s.expiryBucket = 0;
+        }
+    }
+
+    /*
+     * Removes and returns the sessions that are due to be checked at the provided time
+     */
+    synchronized List<MemorySession> pollDue(long nowTime) {
+        List<MemorySession> due = new ArrayList<MemorySession>();
+        while (!buckets.isEmpty() && buckets.firstKey().longValue() <= nowTime) {
+            Map.Entry<Long, HashSet<MemorySession>> entry = buckets.pollFirstEntry();
+            for (MemorySession s : entry.getValue()) {
+                s.expiryBucket = 0;
+            }
+            due.addAll(entry.getValue());
+        }
+        size -= due.size();
+        return due;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
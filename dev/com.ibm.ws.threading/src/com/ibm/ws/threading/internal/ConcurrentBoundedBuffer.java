@@ -0,0 +1,538 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.ibm.ws.kernel.service.util.CpuInfo;
+
+/**
+ * Lock-free alternative to {@link BoundedBuffer}, for use as the work queue of the default executor.
+ *
+ * <p>Normal offers are placed onto one of several array-based multi-producer/multi-consumer rings (stripes).
+ * A producer prefers the stripe that corresponds to its own thread, so that concurrent producers rarely
+ * compete for the same tail index. Consumers scan the stripes, starting from their own stripe, and
+ * only fall back to parking after spinning for a short period. Items that implement {@link QueueItem} and
+ * request expedite are placed onto a separate ring which is always polled first.</p>
+ *
+ * <p>The rings are of fixed size. When full, offer fails until the capacity is raised by
+ * {@link #expand(int)} or {@link #expandExpedited(int)}, which allow additional items to spill over into
+ * a non-blocking linked queue. This keeps the same interaction with ThreadPoolExecutor and
+ * ExecutorServiceImpl.ExpandPolicy as BoundedBuffer.</p>
+ *
+ * <p>Ordering is FIFO per stripe. There is no strict FIFO ordering across stripes, nor between a ring
+ * and its spill over queue.</p>
+ *
+ * @param <T>
+ */
+public class ConcurrentBoundedBuffer<T> extends AbstractQueue<T> implements BlockingQueue<T> {
+    /**
+     * Number of times a consumer polls the queue before parking.
+     */
+    private static final int SPINS_TAKE = Integer.getInteger("com.ibm.ws.threading.ConcurrentBoundedBuffer.spins_take",
+                                                             CpuInfo.getAvailableProcessors() - 1);
+
+    /**
+     * Maximum amount of time that a consumer parks before checking the queue again, even if not signaled.
+     */
+    private static final long PARK_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("com.ibm.ws.threading.ConcurrentBoundedBuffer.wait", 1000));
+
+    /**
+     * Marker that replaces an item that was removed from the middle of a ring.
+     */
+    private static final Object REMOVED = new Object();
+
+    /**
+     * Array-based ring with a sequence number per slot, which allows multiple producers and
+     * consumers to claim slots with a single compare-and-set on the tail or head index.
+     */
+    private static final class Ring {
+        private final AtomicReferenceArray<Object> items;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        Ring(int capacity) {
+            items = new AtomicReferenceArray<Object>(capacity);
+            sequences = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+            for (int i = 0; i < capacity; i++)
+                sequences.set(i, i);
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        boolean offer(Object item) {
+            for (long pos = tail.get();;) {
+                int index = (int) pos & mask;
+                long diff = sequences.get(index) - pos;
+                if (diff == 0) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        items.set(index, item);
+                        sequences.lazySet(index, pos + 1);
+                        return true;
+                    }
+                    pos = tail.get();
+                } else if (diff < 0)
+                    return false; // full
+                else
+                    pos = tail.get(); // another producer claimed the slot
+            }
+        }
+
+        Object poll() {
+            for (long pos = head.get();;) {
+                int index = (int) pos & mask;
+                long diff = sequences.get(index) - (pos + 1);
+                if (diff == 0) {
+                    if (head.compareAndSet(pos, pos + 1)) {
+                        Object item = items.getAndSet(index, null);
+                        sequences.lazySet(index, pos + mask + 1);
+                        if (item != REMOVED)
+                            return item;
+                    }
+                    pos = head.get();
+                } else if (diff < 0)
+                    return null; // empty
+                else
+                    pos = head.get(); // another consumer claimed the slot
+            }
+        }
+
+        boolean remove(Object item) {
+            for (long pos = head.get(), end = tail.get(); pos < end; pos++)
+                if (items.compareAndSet((int) pos & mask, item, REMOVED))
+                    return true;
+            return false;
+        }
+
+        int size() {
+            long h = head.get();
+            long s = tail.get() - h;
+            return s < 0 ? 0 : s > mask + 1 ? mask + 1 : (int) s;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> void snapshot(List<T> list) {
+            for (long pos = head.get(), end = tail.get(); pos < end; pos++) {
+                Object item = items.get((int) pos & mask);
+                if (item != null && item != REMOVED)
+                    list.add((T) item);
+            }
+        }
+    }
+
+    /**
+     * Ring for expedited items, which is preferred for polling/removal.
+     */
+    private final Ring expedited;
+
+    /**
+     * Rings for normal items.
+     */
+    private final Ring[] stripes;
+
+    /**
+     * Bit mask for selecting a stripe. The number of stripes is a power of 2.
+     */
+    private final int stripeMask;
+
+    /**
+     * Spill over queues that are used once the rings are full, up to the amount by which the capacity has been expanded.
+     */
+    private final ConcurrentLinkedQueue<T> expeditedOverflow = new ConcurrentLinkedQueue<T>(), overflow = new ConcurrentLinkedQueue<T>();
+
+    /**
+     * Number of items in each of the spill over queues.
+     */
+    private final AtomicInteger expeditedOverflowSize = new AtomicInteger(), overflowSize = new AtomicInteger();
+
+    /**
+     * Number of items that each of the spill over queues is permitted to hold.
+     */
+    private volatile int expeditedOverflowCapacity, overflowCapacity;
+
+    /**
+     * Consumers that are parked waiting for items.
+     */
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+
+    /**
+     * Construct a new buffer.
+     *
+     * @param capacity total capacity for normal items. This is divided among the stripes.
+     * @param expeditedCapacity capacity for expedited items.
+     */
+    public ConcurrentBoundedBuffer(int capacity, int expeditedCapacity) {
+        if (capacity <= 0 || expeditedCapacity <= 0)
+            throw new IllegalArgumentException();
+
+        int numStripes = powerOf2AtLeast(Math.min(CpuInfo.getAvailableProcessors(), 64));
+        int stripeCapacity = powerOf2AtLeast(Math.max(16, capacity / numStripes));
+
+        expedited = new Ring(powerOf2AtLeast(Math.max(2, expeditedCapacity))); // the sequence scheme requires at least 2 slots
+        stripes = new Ring[numStripes];
+        for (int i = 0; i < numStripes; i++)
+            stripes[i] = new Ring(stripeCapacity);
+        stripeMask = numStripes - 1;
+    }
+
+    private static int powerOf2AtLeast(int n) {
+        int p = 1;
+        while (p < n)
+            p <<= 1;
+        return p;
+    }
+
+    /**
+     * Returns the stripe at which the current thread starts offering and polling.
+     */
+    private final int stripeIndex() {
+        return (int) Thread.currentThread().getId() & stripeMask;
+    }
+
+    /**
+     * Allows additional normal items to be queued once the rings are full.
+     *
+     * @param additionalCapacity number of additional items.
+     */
+    public void expand(int additionalCapacity) {
+        overflowCapacity += additionalCapacity; // benign race, the value only ever grows
+    }
+
+    /**
+     * Allows additional expedited items to be queued once the expedited ring is full.
+     *
+     * @param additionalCapacity number of additional items.
+     */
+    public void expandExpedited(int additionalCapacity) {
+        expeditedOverflowCapacity += additionalCapacity; // benign race, the value only ever grows
+    }
+
+    @Override
+    public boolean contains(Object item) {
+        if (item == null)
+            return false;
+        for (T t : this)
+            if (item.equals(t))
+                return true;
+        return false;
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> col) {
+        return drainTo(col, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> col, int maxElements) {
+        if (col == this)
+            throw new IllegalArgumentException();
+        int count = 0;
+        for (T item; count < maxElements && (item = poll()) != null; count++)
+            col.add(item);
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (expedited.size() > 0 || expeditedOverflowSize.get() > 0 || overflowSize.get() > 0)
+            return false;
+        for (Ring ring : stripes)
+            if (ring.size() > 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Iterates over a snapshot of the queue.
+     * Removal via the iterator is delegated to {@link #remove(Object)}.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        final List<T> list = new ArrayList<T>();
+        snapshot(list);
+
+        return new Iterator<T>() {
+            private final Iterator<T> it = list.iterator();
+            private T last;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return last = it.next();
+            }
+
+            @Override
+            public void remove() {
+                if (last == null)
+                    throw new IllegalStateException();
+                ConcurrentBoundedBuffer.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    @Override
+    public boolean offer(T item) {
+        if (item == null)
+            throw new NullPointerException();
+
+        boolean added;
+        if (item instanceof QueueItem && ((QueueItem) item).isExpedited())
+            added = expedited.offer(item) || offerOverflow(expeditedOverflow, expeditedOverflowSize, expeditedOverflowCapacity, item);
+        else {
+            added = false;
+            for (int i = stripeIndex(), end = i + stripeMask + 1; !added && i < end; i++)
+                added = stripes[i & stripeMask].offer(item);
+            added = added || offerOverflow(overflow, overflowSize, overflowCapacity, item);
+        }
+
+        if (added)
+            signal();
+        return added;
+    }
+
+    private static <T> boolean offerOverflow(ConcurrentLinkedQueue<T> q, AtomicInteger size, int capacity, T item) {
+        for (int s = size.get(); s < capacity; s = size.get())
+            if (size.compareAndSet(s, s + 1)) {
+                q.offer(item);
+                return true;
+            }
+        return false;
+    }
+
+    /**
+     * The capacity is not unlimited, so waiting for space is not supported. Offers either succeed or fail immediately.
+     */
+    @Override
+    public boolean offer(T item, long time, TimeUnit timeout) throws InterruptedException {
+        return offer(item);
+    }
+
+    /**
+     * The value returned by this method is only a best effort because it does not block concurrent modifications.
+     */
+    @Override
+    public T peek() {
+        Iterator<T> it = iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * Copies the items in the queue, with expedited items first.
+     *
+     * @param list list to which to add the items.
+     */
+    void snapshot(List<T> list) {
+        expedited.snapshot(list);
+        list.addAll(expeditedOverflow);
+        for (Ring ring : stripes)
+            ring.snapshot(list);
+        list.addAll(overflow);
+    }
+
+    @Override
+    public T poll() {
+        T t = pollExpedited();
+        return t == null ? pollNormal() : t;
+    }
+
+    /**
+     * Removes an expedited item, if there is one.
+     *
+     * @return the item, otherwise null.
+     */
+    @SuppressWarnings("unchecked")
+    final T pollExpedited() {
+        T t = (T) expedited.poll();
+        if (t == null && expeditedOverflowSize.get() > 0 && (t = expeditedOverflow.poll()) != null)
+            expeditedOverflowSize.decrementAndGet();
+        return t;
+    }
+
+    /**
+     * Removes a normal item, if there is one, starting from the stripe of the current thread.
+     *
+     * @return the item, otherwise null.
+     */
+    @SuppressWarnings("unchecked")
+    final T pollNormal() {
+        T t = null;
+        for (int i = stripeIndex(), end = i + stripeMask + 1; t == null && i < end; i++)
+            t = (T) stripes[i & stripeMask].poll();
+        if (t == null && overflowSize.get() > 0 && (t = overflow.poll()) != null)
+            overflowSize.decrementAndGet();
+        return t;
+    }
+
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        T t = poll();
+        return t == null ? await(true, System.nanoTime() + unit.toNanos(timeout)) : t;
+    }
+
+    /**
+     * Spin and then park until an item becomes available.
+     *
+     * @param timed indicates whether or not to stop waiting at the deadline.
+     * @param deadline System.nanoTime value at which to stop waiting.
+     * @return the item. Null if the deadline was reached without obtaining an item.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private T await(boolean timed, long deadline) throws InterruptedException {
+        T t = null;
+        for (int spins = SPINS_TAKE; t == null && spins > 0; spins--)
+            t = poll();
+
+        while (t == null) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            long parkNanos = PARK_SLICE_NANOS;
+            if (timed && (parkNanos = Math.min(parkNanos, deadline - System.nanoTime())) <= 0)
+                return null;
+
+            // Register before the final check, so that an offer that we miss will find us and unpark us
+            Thread current = Thread.currentThread();
+            waiters.add(current);
+            t = poll();
+            if (t == null) {
+                LockSupport.parkNanos(this, parkNanos);
+                t = poll();
+            }
+
+            // If no longer registered, we were signaled. Pass the signal on if other items remain.
+            if (!waiters.remove(current) && t != null && !isEmpty())
+                signal();
+        }
+        return t;
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        if (!offer(item))
+            throw new IllegalStateException("Queue full");
+    }
+
+    @Override
+    public int remainingCapacity() {
+        long capacity = expedited.capacity() + expeditedOverflowCapacity + overflowCapacity;
+        for (Ring ring : stripes)
+            capacity += ring.capacity();
+        long remaining = capacity - size();
+        return remaining > Integer.MAX_VALUE ? Integer.MAX_VALUE : remaining < 0 ? 0 : (int) remaining;
+    }
+
+    /**
+     * Items are located within the rings by identity rather than by equality.
+     */
+    @Override
+    public boolean remove(Object item) {
+        if (item == null)
+            return false;
+        if (expedited.remove(item))
+            return true;
+        if (expeditedOverflow.remove(item)) {
+            expeditedOverflowSize.decrementAndGet();
+            return true;
+        }
+        for (Ring ring : stripes)
+            if (ring.remove(item))
+                return true;
+        if (overflow.remove(item)) {
+            overflowSize.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> items) {
+        boolean modified = false;
+        for (Object item : items)
+            while (remove(item))
+                modified = true;
+        return modified;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> items) {
+        boolean modified = false;
+        for (T t : this)
+            if (!items.contains(t) && remove(t))
+                modified = true;
+        return modified;
+    }
+
+    /**
+     * Unpark a waiting consumer, if there is one.
+     */
+    final void signal() {
+        if (!waiters.isEmpty()) {
+            Thread waiter = waiters.poll();
+            if (waiter != null)
+                LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Items that were removed from the middle of a ring are counted until a consumer skips past them.
+     */
+    @Override
+    public int size() {
+        long s = expedited.size() + expeditedOverflowSize.get() + overflowSize.get();
+        for (Ring ring : stripes)
+            s += ring.size();
+        return s > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) s;
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        T t = poll();
+        return t == null ? await(false, 0) : t;
+    }
+
+    /**
+     * Represents the queue as its total size followed by the size of the expedited ring and of each stripe.
+     *
+     * <p>The string value generated by this method is only meaningful when no modifications are being made for
+     * the duration of the method.</p>
+     *
+     * @return string representing this data structure.
+     */
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder().append(size()).append(' ').append(expedited.size() + expeditedOverflowSize.get()).append(" [");
+        for (int i = 0; i < stripes.length; i++)
+            b.append(i == 0 ? "" : ", ").append(stripes[i].size());
+        return b.append("] ").append(overflowSize.get()).toString();
+    }
+}
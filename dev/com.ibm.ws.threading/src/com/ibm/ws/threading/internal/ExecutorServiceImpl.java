@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2015 IBM Corporation and others.
+ * Copyright (c) 2010, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -29,6 +29,7 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -198,11 +199,22 @@ public final class ExecutorServiceImpl implements WSExecutorService, ThreadQuies
         // If coreThreads is greater than maxThreads, automatically lower it and proceed
         coreThreads = Math.min(coreThreads, maxThreads);
 
-        BlockingQueue<Runnable> workQueue = new BoundedBuffer<Runnable>(java.lang.Runnable.class, 1000, 1000);
+        Object queueType = componentConfig.get("queueType");
+        BlockingQueue<Runnable> workQueue;
+        if ("WORK_STEALING".equals(queueType))
+            workQueue = new WorkStealingQueue<Runnable>(1000, 1000, (String) componentConfig.get("stealPolicy"));
+        else if ("LOCK_FREE".equals(queueType))
+            workQueue = new ConcurrentBoundedBuffer<Runnable>(1000, 1000);
+        else
+            workQueue = new BoundedBuffer<Runnable>(java.lang.Runnable.class, 1000, 1000);
 
         RejectedExecutionHandler rejectedExecutionHandler = new ExpandPolicy(workQueue, this);
 
-        threadPool = new ThreadPoolExecutor(coreThreads, maxThreads, keepAliveMillis, TimeUnit.MILLISECONDS, workQueue, threadFactory != null ? threadFactory : new ThreadFactoryImpl(poolName, threadGroupName), rejectedExecutionHandler);
+        ThreadFactory factory = threadFactory != null ? threadFactory : new ThreadFactoryImpl(poolName, threadGroupName);
+        if ("PREDICTIVE".equals(componentConfig.get("controllerType")))
+            threadPool = new InstrumentedThreadPoolExecutor(coreThreads, maxThreads, keepAliveMillis, TimeUnit.MILLISECONDS, workQueue, factory, rejectedExecutionHandler);
+        else
+            threadPool = new ThreadPoolExecutor(coreThreads, maxThreads, keepAliveMillis, TimeUnit.MILLISECONDS, workQueue, factory, rejectedExecutionHandler);
 
         threadPoolController = new ThreadPoolController(this, threadPool);
 
@@ -408,14 +420,16 @@ public final class ExecutorServiceImpl implements WSExecutorService, ThreadQuies
      */
     public static class ExpandPolicy implements RejectedExecutionHandler {
 
-        public BoundedBuffer<Runnable> workQueue;
+        public BlockingQueue<Runnable> workQueue;
         public WSExecutorService exService;
 
         /**
          * Creates an {@code ExpandPolicy}.
+         *
+         * @param workQueue2 either a BoundedBuffer or a ConcurrentBoundedBuffer (including WorkStealingQueue).
          */
         public ExpandPolicy(BlockingQueue<Runnable> workQueue2, WSExecutorService exService) {
-            this.workQueue = (BoundedBuffer<Runnable>) workQueue2;
+            this.workQueue = workQueue2;
             this.exService = exService;
         }
 
@@ -433,13 +447,108 @@ public final class ExecutorServiceImpl implements WSExecutorService, ThreadQuies
                                                      " rejected from " +
                                                      e.toString());
             } else {
-                if (r instanceof QueueItem && ((QueueItem) r).isExpedited())
-                    workQueue.expandExpedited(1000);
+                boolean expedited = r instanceof QueueItem && ((QueueItem) r).isExpedited();
+                if (workQueue instanceof ConcurrentBoundedBuffer) {
+                    ConcurrentBoundedBuffer<Runnable> buffer = (ConcurrentBoundedBuffer<Runnable>) workQueue;
+                    if (expedited)
+                        buffer.expandExpedited(1000);
+                    else
+                        buffer.expand(1000);
+                } else {
+                    BoundedBuffer<Runnable> buffer = (BoundedBuffer<Runnable>) workQueue;
+                    if (expedited)
+                        buffer.expandExpedited(1000);
+                    else
+                        buffer.expand(1000);
+                }
+
+                //Resubmit rejected task, which the instrumented pool already counted when it was first submitted
+                if (e instanceof InstrumentedThreadPoolExecutor)
+                    ((InstrumentedThreadPoolExecutor) e).resubmit(exService, r);
                 else
-                    workQueue.expand(1000);
+                    exService.execute(r);
+            }
+        }
+    }
+
+    /**
+     * Thread pool executor that keeps count of submitted and completed tasks and of the time spent running them,
+     * from which the predictive thread pool controller computes the pool size. The counters are cumulative
+     * and are updated without locking.
+     */
+    static class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+        /**
+         * Number of tasks submitted.
+         */
+        final AtomicLong arrivals = new AtomicLong();
+
+        /**
+         * Number of tasks that have finished running, successfully or otherwise.
+         */
+        final AtomicLong completions = new AtomicLong();
+
+        /**
+         * Total time spent running tasks, in nanoseconds.
+         */
+        final AtomicLong busyNanos = new AtomicLong();
 
-                //Resubmit rejected task
+        /**
+         * Time at which the task that is running on the current thread started, in nanoseconds.
+         */
+        private final ThreadLocal<long[]> startTime = new ThreadLocal<long[]>() {
+            @Override
+            protected long[] initialValue() {
+                return new long[1];
+            }
+        };
+
+        /**
+         * Indicates that the current thread is resubmitting a task that was rejected, so that it is not counted again.
+         */
+        private final ThreadLocal<boolean[]> resubmitting = new ThreadLocal<boolean[]>() {
+            @Override
+            protected boolean[] initialValue() {
+                return new boolean[1];
+            }
+        };
+
+        InstrumentedThreadPoolExecutor(int coreThreads, int maxThreads, long keepAlive, TimeUnit unit, BlockingQueue<Runnable> workQueue,
+                                       ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+            super(coreThreads, maxThreads, keepAlive, unit, workQueue, threadFactory, handler);
+        }
+
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            busyNanos.addAndGet(System.nanoTime() - startTime.get()[0]);
+            completions.incrementAndGet();
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            startTime.get()[0] = System.nanoTime();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (!resubmitting.get()[0])
+                arrivals.incrementAndGet();
+            super.execute(command);
+        }
+
+        /**
+         * Resubmits a task that was rejected without counting it as another arrival.
+         *
+         * @param exService the executor through which the task was originally submitted.
+         * @param r the task.
+         */
+        void resubmit(WSExecutorService exService, Runnable r) {
+            boolean[] flag = resubmitting.get();
+            boolean previous = flag[0];
+            flag[0] = true;
+            try {
                 exService.execute(r);
+            } finally {
+                flag[0] = previous;
             }
         }
     }
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import com.ibm.websphere.ras.annotation.Trivial;
+
+/**
+ * Record of a pool size decision that was made by the thread pool controller during one interval.
+ * Decisions of the throughput controller and the predictive controller are recorded in the same form
+ * so that the two can be compared. Values that a controller does not compute are recorded as NaN.
+ */
+@Trivial
+class PoolSizeDecision {
+    /**
+     * Time at which the decision was made, in milliseconds.
+     */
+    final long time;
+
+    /**
+     * Name of the controller that made the decision.
+     */
+    final String controller;
+
+    /**
+     * Number of threads in the pool at the start of the interval.
+     */
+    final int poolSize;
+
+    /**
+     * Number of tasks that were waiting in the queue at the end of the interval.
+     */
+    final int queueDepth;
+
+    /**
+     * Tasks completed per second during the interval.
+     */
+    final double throughput;
+
+    /**
+     * Tasks submitted per second during the interval.
+     */
+    final double arrivalRate;
+
+    /**
+     * Average time that a task spent running, in milliseconds.
+     */
+    final double serviceTime;
+
+    /**
+     * Estimated average time that a task spent waiting in the queue, in milliseconds.
+     */
+    final double waitTime;
+
+    /**
+     * Pool size that was chosen.
+     */
+    final int targetPoolSize;
+
+    PoolSizeDecision(long time, String controller, int poolSize, int queueDepth, double throughput,
+                     double arrivalRate, double serviceTime, double waitTime, int targetPoolSize) {
+        this.time = time;
+        this.controller = controller;
+        this.poolSize = poolSize;
+        this.queueDepth = queueDepth;
+        this.throughput = throughput;
+        this.arrivalRate = arrivalRate;
+        this.serviceTime = serviceTime;
+        this.waitTime = waitTime;
+        this.targetPoolSize = targetPoolSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d %s poolSize=%d queueDepth=%d throughput=%.2f arrivalRate=%.2f serviceTime=%.3fms waitTime=%.3fms target=%d",
+                             Long.valueOf(time), controller, Integer.valueOf(poolSize), Integer.valueOf(queueDepth), Double.valueOf(throughput),
+                             Double.valueOf(arrivalRate), Double.valueOf(serviceTime), Double.valueOf(waitTime), Integer.valueOf(targetPoolSize));
+    }
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+/**
+ * Computes a target pool size from the arrival rate, service time and queue depth that are observed
+ * over an interval, rather than by searching for the pool size with the best throughput.
+ *
+ * <p>By Little's law, the number of threads needed to keep up with the offered load is the arrival
+ * rate multiplied by the average service time. Work that is already waiting in the queue adds enough
+ * threads to drain it over the next interval. Growth is applied immediately so that the pool catches up
+ * with a load step within an interval or two, whereas shrinking follows a moving average so that a
+ * brief lull does not discard threads that will be needed again.</p>
+ *
+ * <p>Service time includes time that tasks spend blocked, which is what makes additional threads
+ * useful. When the CPU is already saturated, the pool is not grown, because the service time then
+ * reflects contention for the CPU rather than blocking.</p>
+ */
+class PredictivePoolSizer {
+    /**
+     * Factor by which the offered load is increased so that the pool runs below saturation.
+     */
+    static final double HEADROOM = 1.2;
+
+    /**
+     * Weight of the most recent interval when the target pool size decreases.
+     */
+    static final double SHRINK_WEIGHT = 0.3;
+
+    /**
+     * Weight of the most recent interval in the average service time.
+     */
+    static final double SERVICE_TIME_WEIGHT = 0.5;
+
+    /**
+     * The lower bound on the number of threads.
+     */
+    private final int coreThreads;
+
+    /**
+     * The limit on the number of threads.
+     */
+    private final int maxThreads;
+
+    /**
+     * Cumulative values from the previous interval.
+     */
+    private long previousArrivals, previousCompletions, previousBusyNanos;
+
+    /**
+     * Moving average of service time, in nanoseconds. Retained across intervals in which nothing completes.
+     */
+    private double serviceTimeNanos = 0;
+
+    /**
+     * Smoothed (unrounded) target pool size.
+     */
+    private double smoothedTarget;
+
+    /**
+     * Constructor.
+     *
+     * @param coreThreads the lower bound on the number of threads.
+     * @param maxThreads the limit on the number of threads.
+     */
+    PredictivePoolSizer(int coreThreads, int maxThreads) {
+        this.coreThreads = coreThreads;
+        this.maxThreads = maxThreads;
+        this.smoothedTarget = coreThreads;
+    }
+
+    /**
+     * Computes the target pool size for the interval that just ended.
+     *
+     * @param time current time in milliseconds.
+     * @param intervalMillis length of the interval in milliseconds.
+     * @param arrivals cumulative number of tasks submitted.
+     * @param completions cumulative number of tasks completed.
+     * @param busyNanos cumulative time spent running tasks, in nanoseconds.
+     * @param queueDepth number of tasks waiting in the queue.
+     * @param poolSize current number of threads.
+     * @param cpuHigh indicates whether CPU utilization is above the level at which threads should not be added.
+     * @return record of the decision, including the target pool size.
+     */
+    PoolSizeDecision evaluate(long time, long intervalMillis, long arrivals, long completions, long busyNanos,
+                              int queueDepth, int poolSize, boolean cpuHigh) {
+        double seconds = Math.max(intervalMillis, 1) / 1000.0;
+        long deltaArrivals = arrivals - previousArrivals;
+        long deltaCompletions = completions - previousCompletions;
+        long deltaBusyNanos = busyNanos - previousBusyNanos;
+        previousArrivals = arrivals;
+        previousCompletions = completions;
+        previousBusyNanos = busyNanos;
+
+        if (deltaCompletions > 0) {
+            double latest = (double) deltaBusyNanos / deltaCompletions;
+            serviceTimeNanos = serviceTimeNanos == 0 ? latest : serviceTimeNanos + SERVICE_TIME_WEIGHT * (latest - serviceTimeNanos);
+        }
+        double serviceSeconds = serviceTimeNanos / 1000000000.0;
+
+        double arrivalRate = deltaArrivals / seconds;
+        double throughput = deltaCompletions / seconds;
+
+        // Little's law applied to the queue: average wait = queue length / arrival rate
+        double waitSeconds = arrivalRate > 0 ? queueDepth / arrivalRate : queueDepth > 0 ? seconds : 0;
+
+        double offeredLoad = arrivalRate * serviceSeconds * HEADROOM;
+        double backlog = queueDepth * serviceSeconds / seconds;
+        double raw = offeredLoad + backlog;
+
+        if (cpuHigh && raw > poolSize)
+            raw = poolSize;
+
+        if (raw >= smoothedTarget)
+            smoothedTarget = raw;
+        else
+            smoothedTarget += SHRINK_WEIGHT * (raw - smoothedTarget);
+
+        smoothedTarget = Math.min(Math.max(smoothedTarget, coreThreads), maxThreads);
+        int target = (int) Math.min(Math.ceil(smoothedTarget), maxThreads);
+
+        return new PoolSizeDecision(time, "PREDICTIVE", poolSize, queueDepth, throughput, arrivalRate,
+                                    serviceSeconds * 1000.0, waitSeconds * 1000.0, target);
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2016 IBM Corporation and others.
+ * Copyright (c) 2012, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,8 @@ package com.ibm.ws.threading.internal;
 import java.io.PrintWriter;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.TreeMap;
@@ -23,6 +25,7 @@ import com.ibm.websphere.ras.TraceComponent;
 import com.ibm.websphere.ras.annotation.Trivial;
 import com.ibm.ws.ffdc.FFDCFilter;
 import com.ibm.ws.kernel.service.util.CpuInfo;
+import com.ibm.ws.threading.internal.ExecutorServiceImpl.InstrumentedThreadPoolExecutor;
 
 // @formatter:off
 /**
@@ -566,6 +569,28 @@ public final class ThreadPoolController {
      */
     private boolean hangMaxThreadsMessageEmitted = false;
 
+    /**
+     * The number of pool size decisions that are retained for monitoring.
+     */
+    private final static int DECISION_HISTORY_SIZE = 32;
+
+    /**
+     * The most recent pool size decisions, in circular order.
+     */
+    private final PoolSizeDecision[] decisionHistory = new PoolSizeDecision[DECISION_HISTORY_SIZE];
+
+    /**
+     * The number of pool size decisions that have been recorded.
+     */
+    private int decisionCount = 0;
+
+    /**
+     * Computes the pool size from queue depth, arrival rate and service time
+     * instead of from the throughput distribution. Null unless the predictive
+     * controller is configured, in which case the thread pool is instrumented.
+     */
+    private final PredictivePoolSizer predictivePoolSizer;
+
     /**
      * Constructor
      *
@@ -578,6 +603,7 @@ public final class ThreadPoolController {
         this.coreThreads = pool.getCorePoolSize();
         this.maxThreads = pool.getMaximumPoolSize();
         this.threadRange = this.maxThreads - this.coreThreads;
+        this.predictivePoolSizer = pool instanceof InstrumentedThreadPoolExecutor ? new PredictivePoolSizer(coreThreads, maxThreads) : null;
         setPoolSize(coreThreads);
         targetPoolSize = coreThreads;
         resetStatistics(true);
@@ -1235,6 +1261,11 @@ public final class ThreadPoolController {
                 return "action take to resolve hang";
             }
 
+            if (predictivePoolSizer != null) {
+                throughput = evaluatePredictive(currentTime, deltaTime, queueDepth, poolSize);
+                return "";
+            }
+
             if (checkTargetPoolSize(poolSize)) {
                 return "poolSize != targetPoolSize";
             }
@@ -1290,6 +1321,7 @@ public final class ThreadPoolController {
             // Change the pool size and save the result, will check it at start of next control cycle
             targetPoolSize = adjustPoolSize(poolSize, poolAdjustment);
 
+            recordDecision(new PoolSizeDecision(currentTime, "THROUGHPUT", poolSize, queueDepth, throughput, Double.NaN, Double.NaN, Double.NaN, targetPoolSize));
         } finally {
             lastTimerPop = currentTime;
             previousCompleted = completedWork;
@@ -1298,6 +1330,57 @@ public final class ThreadPoolController {
         return "";
     }
 
+    /**
+     * Sets the pool size to the target that is computed by the predictive pool sizer.
+     *
+     * @param currentTime the current time in milliseconds
+     * @param deltaTime the length of the interval in milliseconds
+     * @param queueDepth the number of tasks in the queue
+     * @param poolSize the current pool size
+     *
+     * @return the throughput (tasks completed per second) over the interval
+     */
+    private double evaluatePredictive(long currentTime, long deltaTime, int queueDepth, int poolSize) {
+        InstrumentedThreadPoolExecutor pool = (InstrumentedThreadPoolExecutor) threadPool;
+
+        processCpuUtil = CpuInfo.getJavaCpuUsage();
+        systemCpuUtil = CpuInfo.getSystemCpuUsage();
+        cpuUtil = Math.max(systemCpuUtil, processCpuUtil);
+
+        PoolSizeDecision decision = predictivePoolSizer.evaluate(currentTime, deltaTime,
+                                                                 pool.arrivals.get(), pool.completions.get(), pool.busyNanos.get(),
+                                                                 queueDepth, poolSize, cpuUtil > highCpu);
+
+        if (tc.isEventEnabled()) {
+            Tr.event(tc, "Interval data", decision);
+        }
+
+        targetPoolSize = adjustPoolSize(poolSize, decision.targetPoolSize - poolSize);
+        recordDecision(decision);
+        return decision.throughput;
+    }
+
+    /**
+     * Retains a pool size decision for monitoring, replacing the oldest if the history is full.
+     */
+    private void recordDecision(PoolSizeDecision decision) {
+        decisionHistory[decisionCount++ % DECISION_HISTORY_SIZE] = decision;
+    }
+
+    /**
+     * Returns the most recent pool size decisions, oldest first, so that the decisions
+     * of the throughput and predictive controllers can be compared.
+     *
+     * @return list of decisions.
+     */
+    synchronized List<PoolSizeDecision> getDecisionHistory() {
+        int size = Math.min(decisionCount, DECISION_HISTORY_SIZE);
+        List<PoolSizeDecision> list = new ArrayList<PoolSizeDecision>(size);
+        for (int i = decisionCount - size; i < decisionCount; i++)
+            list.add(decisionHistory[i % DECISION_HISTORY_SIZE]);
+        return list;
+    }
+
     /**
      * Utility method used to format interval level statistic trace points.
      */
@@ -1812,6 +1895,10 @@ public final class ThreadPoolController {
         out.println(INDENT + INDENT + "maxPoolSize = " + threadPool.getMaximumPoolSize());
         out.println(INDENT + INDENT + "largestPoolSize = " + threadPool.getLargestPoolSize());
         out.println(INDENT + INDENT + "completedTaskCount = " + threadPool.getCompletedTaskCount());
+        out.println(INDENT + "controllerType = " + (predictivePoolSizer == null ? "THROUGHPUT" : "PREDICTIVE"));
+        out.println(INDENT + "decisionHistory");
+        for (PoolSizeDecision decision : getDecisionHistory())
+            out.println(INDENT + INDENT + decision);
 
     }
 }
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Work queue for the default executor that gives each thread its own local work pile in addition to
+ * the global queue, and allows threads to steal work from the piles of other threads.
+ *
+ * <p>Work that is submitted by a thread of the executor is pushed onto that thread's pile and is
+ * subsequently taken by the same thread, most recent first, which tends to keep the work on the same
+ * core as the data it was created from. Threads of the executor that run out of local work take from
+ * the global queue and then steal, oldest first, from the piles of other threads.
+ * The steal policy determines which threads own a pile:</p>
+ * <ul>
+ * <li>LOCAL - only threads of the executor. Work submitted by other threads goes onto the global queue.</li>
+ * <li>STRICT - all threads that submit work, including threads that are not associated with the executor.</li>
+ * <li>NEVER - no threads. All work goes onto the global queue.</li>
+ * </ul>
+ *
+ * <p>Expedited work always goes onto the global queue and is taken ahead of everything else.
+ * The queue continues to be consumed by a ThreadPoolExecutor, so that the ThreadPoolController
+ * remains in control of the pool size. Concurrency constraints of policy executors are enforced
+ * by PolicyExecutorImpl before tasks reach this queue and are unaffected.</p>
+ *
+ * @param <T>
+ */
+public class WorkStealingQueue<T> extends ConcurrentBoundedBuffer<T> {
+    /**
+     * Work pile that is owned by a single thread.
+     */
+    private static final class Pile<T> extends ConcurrentLinkedDeque<T> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Thread owner = Thread.currentThread();
+    }
+
+    /**
+     * The pile of the current thread, if it has one.
+     */
+    private final ThreadLocal<Pile<T>> localPile = new ThreadLocal<Pile<T>>();
+
+    /**
+     * All piles, available for stealing.
+     */
+    private final CopyOnWriteArrayList<Pile<T>> piles = new CopyOnWriteArrayList<Pile<T>>();
+
+    /**
+     * Indicates whether threads that are not associated with the executor own piles.
+     */
+    private final boolean producersOwnPiles;
+
+    /**
+     * Indicates whether threads have piles at all.
+     */
+    private final boolean stealingEnabled;
+
+    /**
+     * Construct a new queue.
+     *
+     * @param capacity capacity of the global queue for normal items.
+     * @param expeditedCapacity capacity for expedited items.
+     * @param stealPolicy STRICT, LOCAL, or NEVER.
+     */
+    public WorkStealingQueue(int capacity, int expeditedCapacity, String stealPolicy) {
+        super(capacity, expeditedCapacity);
+        producersOwnPiles = "STRICT".equals(stealPolicy);
+        stealingEnabled = producersOwnPiles || !"NEVER".equals(stealPolicy);
+    }
+
+    /**
+     * Returns the pile of the current thread, creating it if requested.
+     */
+    private Pile<T> getPile(boolean create) {
+        Pile<T> pile = localPile.get();
+        if (pile == null && create && stealingEnabled) {
+            pile = new Pile<T>();
+            localPile.set(pile);
+            piles.add(pile);
+        }
+        return pile;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (!super.isEmpty())
+            return false;
+        for (Pile<T> pile : piles)
+            if (!pile.isEmpty())
+                return false;
+        return true;
+    }
+
+    /**
+     * Work that is submitted by a thread with a pile goes onto that pile, unless expedited.
+     * The capacity of piles is unlimited.
+     */
+    @Override
+    public boolean offer(T item) {
+        if (item == null)
+            throw new NullPointerException();
+
+        Pile<T> pile;
+        if ((item instanceof QueueItem && ((QueueItem) item).isExpedited())
+            || (pile = getPile(producersOwnPiles)) == null)
+            return super.offer(item);
+
+        pile.push(item);
+        signal();
+        return true;
+    }
+
+    /**
+     * Polling registers the current thread as a thread of the executor, which owns a pile.
+     * Work is taken in the order: expedited, own pile, global queue, piles of other threads.
+     */
+    @Override
+    public T poll() {
+        T t = pollExpedited();
+        if (t == null) {
+            Pile<T> pile = getPile(true);
+            if (pile != null)
+                t = pile.pollFirst();
+            if (t == null && (t = pollNormal()) == null && stealingEnabled)
+                t = steal(pile);
+        }
+        return t;
+    }
+
+    @Override
+    public boolean remove(Object item) {
+        if (super.remove(item))
+            return true;
+        for (Pile<T> pile : piles)
+            if (pile.removeFirstOccurrence(item))
+                return true;
+        return false;
+    }
+
+    @Override
+    public int size() {
+        long s = super.size();
+        for (Pile<T> pile : piles)
+            s += pile.size();
+        return s > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) s;
+    }
+
+    @Override
+    void snapshot(List<T> list) {
+        super.snapshot(list);
+        for (Pile<T> pile : piles)
+            list.addAll(pile);
+    }
+
+    /**
+     * Take the oldest item from the pile of another thread. Piles of threads that have ended are
+     * discarded once empty.
+     *
+     * @param own pile of the current thread, which is skipped. Null if none.
+     * @return the item, otherwise null.
+     */
+    private T steal(Pile<T> own) {
+        Object[] all = piles.toArray();
+        int n = all.length;
+        if (n > 0)
+            for (int i = (int) Thread.currentThread().getId() % n, end = i + n; i < end; i++) {
+                @SuppressWarnings("unchecked")
+                Pile<T> pile = (Pile<T>) all[i % n];
+                if (pile != own) {
+                    T t = pile.pollLast();
+                    if (t != null)
+                        return t;
+                    if (!pile.owner.isAlive())
+                        piles.remove(pile);
+                }
+            }
+        return null;
+    }
+
+    /**
+     * Represents the queue as the representation of the global queue followed by the size of each pile.
+     *
+     * <p>The string value generated by this method is only meaningful when no modifications are being made for
+     * the duration of the method.</p>
+     *
+     * @return string representing this data structure.
+     */
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder(super.toString()).append(" piles [");
+        boolean first = true;
+        for (Pile<T> pile : piles) {
+            b.append(first ? "" : ", ").append(pile.size());
+            first = false;
+        }
+        return b.append(']').toString();
+    }
+}
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConcurrentBoundedBufferTest {
+    private static class Item implements QueueItem {
+        private final boolean expedite;
+
+        Item(boolean expedite) {
+            this.expedite = expedite;
+        }
+
+        @Override
+        public boolean isExpedited() {
+            return expedite;
+        }
+    }
+
+    /**
+     * Expedited items are polled before normal items, regardless of the order in which they were offered.
+     */
+    @Test
+    public void testExpeditedFirst() throws Exception {
+        ConcurrentBoundedBuffer<Item> q = new ConcurrentBoundedBuffer<Item>(100, 100);
+        Item n1 = new Item(false), n2 = new Item(false), e1 = new Item(true), e2 = new Item(true);
+        assertTrue(q.offer(n1));
+        assertTrue(q.offer(e1));
+        assertTrue(q.offer(n2));
+        assertTrue(q.offer(e2));
+        assertEquals(4, q.size());
+
+        assertSame(e1, q.poll());
+        assertSame(e2, q.poll());
+        assertSame(n1, q.poll());
+        assertSame(n2, q.poll());
+        assertNull(q.poll());
+        assertTrue(q.isEmpty());
+    }
+
+    /**
+     * Offers fail once the rings are full, and succeed again after the capacity is expanded.
+     */
+    @Test
+    public void testExpand() throws Exception {
+        ConcurrentBoundedBuffer<Item> q = new ConcurrentBoundedBuffer<Item>(1, 1);
+        int added = 0;
+        while (q.offer(new Item(false)))
+            added++;
+        int expeditedAdded = 0;
+        while (q.offer(new Item(true)))
+            expeditedAdded++;
+        assertEquals(added + expeditedAdded, q.size());
+        assertEquals(0, q.remainingCapacity());
+
+        q.expand(2);
+        assertTrue(q.offer(new Item(false)));
+        assertTrue(q.offer(new Item(false)));
+        assertFalse(q.offer(new Item(false)));
+
+        assertFalse(q.offer(new Item(true)));
+        q.expandExpedited(1);
+        assertTrue(q.offer(new Item(true)));
+        expeditedAdded++;
+
+        int total = added + expeditedAdded + 2;
+        assertEquals(total, q.size());
+        List<Item> list = new ArrayList<Item>();
+        assertEquals(total, q.drainTo(list));
+        for (int i = 0; i < expeditedAdded; i++)
+            assertTrue(list.get(i).isExpedited());
+        assertFalse(list.get(expeditedAdded).isExpedited());
+        assertTrue(q.isEmpty());
+    }
+
+    /**
+     * An item removed from the middle of a ring is skipped by poll and by the iterator.
+     */
+    @Test
+    public void testRemove() throws Exception {
+        ConcurrentBoundedBuffer<Item> q = new ConcurrentBoundedBuffer<Item>(100, 100);
+        Item i1 = new Item(false), i2 = new Item(false), i3 = new Item(false);
+        q.offer(i1);
+        q.offer(i2);
+        q.offer(i3);
+
+        assertTrue(q.remove(i2));
+        assertFalse(q.remove(i2));
+        assertFalse(q.contains(i2));
+        assertTrue(q.contains(i3));
+
+        assertSame(i1, q.poll());
+        assertSame(i3, q.poll());
+        assertNull(q.poll());
+    }
+
+    /**
+     * A consumer that is blocked in take is awakened by an offer.
+     */
+    @Test(timeout = 10000)
+    public void testTakeAwakenedByOffer() throws Exception {
+        final ConcurrentBoundedBuffer<Item> q = new ConcurrentBoundedBuffer<Item>(100, 100);
+        final CountDownLatch taken = new CountDownLatch(1);
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    q.take();
+                    taken.countDown();
+                } catch (InterruptedException x) {
+                }
+            }
+        };
+        consumer.start();
+
+        assertNull(q.poll(100, TimeUnit.MILLISECONDS));
+        assertTrue(q.offer(new Item(false)));
+        assertTrue(taken.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Many producers and consumers operate concurrently without losing or duplicating items.
+     */
+    @Test(timeout = 60000)
+    public void testConcurrentProducersAndConsumers() throws Exception {
+        final int numProducers = 8, numConsumers = 8, itemsPerProducer = 20000;
+        final ConcurrentBoundedBuffer<Item> q = new ConcurrentBoundedBuffer<Item>(64, 16);
+        q.expand(Integer.MAX_VALUE / 2);
+        q.expandExpedited(Integer.MAX_VALUE / 2);
+        final ConcurrentHashMap<Item, Boolean> consumed = new ConcurrentHashMap<Item, Boolean>();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(numProducers * itemsPerProducer);
+
+        for (int c = 0; c < numConsumers; c++) {
+            Thread consumer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (;;) {
+                            Item item = q.poll(1, TimeUnit.SECONDS);
+                            if (item != null) {
+                                if (consumed.put(item, Boolean.TRUE) != null)
+                                    duplicates.incrementAndGet();
+                                done.countDown();
+                            } else if (done.getCount() == 0)
+                                return;
+                        }
+                    } catch (InterruptedException x) {
+                    }
+                }
+            };
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+
+        for (int p = 0; p < numProducers; p++) {
+            final boolean expedite = p % 4 == 0;
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < itemsPerProducer; i++)
+                        q.add(new Item(expedite));
+                }
+            }.start();
+        }
+
+        assertTrue(done.await(50, TimeUnit.SECONDS));
+        assertEquals(0, duplicates.get());
+        assertEquals(numProducers * itemsPerProducer, consumed.size());
+        assertTrue(q.isEmpty());
+    }
+}
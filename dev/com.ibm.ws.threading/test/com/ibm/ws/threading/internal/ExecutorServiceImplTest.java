@@ -12,10 +12,12 @@ package com.ibm.ws.threading.internal;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -94,6 +96,128 @@ public class ExecutorServiceImplTest {
         }
     }
 
+    /**
+     * Run the same pattern of nested work as testExecutorHang against an executor that is configured
+     * to use the lock-free work queue.
+     */
+    @Test(timeout = 60000)
+    public void testLockFreeQueue() throws Exception {
+        ExecutorServiceImpl executorService = new ExecutorServiceImpl();
+        Map<String, Object> componentConfig = new HashMap<String, Object>(7);
+        componentConfig.put("name", "testExecutor");
+        componentConfig.put("rejectedWorkPolicy", "CALLER_RUNS");
+        componentConfig.put("stealPolicy", "STRICT");
+        componentConfig.put("keepAlive", 10);
+        componentConfig.put("coreThreads", 2);
+        componentConfig.put("maxThreads", 1000);
+        componentConfig.put("queueType", "LOCK_FREE");
+        executorService.activate(componentConfig);
+
+        Assert.assertTrue(executorService.getThreadPool().getQueue() instanceof ConcurrentBoundedBuffer);
+
+        // more tasks than the initial capacity of the queue, so that the ExpandPolicy is exercised
+        for (int i = 0; i < 5000; i++) {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {}
+            });
+        }
+
+        ArrayList<Future<Boolean>> alf = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < 20; i++) {
+            alf.add(executorService.submit(new ReturnsBooleanCallable(executorService)));
+        }
+        for (Future<Boolean> f : alf) {
+            Assert.assertTrue(f.get());
+        }
+    }
+
+    /**
+     * Run work on an executor that is configured for the predictive controller, and verify that the
+     * executor counts the work and that the controller records its decision.
+     */
+    @Test(timeout = 60000)
+    public void testPredictiveController() throws Exception {
+        ExecutorServiceImpl executorService = new ExecutorServiceImpl();
+        Map<String, Object> componentConfig = new HashMap<String, Object>(7);
+        componentConfig.put("name", "testExecutor");
+        componentConfig.put("rejectedWorkPolicy", "CALLER_RUNS");
+        componentConfig.put("stealPolicy", "LOCAL");
+        componentConfig.put("keepAlive", 10);
+        componentConfig.put("coreThreads", 2);
+        componentConfig.put("maxThreads", 100);
+        componentConfig.put("controllerType", "PREDICTIVE");
+        executorService.activate(componentConfig);
+
+        Assert.assertTrue(executorService.getThreadPool() instanceof ExecutorServiceImpl.InstrumentedThreadPoolExecutor);
+        ExecutorServiceImpl.InstrumentedThreadPoolExecutor pool = (ExecutorServiceImpl.InstrumentedThreadPoolExecutor) executorService.getThreadPool();
+
+        ArrayList<Future<Boolean>> alf = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < 20; i++) {
+            alf.add(executorService.submit(new ReturnsBooleanCallable(executorService)));
+        }
+        for (Future<Boolean> f : alf) {
+            Assert.assertTrue(f.get());
+        }
+
+        // afterExecute runs after the future completes
+        while (pool.completions.get() < 20)
+            Thread.sleep(10);
+        Assert.assertTrue(pool.arrivals.get() >= 20);
+        Assert.assertTrue(pool.busyNanos.get() > 0);
+
+        // a task that is resubmitted after being rejected is only counted once
+        long arrivals = pool.arrivals.get();
+        pool.resubmit(executorService, new FutureTask<Boolean>(new ReturnsTrueCallable()));
+        Assert.assertEquals(arrivals, pool.arrivals.get());
+        executorService.execute(new FutureTask<Boolean>(new ReturnsTrueCallable()));
+        Assert.assertEquals(arrivals + 1, pool.arrivals.get());
+
+        // the controller skips intervals in which it only checks for idle or hung pools
+        List<PoolSizeDecision> history = executorService.threadPoolController.getDecisionHistory();
+        for (int i = 0; i < 50 && history.isEmpty(); i++) {
+            executorService.submit(new ReturnsTrueCallable()).get();
+            executorService.threadPoolController.evaluateInterval();
+            history = executorService.threadPoolController.getDecisionHistory();
+        }
+        Assert.assertFalse(history.isEmpty());
+        PoolSizeDecision decision = history.get(history.size() - 1);
+        Assert.assertEquals("PREDICTIVE", decision.controller);
+        Assert.assertTrue(decision.targetPoolSize >= 2);
+        Assert.assertTrue(decision.targetPoolSize <= 100);
+
+        executorService.deactivate(0);
+    }
+
+    /**
+     * Run nested work, where each task submits and waits on a child task, against an executor that is
+     * configured for work stealing. Child tasks are pushed onto the pile of the blocked parent thread
+     * and must be stolen by other threads.
+     */
+    @Test(timeout = 60000)
+    public void testWorkStealingQueue() throws Exception {
+        ExecutorServiceImpl executorService = new ExecutorServiceImpl();
+        Map<String, Object> componentConfig = new HashMap<String, Object>(7);
+        componentConfig.put("name", "testExecutor");
+        componentConfig.put("rejectedWorkPolicy", "CALLER_RUNS");
+        componentConfig.put("stealPolicy", "LOCAL");
+        componentConfig.put("keepAlive", 10);
+        componentConfig.put("coreThreads", 2);
+        componentConfig.put("maxThreads", 1000);
+        componentConfig.put("queueType", "WORK_STEALING");
+        executorService.activate(componentConfig);
+
+        Assert.assertTrue(executorService.getThreadPool().getQueue() instanceof WorkStealingQueue);
+
+        ArrayList<Future<Boolean>> alf = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < 20; i++) {
+            alf.add(executorService.submit(new ReturnsBooleanCallable(executorService)));
+        }
+        for (Future<Boolean> f : alf) {
+            Assert.assertTrue(f.get());
+        }
+    }
+
     @Test
     public void testCreateExecutor() throws Exception {
         ExecutorServiceImpl executorService = new ExecutorServiceImpl();
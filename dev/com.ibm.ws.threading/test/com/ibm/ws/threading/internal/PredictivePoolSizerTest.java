@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PredictivePoolSizerTest {
+    private static final long INTERVAL = 1500;
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /**
+     * Simulated executor with a steady arrival rate and service time per interval.
+     */
+    private static class Load {
+        long time, arrivals, completions, busyNanos;
+
+        /**
+         * Advance by one interval in which the executor keeps up with the specified number of tasks per second,
+         * each running for the specified number of milliseconds.
+         */
+        void interval(int tasksPerSecond, int serviceMillis) {
+            long tasks = tasksPerSecond * INTERVAL / 1000;
+            time += INTERVAL;
+            arrivals += tasks;
+            completions += tasks;
+            busyNanos += tasks * serviceMillis * NANOS_PER_MILLI;
+        }
+    }
+
+    /**
+     * After a step increase in load, the target reaches the offered load (arrival rate * service time plus headroom)
+     * within a single interval.
+     */
+    @Test
+    public void testGrowOnLoadStep() {
+        PredictivePoolSizer sizer = new PredictivePoolSizer(4, 200);
+        Load load = new Load();
+
+        load.interval(100, 10); // 1 thread worth of work
+        PoolSizeDecision d = sizer.evaluate(load.time, INTERVAL, load.arrivals, load.completions, load.busyNanos, 0, 4, false);
+        assertEquals(4, d.targetPoolSize);
+
+        load.interval(5000, 10); // 50 threads worth of work
+        d = sizer.evaluate(load.time, INTERVAL, load.arrivals, load.completions, load.busyNanos, 0, 4, false);
+        assertTrue(d.toString(), d.targetPoolSize >= 50);
+        assertTrue(d.toString(), d.targetPoolSize <= 70);
+        assertEquals(5000.0, d.arrivalRate, 0.01);
+        assertEquals(5000.0, d.throughput, 0.01);
+    }
+
+    /**
+     * Work that is waiting in the queue increases the target beyond the offered load, and the wait time
+     * is estimated from the queue depth and the arrival rate.
+     */
+    @Test
+    public void testBacklog() {
+        PredictivePoolSizer sizer = new PredictivePoolSizer(1, 1000);
+        Load load = new Load();
+
+        load.interval(1000, 10);
+        PoolSizeDecision noBacklog = sizer.evaluate(load.time, INTERVAL, load.arrivals, load.completions, load.busyNanos, 0, 10, false);
+
+        sizer = new PredictivePoolSizer(1, 1000);
+        PoolSizeDecision backlog = sizer.evaluate(load.time, INTERVAL, load.arrivals, load.completions, load.busyNanos, 3000, 10, false);
+
+        assertTrue(backlog + " vs " + noBacklog, backlog.targetPoolSize > noBacklog.targetPoolSize);
+        assertEquals(3000.0, backlog.waitTime, 0.01);
+        assertEquals(0.0, noBacklog.waitTime, 0.01);
+    }
+
+    /**
+     * After the load drops, the target decreases gradually and reaches core threads within seconds.
+     */
+    @Test
+    public void testShrinkGradually() {
+        PredictivePoolSizer sizer = new PredictivePoolSizer(4, 200);
+        Load load = new Load();
+
+        load.interval(5000, 10);
+        int previous = sizer.evaluate(load.time, INTERVAL, load.arrivals, load.completions, load.busyNanos, 0, 4, false).targetPoolSize;
+
+        load.interval(0, 10);
+        int next = sizer.evaluate(load.time, INTERVAL, load.arrivals, load.completions, load.busyNanos, 0, previous, false).targetPoolSize;
+        assertTrue(next < previous);
+        assertTrue(next > 4);
+
+        int intervals = 1;
+        while (next > 4) {
+            load.interval(0, 10);
+            next = sizer.evaluate(load.time, INTERVAL, load.arrivals, load.completions, load.busyNanos, 0, next, false).targetPoolSize;
+            intervals++;
+        }
+        assertTrue("intervals: " + intervals, intervals <= 20);
+    }
+
+    /**
+     * The pool does not grow when CPU utilization is high, and never exceeds max threads.
+     */
+    @Test
+    public void testLimits() {
+        PredictivePoolSizer sizer = new PredictivePoolSizer(2, 20);
+        Load load = new Load();
+
+        load.interval(5000, 10);
+        PoolSizeDecision d = sizer.evaluate(load.time, INTERVAL, load.arrivals, load.completions, load.busyNanos, 0, 8, true);
+        assertEquals(8, d.targetPoolSize);
+
+        load.interval(5000, 10);
+        d = sizer.evaluate(load.time, INTERVAL, load.arrivals, load.completions, load.busyNanos, 0, 8, false);
+        assertEquals(20, d.targetPoolSize);
+    }
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.threading.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class WorkStealingQueueTest {
+    private static class Item implements QueueItem {
+        private final boolean expedite;
+
+        Item(boolean expedite) {
+            this.expedite = expedite;
+        }
+
+        @Override
+        public boolean isExpedited() {
+            return expedite;
+        }
+    }
+
+    /**
+     * A thread that has polled the queue owns a pile. Its own submissions are taken by it most recent first,
+     * after expedited work and before work on the global queue.
+     */
+    @Test
+    public void testLocalPileOrder() throws Exception {
+        final WorkStealingQueue<Item> q = new WorkStealingQueue<Item>(100, 100, "LOCAL");
+        final Item global = new Item(false);
+
+        // submitted by a thread that is not associated with the executor
+        assertNull(q.poll());
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                q.offer(global);
+            }
+        };
+        other.start();
+        other.join();
+
+        Item local1 = new Item(false), local2 = new Item(false), expedited = new Item(true);
+        q.offer(local1);
+        q.offer(local2);
+        q.offer(expedited);
+        assertEquals(4, q.size());
+
+        assertSame(expedited, q.poll());
+        assertSame(local2, q.poll());
+        assertSame(local1, q.poll());
+        assertSame(global, q.poll());
+        assertNull(q.poll());
+        assertTrue(q.isEmpty());
+    }
+
+    /**
+     * A thread that has no local or global work steals the oldest item from the pile of another thread.
+     */
+    @Test(timeout = 10000)
+    public void testSteal() throws Exception {
+        final WorkStealingQueue<Item> q = new WorkStealingQueue<Item>(100, 100, "STRICT");
+        Item first = new Item(false), second = new Item(false);
+        q.offer(first); // STRICT: the submitting thread owns a pile without having polled
+        q.offer(second);
+
+        final AtomicReference<Item> stolen = new AtomicReference<Item>();
+        Thread thief = new Thread() {
+            @Override
+            public void run() {
+                stolen.set(q.poll());
+            }
+        };
+        thief.start();
+        thief.join();
+
+        assertSame(first, stolen.get());
+        assertEquals(1, q.size());
+        assertSame(second, q.poll());
+    }
+
+    /**
+     * With the NEVER policy, all work goes onto the global queue in FIFO order.
+     */
+    @Test
+    public void testNeverSteal() throws Exception {
+        WorkStealingQueue<Item> q = new WorkStealingQueue<Item>(100, 100, "NEVER");
+        assertNull(q.poll());
+        Item i1 = new Item(false), i2 = new Item(false);
+        q.offer(i1);
+        q.offer(i2);
+        assertSame(i1, q.poll());
+        assertSame(i2, q.poll());
+    }
+
+    /**
+     * A consumer that is blocked waiting for work is awakened when another thread pushes onto its own pile.
+     */
+    @Test(timeout = 10000)
+    public void testTakeAwakenedByLocalOffer() throws Exception {
+        final WorkStealingQueue<Item> q = new WorkStealingQueue<Item>(100, 100, "LOCAL");
+        final CountDownLatch taken = new CountDownLatch(1);
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    q.take();
+                    taken.countDown();
+                } catch (InterruptedException x) {
+                }
+            }
+        };
+        consumer.start();
+
+        assertNull(q.poll(100, TimeUnit.MILLISECONDS)); // registers the current thread as owning a pile
+        q.offer(new Item(false));
+        assertTrue(taken.await(5, TimeUnit.SECONDS));
+        assertTrue(q.isEmpty());
+    }
+}
@@ -23,6 +23,7 @@ import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
 import com.ibm.ws.ffdc.FFDCFilter;
 import com.ibm.ws.http.channel.h2internal.exceptions.CompressionException;
+import com.ibm.ws.http.channel.h2internal.hpack.H2HeaderField;
 import com.ibm.ws.http.channel.h2internal.hpack.H2HeaderTable;
 import com.ibm.ws.http.channel.h2internal.hpack.H2Headers;
 import com.ibm.ws.http.channel.h2internal.hpack.HpackConstants.LiteralIndexType;
@@ -168,6 +169,8 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
     private transient int parsedTokenLength = 0;
     /** byte cache which is reusable by all */
     private transient byte[] byteCache = new byte[this.byteCacheSize];
+    /** reusable space for header names that are not in the byte cache */
+    private transient byte[] nameCache = null;
     /** position in the byte cache */
     private transient int bytePosition = 0;
     /** limit in the byte cache */
@@ -1037,7 +1040,8 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
                 buffers[0] = allocateBuffer(this.outgoingHdrBufferSize);
                 this.bytePosition = 0;
             }
-            HeaderElement elem = this.hdrSequence;
+            HeaderBlockCache blockCache = (null == this.table && !foundCompactHeader()) ? getHeaderBlockCache() : null;
+            HeaderElement elem = (null == blockCache) ? this.hdrSequence : null;
             for (; null != elem; elem = elem.nextSequence) {
                 //If H2HeaderTable is not null, this is an H2 connection so use encodeHeader
                 //instead of marshallHeader
@@ -1076,9 +1080,12 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
                 }
             }
 
-            // only add EOL if not HTTP/2.0
-            // second EOL
-            if (this.table == null) {
+            if (null != blockCache) {
+                // the block cache adds the second EOL itself
+                buffers = blockCache.marshallHeaders(this, buffers);
+            } else if (this.table == null) {
+                // only add EOL if not HTTP/2.0
+                // second EOL
                 buffers = putBytes(BNFHeaders.EOL, buffers);
             }
             buffers = flushCache(buffers);
@@ -2262,6 +2269,26 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
         return this.headerChangeLimit;
     }
 
+    /**
+     * Access the cache of marshalled header blocks that this message may use
+     * when it is marshalled. Subclasses that send the same headers repeatedly
+     * will override this.
+     * 
+     * @return HeaderBlockCache, null if the headers are marshalled one by one
+     */
+    protected HeaderBlockCache getHeaderBlockCache() {
+        return null;
+    }
+
+    /**
+     * Access the first header in the sequence list.
+     * 
+     * @return HeaderElement, null if there are no headers
+     */
+    HeaderElement getFirstHeader() {
+        return this.hdrSequence;
+    }
+
     /**
      * Method to marshall all instances of a particular header into the
      * input buffers (expanding them if need be).
@@ -2299,13 +2326,12 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
         final String name = elem.getKey().getName();
         final String value = elem.asString();
         LiteralIndexType indexType = LiteralIndexType.NOINDEXING;
-        //For the time being, there will be no indexing on the responses to guarantee
-        //the write context is concurrent to the remote endpoint's read context. Remote
-        //intermediaries could index if they so desire, so setting NoIndexing (as
-        //opposed to NeverIndexing).
-        //TODO: investigate how streams and priority can work together with indexing on
-        //responses.
-        //LiteralIndexType indexType = isPushPromise ? LiteralIndexType.NOINDEXING : LiteralIndexType.INDEX;
+        //Headers encoded here are encoded by the thread of the stream, not in the order
+        //the streams are written, so nothing is indexed to keep the write context the
+        //same as the remote endpoint's read context. Remote intermediaries could index
+        //if they so desire, so setting NoIndexing (as opposed to NeverIndexing). When
+        //the connection writer encodes the headers, see collectH2Headers, repeatable
+        //fields are indexed.
 
         if (null != value) {
             buffers = putBytes(H2Headers.encodeHeader(table, name, value, indexType), buffers);
@@ -2497,7 +2523,7 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
      * @return WsByteBuffer (null if index is invalid)
      */
     protected WsByteBuffer getParseBuffer(int index) {
-        if (0 > index || index >= this.parseIndex) {
+        if (0 > index || index > this.parseIndex) {
             return null;
         }
         return this.parseBuffers[index];
@@ -3657,6 +3683,22 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
             }
             data = this.byteCache;
             start = cachestart;
+        } else if (null == this.parsedToken) {
+            // the name is entirely in this buffer, so copy it into the reusable
+            // name space rather than a new array as only the key is kept
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                //PI13987
+                Tr.debug(tc, "Using bytebuffer");
+            }
+            if (null == this.nameCache || this.nameCache.length < length) {
+                this.nameCache = new byte[Math.max(length, this.byteCacheSize)];
+            }
+            int orig = buff.position();
+            buff.position(start);
+            buff.get(this.nameCache, 0, length);
+            buff.position(orig);
+            data = this.nameCache;
+            start = 0;
         } else {
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                 //PI13987
@@ -4039,6 +4081,33 @@ public abstract class BNFHeadersImpl implements BNFHeaders, Externalizable {
         return localWhitespace;
     }
 
+    /**
+     * Add the headers of this message that are sent on an HTTP/2 connection to a
+     * list of fields, in order, for the connection writer to encode.
+     *
+     * @param fields
+     */
+    public void collectH2Headers(List<H2HeaderField> fields) {
+        preMarshallHeaders();
+        for (HeaderElement elem = this.hdrSequence; null != elem; elem = elem.nextSequence) {
+            if (elem.wasRemoved()) {
+                continue;
+            }
+            if (!H2Headers.checkIsValidH2WriteHeader(elem.getName())) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "On an HTTP/2 connection - will not encode this header header: " + elem.getName());
+                }
+                // this is a connection-specific header; don't encode it
+                continue;
+            }
+            String value = elem.asString();
+            if (null != value) {
+                fields.add(new H2HeaderField(elem.getKey().getName().toLowerCase(), value));
+            }
+        }
+        postMarshallHeaders();
+    }
+
     public WsByteBuffer[] encodeHeaders(H2HeaderTable table, WsByteBuffer[] encodedMessage, boolean isPushPromise) {
 
         if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
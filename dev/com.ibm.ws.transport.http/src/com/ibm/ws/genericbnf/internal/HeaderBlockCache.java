@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.genericbnf.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.genericbnf.BNFHeaders;
+import com.ibm.wsspi.genericbnf.HeaderKeys;
+
+/**
+ * Cache of marshalled header blocks, for messages that are sent with the
+ * same set of headers over and over again.
+ *
+ * A block holds the marshalled "name: value" lines of a header set, except
+ * for the variable headers (such as Date and Content-Length), which are
+ * marshalled from the message into their place in the block every time.
+ * When a message matches a cached block, the fixed headers are copied out of
+ * the block in a few large pieces, without converting their String values
+ * to bytes.
+ *
+ * Blocks are kept in a direct mapped table by the hash of the header set.
+ * A block is only built the second time in a row that the same hash misses
+ * on a slot, so that header sets that are never repeated, such as ones with
+ * a new cookie, do not keep replacing the blocks of the common ones.
+ */
+public class HeaderBlockCache {
+
+    /** RAS tracing variable */
+    private static final TraceComponent tc = Tr.register(HeaderBlockCache.class, GenericConstants.GENERIC_TRACE_NAME, null);
+
+    /** Hash of a header set that cannot be cached */
+    private static final int NO_HASH = 0;
+
+    /**
+     * Marshalled form of one header set.
+     */
+    private static final class Block {
+        final int hash;
+        /** Keys of the headers in order, including the variable ones */
+        final HeaderKeys[] keys;
+        /** Start of each value in data, or the place of a variable header */
+        final int[] start;
+        /** End of each header line in data, which equals the start for a variable header */
+        final int[] end;
+        /** Marshalled fixed headers */
+        final byte[] data;
+
+        Block(int hash, HeaderKeys[] keys, int[] start, int[] end, byte[] data) {
+            this.hash = hash;
+            this.keys = keys;
+            this.start = start;
+            this.end = end;
+            this.data = data;
+        }
+    }
+
+    private final HeaderKeys[] variableKeys;
+    private final Block[] blocks;
+    /** Hash that last missed on each slot */
+    private final int[] candidates;
+    private final int mask;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+
+    /**
+     * Create a cache.
+     *
+     * @param size the number of blocks, which is rounded up to a power of 2
+     * @param variableKeys the headers that change from one message to the next
+     */
+    public HeaderBlockCache(int size, HeaderKeys[] variableKeys) {
+        int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        this.blocks = new Block[capacity];
+        this.candidates = new int[capacity];
+        this.mask = capacity - 1;
+        this.variableKeys = variableKeys.clone();
+    }
+
+    private boolean isVariable(HeaderKeys key) {
+        for (HeaderKeys variable : this.variableKeys) {
+            if (variable == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hash the header set starting with the input element.
+     *
+     * @param first
+     * @return int, NO_HASH if the headers cannot be cached
+     */
+    private int hashHeaders(HeaderElement first) {
+        int hash = 1;
+        for (HeaderElement elem = first; null != elem; elem = elem.nextSequence) {
+            if (elem.wasRemoved()) {
+                continue;
+            }
+            hash = 31 * hash + elem.getKey().getOrdinal();
+            if (!isVariable(elem.getKey())) {
+                if (!elem.hasValue()) {
+                    return NO_HASH;
+                }
+                hash = elem.hashValue(hash);
+            }
+        }
+        return (NO_HASH == hash) ? 1 : hash;
+    }
+
+    private boolean matches(Block block, HeaderElement first) {
+        int i = 0;
+        for (HeaderElement elem = first; null != elem; elem = elem.nextSequence) {
+            if (elem.wasRemoved()) {
+                continue;
+            }
+            if (i == block.keys.length || block.keys[i] != elem.getKey()) {
+                return false;
+            }
+            if (block.start[i] != block.end[i]
+                && !elem.isSameValue(block.data, block.start[i], block.end[i] - block.start[i] - BNFHeaders.EOL.length)) {
+                return false;
+            }
+            i++;
+        }
+        return i == block.keys.length;
+    }
+
+    /**
+     * Marshall the headers of a message, including the blank line at the end,
+     * into the outgoing byte cache of the message.
+     *
+     * @param headers
+     * @param inBuffers
+     * @return WsByteBuffer[]
+     */
+    protected WsByteBuffer[] marshallHeaders(BNFHeadersImpl headers, WsByteBuffer[] inBuffers) {
+        WsByteBuffer[] buffers = inBuffers;
+        final HeaderElement first = headers.getFirstHeader();
+        final int hash = hashHeaders(first);
+        final int slot = hash & this.mask;
+        final Block block = this.blocks[slot];
+
+        if (NO_HASH != hash && null != block && block.hash == hash && matches(block, first)) {
+            this.hits.incrementAndGet();
+            int pos = 0;
+            int i = 0;
+            for (HeaderElement elem = first; null != elem; elem = elem.nextSequence) {
+                if (elem.wasRemoved()) {
+                    continue;
+                }
+                if (block.start[i] == block.end[i]) {
+                    // variable header, first copy the fixed headers before it
+                    buffers = headers.putBytes(block.data, pos, block.start[i] - pos, buffers);
+                    pos = block.start[i];
+                    buffers = headers.marshallHeader(buffers, elem);
+                }
+                i++;
+            }
+            buffers = headers.putBytes(block.data, pos, block.data.length - pos, buffers);
+            return headers.putBytes(BNFHeaders.EOL, buffers);
+        }
+
+        this.misses.incrementAndGet();
+        for (HeaderElement elem = first; null != elem; elem = elem.nextSequence) {
+            buffers = headers.marshallHeader(buffers, elem);
+        }
+        buffers = headers.putBytes(BNFHeaders.EOL, buffers);
+
+        if (NO_HASH != hash) {
+            if (this.candidates[slot] == hash) {
+                this.blocks[slot] = buildBlock(hash, first);
+                this.stores.incrementAndGet();
+            } else {
+                this.candidates[slot] = hash;
+            }
+        }
+        return buffers;
+    }
+
+    private Block buildBlock(int hash, HeaderElement first) {
+        int count = 0;
+        int size = 0;
+        for (HeaderElement elem = first; null != elem; elem = elem.nextSequence) {
+            if (elem.wasRemoved()) {
+                continue;
+            }
+            count++;
+            if (!isVariable(elem.getKey())) {
+                size += elem.getKey().getMarshalledByteArray(false).length + elem.getValueLength() + BNFHeaders.EOL.length;
+            }
+        }
+
+        HeaderKeys[] keys = new HeaderKeys[count];
+        int[] start = new int[count];
+        int[] end = new int[count];
+        byte[] data = new byte[size];
+        int pos = 0;
+        int i = 0;
+        for (HeaderElement elem = first; null != elem; elem = elem.nextSequence) {
+            if (elem.wasRemoved()) {
+                continue;
+            }
+            keys[i] = elem.getKey();
+            if (!isVariable(elem.getKey())) {
+                byte[] name = elem.getKey().getMarshalledByteArray(false);
+                System.arraycopy(name, 0, data, pos, name.length);
+                pos += name.length;
+                start[i] = pos;
+                System.arraycopy(elem.asRawBytes(), elem.getOffset(), data, pos, elem.getValueLength());
+                pos += elem.getValueLength();
+                System.arraycopy(BNFHeaders.EOL, 0, data, pos, BNFHeaders.EOL.length);
+                pos += BNFHeaders.EOL.length;
+            } else {
+                start[i] = pos;
+            }
+            end[i] = pos;
+            i++;
+        }
+
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "Cached header block of " + count + " headers, " + size + " bytes, hash=" + hash);
+        }
+        return new Block(hash, keys, start, end, data);
+    }
+
+    /**
+     * Query the number of messages marshalled from a cached block.
+     *
+     * @return long
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * Query the number of messages that did not match a cached block.
+     *
+     * @return long
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Query the number of blocks that were built.
+     *
+     * @return long
+     */
+    public long getStoreCount() {
+        return this.stores.get();
+    }
+
+    @Override
+    public String toString() {
+        return "HeaderBlockCache[size=" + this.blocks.length + " hits=" + getHitCount()
+               + " misses=" + getMissCount() + " stores=" + getStoreCount() + "]";
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2009 IBM Corporation and others.
+ * Copyright (c) 2004, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -222,6 +222,36 @@ public final class HeaderElement implements HeaderField, Comparable<HeaderElemen
         return true;
     }
 
+    /**
+     * Using the initial parse information, create the String value directly
+     * from the parse buffer without the intermediate byte[] value. This is
+     * only done when the value is contained in a single buffer.
+     * 
+     * @return boolean (true means String value created, false otherwise)
+     */
+    private boolean extractInitialString() {
+        if (-1 == this.buffIndex) {
+            return false;
+        }
+        WsByteBuffer buff = this.myOwner.getParseBuffer(this.buffIndex);
+        if (this.offset + this.valueLength > buff.limit()) {
+            // value straddles buffers
+            return false;
+        }
+        char[] chars = new char[this.valueLength];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (buff.get(this.offset + i) & 0xff);
+        }
+        this.sValue = new String(chars);
+        // the value no longer refers to the parse buffers
+        this.offset = 0;
+        this.buffIndex = -1;
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "extractInitialString parsed [" + getDebugValue() + "]");
+        }
+        return true;
+    }
+
     /**
      * @see HeaderField#asBytes()
      */
@@ -284,6 +314,10 @@ public final class HeaderElement implements HeaderField, Comparable<HeaderElemen
     public String asString() {
         if (null == this.sValue) {
             if (null == this.bValue) {
+                // build the String straight from the parse buffer if possible
+                if (extractInitialString()) {
+                    return this.sValue;
+                }
                 // pull the initial value if possible
                 if (!extractInitialValue()) {
                     // no data... invalid use of object if this happens
@@ -479,6 +513,67 @@ public final class HeaderElement implements HeaderField, Comparable<HeaderElemen
         return asString().equalsIgnoreCase(elem.asString());
     }
 
+    /**
+     * Query whether this element has a value to marshall.
+     *
+     * @return boolean
+     */
+    protected boolean hasValue() {
+        return null != this.bValue || null != this.sValue || -1 != this.buffIndex;
+    }
+
+    /**
+     * Continue the input hash with the marshalled bytes of this value, without
+     * converting a String value to bytes.
+     *
+     * @param hash
+     * @return int
+     */
+    protected int hashValue(int hash) {
+        int h = hash;
+        if (null == this.bValue && null != this.sValue) {
+            for (int i = 0; i < this.valueLength; i++) {
+                h = 31 * h + (byte) this.sValue.charAt(i);
+            }
+            return h;
+        }
+        byte[] value = asRawBytes();
+        for (int i = this.offset, end = this.offset + this.valueLength; i < end; i++) {
+            h = 31 * h + value[i];
+        }
+        return h;
+    }
+
+    /**
+     * Compare whether the marshalled bytes of this value match the input
+     * bytes, without converting a String value to bytes.
+     *
+     * @param data
+     * @param start
+     * @param length
+     * @return boolean
+     */
+    protected boolean isSameValue(byte[] data, int start, int length) {
+        if (length != this.valueLength) {
+            return false;
+        }
+        if (null == this.bValue && null != this.sValue) {
+            for (int i = 0; i < length; i++) {
+                if ((byte) this.sValue.charAt(i) != data[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        byte[] value = asRawBytes();
+        for (int i = 0; i < length; i++) {
+            if (value[this.offset + i] != data[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Return the hashcode of this object.
      * 
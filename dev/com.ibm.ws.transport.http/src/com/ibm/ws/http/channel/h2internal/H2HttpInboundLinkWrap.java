@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2017 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.ibm.websphere.ras.Tr;
@@ -179,6 +180,33 @@ public class H2HttpInboundLinkWrap extends HttpInboundLink {
         return frameList;
     }
 
+    /**
+     * Create a Header frame for a list of http headers, whose header block is encoded by
+     * the writer of the connection when the frame is written, see encodesHeadersOnWrite
+     *
+     * @param List<H2HeaderField> headerFields
+     * @param boolean complete
+     * @return ArrayList<Frame> containing the FrameHeaders object
+     */
+    public ArrayList<Frame> prepareHeaders(List<H2HeaderField> headerFields, boolean complete) {
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "prepareHeaders entry: stream: " + streamID + " fields: " + headerFields.size() + " marked as complete: " + complete);
+        }
+        ArrayList<Frame> frameList = new ArrayList<Frame>();
+        frameList.add(new FrameHeaders(streamID, headerFields, muxLink.getWriteTable(), muxLink.getRemoteConnectionSettings(), complete));
+        return frameList;
+    }
+
+    /**
+     * Query whether the headers of this stream are encoded by the writer of the connection,
+     * in which case they are passed to prepareHeaders as a list of fields
+     *
+     * @return boolean
+     */
+    public boolean encodesHeadersOnWrite() {
+        return muxLink.encodesHeadersOnWrite();
+    }
+
     /**
      * Create Data frames to contain the http body payload
      * The buffers passed in must not exceed the http2 max frame size
@@ -27,6 +27,7 @@ import com.ibm.ws.http.channel.h2internal.exceptions.FlowControlException;
 import com.ibm.ws.http.channel.h2internal.exceptions.Http2Exception;
 import com.ibm.ws.http.channel.h2internal.exceptions.ProtocolException;
 import com.ibm.ws.http.channel.h2internal.exceptions.StreamClosedException;
+import com.ibm.ws.http.channel.h2internal.frames.FrameHeaders;
 import com.ibm.ws.http.channel.h2internal.hpack.H2HeaderTable;
 import com.ibm.ws.http.channel.h2internal.priority.Node;
 import com.ibm.ws.http.channel.internal.HttpChannelConfig;
@@ -94,6 +95,7 @@ public class H2InboundLink extends HttpInboundLink {
     volatile long initialWindowSize = Constants.SPEC_INITIAL_WINDOW_SIZE;
     volatile long connectionReadWindowSize = Constants.SPEC_INITIAL_WINDOW_SIZE; // keep track of how much data the client is allowed to send to the us
     volatile long maxReadWindowSize = Constants.SPEC_INITIAL_WINDOW_SIZE; // user-set max window size
+    H2WindowAutotuner windowTuner = null; // sizes the read windows when autotuning is enabled
 
     FrameReadProcessor frameReadProcessor = null;
 
@@ -177,8 +179,11 @@ public class H2InboundLink extends HttpInboundLink {
         // set up the initial connection read window size
         maxReadWindowSize = config.getH2ConnReadWindowSize();
         connectionReadWindowSize = maxReadWindowSize;
+        if (config.isH2WindowAutotune()) {
+            windowTuner = new H2WindowAutotuner((int) maxReadWindowSize, config.getH2WindowAutotuneMemoryLimit());
+        }
 
-        writeQ = new H2WriteTree();
+        writeQ = config.isH2BatchWrites() ? new H2WriteScheduler(this) : new H2WriteTree();
         writeQ.init(h2MuxTCPWriteContext, h2MuxWriteCallback);
 
         readContextTable = new H2HeaderTable();
@@ -672,6 +677,9 @@ public class H2InboundLink extends HttpInboundLink {
         remoteConnectionSettings = null;
         readContextTable = null;
         writeContextTable = null;
+        if (windowTuner != null) {
+            windowTuner.release();
+        }
 
         super.destroy();
     }
@@ -714,8 +722,6 @@ public class H2InboundLink extends HttpInboundLink {
 
     public void writeSync(WsByteBuffer buf, WsByteBuffer bufs[], long numBytes, int timeout, FrameTypes fType, int payloadLength,
                           int streamID) throws IOException, FlowControlException {
-        H2WorkQInterface.WRITE_ACTION action = H2WorkQInterface.WRITE_ACTION.NOT_SET;
-
         if ((buf != null) && (bufs != null)) {
             // only allowed one type of input per call
             // add debug statement
@@ -723,6 +729,32 @@ public class H2InboundLink extends HttpInboundLink {
             throw up;
         }
 
+        writeSync(new H2WriteQEntry(buf, bufs, numBytes, timeout, H2WriteQEntry.WRITE_TYPE.SYNC, fType, payloadLength, streamID));
+    }
+
+    /**
+     * Write a headers frame whose header block is encoded by the writer of the connection,
+     * in the order the frames go out, see encodesHeadersOnWrite
+     */
+    public void writeSync(FrameHeaders headers, int timeout, int streamID) throws IOException, FlowControlException {
+        H2WriteQEntry e = new H2WriteQEntry(null, null, TCPWriteRequestContext.WRITE_ALL_DATA, timeout, H2WriteQEntry.WRITE_TYPE.SYNC, FrameTypes.HEADERS, 0, streamID);
+        e.setHeadersFrame(headers);
+        writeSync(e);
+    }
+
+    /**
+     * Query whether the header blocks of this connection are encoded by its writer. This is
+     * only the case for the batching write queue, which has a single writer at a time.
+     *
+     * @return boolean
+     */
+    public boolean encodesHeadersOnWrite() {
+        return writeQ instanceof H2WriteScheduler;
+    }
+
+    private void writeSync(H2WriteQEntry e) throws IOException, FlowControlException {
+        H2WorkQInterface.WRITE_ACTION action = H2WorkQInterface.WRITE_ACTION.NOT_SET;
+
         synchronized (linkStatus) {
             if (linkStatus == LINK_STATUS.CLOSING) {
                 FlowControlException up = new FlowControlException("Connection Closing");
@@ -738,7 +770,6 @@ public class H2InboundLink extends HttpInboundLink {
         }
 
         try {
-            H2WriteQEntry e = new H2WriteQEntry(buf, bufs, numBytes, timeout, H2WriteQEntry.WRITE_TYPE.SYNC, fType, payloadLength, streamID);
             e.armWriteCompleteLatch();
 
             action = writeQ.writeOrAddToQ(e);
@@ -750,6 +781,9 @@ public class H2InboundLink extends HttpInboundLink {
                 }
                 e.waitWriteCompleteLatch();
             }
+            if (e.getWriteError() != null) {
+                throw e.getWriteError();
+            }
 
             // write worked, update time if we are current tracking it for inactivity
             if (configuredInactivityTimeout != 0) {
@@ -999,6 +1033,12 @@ public class H2InboundLink extends HttpInboundLink {
             Tr.debug(tc, "closeConnectionLink: tell WriteQ to Draing an quit. :close: H2InboundLink hc: " + this.hashCode());
         }
         writeQ.setToQuit(true);
+        if (windowTuner != null) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "closeConnectionLink: " + windowTuner + " H2InboundLink hc: " + this.hashCode());
+            }
+            windowTuner.release();
+        }
 
         waitForReadsAndWritesToClear();
 
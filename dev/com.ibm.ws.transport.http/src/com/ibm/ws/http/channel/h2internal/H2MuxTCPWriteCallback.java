@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2017 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -99,6 +99,10 @@ public class H2MuxTCPWriteCallback implements TCPWriteCompletedCallback {
             Tr.debug(tc, "hit write complete latch for qentry: " + qEntry.hashCode());
         }
 
+        if (!complete) {
+            // let a sync writer know that its data did not go out
+            qEntry.setWriteError(ioe);
+        }
         qEntry.hitWriteCompleteLatch();
         // allow the next thread to come through, or allow the queue service thread to start, if it is waiting.
         if (h2WorkQ != null) {
@@ -760,6 +760,11 @@ public class H2StreamProcessor {
             streamReadWindowSize -= frameSize; // decrement stream read window
             muxLink.connectionReadWindowSize -= frameSize; // decrement connection read window
 
+            if (muxLink.windowTuner != null) {
+                updateTunedReadWindow(frameSize);
+                return;
+            }
+
             // if the stream or connection windows become too small, update the windows
             // TODO: decide how often we should update the read window via WINDOW_UPDATE
             if (streamReadWindowSize < (muxLink.maxReadWindowSize / 2) ||
@@ -779,6 +784,39 @@ public class H2StreamProcessor {
         }
     }
 
+    /**
+     * Keep the stream and connection read windows at the size chosen by the window autotuner, and send a PING
+     * if the tuner wants to start a new round trip sample.
+     */
+    private void updateTunedReadWindow(long frameSize) throws Http2Exception {
+        H2WindowAutotuner tuner = muxLink.windowTuner;
+        if (streamReadWindowSize <= 0 || muxLink.connectionReadWindowSize <= 0) {
+            // the client had to stop sending until it gets a window update
+            tuner.readStalled();
+        }
+        byte[] pingPayload = tuner.dataReceived(frameSize, System.nanoTime());
+        long window = tuner.getWindowSize();
+
+        if (streamReadWindowSize < (window / 2) && !this.isStreamClosed()) {
+            int windowChange = (int) (window - streamReadWindowSize);
+            Frame savedFrame = currentFrame; // save off the current frame
+            currentFrame = new FrameWindowUpdate(myID, windowChange, false);
+            writeFrameSync();
+            currentFrame = savedFrame;
+            streamReadWindowSize += windowChange;
+        }
+        if (muxLink.connectionReadWindowSize < (window / 2)) {
+            int windowChange = (int) (window - muxLink.connectionReadWindowSize);
+            muxLink.connectionReadWindowSize += windowChange;
+            FrameWindowUpdate wuf = new FrameWindowUpdate(0, windowChange, false);
+            this.muxLink.getStream(0).processNextFrame(wuf, Direction.WRITING_OUT);
+        }
+        if (pingPayload != null) {
+            FramePing ping = new FramePing(0, pingPayload, false);
+            this.muxLink.getStream(0).processNextFrame(ping, Direction.WRITING_OUT);
+        }
+    }
+
     /**
      * Tell this stream to attempt to start writing out data frames
      */
@@ -883,6 +921,11 @@ public class H2StreamProcessor {
 
     private void processPINGFrame() {
         if (currentFrame.flagAckSet()) {
+            if (muxLink.windowTuner != null &&
+                muxLink.windowTuner.pingAckReceived(((FramePing) currentFrame).getPayload(), System.nanoTime())) {
+                // the reply to a PING sent to sample the round trip time
+                return;
+            }
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                 Tr.debug(tc, "processPINGFrame: ignore PING received with ACK set");
             }
@@ -1764,6 +1807,9 @@ public class H2StreamProcessor {
                     if (isWindowLimitExceeded((FrameData) currentFrame)) {
                         // the connection or stream window is too small to write this data frame.  This thread will wait for a max of
                         // 5 seconds for a window update that's large enough to allow the data frame to be written out
+                        if (muxLink.windowTuner != null) {
+                            muxLink.windowTuner.writeStalled();
+                        }
                         long startTime = System.currentTimeMillis();
                         while (isWindowLimitExceeded((FrameData) currentFrame) && !timedOut) {
                             synchronized (this) {
@@ -1794,6 +1840,9 @@ public class H2StreamProcessor {
                         throw up;
                     }
 
+                } else if (currentFrame.getFrameType() == FrameTypes.HEADERS && ((FrameHeaders) currentFrame).isEncodedOnWrite()) {
+                    // the writer of the connection encodes the header block, and builds the frames, in the order they go out
+                    muxLink.writeSync((FrameHeaders) currentFrame, TCPRequestContext.NO_TIMEOUT, myID);
                 } else {
                     // this frame is not a data frame, and so it's not subject to flow control and we can write immediately
                     writeFrameBuffer = currentFrame.buildFrameForWrite();
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.channel.h2internal;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.ws.http.channel.internal.HttpMessages;
+
+/**
+ * Sizes the receive windows of an HTTP/2 connection from its bandwidth-delay product.
+ *
+ * While DATA frames arrive, a PING is sent and the bytes received until its ACK
+ * comes back are counted, which measures the round trip time and the amount of
+ * data the client is able to send in one round trip. When a sample fills most of
+ * the current window and shows a higher bandwidth than seen before, the window is
+ * grown to twice the sample, so that the client is not held back by flow control.
+ * Connections that only carry small requests never fill their window and keep
+ * the initial size.
+ *
+ * Growth above the initial window is reserved from a budget that is shared by
+ * all connections of the server, and is given back when the connection closes.
+ */
+public class H2WindowAutotuner {
+
+    private static final TraceComponent tc = Tr.register(H2WindowAutotuner.class, HttpMessages.HTTP_TRACE_NAME, HttpMessages.HTTP_BUNDLE);
+
+    /** Largest window the tuner grows a connection to */
+    public static final int MAX_WINDOW_SIZE = 16 * 1024 * 1024;
+
+    /** Bytes reserved above their initial windows by all connections of the server */
+    private static final AtomicLong reservedBytes = new AtomicLong();
+
+    /** Source of the opaque data of the PING frames used for sampling */
+    private static final AtomicLong pingCounter = new AtomicLong();
+
+    private final int initialWindowSize;
+    private final long memoryLimit;
+
+    private int windowSize;
+    private long reserved = 0;
+    private boolean released = false;
+
+    /** Opaque data of the outstanding PING, or null if none */
+    private byte[] pingPayload = null;
+    private long pingSentNanos = 0;
+    private long sampleBytes = 0;
+
+    private long roundTripNanos = 0;
+    private long maxBandwidth = 0;
+
+    private long samples = 0;
+    private long windowIncreases = 0;
+    private long budgetRefusals = 0;
+    private long readStalls = 0;
+    private long writeStalls = 0;
+
+    /**
+     * Create a tuner for one connection.
+     *
+     * @param initialWindowSize the receive window the connection starts with
+     * @param memoryLimit limit on the bytes all connections of the server may grow their windows by
+     */
+    public H2WindowAutotuner(int initialWindowSize, long memoryLimit) {
+        this.initialWindowSize = initialWindowSize;
+        this.windowSize = initialWindowSize;
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * Query the receive window the connection and its streams should be kept at.
+     *
+     * @return int
+     */
+    public synchronized int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Account for a DATA frame that was received.
+     *
+     * @param bytes the flow controlled length of the frame
+     * @param now the current time from System.nanoTime()
+     * @return the opaque data of a PING to send to start a new sample, or null if none should be sent
+     */
+    public synchronized byte[] dataReceived(long bytes, long now) {
+        if (pingPayload != null) {
+            sampleBytes += bytes;
+            return null;
+        }
+        if (released || windowSize >= MAX_WINDOW_SIZE) {
+            return null;
+        }
+        long id = pingCounter.incrementAndGet();
+        byte[] payload = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            payload[i] = (byte) id;
+            id >>>= 8;
+        }
+        pingPayload = payload;
+        pingSentNanos = now;
+        sampleBytes = bytes;
+        return payload;
+    }
+
+    /**
+     * Account for the ACK of a PING, which completes a sample if it is the
+     * reply to the PING of this tuner.
+     *
+     * @param payload the opaque data of the PING ACK
+     * @param now the current time from System.nanoTime()
+     * @return true if the ACK was for the outstanding PING of this tuner
+     */
+    public synchronized boolean pingAckReceived(byte[] payload, long now) {
+        if (pingPayload == null || !Arrays.equals(pingPayload, payload)) {
+            return false;
+        }
+        pingPayload = null;
+        samples++;
+        long rtt = Math.max(now - pingSentNanos, 1L);
+        // smooth the round trip time in the same way as TCP does
+        roundTripNanos = roundTripNanos == 0 ? rtt : (roundTripNanos * 7 + rtt) / 8;
+        long bandwidth = sampleBytes * 1000000000L / rtt;
+
+        if (sampleBytes * 3 >= (long) windowSize * 2 && bandwidth > maxBandwidth) {
+            maxBandwidth = bandwidth;
+            grow((int) Math.min(sampleBytes * 2, MAX_WINDOW_SIZE));
+        }
+        return true;
+    }
+
+    private void grow(int target) {
+        if (target <= windowSize || released) {
+            return;
+        }
+        long delta = target - windowSize;
+        long current;
+        do {
+            current = reservedBytes.get();
+            if (current + delta > memoryLimit) {
+                budgetRefusals++;
+                delta = memoryLimit - current;
+                if (delta <= 0) {
+                    if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                        Tr.debug(tc, "grow: memory budget exhausted, window stays at " + windowSize);
+                    }
+                    return;
+                }
+            }
+        } while (!reservedBytes.compareAndSet(current, current + delta));
+
+        reserved += delta;
+        windowSize += (int) delta;
+        windowIncreases++;
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "grow: window increased to " + windowSize + " " + this);
+        }
+    }
+
+    /**
+     * Record that the client used up the receive window before it was updated.
+     */
+    public synchronized void readStalled() {
+        readStalls++;
+    }
+
+    /**
+     * Record that a stream had to wait for the client to update the write window.
+     */
+    public synchronized void writeStalled() {
+        writeStalls++;
+    }
+
+    /**
+     * Give the growth of the window back to the budget of the server; called
+     * when the connection closes.
+     */
+    public synchronized void release() {
+        if (!released) {
+            released = true;
+            reservedBytes.addAndGet(-reserved);
+            reserved = 0;
+            pingPayload = null;
+        }
+    }
+
+    /**
+     * Query the smoothed round trip time of the connection.
+     *
+     * @return long in nanoseconds, or 0 if there has been no sample yet
+     */
+    public synchronized long getRoundTripTime() {
+        return roundTripNanos;
+    }
+
+    public synchronized long getReadStallCount() {
+        return readStalls;
+    }
+
+    public synchronized long getWriteStallCount() {
+        return writeStalls;
+    }
+
+    /**
+     * Query the bytes reserved above their initial windows by all connections of the server.
+     *
+     * @return long
+     */
+    public static long getReservedBytes() {
+        return reservedBytes.get();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "H2WindowAutotuner[window=" + windowSize + " initial=" + initialWindowSize
+               + " rttMicros=" + roundTripNanos / 1000 + " maxBandwidth=" + maxBandwidth
+               + " samples=" + samples + " increases=" + windowIncreases
+               + " budgetRefusals=" + budgetRefusals + " readStalls=" + readStalls
+               + " writeStalls=" + writeStalls + "]";
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2017 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,10 +10,12 @@
  *******************************************************************************/
 package com.ibm.ws.http.channel.h2internal;
 
+import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
 
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.ws.http.channel.h2internal.frames.FrameHeaders;
 import com.ibm.ws.http.channel.internal.HttpMessages;
 import com.ibm.wsspi.bytebuffer.WsByteBuffer;
 import com.ibm.wsspi.tcpchannel.TCPWriteCompletedCallback;
@@ -53,6 +55,12 @@ public class H2WriteQEntry {
 
     boolean forceQueue = false;
 
+    // set when the write of this entry failed, before the latch is hit
+    volatile IOException writeError = null;
+
+    // headers frame whose header block is encoded by the writer, in place of the buffers
+    FrameHeaders headersFrame = null;
+
     public H2WriteQEntry(WsByteBuffer inBuf, WsByteBuffer[] inBufs, long inMin, int inTimeout, WRITE_TYPE inType, FrameTypes fType, int inPayloadLength, int inStreamID) {
 
         //  For a Sync write entry, the following are not use:  callback, forceQueue, connectionContext.
@@ -106,6 +114,14 @@ public class H2WriteQEntry {
         writeCompleteLatch.countDown();
     }
 
+    public IOException getWriteError() {
+        return writeError;
+    }
+
+    public void setWriteError(IOException x) {
+        writeError = x;
+    }
+
     public boolean getServicedOnQ() {
         return servicedOnQ;
     }
@@ -168,4 +184,12 @@ public class H2WriteQEntry {
         return payloadLength;
     }
 
+    public FrameHeaders getHeadersFrame() {
+        return headersFrame;
+    }
+
+    public void setHeadersFrame(FrameHeaders x) {
+        headersFrame = x;
+    }
+
 }
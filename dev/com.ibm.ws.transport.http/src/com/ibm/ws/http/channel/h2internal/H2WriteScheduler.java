@@ -0,0 +1,551 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.channel.h2internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.ibm.websphere.channelfw.osgi.CHFWBundle;
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.ws.http.channel.h2internal.exceptions.FlowControlException;
+import com.ibm.ws.http.channel.h2internal.priority.Node;
+import com.ibm.ws.http.channel.internal.HttpMessages;
+import com.ibm.ws.ffdc.annotation.FFDCIgnore;
+import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.channelfw.VirtualConnection;
+import com.ibm.wsspi.tcpchannel.TCPWriteRequestContext;
+
+/**
+ * Write queue of an HTTP/2 connection that does not lock on the write path.
+ *
+ * Writing threads add their entry to a lock free queue and count it. The thread
+ * whose entry brings the count up from zero becomes the single writer: it takes
+ * all the counted entries off the queue, orders them by the weight of their
+ * stream, and writes the frames of all of them with one gather write at the
+ * TCP channel before releasing the waiting threads. Entries that arrive while a
+ * write is outstanding are taken by the next pass of the writer, so under load
+ * the frames of many streams go out together. After a few passes the writer
+ * hands the queue over to a thread of the executor, so that an application
+ * thread is not kept writing the frames of other streams indefinitely.
+ *
+ * Header blocks that are queued as a headers frame, rather than as buffers, are
+ * HPACK encoded by the writer as it builds the write, so the dynamic table of the
+ * connection is changed in the same order as the peer sees the blocks.
+ *
+ * If a write fails, the entries of that write and all the entries after it are
+ * failed rather than completed, and the connection is closed.
+ */
+public class H2WriteScheduler implements H2WorkQInterface {
+
+    private static final TraceComponent tc = Tr.register(H2WriteScheduler.class, HttpMessages.HTTP_TRACE_NAME, HttpMessages.HTTP_BUNDLE);
+
+    /** Most entries written with one gather write */
+    private static final int MAX_BATCH_ENTRIES = 32;
+
+    /** Passes the writing thread makes before handing the queue to the executor */
+    private static final int CALLER_PASSES = 2;
+
+    TCPWriteRequestContext writeReqContext = null;
+    H2MuxTCPWriteCallback muxCallback = null;
+
+    private final ConcurrentLinkedQueue<H2WriteQEntry> queue = new ConcurrentLinkedQueue<H2WriteQEntry>();
+
+    /** Entries added and not yet written, the writer only takes this many off the queue */
+    private final AtomicInteger queued = new AtomicInteger(0);
+
+    /** Weight of each stream from its priority, streams not in the map have the default weight */
+    private final ConcurrentHashMap<Integer, Integer> weights = new ConcurrentHashMap<Integer, Integer>();
+
+    private final AtomicBoolean quit = new AtomicBoolean(false);
+    private volatile boolean drainQ = false;
+
+    /** First write failure, once set no more writes are made */
+    private final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+
+    /** Connection to close when a write fails, null if there is none */
+    private final H2InboundLink link;
+
+    private final int connectionWindowUpdateWriteInitialSize = 65535;
+    private final AtomicInteger connectionWindowUpdateWriteLimit = new AtomicInteger(connectionWindowUpdateWriteInitialSize);
+
+    // statistics
+    private final AtomicInteger maxQueueDepth = new AtomicInteger(0);
+    private final AtomicLong batches = new AtomicLong(0);
+    private final AtomicLong frames = new AtomicLong(0);
+    private final AtomicLong handOffs = new AtomicLong(0);
+
+    /** Orders the streams of a batch by descending weight, a sort that keeps the order of equal weights */
+    private final Comparator<List<H2WriteQEntry>> byWeight = new Comparator<List<H2WriteQEntry>>() {
+        @Override
+        public int compare(List<H2WriteQEntry> a, List<H2WriteQEntry> b) {
+            return weightOf(b.get(0).getStreamID()) - weightOf(a.get(0).getStreamID());
+        }
+    };
+
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            drain(Integer.MAX_VALUE);
+        }
+    };
+
+    /**
+     * @param link the connection that the frames are written for, which is closed if a write fails
+     */
+    public H2WriteScheduler(H2InboundLink link) {
+        this.link = link;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.ibm.ws.http.channel.h2internal.H2WorkQInterface#init(com.ibm.wsspi.tcpchannel.TCPWriteRequestContext, com.ibm.ws.http.channel.h2internal.H2MuxTCPWriteCallback)
+     */
+    @Override
+    public void init(TCPWriteRequestContext x, H2MuxTCPWriteCallback c) {
+        writeReqContext = x;
+        muxCallback = c;
+        muxCallback.setH2WorkQ(this);
+    }
+
+    /*
+     * The writer waits for each of its writes to complete, so there is no queue thread to wake up.
+     *
+     * @see com.ibm.ws.http.channel.h2internal.H2WorkQInterface#notifyStandBy()
+     */
+    @Override
+    public void notifyStandBy() {}
+
+    /*
+     * New entries are refused from now on. Entries already queued are left to the
+     * writer, which either writes them or fails them if not draining.
+     *
+     * @see com.ibm.ws.http.channel.h2internal.H2WorkQInterface#setToQuit(boolean)
+     */
+    @Override
+    public void setToQuit(boolean inDrainQ) {
+        drainQ = inDrainQ;
+        quit.set(true);
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "setToQuit drain: " + inDrainQ + " " + this);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.ibm.ws.http.channel.h2internal.H2WorkQInterface#writeOrAddToQ(com.ibm.ws.http.channel.h2internal.H2WriteQEntry)
+     */
+    @Override
+    public WRITE_ACTION writeOrAddToQ(H2WriteQEntry entry) throws FlowControlException {
+        if (quit.get()) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "do not process write - Q told to quit");
+            }
+            return WRITE_ACTION.CONNECTION_QUIT;
+        }
+        if (entry.getFrameType() == FrameTypes.DATA) {
+            decreaseConnectionWindowUpdateWriteLimit(entry.getPayloadLength());
+        }
+
+        entry.setServicedOnQ(true);
+        queue.offer(entry);
+        int depth = queued.incrementAndGet();
+        int max = maxQueueDepth.get();
+        while (depth > max && !maxQueueDepth.compareAndSet(max, depth)) {
+            max = maxQueueDepth.get();
+        }
+
+        if (depth == 1) {
+            // this thread is the writer until the queue is empty or it hands over
+            drain(CALLER_PASSES);
+        }
+
+        // the caller waits on the latch of a sync entry, async entries have their callback called
+        return WRITE_ACTION.QUEUED;
+    }
+
+    /**
+     * Write the counted entries, a batch at a time, until there are none left.
+     * Only one thread at a time runs this, the one that took the count up from zero.
+     * The count of each batch is taken off even if the batch could not be written,
+     * so that the next writer is not locked out.
+     *
+     * @param passes number of batches to write before handing over to the executor
+     */
+    void drain(int passes) {
+        List<H2WriteQEntry> batch = new ArrayList<H2WriteQEntry>();
+        for (int pass = 0;; pass++) {
+            if (pass == passes && handOff()) {
+                return;
+            }
+            int count = Math.min(queued.get(), MAX_BATCH_ENTRIES);
+            int remaining;
+            try {
+                for (int i = 0; i < count; i++) {
+                    // every counted entry was put on the queue before it was counted
+                    batch.add(queue.poll());
+                }
+                IOException ioe = failure.get();
+                if (ioe != null) {
+                    fail(batch, ioe);
+                } else if (quit.get() && !drainQ) {
+                    fail(batch, new IOException("HTTP/2 connection is closing"));
+                } else {
+                    writeBatch(batch);
+                }
+            } catch (Throwable t) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "Write scheduler caught a Throwable: " + t);
+                }
+                writeFailed(batch, t instanceof IOException ? (IOException) t : new IOException(t));
+            } finally {
+                batch.clear();
+                remaining = queued.addAndGet(-count);
+            }
+            if (remaining == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hand the queue over to a thread of the executor. The count is left as it is, so no
+     * other thread becomes the writer.
+     *
+     * @return false if there is no executor to hand over to, so the caller keeps writing
+     */
+    @FFDCIgnore(RejectedExecutionException.class)
+    private boolean handOff() {
+        ExecutorService executorService = CHFWBundle.getExecutorService();
+        if (executorService == null) {
+            return false;
+        }
+        try {
+            executorService.execute(drainer);
+        } catch (RejectedExecutionException x) {
+            return false;
+        }
+        handOffs.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Write the frames of a batch of entries with a single write, and complete them.
+     * If the write fails the entries are failed instead, and the connection is closed.
+     */
+    private void writeBatch(List<H2WriteQEntry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<H2WriteQEntry> ordered = order(batch);
+        // buffers of the header blocks encoded for this write, released once it is done
+        List<WsByteBuffer> encoded = null;
+        IOException ioe;
+        try {
+            H2WriteQEntry first = ordered.get(0);
+            if (ordered.size() == 1 && first.getBuffer() != null) {
+                writeReqContext.setBuffer(first.getBuffer());
+            } else {
+                ArrayList<WsByteBuffer> buffers = new ArrayList<WsByteBuffer>();
+                for (H2WriteQEntry e : ordered) {
+                    if (e.getHeadersFrame() != null) {
+                        if (encoded == null) {
+                            encoded = new ArrayList<WsByteBuffer>();
+                        }
+                        for (WsByteBuffer b : e.getHeadersFrame().buildFramesForWrite()) {
+                            encoded.add(b);
+                            buffers.add(b);
+                        }
+                    } else if (e.getBuffer() != null) {
+                        buffers.add(e.getBuffer());
+                    } else if (e.getBuffers() != null) {
+                        for (WsByteBuffer b : e.getBuffers()) {
+                            if (b != null) {
+                                buffers.add(b);
+                            }
+                        }
+                    }
+                }
+                writeReqContext.setBuffers(buffers.toArray(new WsByteBuffer[buffers.size()]));
+            }
+
+            // the mux callback releases the latch of this entry when a write that did not complete right away is done
+            H2WriteQEntry batchEntry = new H2WriteQEntry(null, null, TCPWriteRequestContext.WRITE_ALL_DATA, first.getTimeout(),
+                                                         H2WriteQEntry.WRITE_TYPE.SYNC, FrameTypes.UNKNOWN, 0, 0);
+            batchEntry.armWriteCompleteLatch();
+            muxCallback.setCurrentQEntry(batchEntry);
+
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "writing " + ordered.size() + " entries, queue depth: " + queued.get());
+            }
+            VirtualConnection vc = writeReqContext.write(TCPWriteRequestContext.WRITE_ALL_DATA, muxCallback, false, first.getTimeout());
+            if (vc == null) {
+                batchEntry.waitWriteCompleteLatch();
+            }
+            ioe = batchEntry.getWriteError();
+            if (ioe == null) {
+                batches.incrementAndGet();
+                frames.addAndGet(ordered.size());
+                complete(ordered);
+                return;
+            }
+        } catch (Throwable t) {
+            ioe = t instanceof IOException ? (IOException) t : new IOException(t);
+        } finally {
+            if (encoded != null) {
+                for (WsByteBuffer b : encoded) {
+                    b.release();
+                }
+            }
+        }
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "write of batch failed: " + ioe);
+        }
+        writeFailed(ordered, ioe);
+    }
+
+    /**
+     * Fail the entries of a write that did not go out, and the entries after it. The
+     * first failure closes the connection, away from the writing thread because closing
+     * waits for outstanding writes to finish.
+     */
+    private void writeFailed(List<H2WriteQEntry> entries, IOException ioe) {
+        fail(entries, ioe);
+        if (failure.compareAndSet(null, ioe)) {
+            quit.set(true);
+            if (link != null) {
+                final IOException cause = ioe;
+                execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        link.closeConnectionLink(cause);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Order a batch for writing: frames of the connection first, then the frames
+     * of each stream, heaviest stream first. The frames of a stream keep the
+     * order in which they were added.
+     */
+    private List<H2WriteQEntry> order(List<H2WriteQEntry> batch) {
+        if (batch.size() == 1) {
+            return new ArrayList<H2WriteQEntry>(batch);
+        }
+        LinkedHashMap<Integer, List<H2WriteQEntry>> byStream = new LinkedHashMap<Integer, List<H2WriteQEntry>>();
+        for (H2WriteQEntry e : batch) {
+            List<H2WriteQEntry> l = byStream.get(e.getStreamID());
+            if (l == null) {
+                l = new ArrayList<H2WriteQEntry>(2);
+                byStream.put(e.getStreamID(), l);
+            }
+            l.add(e);
+        }
+        List<H2WriteQEntry> ordered = new ArrayList<H2WriteQEntry>(batch.size());
+        List<H2WriteQEntry> connection = byStream.remove(Node.ROOT_STREAM_ID);
+        if (connection != null) {
+            ordered.addAll(connection);
+        }
+        List<List<H2WriteQEntry>> streams = new ArrayList<List<H2WriteQEntry>>(byStream.values());
+        Collections.sort(streams, byWeight);
+        for (List<H2WriteQEntry> l : streams) {
+            ordered.addAll(l);
+        }
+        return ordered;
+    }
+
+    /**
+     * Let the threads waiting on the entries go, or call the callback of async entries.
+     */
+    private void complete(List<H2WriteQEntry> entries) {
+        for (H2WriteQEntry e : entries) {
+            if (e.getWriteType() == H2WriteQEntry.WRITE_TYPE.SYNC) {
+                e.hitWriteCompleteLatch();
+            } else {
+                execute(new AsyncCallback(e, null));
+            }
+        }
+    }
+
+    /**
+     * Let the threads waiting on the entries go with the error, or call the error callback of async entries.
+     */
+    private void fail(List<H2WriteQEntry> entries, IOException ioe) {
+        for (H2WriteQEntry e : entries) {
+            if (e.getWriteType() == H2WriteQEntry.WRITE_TYPE.SYNC) {
+                e.setWriteError(ioe);
+                e.hitWriteCompleteLatch();
+            } else {
+                execute(new AsyncCallback(e, ioe));
+            }
+        }
+    }
+
+    /**
+     * Run the task on a thread of the executor, or on this thread if there is no executor.
+     */
+    @FFDCIgnore(RejectedExecutionException.class)
+    private void execute(Runnable task) {
+        ExecutorService executorService = CHFWBundle.getExecutorService();
+        if (executorService != null) {
+            try {
+                executorService.execute(task);
+                return;
+            } catch (RejectedExecutionException x) {
+                // run it here
+            }
+        }
+        task.run();
+    }
+
+    private int weightOf(int streamID) {
+        Integer weight = weights.get(streamID);
+        return weight == null ? Node.DEFAULT_NODE_PRIORITY : weight;
+    }
+
+    @Override
+    public void addNewNodeToQ(int streamID, int parentStreamID, int priority, boolean exclusive) {
+        weights.putIfAbsent(streamID, priority);
+    }
+
+    @Override
+    public boolean removeNodeFromQ(int streamID) {
+        return weights.remove(streamID) != null;
+    }
+
+    @Override
+    public boolean updateNodeFrameParameters(int streamID, int newPriority, int newParentStreamID, boolean exclusive) {
+        weights.put(streamID, newPriority);
+        return true;
+    }
+
+    @Override
+    public void asyncCallbackComplete(H2WriteQEntry e) {}
+
+    @Override
+    public void incrementConnectionWindowUpdateLimit(int x) throws FlowControlException {
+        while (true) {
+            int current = connectionWindowUpdateWriteLimit.get();
+            long proposedValue = (long) current + (long) x;
+            if (proposedValue > Integer.MAX_VALUE) {
+                String s = "processWindowUpdateFrame: out of bounds increment, current connection write limit: " + current
+                           + " total would have been: " + proposedValue;
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, s);
+                }
+                throw new FlowControlException(s);
+            }
+            if (connectionWindowUpdateWriteLimit.compareAndSet(current, (int) proposedValue)) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "connectionWindowUpdateWriteLimit updated to: " + proposedValue);
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void decreaseConnectionWindowUpdateWriteLimit(int x) {
+        connectionWindowUpdateWriteLimit.addAndGet(-x);
+    }
+
+    @Override
+    public int getConnectionWriteLimit() {
+        return connectionWindowUpdateWriteLimit.get();
+    }
+
+    /**
+     * Query the number of entries waiting to be written, including those being written.
+     *
+     * @return int
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Query the highest number of entries that were waiting at one time.
+     *
+     * @return int
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Query the number of gather writes made.
+     *
+     * @return long
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Query the number of entries written.
+     *
+     * @return long
+     */
+    public long getFrameCount() {
+        return frames.get();
+    }
+
+    @Override
+    public String toString() {
+        return "H2WriteScheduler[queueDepth=" + queued.get() + " maxQueueDepth=" + maxQueueDepth.get() + " batches=" + batches.get()
+               + " frames=" + frames.get() + " handOffs=" + handOffs.get() + "]";
+    }
+
+    protected class AsyncCallback implements Runnable {
+
+        H2WriteQEntry e;
+        IOException ioe;
+
+        protected AsyncCallback(H2WriteQEntry x, IOException error) {
+            e = x;
+            ioe = error;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // use the VC and context that the calling thread/H2 Stream is using, not the mux ones.
+                VirtualConnection eVC = e.getConnectionContext().getVC();
+                TCPWriteRequestContext eTWC = e.getConnectionContext().getWriteInterface();
+                if (ioe == null) {
+                    e.getCallback().complete(eVC, eTWC);
+                } else {
+                    e.getCallback().error(eVC, eTWC, ioe);
+                }
+            } catch (Throwable t) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "caught a Throwable. log and leave: " + t);
+                }
+            }
+        }
+    }
+}
@@ -10,6 +10,10 @@
  *******************************************************************************/
 package com.ibm.ws.http.channel.h2internal.frames;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
 import com.ibm.ws.http.channel.h2internal.Constants;
@@ -20,6 +24,9 @@ import com.ibm.ws.http.channel.h2internal.exceptions.CompressionException;
 import com.ibm.ws.http.channel.h2internal.exceptions.FrameSizeException;
 import com.ibm.ws.http.channel.h2internal.exceptions.Http2Exception;
 import com.ibm.ws.http.channel.h2internal.exceptions.ProtocolException;
+import com.ibm.ws.http.channel.h2internal.hpack.H2HeaderField;
+import com.ibm.ws.http.channel.h2internal.hpack.H2HeaderTable;
+import com.ibm.ws.http.channel.h2internal.hpack.H2Headers;
 import com.ibm.ws.http.channel.h2internal.huffman.HuffmanEncoder;
 import com.ibm.wsspi.bytebuffer.WsByteBuffer;
 
@@ -50,6 +57,11 @@ public class FrameHeaders extends Frame {
     // used in the write path
     public byte[] headerBlockFragment = null;
 
+    // used in the write path when the header block is encoded as the frame is written
+    private List<H2HeaderField> headerFields = null;
+    private H2HeaderTable writeTable = null;
+    private H2ConnectionSettings remoteSettings = null;
+
     // used for the read path: we only really care about the final string headers
     public StringBuilder headers;
 
@@ -121,6 +133,65 @@ public class FrameHeaders extends Frame {
         setInitialized();
     }
 
+    /**
+     * Write frame constructor for a header block that is encoded by the writer of the
+     * connection, see buildFramesForWrite
+     */
+    public FrameHeaders(int streamId, List<H2HeaderField> headerFields, H2HeaderTable writeTable, H2ConnectionSettings remoteSettings,
+                        boolean endStream) {
+        super(streamId, 0, (byte) 0x00, false, FrameDirection.WRITE);
+        this.headerFields = headerFields;
+        this.writeTable = writeTable;
+        this.remoteSettings = remoteSettings;
+        this.END_STREAM_FLAG = endStream;
+        this.END_HEADERS_FLAG = true;
+        this.exclusive = false;
+        this.weight = 0;
+        frameType = FrameTypes.HEADERS;
+        setInitialized();
+    }
+
+    /**
+     * Query whether the header block of this frame is encoded when it is written.
+     *
+     * @return boolean
+     */
+    public boolean isEncodedOnWrite() {
+        return headerFields != null;
+    }
+
+    /**
+     * Encode the header block and build this frame, followed by CONTINUATION frames
+     * if the block does not fit in the max frame size of the peer. Encoding changes
+     * the write table of the connection, so this is only called by the writer of the
+     * connection, in the order in which the frames are written.
+     *
+     * @return WsByteBuffer[]
+     * @throws CompressionException
+     * @throws IOException
+     */
+    public WsByteBuffer[] buildFramesForWrite() throws CompressionException, IOException {
+        byte[] block = H2Headers.encodeHeaderBlock(writeTable, headerFields, remoteSettings.getHeaderTableSize());
+        int maxFrameSize = remoteSettings.getMaxFrameSize();
+        int frameCount = Math.max(1, (block.length + maxFrameSize - 1) / maxFrameSize);
+
+        headerBlockFragment = Arrays.copyOfRange(block, 0, Math.min(block.length, maxFrameSize));
+        payloadLength = headerBlockFragment.length;
+        writeFrameLength = SIZE_FRAME_BEFORE_PAYLOAD + payloadLength;
+        END_HEADERS_FLAG = (frameCount == 1);
+
+        WsByteBuffer[] buffers = new WsByteBuffer[frameCount];
+        buffers[0] = buildFrameForWrite();
+        for (int i = 1; i < frameCount; i++) {
+            byte[] fragment = Arrays.copyOfRange(block, i * maxFrameSize, Math.min(block.length, (i + 1) * maxFrameSize));
+            buffers[i] = new FrameContinuation(streamId, fragment, i == frameCount - 1, false, false).buildFrameForWrite();
+        }
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "buildFramesForWrite: stream " + streamId + " header block of " + block.length + " bytes in " + frameCount + " frames");
+        }
+        return buffers;
+    }
+
     @Override
     public void processPayload(FrameReadProcessor frp) throws FrameSizeException {
         // +---------------+
@@ -231,6 +302,9 @@ public class FrameHeaders extends Frame {
     public void validate(H2ConnectionSettings settings) throws Http2Exception {
         if (streamId == 0) {
             throw new ProtocolException("HEADERS frame streamID cannot be 0x0");
+        } else if (isEncodedOnWrite()) {
+            // the header block is encoded, and split to fit the max frame size, when it is written
+            return;
         } else if (this.getPayloadLength() <= 0) {
             throw new CompressionException("HEADERS frame must have a header block fragment");
         } else if (this.getPayloadLength() > settings.getMaxFrameSize()) {
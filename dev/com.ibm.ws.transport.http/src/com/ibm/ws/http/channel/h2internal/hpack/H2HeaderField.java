@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2017 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -101,6 +101,11 @@ public class H2HeaderField {
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return 31 * nameHash + valueHash;
+    }
+
     @Override
     public String toString() {
         return name + ": " + value;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2017 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,11 +11,36 @@
 package com.ibm.ws.http.channel.h2internal.hpack;
 
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class H2HeaderTable {
 
     private final DynamicTable dynamicTable;
 
+    /** Number of encoded header fields that are kept */
+    private static final int ENCODED_FIELDS_SIZE = 64;
+
+    /** Largest header field, by its table entry size, whose encoding is kept */
+    private static final int ENCODED_FIELD_MAX_SIZE = 1024;
+
+    /**
+     * Encoded representations of header fields, which only depend on the content
+     * of the table, so they are reused until the table changes. Access ordered so
+     * that the least recently used field is dropped when full.
+     */
+    private final LinkedHashMap<H2HeaderField, byte[]> encodedFields = new LinkedHashMap<H2HeaderField, byte[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<H2HeaderField, byte[]> eldest) {
+            return size() > ENCODED_FIELDS_SIZE;
+        }
+    };
+
+    /** Number of changes made to the table, guarded by encodedFields */
+    private int modCount = 0;
+
     public H2HeaderTable() {
         dynamicTable = new DynamicTable();
     }
@@ -95,10 +120,71 @@ public class H2HeaderTable {
 
     public void addHeaderEntry(H2HeaderField entry) {
         this.dynamicTable.addDynamicEntry(entry);
+        tableChanged();
     }
 
     public void updateTableSize(int size) {
         this.dynamicTable.updateDynamicTableSize(size);
+        tableChanged();
+    }
+
+    private void tableChanged() {
+        synchronized (encodedFields) {
+            modCount++;
+            encodedFields.clear();
+        }
+    }
+
+    /**
+     * Query the number of changes made to the table, to be passed to
+     * putEncodedField along with an encoding that was computed afterwards.
+     *
+     * @return int
+     */
+    int getModCount() {
+        synchronized (encodedFields) {
+            return modCount;
+        }
+    }
+
+    /**
+     * Find the encoded representation of a header field.
+     *
+     * @param field
+     * @return byte[] which must not be modified, or null if the field is not known
+     */
+    byte[] getEncodedField(H2HeaderField field) {
+        synchronized (encodedFields) {
+            return encodedFields.get(field);
+        }
+    }
+
+    /**
+     * Keep the encoded representation of a header field, unless the table has
+     * changed since it was encoded.
+     *
+     * @param field
+     * @param encoded
+     * @param encodedModCount the value of getModCount before the field was encoded
+     */
+    void putEncodedField(H2HeaderField field, byte[] encoded, int encodedModCount) {
+        if (field.getSize() > ENCODED_FIELD_MAX_SIZE) {
+            return;
+        }
+        synchronized (encodedFields) {
+            if (encodedModCount == modCount) {
+                encodedFields.put(field, encoded);
+            }
+        }
+    }
+
+    /**
+     * Query the maximum size of the dynamic table.
+     *
+     * @return int
+     */
+    public int getDynamicTableSize() {
+        return this.dynamicTable.tableAddressSpace();
     }
 
     public int getDynamicTableUsedAddressSpace() {
@@ -13,6 +13,10 @@ package com.ibm.ws.http.channel.h2internal.hpack;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
@@ -32,6 +36,12 @@ public class H2Headers {
                                                          GenericConstants.GENERIC_TRACE_NAME,
                                                          null);
 
+    /**
+     * Response headers that are added to the dynamic table when written, because
+     * the same values come back on many responses of a connection
+     */
+    private static final Set<String> INDEXED_WRITE_HEADERS = new HashSet<String>(Arrays.asList("content-type", "cache-control", "set-cookie"));
+
     /**
      * Decode header bytes without validating against connection settings
      *
@@ -337,6 +347,23 @@ public class H2Headers {
         //or modifying table.
         String compliantName = name.toLowerCase();
 
+        //A field that is not added to the table encodes the same way until the table
+        //changes, so reuse a previous encoding of it if there is one.
+        boolean reuse = huffman && type == LiteralIndexType.NOINDEXING;
+        H2HeaderField field = null;
+        int modCount = 0;
+        if (reuse) {
+            field = new H2HeaderField(compliantName, value);
+            modCount = table.getModCount();
+            byte[] encoded = table.getEncodedField(field);
+            if (encoded != null) {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.exit(tc, "encodeHeader", "reusing previous encoding");
+                }
+                return encoded;
+            }
+        }
+
         //First byte will specify the indexing type and index location, if any, for the header.
 
         int indexLocation = 0; // default index not in table.
@@ -351,12 +378,16 @@ public class H2Headers {
         //matches both header name or value or the last one that matches name. Otherwise, it returns
         //null.
         indexedHeader = table.getHeaderEntry(compliantName, value);
+        if (indexedHeader != null && !compliantName.equals(indexedHeader.getName())) {
+            //entries are found by hash code, only use one whose name is the same
+            indexedHeader = null;
+        }
 
         if (indexedHeader != null) { //found indexed header
             //Location of found indexed header in table
             indexLocation = indexedHeader.getCurrentIndex();
 
-            if (indexedHeader.getValueHash() == value.hashCode()) {
+            if (indexedHeader.getValueHash() == value.hashCode() && value.equals(indexedHeader.getValue())) {
                 //If the header name and value both match, then this header is already indexed.
                 //Encode using a reference to the table entry. No changes are to be made to the
                 //dynamic table. With nothing table operations, return at this point.
@@ -368,7 +399,11 @@ public class H2Headers {
                 if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                     Tr.exit(tc, "encodeHeader");
                 }
-                return IntegerRepresentation.encode(indexLocation, ByteFormatType.INDEXED);
+                byte[] encoded = IntegerRepresentation.encode(indexLocation, ByteFormatType.INDEXED);
+                if (reuse) {
+                    table.putEncodedField(field, encoded, modCount);
+                }
+                return encoded;
             }
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                 Tr.debug(tc, "Found header name in table at location: " + indexLocation + ".");
@@ -406,8 +441,51 @@ public class H2Headers {
             Tr.exit(tc, "encodeHeader");
         }
 
-        return encodedHeader.toByteArray();
+        byte[] encoded = encodedHeader.toByteArray();
+        if (reuse) {
+            table.putEncodedField(field, encoded, modCount);
+        }
+        return encoded;
+
+    }
+
+    /**
+     * Encode a block of header fields, in order, against the write table of a
+     * connection. Fields that are indexed change the table, so the blocks of a
+     * connection have to be encoded in the order they are written.
+     *
+     * @param table
+     * @param fields
+     * @param maxTableSize the header table size in the settings of the peer; if it
+     *            is smaller than the table, the table is reduced to it and the block starts
+     *            with the size update
+     * @return byte[]
+     * @throws CompressionException
+     * @throws IOException
+     */
+    public static byte[] encodeHeaderBlock(H2HeaderTable table, List<H2HeaderField> fields, int maxTableSize) throws CompressionException, IOException {
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        if (maxTableSize < table.getDynamicTableSize()) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Reducing the write table size to " + maxTableSize);
+            }
+            table.updateTableSize(maxTableSize);
+            block.write(IntegerRepresentation.encode(maxTableSize, ByteFormatType.TABLE_UPDATE));
+        }
+        for (H2HeaderField field : fields) {
+            block.write(encodeHeader(table, field.getName(), field.getValue(), getWriteIndexType(field.getName())));
+        }
+        return block.toByteArray();
+    }
 
+    /**
+     * Query how a header field that is written is represented.
+     *
+     * @param name
+     * @return LiteralIndexType
+     */
+    static LiteralIndexType getWriteIndexType(String name) {
+        return INDEXED_WRITE_HEADERS.contains(name.toLowerCase()) ? LiteralIndexType.INDEX : LiteralIndexType.NOINDEXING;
     }
 
     private static void encodeFragment(ByteArrayOutputStream encodedHeader, String headerFragment, boolean huffman) throws CompressionException, IOException {
@@ -415,6 +493,11 @@ public class H2Headers {
 
         byte[] fragmentBytes = headerFragment.getBytes(HpackConstants.HPACK_CHAR_SET);
         ByteFormatType encodingType = ByteFormatType.NOHUFFMAN;
+        if (huffman) {
+            //The Huffman code of characters outside of the common set is longer
+            //than a byte, so only use it when it is no longer than the string itself.
+            huffman = HuffmanEncoder.getHuffmanLength(fragmentBytes) <= fragmentBytes.length;
+        }
         if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
             Tr.debug(tc, "Encoding using huffman encoding: " + huffman);
         }
@@ -20,6 +20,7 @@ public class HpackConstants {
     public static byte MASK_40 = 0x40; // 0100 0000
     public static byte MASK_00 = 0x00; // 0000 0000
     public static byte MASK_10 = 0x10; // 0001 0000
+    public static byte MASK_20 = 0x20; // 0010 0000
 
     public static byte MASK_0F = (byte) 0x0F; //0000 1111
     public static byte MASK_1F = (byte) 0x1F; //0001 1111
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2017 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -107,6 +107,10 @@ public class IntegerRepresentation {
                 N = 6;
                 format = HpackConstants.MASK_40;
                 break;
+            case TABLE_UPDATE:
+                N = 5;
+                format = HpackConstants.MASK_20;
+                break;
             case NOINDEXING:
                 N = 4;
                 format = HpackConstants.MASK_00;
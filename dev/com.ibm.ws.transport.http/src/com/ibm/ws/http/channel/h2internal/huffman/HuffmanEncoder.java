@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2017 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -85,6 +85,21 @@ public class HuffmanEncoder {
                                0x7ffffeb, 0xffffffe, 0x7ffffec, 0x7ffffed, 0x7ffffee, 0x7ffffef, 0x7fffff0, 0x3ffffee
     };
 
+    /**
+     * Compute the number of bytes the Huffman encoding of the given bytes would
+     * take, without encoding them.
+     *
+     * @param x1 the bytes to encode
+     * @return the length of the encoding in bytes, including the padding of the last byte
+     */
+    public static int getHuffmanLength(byte[] x1) {
+        long totalNumberOfHuffmanBits = 0;
+        for (int i = 0; i < x1.length; i++) {
+            totalNumberOfHuffmanBits += AtoHbitNumber[x1[i] & 0xFF];
+        }
+        return (int) ((totalNumberOfHuffmanBits + 7) / 8);
+    }
+
     public static byte[] convertAsciiToHuffman(byte[] x1) {
 
         int numberOfBits = 0;
@@ -103,7 +118,7 @@ public class HuffmanEncoder {
 
         // determine the array length of the output huffmanArray
         for (int i = 0; i < asciiLength; i++) {
-            totalNumberOfHuffmanBits = totalNumberOfHuffmanBits + AtoHbitNumber[x1[i]];
+            totalNumberOfHuffmanBits = totalNumberOfHuffmanBits + AtoHbitNumber[x1[i] & 0xFF];
             huffmanArrayLength = totalNumberOfHuffmanBits / 8;
             huffmanExtraBits = 8 - (totalNumberOfHuffmanBits % 8);
             if (huffmanExtraBits != 8) {
@@ -118,8 +133,8 @@ public class HuffmanEncoder {
 
         for (int i = 0; i < asciiLength; i++) {
 
-            numberOfBits = AtoHbitNumber[x1[i]];
-            huffmanValue = AtoHValue[x1[i]];
+            numberOfBits = AtoHbitNumber[x1[i] & 0xFF];
+            huffmanValue = AtoHValue[x1[i] & 0xFF];
 
             // add new value, with the exact number of bits, to the new huffman sequence of bits
             // add them one at a time since we have the issue of running over the byte boundary on every bit
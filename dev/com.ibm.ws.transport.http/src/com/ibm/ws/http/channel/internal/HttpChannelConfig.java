@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2013 IBM Corporation and others.
+ * Copyright (c) 2004, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -21,10 +21,13 @@ import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
 import com.ibm.ws.ffdc.FFDCFilter;
 import com.ibm.ws.genericbnf.internal.GenericUtils;
+import com.ibm.ws.genericbnf.internal.HeaderBlockCache;
 import com.ibm.ws.http.channel.h2internal.Constants;
 import com.ibm.ws.http.dispatcher.internal.HttpDispatcher;
 import com.ibm.ws.http.internal.HttpEndpointImpl;
 import com.ibm.ws.http.logging.internal.DisabledLogger;
+import com.ibm.wsspi.genericbnf.HeaderKeys;
+import com.ibm.wsspi.http.channel.values.HttpHeaderKeys;
 import com.ibm.wsspi.http.channel.values.VersionValues;
 import com.ibm.wsspi.http.logging.AccessLog;
 import com.ibm.wsspi.http.logging.DebugLog;
@@ -132,6 +135,14 @@ public class HttpChannelConfig {
     /** The amount of time the connection will be left open when HTTP/2 goes into an idle state */
     private long h2ConnectionCloseTimeout = 30;
     private int h2ConnectionReadWindowSize = Constants.SPEC_INITIAL_WINDOW_SIZE; // init the connection read window to the spec max
+    /** Whether HTTP/2 frames are written through the batching write scheduler */
+    private boolean h2BatchWrites = false;
+    /** Cache of marshalled response header blocks, null if disabled */
+    private HeaderBlockCache headerBlockCache = null;
+    /** Whether HTTP/2 receive windows are sized from the bandwidth-delay product */
+    private boolean h2WindowAutotune = false;
+    /** Bytes by which all HTTP/2 connections may grow their receive windows */
+    private long h2WindowAutotuneMemoryLimit = 64L * 1024 * 1024;
     /** PI81572 Purge the remaining response body off the wire when clear is called */
     private boolean purgeRemainingResponseBody = true;
 
@@ -353,6 +364,22 @@ public class HttpChannelConfig {
                 props.put(HttpConfigConstants.PROPNAME_H2_CONN_READ_WINDOW_SIZE, value);
                 continue;
             }
+            if (key.equalsIgnoreCase(HttpConfigConstants.PROPNAME_H2_BATCH_WRITES)) {
+                props.put(HttpConfigConstants.PROPNAME_H2_BATCH_WRITES, value);
+                continue;
+            }
+            if (key.equalsIgnoreCase(HttpConfigConstants.PROPNAME_HEADER_BLOCK_CACHE_SIZE)) {
+                props.put(HttpConfigConstants.PROPNAME_HEADER_BLOCK_CACHE_SIZE, value);
+                continue;
+            }
+            if (key.equalsIgnoreCase(HttpConfigConstants.PROPNAME_H2_WINDOW_AUTOTUNE)) {
+                props.put(HttpConfigConstants.PROPNAME_H2_WINDOW_AUTOTUNE, value);
+                continue;
+            }
+            if (key.equalsIgnoreCase(HttpConfigConstants.PROPNAME_H2_WINDOW_AUTOTUNE_MEMORY_LIMIT)) {
+                props.put(HttpConfigConstants.PROPNAME_H2_WINDOW_AUTOTUNE_MEMORY_LIMIT, value);
+                continue;
+            }
             if (key.equalsIgnoreCase(HttpConfigConstants.PROPNAME_PURGE_REMAINING_RESPONSE)) {
                 props.put(HttpConfigConstants.PROPNAME_PURGE_REMAINING_RESPONSE, value);
                 continue;
@@ -391,6 +418,7 @@ public class HttpChannelConfig {
         parseWriteTimeout(props);
         parseByteCacheSize(props);
         parseDelayedExtract(props);
+        parseHeaderBlockCacheSize(props);
         parseBinaryTransport(props);
         parseLimitFieldSize(props);
         parseLimitNumberHeaders(props);
@@ -416,6 +444,8 @@ public class HttpChannelConfig {
         parseSkipCookiePathQuotes(props); //738893
         parseH2ConnCloseTimeout(props);
         parseH2ConnReadWindowSize(props);
+        parseH2BatchWrites(props);
+        parseH2WindowAutotune(props);
         parsePurgeRemainingResponseBody(props); //PI81572
         parseH2ConnectionIdleTimeout(props);
         parseH2MaxConcurrentStreams(props);
@@ -746,6 +776,30 @@ public class HttpChannelConfig {
         }
     }
 
+    /**
+     * Check the input configuration for the number of marshalled response
+     * header blocks to cache.
+     *
+     * @param props
+     */
+    private void parseHeaderBlockCacheSize(Map<Object, Object> props) {
+        Object value = props.get(HttpConfigConstants.PROPNAME_HEADER_BLOCK_CACHE_SIZE);
+        if (null != value) {
+            try {
+                int size = rangeLimit(convertInteger(value), 0, HttpConfigConstants.MAX_HEADER_BLOCK_CACHE_SIZE);
+                this.headerBlockCache = (0 == size) ? null : new HeaderBlockCache(size, new HeaderKeys[] { HttpHeaderKeys.HDR_DATE, HttpHeaderKeys.HDR_CONTENT_LENGTH });
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                    Tr.event(tc, "Config: header block cache size is " + size);
+                }
+            } catch (NumberFormatException nfe) {
+                FFDCFilter.processException(nfe, getClass().getName() + ".parseHeaderBlockCacheSize", "1");
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                    Tr.event(tc, "Config: Invalid header block cache size of " + value);
+                }
+            }
+        }
+    }
+
     /**
      * Check the input configuration for the flag on whether to immediately
      * extract header values during the parsing stage or not.
@@ -1275,6 +1329,40 @@ public class HttpChannelConfig {
         }
     }
 
+    private void parseH2BatchWrites(Map<?, ?> props) {
+        Object value = props.get(HttpConfigConstants.PROPNAME_H2_BATCH_WRITES);
+        if (null != value) {
+            this.h2BatchWrites = convertBoolean(value);
+            if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                Tr.event(tc, "Config: H2 Batch Writes is " + isH2BatchWrites());
+            }
+        }
+    }
+
+    private void parseH2WindowAutotune(Map<?, ?> props) {
+        Object value = props.get(HttpConfigConstants.PROPNAME_H2_WINDOW_AUTOTUNE);
+        if (null != value) {
+            this.h2WindowAutotune = convertBoolean(value);
+            if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                Tr.event(tc, "Config: H2 Window Autotune is " + isH2WindowAutotune());
+            }
+        }
+        value = props.get(HttpConfigConstants.PROPNAME_H2_WINDOW_AUTOTUNE_MEMORY_LIMIT);
+        if (null != value) {
+            try {
+                this.h2WindowAutotuneMemoryLimit = minLimit(convertLong(value), 0L);
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                    Tr.event(tc, "Config: H2 Window Autotune Memory Limit is " + getH2WindowAutotuneMemoryLimit());
+                }
+            } catch (NumberFormatException nfe) {
+                FFDCFilter.processException(nfe, getClass().getName() + ".parseH2WindowAutotune", "1");
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                    Tr.event(tc, "Config: Invalid H2 Window Autotune Memory Limit of " + value);
+                }
+            }
+        }
+    }
+
     private void parseH2ConnReadWindowSize(Map<?, ?> props) {
         Object value = props.get(HttpConfigConstants.PROPNAME_H2_CONN_READ_WINDOW_SIZE);
         if (null != value) {
@@ -1559,6 +1647,15 @@ public class HttpChannelConfig {
         return this.byteCacheSize;
     }
 
+    /**
+     * Access the cache of marshalled response header blocks.
+     *
+     * @return HeaderBlockCache, null if the cache is disabled
+     */
+    public HeaderBlockCache getHeaderBlockCache() {
+        return this.headerBlockCache;
+    }
+
     /**
      * Query whether the configuration says to extract the header
      * value immediately (true) or wait until it is requested by a
@@ -1860,6 +1957,36 @@ public class HttpChannelConfig {
         return h2ConnectionReadWindowSize;
     }
 
+    /**
+     * Query whether the frames of HTTP/2 streams are written through the
+     * batching write scheduler.
+     *
+     * @return boolean
+     */
+    public boolean isH2BatchWrites() {
+        return h2BatchWrites;
+    }
+
+    /**
+     * Query whether the receive windows of HTTP/2 connections are sized from
+     * the bandwidth-delay product of the connection.
+     *
+     * @return boolean
+     */
+    public boolean isH2WindowAutotune() {
+        return h2WindowAutotune;
+    }
+
+    /**
+     * Query the limit on the bytes by which all HTTP/2 connections may grow
+     * their receive windows when autotuning.
+     *
+     * @return long
+     */
+    public long getH2WindowAutotuneMemoryLimit() {
+        return h2WindowAutotuneMemoryLimit;
+    }
+
     /**
      * Query whether or not the HTTP Channel should purge remaining response data
      *
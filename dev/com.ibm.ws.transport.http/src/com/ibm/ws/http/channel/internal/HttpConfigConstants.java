@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2009 IBM Corporation and others.
+ * Copyright (c) 2004, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -334,6 +334,33 @@ public class HttpConfigConstants {
 
     public static final String PROPNAME_H2_CONN_READ_WINDOW_SIZE = "H2ConnReadWindowSize";
 
+    /**
+     * Property controlling whether the frames of HTTP/2 streams are written through
+     * the batching write scheduler rather than the priority write tree
+     */
+    public static final String PROPNAME_H2_BATCH_WRITES = "H2BatchWrites";
+
+    /**
+     * Property controlling whether the receive windows of HTTP/2 connections are
+     * sized from the measured bandwidth-delay product of the connection
+     */
+    public static final String PROPNAME_H2_WINDOW_AUTOTUNE = "H2WindowAutotune";
+
+    /**
+     * Property limiting the bytes by which all HTTP/2 connections together may
+     * grow their receive windows when autotuning is enabled
+     */
+    public static final String PROPNAME_H2_WINDOW_AUTOTUNE_MEMORY_LIMIT = "H2WindowAutotuneMemoryLimit";
+
+    /**
+     * Property setting the number of marshalled response header blocks that are
+     * cached for reuse, where 0 disables the cache
+     */
+    public static final String PROPNAME_HEADER_BLOCK_CACHE_SIZE = "HeaderBlockCacheSize";
+
+    /** Maximum number of cached response header blocks */
+    public static final int MAX_HEADER_BLOCK_CACHE_SIZE = 4096;
+
     //PI81572 - Purge the remaining response body off the wire
     public static final String PROPNAME_PURGE_REMAINING_RESPONSE = "PurgeRemainingResponseBody";
 
@@ -1990,7 +1990,10 @@ public class HttpRequestMessageImpl extends HttpBaseMessageImpl implements HttpR
         HttpInboundServiceContext isc = (HttpInboundServiceContext) getServiceContext();
         HttpInboundLink link = ((HttpInboundServiceContextImpl) isc).getLink();
 
-        H2HeaderTable h2WriteTable = ((H2HttpInboundLinkWrap) link).muxLink.getWriteTable();
+        // The same header block is decoded locally as the request of the promised stream,
+        // against the read table, and the write table changes as the connection writer
+        // encodes responses, so only refer to the static table
+        H2HeaderTable staticTable = new H2HeaderTable(0);
 
         // Get the request headers from the pushBuilder.
         // Create a headers block to be use for the push_promise and headers frames
@@ -2010,14 +2013,14 @@ public class HttpRequestMessageImpl extends HttpBaseMessageImpl implements HttpR
 
         try {
             // If all is well, start encoding, first the method
-            ppStream.write(H2Headers.encodeHeader(h2WriteTable, HpackConstants.METHOD, pushBuilder.getMethod(), LiteralIndexType.NOINDEXING));
+            ppStream.write(H2Headers.encodeHeader(staticTable, HpackConstants.METHOD, pushBuilder.getMethod(), LiteralIndexType.NOINDEXING));
 
             // Encode the scheme
             String scheme = new String("https");
             if (!isc.isSecure()) {
                 scheme = new String("http");
             }
-            ppStream.write(H2Headers.encodeHeader(h2WriteTable, HpackConstants.SCHEME, scheme, LiteralIndexType.NOINDEXING));
+            ppStream.write(H2Headers.encodeHeader(staticTable, HpackConstants.SCHEME, scheme, LiteralIndexType.NOINDEXING));
 
             // Encode authority
             // If the :authority header was sent in the request, get the information from there
@@ -2038,9 +2041,9 @@ public class HttpRequestMessageImpl extends HttpBaseMessageImpl implements HttpR
                 }
             }
 
-            ppStream.write(H2Headers.encodeHeader(h2WriteTable, HpackConstants.AUTHORITY, auth, LiteralIndexType.NOINDEXING));
+            ppStream.write(H2Headers.encodeHeader(staticTable, HpackConstants.AUTHORITY, auth, LiteralIndexType.NOINDEXING));
 
-            ppStream.write(H2Headers.encodeHeader(h2WriteTable, HpackConstants.PATH, pbPath, LiteralIndexType.NOINDEXING));
+            ppStream.write(H2Headers.encodeHeader(staticTable, HpackConstants.PATH, pbPath, LiteralIndexType.NOINDEXING));
 
             if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                 Tr.debug(tc, "HTTPRequestMessageImpl: Method is GET,  scheme is " + scheme + ", auth is " + auth);
@@ -2056,7 +2059,7 @@ public class HttpRequestMessageImpl extends HttpBaseMessageImpl implements HttpR
                     if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                         Tr.debug(tc, "HTTPRequestMessageImpl.getHeaders() " + hf.getName() + " " + hf.asString());
                     }
-                    ppStream.write(H2Headers.encodeHeader(h2WriteTable, hf.getName(), hf.asString(), LiteralIndexType.NOINDEXING));
+                    ppStream.write(H2Headers.encodeHeader(staticTable, hf.getName(), hf.asString(), LiteralIndexType.NOINDEXING));
 
                 }
             } else {
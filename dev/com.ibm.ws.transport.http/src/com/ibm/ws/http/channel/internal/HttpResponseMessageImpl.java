@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2009 IBM Corporation and others.
+ * Copyright (c) 2004, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@ package com.ibm.ws.http.channel.internal;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -22,6 +23,7 @@ import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
 import com.ibm.ws.genericbnf.internal.GenericConstants;
 import com.ibm.ws.genericbnf.internal.GenericUtils;
+import com.ibm.ws.genericbnf.internal.HeaderBlockCache;
 import com.ibm.ws.genericbnf.internal.HeaderHandler;
 import com.ibm.ws.http.channel.h2internal.H2HttpInboundLinkWrap;
 import com.ibm.ws.http.channel.h2internal.exceptions.CompressionException;
@@ -519,6 +521,18 @@ public class HttpResponseMessageImpl extends HttpBaseMessageImpl implements Http
         return true;
     }
 
+    /*
+     * @see com.ibm.ws.genericbnf.internal.BNFHeadersImpl#getHeaderBlockCache()
+     */
+    @Override
+    protected HeaderBlockCache getHeaderBlockCache() {
+        // only responses that this server sends use the cache
+        if (isIncoming() || null == getServiceContext()) {
+            return null;
+        }
+        return getServiceContext().getHttpConfig().getHeaderBlockCache();
+    }
+
     /**
      * Marshall the first line.
      *
@@ -555,13 +569,12 @@ public class HttpResponseMessageImpl extends HttpBaseMessageImpl implements Http
         firstLine[0] = allocateBuffer(getOutgoingBufferSize());
 
         LiteralIndexType indexType = LiteralIndexType.NOINDEXING;
-        //For the time being, there will be no indexing on the responses to guarantee
-        //the write context is concurrent to the remote endpoint's read context. Remote
-        //intermediaries could index if they so desire, so setting NoIndexing (as
-        //opposed to NeverIndexing).
-        //TODO: investigate how streams and priority can work together with indexing on
-        //responses.
-        //LiteralIndexType indexType = isPushPromise ? LiteralIndexType.NOINDEXING : LiteralIndexType.INDEX;
+        //Responses encoded here are encoded by the thread of the stream, not in the order
+        //the streams are written, so nothing is indexed to keep the write context the
+        //same as the remote endpoint's read context. Remote intermediaries could index
+        //if they so desire, so setting NoIndexing (as opposed to NeverIndexing). When
+        //the connection writer encodes the response, see getH2HeaderFields, repeatable
+        //fields are indexed.
         //Corresponding dynamic table
 
         H2HeaderTable table = this.getH2HeaderTable();
@@ -596,6 +609,24 @@ public class HttpResponseMessageImpl extends HttpBaseMessageImpl implements Http
         return firstLine;
     }
 
+    /**
+     * Collect the status and the headers of this response, in order, for the writer
+     * of the HTTP/2 connection to encode as the frame is written.
+     *
+     * @return List<H2HeaderField>
+     * @throws MessageSentException
+     */
+    public List<H2HeaderField> getH2HeaderFields() throws MessageSentException {
+        preMarshallMessage();
+        List<H2HeaderField> fields = new ArrayList<H2HeaderField>();
+        fields.add(new H2HeaderField(HpackConstants.STATUS, getStatusCodeAsInt() + ""));
+
+        //Remove non required HTTP/2.0 headers
+        headerComplianceCheck();
+        collectH2Headers(fields);
+        return fields;
+    }
+
     /**
      * Called for marshalling the first line of binary HTTP responses.
      *
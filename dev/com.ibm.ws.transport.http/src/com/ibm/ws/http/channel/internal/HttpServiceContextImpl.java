@@ -34,6 +34,7 @@ import com.ibm.ws.http.channel.h2internal.exceptions.Http2Exception;
 import com.ibm.ws.http.channel.h2internal.frames.Frame;
 import com.ibm.ws.http.channel.h2internal.frames.FramePPHeaders;
 import com.ibm.ws.http.channel.h2internal.frames.FramePushPromise;
+import com.ibm.ws.http.channel.h2internal.hpack.H2HeaderField;
 import com.ibm.ws.http.channel.h2internal.hpack.H2HeaderTable;
 import com.ibm.ws.http.channel.h2internal.hpack.H2Headers;
 import com.ibm.ws.http.channel.h2internal.hpack.HpackConstants;
@@ -2008,16 +2009,22 @@ public abstract class HttpServiceContextImpl implements HttpServiceContext, FFDC
 
         // get marshalled header buffers
         WsByteBuffer[] headerBuffers = null;
+        // when set, the writer of the HTTP/2 connection encodes the response headers
+        boolean encodeOnWrite = false;
         try {
             // Contingent on the type of message, call the appropriate
             // marshalling method
 
             if (this.isH2Connection) {
-                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
-                    Tr.debug(tc, "formatHeaders: On an HTTP/2.0 connection, encoding the headers");
-                }
+                encodeOnWrite = msg instanceof HttpResponseMessageImpl
+                                && ((H2HttpInboundLinkWrap) ((HttpInboundServiceContextImpl) this).getLink()).encodesHeadersOnWrite();
+                if (!encodeOnWrite) {
+                    if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                        Tr.debug(tc, "formatHeaders: On an HTTP/2.0 connection, encoding the headers");
+                    }
 
-                headerBuffers = msg.encodeH2Message();
+                    headerBuffers = msg.encodeH2Message();
+                }
             } else {
                 if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                     Tr.debug(tc, "formatHeaders: On an non-HTTP/2.0 connection, marshalling the headers");
@@ -2053,7 +2060,12 @@ public abstract class HttpServiceContextImpl implements HttpServiceContext, FFDC
                 if (this.getRequestMethod().equals(MethodValues.HEAD)) {
                     complete = true;
                 }
-                ArrayList<Frame> headerFrames = link.prepareHeaders(WsByteBufferUtils.asByteArray(headerBuffers), complete);
+                ArrayList<Frame> headerFrames;
+                if (encodeOnWrite) {
+                    headerFrames = link.prepareHeaders(((HttpResponseMessageImpl) msg).getH2HeaderFields(), complete);
+                } else {
+                    headerFrames = link.prepareHeaders(WsByteBufferUtils.asByteArray(headerBuffers), complete);
+                }
 
                 if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                     Tr.debug(tc, "formatHeaders: On an HTTP/2.0 connection, adding header frames to be written : " + headerFrames);
@@ -2394,9 +2406,16 @@ public abstract class HttpServiceContextImpl implements HttpServiceContext, FFDC
                     if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                         Tr.debug(tc, "sendFullOutgoing : creating trailers");
                     }
-                    WsByteBuffer[] trailers = marshallOutgoingH2Trailers(h2Link.getWriteTable());
-                    if (trailers != null) {
-                        framesToWrite.addAll(h2Link.prepareHeaders(WsByteBufferUtils.asByteArray(trailers), true));
+                    if (h2Link.encodesHeadersOnWrite()) {
+                        List<H2HeaderField> trailers = collectOutgoingH2Trailers();
+                        if (trailers != null) {
+                            framesToWrite.addAll(h2Link.prepareHeaders(trailers, true));
+                        }
+                    } else {
+                        WsByteBuffer[] trailers = marshallOutgoingH2Trailers(h2Link.getWriteTable());
+                        if (trailers != null) {
+                            framesToWrite.addAll(h2Link.prepareHeaders(WsByteBufferUtils.asByteArray(trailers), true));
+                        }
                     }
                 } else {
                     framesToWrite.addAll(h2Link.prepareBody(null, 0, this.isFinalWrite));
@@ -2617,6 +2636,30 @@ public abstract class HttpServiceContextImpl implements HttpServiceContext, FFDC
         return buffers;
     }
 
+    /**
+     * Collect the outgoing trailers, if any exist, for the writer of the HTTP/2
+     * connection to encode.
+     *
+     * @return the trailer fields. NULL will be returned if no trailers exist.
+     */
+    private List<H2HeaderField> collectOutgoingH2Trailers() {
+
+        HttpTrailersImpl trailers = getMessageBeingSent().getTrailersImpl();
+        List<H2HeaderField> fields = null;
+        if (null != trailers) {
+            trailers.computeRemainingTrailers();
+            if (0 < trailers.getNumberOfHeaders()) {
+                fields = new ArrayList<H2HeaderField>();
+                trailers.collectH2Headers(fields);
+            } else {
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "Warning: no actual trailers to marshall.");
+                }
+            }
+        }
+        return fields;
+    }
+
     /**
      * write out all the buffers asynchronously. If the TCP channel can
      * write the data immediately, it will return the VirtualConnection.
@@ -5093,22 +5136,25 @@ public abstract class HttpServiceContextImpl implements HttpServiceContext, FFDC
         String uri = header.asString().substring(header.asString().indexOf('<') + 1, header.asString().indexOf('>'));
 
         // Encode headers for the push_promise frame, add them to the headerBlockFragment
-        H2HeaderTable h2WriteTable = ((H2HttpInboundLinkWrap) link).muxLink.getWriteTable();
+        // The same header block is decoded locally as the request of the promised stream,
+        // against the read table, and the write table changes as the connection writer
+        // encodes responses, so only refer to the static table
+        H2HeaderTable staticTable = new H2HeaderTable(0);
         ByteArrayOutputStream ppHb = new ByteArrayOutputStream();
         try {
             // Add the four required pseudo headers to the push_promise frame header block fragment
             // :method
-            ppHb.write(H2Headers.encodeHeader(h2WriteTable, HpackConstants.METHOD, "GET", LiteralIndexType.NOINDEXING));
+            ppHb.write(H2Headers.encodeHeader(staticTable, HpackConstants.METHOD, "GET", LiteralIndexType.NOINDEXING));
 
             // :scheme
             String scheme = new String("https");
             if (!this.isSecure()) {
                 scheme = new String("http");
             }
-            ppHb.write(H2Headers.encodeHeader(h2WriteTable, HpackConstants.SCHEME, scheme, LiteralIndexType.NOINDEXING));
+            ppHb.write(H2Headers.encodeHeader(staticTable, HpackConstants.SCHEME, scheme, LiteralIndexType.NOINDEXING));
 
             // :path
-            ppHb.write(H2Headers.encodeHeader(h2WriteTable, HpackConstants.PATH, uri, LiteralIndexType.NOINDEXING));
+            ppHb.write(H2Headers.encodeHeader(staticTable, HpackConstants.PATH, uri, LiteralIndexType.NOINDEXING));
 
             // :authority
             // If the :authority header was sent in the request, get the information from there
@@ -5128,7 +5174,7 @@ public abstract class HttpServiceContextImpl implements HttpServiceContext, FFDC
                     return;
                 }
             }
-            ppHb.write(H2Headers.encodeHeader(h2WriteTable, HpackConstants.AUTHORITY, auth, LiteralIndexType.NOINDEXING));
+            ppHb.write(H2Headers.encodeHeader(staticTable, HpackConstants.AUTHORITY, auth, LiteralIndexType.NOINDEXING));
 
             if (TraceComponent.isAnyTracingEnabled() && tc.isEntryEnabled()) {
                 Tr.debug(tc, "handleH2LinkPreload(): Method is GET, authority is " + auth + ", scheme is " + scheme);
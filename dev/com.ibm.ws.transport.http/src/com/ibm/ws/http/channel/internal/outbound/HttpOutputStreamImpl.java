@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 IBM Corporation and others.
+ * Copyright (c) 2009, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -322,17 +322,30 @@ public class HttpOutputStreamImpl extends HttpOutputStreamConnectWeb {
      * @param fc
      * @throws IOException
      */
-    @FFDCIgnore({ IOException.class })
     private void convertFile(FileChannel fc) throws IOException {
+        convertFile(fc, 0, fc.size());
+    }
+
+    /**
+     * Write a region of the file through repeated write calls, as with
+     * convertFile(FileChannel).
+     *
+     * @param fc
+     * @param start
+     * @param length
+     * @throws IOException
+     */
+    @FFDCIgnore({ IOException.class })
+    private void convertFile(FileChannel fc, long start, long length) throws IOException {
         if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
             Tr.event(tc, "Converting FileChannel to buffers");
         }
         final WsByteBuffer[] body = new WsByteBuffer[1];
         final WsByteBufferPoolManager mgr = HttpDispatcher.getBufferManager();
-        final long max = fc.size();
-        final long blocksize = (1048576L < max) ? 1048576L : max;
-        long offset = 0;
+        final long max = start + length;
+        long offset = start;
         while (offset < max) {
+            final long blocksize = (1048576L < max - offset) ? 1048576L : max - offset;
             ByteBuffer bb = fc.map(MapMode.READ_ONLY, offset, blocksize);
             offset += blocksize;
             WsByteBuffer wsbb = mgr.wrap(bb);
@@ -393,12 +406,57 @@ public class HttpOutputStreamImpl extends HttpOutputStreamConnectWeb {
         // make sure the headers are written separately from the file buffer
         flushHeaders();
         WsByteBuffer fb = HttpDispatcher.getBufferManager().allocateFileChannelBuffer(fc);
+        try {
+            sendFileBuffer(fb, fc.size());
+        } finally {
+            fb.release();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.ibm.wsspi.http.HttpOutputStream#writeFile(java.nio.channels.FileChannel, long, long)
+     */
+    @Override
+    public void writeFile(FileChannel fc, long offset, long length) throws IOException {
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "writeFile: " + fc + " offset=" + offset + " length=" + length);
+        }
+        if (cannotWriteFC() || (offset + length) > Integer.MAX_VALUE) {
+            // not file channel capable, or the region is beyond what the
+            // int positions of a file channel buffer can address
+            convertFile(fc, offset, length);
+            return;
+        }
+        // make sure the headers are written separately from the file buffer
+        flushHeaders();
+        WsByteBuffer fb = HttpDispatcher.getBufferManager().allocateFileChannelBuffer(fc);
+        try {
+            // the TCP channel transfers from the position up to the limit
+            fb.limit((int) (offset + length));
+            fb.position((int) offset);
+            sendFileBuffer(fb, length);
+        } finally {
+            fb.release();
+        }
+    }
+
+    /**
+     * Send a file channel buffer as the response body.
+     *
+     * @param fb
+     * @param length number of bytes of the file that the buffer covers
+     * @throws IOException
+     */
+    @FFDCIgnore({ IOException.class })
+    private void sendFileBuffer(WsByteBuffer fb, long length) throws IOException {
         try {
             // TODO should adjust write timeout based on file size. Large files
             // can only be written so fast so a 1Gb file should have larger
             // timeout than a 100K file
             this.isc.sendResponseBody(new WsByteBuffer[] { fb });
-            this.bytesWritten += fc.size();
+            this.bytesWritten += length;
         } catch (MessageSentException mse) {
             FFDCFilter.processException(mse, getClass().getName(),
                                         "writeFile", new Object[] { this, this.isc });
@@ -414,8 +472,6 @@ public class HttpOutputStreamImpl extends HttpOutputStreamConnectWeb {
                 Tr.debug(tc, "Received exception during write: " + ioe);
             }
             throw ioe;
-        } finally {
-            fb.release();
         }
     }
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 IBM Corporation and others.
+ * Copyright (c) 2009, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -46,6 +46,7 @@ import com.ibm.wsspi.http.VirtualHostListener;
 import com.ibm.wsspi.http.WorkClassifier;
 import com.ibm.wsspi.http.ee7.HttpTransportBehavior;
 import com.ibm.wsspi.kernel.service.utils.MetatypeUtils;
+import com.ibm.wsspi.threadcontext.WSContextService;
 import com.ibm.wsspi.timer.ApproximateTime;
 import com.ibm.wsspi.timer.QuickApproxTime;
 
@@ -70,6 +71,12 @@ public class HttpDispatcher {
     private volatile CHFWBundle chfw = null;
     /** Classification Service -- optional */
     public volatile WorkClassifier workClassifier = null;
+    /** Thread context service for propagating context to virtual threads -- optional */
+    private volatile WSContextService contextSvc = null;
+    /** Executor for dispatching requests to virtual threads, created the first time they are enabled */
+    private volatile VirtualThreadExecutor virtualThreadExecutor = null;
+    /** Whether requests are dispatched to virtual threads */
+    private volatile boolean virtualThreadsEnabled = false;
 
     private volatile ServiceReference<HttpTransportBehavior> behaviorRef;
 
@@ -100,6 +107,18 @@ public class HttpDispatcher {
      */
     static final String PROP_WC_TRUSTED = "trusted";
 
+    /** Property to enable dispatching requests to virtual threads (Java 21 and above) */
+    static final String PROP_USE_VIRTUAL_THREADS = "useVirtualThreads";
+
+    /** Property for the maximum number of requests that concurrently run on virtual threads */
+    static final String PROP_MAX_VIRTUAL_THREADS = "maxVirtualThreads";
+
+    /** Configured value of useVirtualThreads */
+    private volatile boolean useVirtualThreads = false;
+
+    /** Configured value of maxVirtualThreads */
+    private volatile int maxVirtualThreads = 10000;
+
     /**
      * Active HttpDispatcher instance. May be null between deactivate and activate
      * calls.
@@ -206,6 +225,57 @@ public class HttpDispatcher {
                                                           new String[] { "*" });
 
         parseTrustedPrivateHeaderOrigin(origHeaderOrigin);
+
+        useVirtualThreads = MetatypeUtils.parseBoolean(CONFIG_ALIAS,
+                                                       PROP_USE_VIRTUAL_THREADS,
+                                                       config.get(PROP_USE_VIRTUAL_THREADS),
+                                                       false);
+
+        maxVirtualThreads = MetatypeUtils.parseInteger(CONFIG_ALIAS,
+                                                       PROP_MAX_VIRTUAL_THREADS,
+                                                       config.get(PROP_MAX_VIRTUAL_THREADS),
+                                                       10000);
+
+        updateVirtualThreadExecutor();
+    }
+
+    /**
+     * Enable or disable the virtual thread executor according to the current configuration.
+     * The same executor is kept across configuration updates, so that the limit on concurrent
+     * requests also covers the requests that are already running on virtual threads.
+     */
+    private synchronized void updateVirtualThreadExecutor() {
+        if (useVirtualThreads && maxVirtualThreads > 0) {
+            if (VirtualThreadExecutor.isSupported()) {
+                if (virtualThreadExecutor == null) {
+                    virtualThreadExecutor = new VirtualThreadExecutor(maxVirtualThreads, contextSvc);
+                } else {
+                    virtualThreadExecutor.setMaxConcurrency(maxVirtualThreads);
+                    virtualThreadExecutor.setContextService(contextSvc);
+                }
+                virtualThreadsEnabled = true;
+            } else {
+                virtualThreadsEnabled = false;
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                    Tr.event(this, tc, "Virtual threads are not supported by this JVM, requests will run on the executor");
+                }
+            }
+        } else {
+            virtualThreadsEnabled = false;
+        }
+    }
+
+    /**
+     * Access the executor that runs requests on virtual threads.
+     *
+     * @return VirtualThreadExecutor - null if virtual threads are not enabled or not supported.
+     */
+    public static VirtualThreadExecutor getVirtualThreadExecutor() {
+        HttpDispatcher f = instance.get().get();
+        if (f != null && f.virtualThreadsEnabled)
+            return f.virtualThreadExecutor;
+
+        return null;
     }
 
     public static Boolean isWelcomePageEnabled() {
@@ -611,6 +681,33 @@ public class HttpDispatcher {
             workClassifier = null;
     }
 
+    /**
+     * DS method for setting the thread context service reference.
+     *
+     * @param service
+     */
+    @Reference(name = "contextService",
+               policy = ReferencePolicy.DYNAMIC,
+               policyOption = ReferencePolicyOption.GREEDY,
+               cardinality = ReferenceCardinality.OPTIONAL,
+               target = "(service.pid=com.ibm.ws.context.manager)")
+    protected void setContextService(WSContextService service) {
+        contextSvc = service;
+        updateVirtualThreadExecutor();
+    }
+
+    /**
+     * DS method for removing the thread context service reference.
+     *
+     * @param service
+     */
+    protected void unsetContextService(WSContextService service) {
+        if (contextSvc == service) {
+            contextSvc = null;
+            updateVirtualThreadExecutor();
+        }
+    }
+
     /**
      * Access to the WorkClassifier
      *
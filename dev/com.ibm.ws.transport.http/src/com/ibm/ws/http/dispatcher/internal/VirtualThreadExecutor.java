@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.dispatcher.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.websphere.ras.annotation.Trivial;
+import com.ibm.ws.ffdc.annotation.FFDCIgnore;
+import com.ibm.wsspi.threadcontext.ThreadContext;
+import com.ibm.wsspi.threadcontext.ThreadContextDescriptor;
+import com.ibm.wsspi.threadcontext.WSContextService;
+
+/**
+ * Runs request dispatch on virtual threads rather than on a thread of the default executor.
+ * Virtual threads are only available on Java 21 and above, and are accessed reflectively so that
+ * this bundle continues to run on earlier versions of Java, where this executor is never created.
+ *
+ * <p>The number of requests that run concurrently on virtual threads is limited. When the limit
+ * is reached, {@link #tryExecute(Runnable)} declines the task and the caller runs it on the
+ * current thread instead, as it would without virtual threads. The limit can be changed while
+ * requests are running, in which case it applies to the requests that are already running as well
+ * as to new ones.</p>
+ */
+public class VirtualThreadExecutor {
+    private static final TraceComponent tc = Tr.register(VirtualThreadExecutor.class);
+
+    /** Execution properties for capturing thread context to propagate to virtual threads */
+    private static final Map<String, String> EXECUTION_PROPERTIES = new HashMap<String, String>();
+    static {
+        EXECUTION_PROPERTIES.put(WSContextService.TASK_OWNER, HttpDispatcher.CONFIG_ALIAS);
+        EXECUTION_PROPERTIES.put(WSContextService.REQUIRE_AVAILABLE_APP, "false");
+    }
+
+    /** Creates virtual threads. Null if the JVM does not support virtual threads. */
+    private static final ThreadFactory virtualThreadFactory = createVirtualThreadFactory();
+
+    /** Creates the threads on which tasks run */
+    private final ThreadFactory threadFactory;
+
+    /** Limits the number of tasks that run concurrently on virtual threads */
+    private final ReduceableSemaphore permits;
+
+    /** Maximum number of concurrent tasks */
+    private volatile int maxConcurrency;
+
+    /** Thread context service, or null if thread context is not propagated */
+    private volatile WSContextService contextSvc;
+
+    /**
+     * Make the reducePermits method of Semaphore available for use by non-subclasses.
+     */
+    @Trivial
+    private static class ReduceableSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        ReduceableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override // to make visible
+        public void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxConcurrency maximum number of tasks that can run concurrently on virtual threads.
+     * @param contextSvc thread context service with which to capture and apply context. Null to not propagate context.
+     */
+    VirtualThreadExecutor(int maxConcurrency, WSContextService contextSvc) {
+        this(maxConcurrency, contextSvc, virtualThreadFactory);
+    }
+
+    /**
+     * Constructor for unit tests, which run tasks on the threads of the specified factory.
+     *
+     * @param maxConcurrency maximum number of tasks that can run concurrently.
+     * @param contextSvc thread context service with which to capture and apply context. Null to not propagate context.
+     * @param threadFactory creates the threads on which tasks run.
+     */
+    VirtualThreadExecutor(int maxConcurrency, WSContextService contextSvc, ThreadFactory threadFactory) {
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new ReduceableSemaphore(maxConcurrency);
+        this.contextSvc = contextSvc;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Obtains a factory for virtual threads via Thread.ofVirtual().name(prefix, 0).factory()
+     *
+     * @return the factory, or null if the JVM does not support virtual threads.
+     */
+    @FFDCIgnore(Throwable.class)
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "HTTP Dispatch-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Throwable x) {
+            // expected prior to Java 21
+            if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Virtual threads are unavailable: " + x);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Indicates whether the JVM supports virtual threads.
+     *
+     * @return true if virtual threads are available, otherwise false.
+     */
+    @Trivial
+    public static boolean isSupported() {
+        return virtualThreadFactory != null;
+    }
+
+    /**
+     * Returns the maximum number of tasks that can run concurrently on virtual threads.
+     */
+    @Trivial
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Changes the maximum number of tasks that can run concurrently on virtual threads.
+     * When the maximum is reduced below the number of tasks that are running, no task is
+     * started until enough of them complete.
+     *
+     * @param max the new maximum.
+     */
+    synchronized void setMaxConcurrency(int max) {
+        int change = max - maxConcurrency;
+        if (change > 0)
+            permits.release(change);
+        else if (change < 0)
+            permits.reducePermits(-change);
+        maxConcurrency = max;
+    }
+
+    /**
+     * Changes the thread context service for the tasks that are submitted from now on.
+     *
+     * @param contextSvc thread context service with which to capture and apply context. Null to not propagate context.
+     */
+    @Trivial
+    void setContextService(WSContextService contextSvc) {
+        this.contextSvc = contextSvc;
+    }
+
+    /**
+     * Returns the number of tasks that are currently running on virtual threads.
+     */
+    @Trivial
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * Attempts to run the task on a new virtual thread, with the thread context of the current thread.
+     *
+     * @param task the task.
+     * @return true if the task was started on a virtual thread. False if the task must be run some other way.
+     */
+    @FFDCIgnore(Throwable.class)
+    public boolean tryExecute(final Runnable task) {
+        if (!permits.tryAcquire()) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                Tr.event(tc, "Virtual thread limit of " + maxConcurrency + " reached");
+            }
+            return false;
+        }
+
+        boolean started = false;
+        try {
+            WSContextService contextSvc = this.contextSvc;
+            final ThreadContextDescriptor threadContext = contextSvc == null ? null : contextSvc.captureThreadContext(EXECUTION_PROPERTIES);
+            threadFactory.newThread(new Runnable() {
+                @Override
+                @FFDCIgnore(RejectedExecutionException.class)
+                public void run() {
+                    try {
+                        ArrayList<ThreadContext> contextApplied = null;
+                        if (threadContext != null)
+                            try {
+                                contextApplied = threadContext.taskStarting();
+                            } catch (RejectedExecutionException x) {
+                                // run anyway, so that a response is always sent
+                                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                                    Tr.event(tc, "Unable to apply thread context: " + x);
+                                }
+                            }
+                        try {
+                            task.run();
+                        } finally {
+                            if (contextApplied != null)
+                                threadContext.taskStopping(contextApplied);
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                }
+            }).start();
+            started = true;
+        } catch (Throwable x) {
+            if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                Tr.event(tc, "Unable to start virtual thread: " + x);
+            }
+        } finally {
+            if (!started)
+                permits.release();
+        }
+        return started;
+    }
+}
@@ -33,6 +33,7 @@ import com.ibm.ws.http.channel.internal.inbound.HttpInboundLink;
 import com.ibm.ws.http.channel.internal.inbound.HttpInboundServiceContextImpl;
 import com.ibm.ws.http.dispatcher.classify.DecoratedExecutorThread;
 import com.ibm.ws.http.dispatcher.internal.HttpDispatcher;
+import com.ibm.ws.http.dispatcher.internal.VirtualThreadExecutor;
 import com.ibm.ws.http.internal.VirtualHostImpl;
 import com.ibm.ws.http.internal.VirtualHostMap;
 import com.ibm.ws.http.internal.VirtualHostMap.RequestHelper;
@@ -408,9 +409,20 @@ public class HttpDispatcherLink extends InboundApplicationLink implements HttpIn
                 taskWrapper.setClassifiedExecutor(classifyExecutor);
                 classifyExecutor.execute(taskWrapper);
             } else {
-                taskWrapper.run();
+                runTask(taskWrapper);
             }
         } else {
+            runTask(taskWrapper);
+        }
+    }
+
+    /**
+     * Run the wrapped handler on a virtual thread, if enabled and below the concurrency limit,
+     * otherwise run it on the current thread.
+     */
+    private void runTask(TaskWrapper taskWrapper) {
+        VirtualThreadExecutor virtualThreadExecutor = HttpDispatcher.getVirtualThreadExecutor();
+        if (virtualThreadExecutor == null || !virtualThreadExecutor.tryExecute(taskWrapper)) {
             taskWrapper.run();
         }
     }
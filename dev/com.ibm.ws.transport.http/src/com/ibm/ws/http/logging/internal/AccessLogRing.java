@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.logging.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated ring of access log entries. Request threads copy the values
+ * of an entry into a free slot, and the logging thread formats the published
+ * slots in order and frees them again, so that capturing an entry does not
+ * create any objects.
+ *
+ * Any number of threads may claim and publish slots, while only a single
+ * thread may poll and release them. When the ring is full, a claim waits a
+ * short while for the logging thread to catch up, after which the entry is
+ * dropped.
+ */
+public class AccessLogRing {
+
+    /** Indexes of the string values of an entry */
+    public static final int REMOTE_HOST = 0;
+    public static final int REMOTE_IP = 1;
+    public static final int REMOTE_USER = 2;
+    public static final int METHOD = 3;
+    public static final int URI = 4;
+    public static final int QUERY = 5;
+    public static final int VERSION = 6;
+    private static final int NUMBER_OF_VALUES = 7;
+
+    /** Space for the string values of one entry; longer entries are not captured */
+    public static final int SLOT_DATA_SIZE = 1024;
+
+    /** Number of times a claim yields to the logging thread before dropping the entry */
+    private static final int MAX_WAITS = 16;
+
+    /** Parameters of a query string whose values are masked */
+    private static final byte[] PASSWORD = { 'p', 'a', 's', 's', 'w', 'o', 'r', 'd', '=' };
+    private static final byte[] CLIENT_SECRET = { 'c', 'l', 'i', 'e', 'n', 't', '_', 's', 'e', 'c', 'r', 'e', 't', '=' };
+
+    /**
+     * Storage for one entry.
+     */
+    public static final class Slot {
+        /** Sequence of the entry in the slot, once it is published */
+        private volatile long published = -1L;
+        private long sequence;
+        /** Whether the entry is written without the ring, so the slot holds nothing to format */
+        private boolean skipped;
+
+        public long time;
+        public long elapsed;
+        public long bytesWritten;
+        public int status;
+
+        public final byte[] data = new byte[SLOT_DATA_SIZE];
+        public final int[] offset = new int[NUMBER_OF_VALUES];
+        /** Length of each value, or -1 if it is not set */
+        public final int[] length = new int[NUMBER_OF_VALUES];
+        private int used;
+
+        /**
+         * Copy a string value into the slot.
+         *
+         * @param index one of the value indexes
+         * @param value the value, which may be null
+         * @return false if the value does not fit in the slot, and was not copied
+         */
+        public boolean set(int index, String value) {
+            return set(index, value, 0);
+        }
+
+        /**
+         * Copy the end of a string value, starting at the provided index, into the slot.
+         *
+         * @param index one of the value indexes
+         * @param value the value, which may be null
+         * @param start index of the first character to copy
+         * @return false if the value does not fit in the slot, and was not copied
+         */
+        public boolean set(int index, String value, int start) {
+            if (null == value) {
+                length[index] = -1;
+                return true;
+            }
+            int len = value.length() - start;
+            if (len > SLOT_DATA_SIZE - used) {
+                length[index] = -1;
+                return false;
+            }
+            for (int i = 0; i < len; i++) {
+                data[used + i] = (byte) value.charAt(start + i);
+            }
+            offset[index] = used;
+            length[index] = len;
+            used += len;
+            return true;
+        }
+
+        private void reset(long seq) {
+            sequence = seq;
+            skipped = false;
+            used = 0;
+            for (int i = 0; i < NUMBER_OF_VALUES; i++) {
+                length[i] = -1;
+            }
+        }
+
+        /**
+         * Query the bytes used by the string values of the slot.
+         *
+         * @return int
+         */
+        public int getUsed() {
+            return used;
+        }
+
+        /**
+         * Query whether the entry of the slot was written without the ring.
+         *
+         * @return boolean
+         */
+        public boolean isSkipped() {
+            return skipped;
+        }
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+
+    /** Next sequence to be claimed */
+    private final AtomicLong head = new AtomicLong();
+    /** Next sequence to be polled; only changed by the logging thread */
+    private volatile long tail = 0L;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+
+    /**
+     * Create a ring.
+     *
+     * @param size the number of entries, which is rounded up to a power of 2
+     */
+    public AccessLogRing(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            this.slots[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Claim a free slot for a new entry, which must then be published.
+     *
+     * @return Slot, or null if the ring is full and the entry is dropped
+     */
+    public Slot claim() {
+        int count = 0;
+        while (true) {
+            long seq = this.head.get();
+            if (seq - this.tail >= this.slots.length) {
+                if (count++ < MAX_WAITS) {
+                    if (1 == count) {
+                        this.waits.incrementAndGet();
+                    }
+                    Thread.yield();
+                    continue;
+                }
+                this.dropped.incrementAndGet();
+                return null;
+            }
+            if (this.head.compareAndSet(seq, seq + 1)) {
+                Slot slot = this.slots[(int) (seq & this.mask)];
+                slot.reset(seq);
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Make a claimed slot available to the logging thread.
+     *
+     * @param slot
+     */
+    public void publish(Slot slot) {
+        slot.published = slot.sequence;
+    }
+
+    /**
+     * Give up a claimed slot whose entry is written without the ring, such as
+     * one whose values do not fit. The slot is published so that the logging
+     * thread can move past it, but it is not formatted.
+     *
+     * @param slot
+     */
+    public void skip(Slot slot) {
+        slot.skipped = true;
+        publish(slot);
+    }
+
+    /**
+     * Access the next published entry; only used by the logging thread.
+     *
+     * @return Slot, or null if the next entry is not published yet
+     */
+    public Slot poll() {
+        long seq = this.tail;
+        Slot slot = this.slots[(int) (seq & this.mask)];
+        return (slot.published == seq) ? slot : null;
+    }
+
+    /**
+     * Free the entry returned by poll; only used by the logging thread.
+     */
+    public void release() {
+        this.tail = this.tail + 1;
+    }
+
+    /**
+     * Query whether there is an entry ready to be polled.
+     *
+     * @return boolean
+     */
+    public boolean hasPublished() {
+        return null != poll();
+    }
+
+    public int getCapacity() {
+        return this.slots.length;
+    }
+
+    /**
+     * Query the number of entries that were dropped because the ring was full.
+     *
+     * @return long
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Query the number of entries that had to wait for the logging thread.
+     *
+     * @return long
+     */
+    public long getWaitCount() {
+        return this.waits.get();
+    }
+
+    /**
+     * Query the number of entries that were claimed.
+     *
+     * @return long
+     */
+    public long getClaimedCount() {
+        return this.head.get();
+    }
+
+    /**
+     * Replace the values of the password and client_secret parameters of
+     * a query string with *s, in the same way as PasswordNullifier.
+     *
+     * @param data
+     * @param start
+     * @param len
+     */
+    public static void maskPasswords(byte[] data, int start, int len) {
+        maskValues(data, start, len, PASSWORD);
+        maskValues(data, start, len, CLIENT_SECRET);
+    }
+
+    private static void maskValues(byte[] data, int start, int len, byte[] pattern) {
+        int end = start + len;
+        int i = start;
+        while (i <= end - pattern.length) {
+            int j = 0;
+            while (j < pattern.length && pattern[j] == lower(data[i + j])) {
+                j++;
+            }
+            if (j < pattern.length) {
+                i++;
+                continue;
+            }
+            for (i += pattern.length; i < end && '&' != data[i]; i++) {
+                data[i] = '*';
+            }
+        }
+    }
+
+    private static byte lower(byte b) {
+        return ('A' <= b && 'Z' >= b) ? (byte) (b + 32) : b;
+    }
+
+    @Override
+    public String toString() {
+        return "AccessLogRing[capacity=" + this.slots.length + " claimed=" + getClaimedCount()
+               + " written=" + this.tail + " waits=" + getWaitCount() + " dropped=" + getDroppedCount() + "]";
+    }
+}
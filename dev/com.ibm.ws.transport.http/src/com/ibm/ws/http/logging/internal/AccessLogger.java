@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2013 IBM Corporation and others.
+ * Copyright (c) 2004, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,9 +11,11 @@
 package com.ibm.ws.http.logging.internal;
 
 import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -31,11 +33,25 @@ import com.ibm.websphere.ras.annotation.Trivial;
 import com.ibm.ws.ffdc.FFDCFilter;
 import com.ibm.ws.genericbnf.internal.GenericUtils;
 import com.ibm.ws.http.channel.internal.HttpMessages;
+import com.ibm.ws.http.channel.internal.HttpRequestMessageImpl;
+import com.ibm.ws.http.channel.internal.values.AccessLogCurrentTime;
 import com.ibm.ws.http.channel.internal.values.AccessLogData;
 import com.ibm.ws.http.channel.internal.values.AccessLogElapsedRequestTime;
+import com.ibm.ws.http.channel.internal.values.AccessLogElapsedTime;
+import com.ibm.ws.http.channel.internal.values.AccessLogFirstLine;
 import com.ibm.ws.http.channel.internal.values.AccessLogLocalIP;
 import com.ibm.ws.http.channel.internal.values.AccessLogLocalPort;
+import com.ibm.ws.http.channel.internal.values.AccessLogQueryString;
+import com.ibm.ws.http.channel.internal.values.AccessLogRemoteHost;
+import com.ibm.ws.http.channel.internal.values.AccessLogRemoteIP;
+import com.ibm.ws.http.channel.internal.values.AccessLogRemoteUser;
+import com.ibm.ws.http.channel.internal.values.AccessLogRequestMethod;
+import com.ibm.ws.http.channel.internal.values.AccessLogRequestProtocol;
+import com.ibm.ws.http.channel.internal.values.AccessLogResponseSize;
+import com.ibm.ws.http.channel.internal.values.AccessLogResponseSizeB;
 import com.ibm.ws.http.channel.internal.values.AccessLogStartTime;
+import com.ibm.ws.http.channel.internal.values.AccessLogStatus;
+import com.ibm.ws.http.channel.internal.values.AccessLogURLPath;
 import com.ibm.ws.http.dispatcher.internal.HttpDispatcher;
 import com.ibm.wsspi.bytebuffer.WsByteBuffer;
 import com.ibm.wsspi.genericbnf.HeaderField;
@@ -73,6 +89,9 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
     /**  */
     private static final String PROP_ENABLED = "enabled";
 
+    /**  */
+    private static final String PROP_BUFFEREDENTRIES = "bufferedEntries";
+
     /** RAS tracing variable */
     private static final TraceComponent tc = Tr.register(AccessLogger.class,
                                                          HttpMessages.HTTP_TRACE_NAME,
@@ -92,11 +111,67 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
         });
 
     }
+    private static final byte[] newLineBytes = GenericUtils.getEnglishBytes(newLine);
+
+    /** Format segments that can be logged from the values captured into the ring */
+    private static final int RING_UNSUPPORTED = -1;
+    private static final int RING_LITERAL = 0;
+    private static final int RING_REMOTE_HOST = 1;
+    private static final int RING_REMOTE_IP = 2;
+    private static final int RING_REMOTE_USER = 3;
+    private static final int RING_TIME = 4;
+    private static final int RING_FIRST_LINE = 5;
+    private static final int RING_METHOD = 6;
+    private static final int RING_URL_PATH = 7;
+    private static final int RING_QUERY = 8;
+    private static final int RING_PROTOCOL = 9;
+    private static final int RING_STATUS = 10;
+    private static final int RING_SIZE = 11;
+    private static final int RING_SIZE_B = 12;
+    private static final int RING_ELAPSED = 13;
+
+    /** Bytes reserved in a batch for each segment besides the captured values */
+    private static final int RING_SEGMENT_SIZE = 40;
+
+    /** Minimum size of the buffer a batch of ring entries is formatted into */
+    private static final int RING_BATCH_SIZE = 65536;
 
     static class FormatSegment {
         public String string;
         public Object data;
         public AccessLogData log;
+        /** How the segment is logged from the ring */
+        public int ringCode = RING_UNSUPPORTED;
+        /** Bytes of the string, for RING_LITERAL */
+        public byte[] bytes;
+    }
+
+    /**
+     * A parsed format that can be logged from the values captured into the ring.
+     */
+    static class RingFormat {
+        final FormatSegment[] segments;
+        /** Which values of AccessLogRing to capture, as a bit per index */
+        final int values;
+        /** Size of an entry besides the captured values */
+        final int fixedSize;
+        /** Number of segments that log captured values */
+        final int valueSegments;
+
+        RingFormat(FormatSegment[] segments, int values, int fixedSize, int valueSegments) {
+            this.segments = segments;
+            this.values = values;
+            this.fixedSize = fixedSize;
+            this.valueSegments = valueSegments;
+        }
+
+        boolean captures(int index) {
+            return 0 != (this.values & (1 << index));
+        }
+
+        int maxEntrySize(int used) {
+            return this.fixedSize + used * this.valueSegments;
+        }
     }
 
     private volatile Map<String, Object> config;
@@ -108,6 +183,27 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
 
     private FormatSegment[] parsedFormat;
 
+    /** Format of entries captured into the ring, or null if the format cannot be */
+    private volatile RingFormat ringFormat;
+
+    /** Ring of captured entries, or null if entries are formatted on the request thread */
+    private volatile AccessLogRing ring;
+
+    /** Configured number of entries of the ring */
+    private int bufferedEntries = 0;
+
+    /** Ring for which the first dropped entry was reported */
+    private volatile AccessLogRing droppedWarned;
+
+    /** Last format that could be captured into the ring */
+    private volatile RingFormat lastRingFormat;
+
+    /** State of the worker thread when formatting entries from the ring */
+    private ByteBuffer batchBuffer;
+    private final byte[] digits = new byte[20];
+    private long lastTimeSecond = -1L;
+    private byte[] lastTimeBytes;
+
     /**
      * Constructor of this NCSA access log file.
      * 
@@ -187,6 +283,18 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
             enabled = false;
         }
 
+        Object entries = config.get(PROP_BUFFEREDENTRIES);
+        if (null != entries) {
+            try {
+                setBufferedEntries(Integer.valueOf(entries.toString()));
+            } catch (NumberFormatException nfe) {
+                FFDCFilter.processException(nfe, getClass().getName() + ".modified", PROP_BUFFEREDENTRIES);
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                    Tr.event(tc, "Config: invalid access buffered entries: " + entries);
+                }
+            }
+        }
+
         if (enabled) {
             start();
         } else {
@@ -194,6 +302,33 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
         }
     }
 
+    /**
+     * Set the number of entries that are captured into a ring on the request
+     * thread and formatted on the logging thread, or 0 to format each entry
+     * on the request thread.
+     *
+     * @param entries
+     */
+    public synchronized void setBufferedEntries(int entries) {
+        int size = Math.max(entries, 0);
+        if (size == this.bufferedEntries) {
+            return;
+        }
+        // let the worker write out what is in the current ring
+        boolean started = isStarted();
+        if (started) {
+            stop();
+        }
+        this.bufferedEntries = size;
+        this.ring = (0 == size) ? null : new AccessLogRing(size);
+        if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+            Tr.debug(tc, "Set access buffered entries to " + size + " " + this.ring);
+        }
+        if (started) {
+            start();
+        }
+    }
+
     /**
      * @see AccessLog#getFormat()
      */
@@ -322,6 +457,76 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
         }
 
         parsedFormat = list.toArray(new FormatSegment[list.size()]);
+        RingFormat format = createRingFormat(parsedFormat);
+        if (null != format) {
+            lastRingFormat = format;
+        }
+        ringFormat = format;
+    }
+
+    /**
+     * Work out how the segments are logged from the ring.
+     *
+     * @param segments
+     * @return RingFormat, or null if any segment needs more than the values captured into the ring
+     */
+    private RingFormat createRingFormat(FormatSegment[] segments) {
+        int values = 0;
+        int fixedSize = newLineBytes.length;
+        int valueSegments = 0;
+        for (FormatSegment s : segments) {
+            if (null != s.string) {
+                s.ringCode = RING_LITERAL;
+                s.bytes = GenericUtils.getEnglishBytes(s.string);
+                fixedSize += s.bytes.length;
+                continue;
+            }
+            AccessLogData log = s.log;
+            if (log instanceof AccessLogRemoteHost) {
+                s.ringCode = RING_REMOTE_HOST;
+                values |= 1 << AccessLogRing.REMOTE_HOST;
+            } else if (log instanceof AccessLogRemoteIP) {
+                s.ringCode = RING_REMOTE_IP;
+                values |= 1 << AccessLogRing.REMOTE_IP;
+            } else if (log instanceof AccessLogRemoteUser) {
+                s.ringCode = RING_REMOTE_USER;
+                values |= 1 << AccessLogRing.REMOTE_USER;
+            } else if (log instanceof AccessLogCurrentTime && null == s.data) {
+                s.ringCode = RING_TIME;
+            } else if (log instanceof AccessLogFirstLine) {
+                s.ringCode = RING_FIRST_LINE;
+                values |= (1 << AccessLogRing.METHOD) | (1 << AccessLogRing.URI) | (1 << AccessLogRing.QUERY) | (1 << AccessLogRing.VERSION);
+            } else if (log instanceof AccessLogRequestMethod) {
+                s.ringCode = RING_METHOD;
+                values |= 1 << AccessLogRing.METHOD;
+            } else if (log instanceof AccessLogURLPath) {
+                s.ringCode = RING_URL_PATH;
+                values |= 1 << AccessLogRing.URI;
+            } else if (log instanceof AccessLogQueryString) {
+                s.ringCode = RING_QUERY;
+                values |= 1 << AccessLogRing.QUERY;
+            } else if (log instanceof AccessLogRequestProtocol) {
+                s.ringCode = RING_PROTOCOL;
+                values |= 1 << AccessLogRing.VERSION;
+            } else if (log instanceof AccessLogStatus) {
+                s.ringCode = RING_STATUS;
+            } else if (log instanceof AccessLogResponseSize) {
+                s.ringCode = RING_SIZE;
+            } else if (log instanceof AccessLogResponseSizeB) {
+                s.ringCode = RING_SIZE_B;
+            } else if (log instanceof AccessLogElapsedTime) {
+                s.ringCode = RING_ELAPSED;
+            } else {
+                // e.g. headers and cookies, which are not captured
+                if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                    Tr.debug(tc, "Format segment " + log + " is not captured into the ring");
+                }
+                return null;
+            }
+            fixedSize += RING_SEGMENT_SIZE;
+            valueSegments++;
+        }
+        return new RingFormat(segments, values, fixedSize, valueSegments);
     }
 
     /**
@@ -374,6 +579,13 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
             return;
         }
         try {
+            AccessLogRing ring = this.ring;
+            RingFormat format = this.ringFormat;
+            if (null != ring && null != format && logToRing(ring, format, request, response, remoteAddr, numBytes)) {
+                forward(request, response, version, userId, remoteAddr, numBytes);
+                return;
+            }
+
             StringBuilder accessLogLine;
             if (parsedFormat != null) {
                 accessLogLine = new StringBuilder();
@@ -453,20 +665,7 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
 
             accessLogLine.append(newLine);
 
-            // Forward the log data to AccessLogForwarder's
-            if (!LogForwarderManager.getAccessLogForwarders().isEmpty()) {
-                AccessLogRecordData recordData = toAccessLogRecordData(request, response, version, userId, remoteAddr, numBytes);
-                for (AccessLogForwarder forwarder : LogForwarderManager.getAccessLogForwarders()) {
-                    try {
-                        forwarder.process(recordData);
-                    } catch (Throwable t) {
-                        FFDCFilter.processException(t, getClass().getName() + ".log", "136", this);
-                        if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
-                            Tr.event(tc, "Exception while forwarder log to " + forwarder + " ; " + t);
-                        }
-                    }
-                } // end-for
-            }
+            forward(request, response, version, userId, remoteAddr, numBytes);
 
             WsByteBuffer wsbb =
                             HttpDispatcher.getBufferManager().allocate(accessLogLine.length());
@@ -481,6 +680,254 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
         }
     }
 
+    /**
+     * Forward the log data to AccessLogForwarder's
+     */
+    private void forward(HttpRequestMessage request, HttpResponseMessage response, String version,
+                         String userId, String remoteAddr, long numBytes) {
+        if (!LogForwarderManager.getAccessLogForwarders().isEmpty()) {
+            AccessLogRecordData recordData = toAccessLogRecordData(request, response, version, userId, remoteAddr, numBytes);
+            for (AccessLogForwarder forwarder : LogForwarderManager.getAccessLogForwarders()) {
+                try {
+                    forwarder.process(recordData);
+                } catch (Throwable t) {
+                    FFDCFilter.processException(t, getClass().getName() + ".log", "136", this);
+                    if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                        Tr.event(tc, "Exception while forwarder log to " + forwarder + " ; " + t);
+                    }
+                }
+            } // end-for
+        }
+    }
+
+    /**
+     * Copy the values the format needs into a slot of the ring, to be formatted
+     * and written on the logging thread.
+     *
+     * @return false if the values do not fit into a slot, and the entry has to
+     *         be formatted on the request thread instead
+     */
+    private boolean logToRing(AccessLogRing ring, RingFormat format, HttpRequestMessage request,
+                              HttpResponseMessage response, String remoteAddr, long numBytes) {
+        AccessLogRing.Slot slot = ring.claim();
+        if (null == slot) {
+            // the logging thread is too far behind, the entry is dropped
+            if (ring != this.droppedWarned) {
+                this.droppedWarned = ring;
+                Tr.warning(tc, "accessLog.entriesDropped", getFilePathName(), ring.getCapacity());
+            } else if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
+                Tr.debug(tc, "Dropped access log entry; " + ring);
+            }
+            return true;
+        }
+        boolean captured = false;
+        try {
+            boolean fits = true;
+            HttpRequestMessageImpl requestImpl = (HttpRequestMessageImpl) request;
+            slot.time = System.currentTimeMillis();
+            slot.status = (null == response) ? 0 : response.getStatusCodeAsInt();
+            slot.bytesWritten = numBytes;
+            long startTime = (null == requestImpl) ? 0L : requestImpl.getStartTime();
+            slot.elapsed = (0L == startTime) ? -1L : (System.nanoTime() - startTime) / 1000L;
+            if (null != requestImpl) {
+                if (format.captures(AccessLogRing.REMOTE_HOST)) {
+                    fits &= slot.set(AccessLogRing.REMOTE_HOST, remoteAddr);
+                }
+                if (format.captures(AccessLogRing.REMOTE_IP)) {
+                    String address = requestImpl.getServiceContext().getRemoteAddr().toString();
+                    fits &= slot.set(AccessLogRing.REMOTE_IP, address, address.indexOf('/') + 1);
+                }
+                if (format.captures(AccessLogRing.REMOTE_USER)) {
+                    fits &= slot.set(AccessLogRing.REMOTE_USER, requestImpl.getRemoteUser());
+                }
+                if (format.captures(AccessLogRing.METHOD)) {
+                    fits &= slot.set(AccessLogRing.METHOD, requestImpl.getMethod());
+                }
+                if (format.captures(AccessLogRing.URI)) {
+                    fits &= slot.set(AccessLogRing.URI, requestImpl.getRequestURI());
+                }
+                if (format.captures(AccessLogRing.QUERY)) {
+                    fits &= slot.set(AccessLogRing.QUERY, requestImpl.getQueryString());
+                }
+                if (format.captures(AccessLogRing.VERSION)) {
+                    fits &= slot.set(AccessLogRing.VERSION, requestImpl.getVersion());
+                }
+            }
+            captured = fits;
+        } finally {
+            // the slot has to be released even if a value could not be captured, and
+            // a slot is only published when all of its values were captured
+            if (captured) {
+                ring.publish(slot);
+            } else {
+                ring.skip(slot);
+            }
+            signalWorker();
+        }
+        return captured;
+    }
+
+    /**
+     * Format the next batch of entries from the ring into a reusable buffer;
+     * called on the logging thread.
+     *
+     * @see LoggerOffThread#nextPendingBatch()
+     */
+    @Override
+    protected ByteBuffer nextPendingBatch() {
+        AccessLogRing ring = this.ring;
+        if (null == ring || null == ring.poll()) {
+            return null;
+        }
+        // entries captured under a format that has since changed are
+        // formatted with the last format that could be captured
+        RingFormat format = this.ringFormat;
+        if (null == format) {
+            format = this.lastRingFormat;
+        }
+        int maxEntrySize = format.maxEntrySize(AccessLogRing.SLOT_DATA_SIZE);
+        if (null == this.batchBuffer || this.batchBuffer.capacity() < maxEntrySize) {
+            this.batchBuffer = ByteBuffer.allocateDirect(Math.max(RING_BATCH_SIZE, 2 * maxEntrySize));
+        }
+        ByteBuffer buffer = this.batchBuffer;
+        buffer.clear();
+        AccessLogRing.Slot slot;
+        while (null != (slot = ring.poll()) && buffer.remaining() >= format.maxEntrySize(slot.getUsed())) {
+            try {
+                if (!slot.isSkipped()) {
+                    formatEntry(buffer, format, slot);
+                }
+            } catch (Throwable t) {
+                FFDCFilter.processException(t, getClass().getName() + ".nextPendingBatch", "1", this);
+                if (TraceComponent.isAnyTracingEnabled() && tc.isEventEnabled()) {
+                    Tr.event(tc, "Exception while formatting log entry; " + t);
+                }
+            } finally {
+                ring.release();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @see LoggerOffThread#hasPendingBatch()
+     */
+    @Override
+    protected boolean hasPendingBatch() {
+        AccessLogRing ring = this.ring;
+        return null != ring && ring.hasPublished();
+    }
+
+    /**
+     * Format one entry of the ring in the same way as the AccessLogData
+     * segments format a request.
+     */
+    private void formatEntry(ByteBuffer buffer, RingFormat format, AccessLogRing.Slot slot) {
+        if (-1 != slot.length[AccessLogRing.QUERY]) {
+            AccessLogRing.maskPasswords(slot.data, slot.offset[AccessLogRing.QUERY], slot.length[AccessLogRing.QUERY]);
+        }
+        for (FormatSegment s : format.segments) {
+            switch (s.ringCode) {
+                case RING_LITERAL:
+                    buffer.put(s.bytes);
+                    break;
+                case RING_REMOTE_HOST:
+                    putValue(buffer, slot, AccessLogRing.REMOTE_HOST);
+                    break;
+                case RING_REMOTE_IP:
+                    putValue(buffer, slot, AccessLogRing.REMOTE_IP);
+                    break;
+                case RING_REMOTE_USER:
+                    if (0 < slot.length[AccessLogRing.REMOTE_USER]) {
+                        putValue(buffer, slot, AccessLogRing.REMOTE_USER);
+                    } else {
+                        buffer.put((byte) '-');
+                    }
+                    break;
+                case RING_TIME:
+                    putTime(buffer, slot.time);
+                    break;
+                case RING_FIRST_LINE:
+                    putValue(buffer, slot, AccessLogRing.METHOD);
+                    buffer.put((byte) ' ');
+                    putValue(buffer, slot, AccessLogRing.URI);
+                    if (-1 != slot.length[AccessLogRing.QUERY]) {
+                        buffer.put((byte) '?');
+                        putValue(buffer, slot, AccessLogRing.QUERY);
+                    }
+                    buffer.put((byte) ' ');
+                    putValue(buffer, slot, AccessLogRing.VERSION);
+                    break;
+                case RING_METHOD:
+                    putValue(buffer, slot, AccessLogRing.METHOD);
+                    break;
+                case RING_URL_PATH:
+                    putValue(buffer, slot, AccessLogRing.URI);
+                    break;
+                case RING_QUERY:
+                    if (-1 != slot.length[AccessLogRing.QUERY]) {
+                        buffer.put((byte) '?');
+                    }
+                    putValue(buffer, slot, AccessLogRing.QUERY);
+                    break;
+                case RING_PROTOCOL:
+                    putValue(buffer, slot, AccessLogRing.VERSION);
+                    break;
+                case RING_STATUS:
+                    putNumber(buffer, slot.status, 0 != slot.status);
+                    break;
+                case RING_SIZE:
+                    putNumber(buffer, slot.bytesWritten, 0 < slot.bytesWritten);
+                    break;
+                case RING_SIZE_B:
+                    putNumber(buffer, slot.bytesWritten, true);
+                    break;
+                case RING_ELAPSED:
+                    putNumber(buffer, slot.elapsed, 0 <= slot.elapsed);
+                    break;
+                default:
+                    break;
+            }
+        }
+        buffer.put(newLineBytes);
+    }
+
+    private void putValue(ByteBuffer buffer, AccessLogRing.Slot slot, int index) {
+        int length = slot.length[index];
+        if (-1 == length) {
+            buffer.put((byte) '-');
+        } else {
+            buffer.put(slot.data, slot.offset[index], length);
+        }
+    }
+
+    private void putNumber(ByteBuffer buffer, long value, boolean isSet) {
+        if (!isSet || 0 > value) {
+            buffer.put((byte) '-');
+            return;
+        }
+        int pos = this.digits.length;
+        long remaining = value;
+        do {
+            this.digits[--pos] = (byte) ('0' + (remaining % 10));
+            remaining /= 10;
+        } while (0 != remaining);
+        buffer.put(this.digits, pos, this.digits.length - pos);
+    }
+
+    private void putTime(ByteBuffer buffer, long time) {
+        // the formatted time only changes once a second
+        long second = time / 1000L;
+        if (second != this.lastTimeSecond) {
+            this.lastTimeBytes = GenericUtils.getEnglishBytes(HttpDispatcher.getDateFormatter().getNCSATime(new Date(time)));
+            this.lastTimeSecond = second;
+        }
+        buffer.put((byte) '[');
+        buffer.put(this.lastTimeBytes);
+        buffer.put((byte) ']');
+    }
+
     /**
      * Return a AccessLogRecordData instance
      *
@@ -619,6 +1066,6 @@ public class AccessLogger extends LoggerOffThread implements AccessLog {
     @Override
     @Trivial
     public String toString() {
-        return super.toString() + "\n Format: " + getFormatString();
+        return super.toString() + "\n Format: " + getFormatString() + "\n Ring: " + this.ring;
     }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2013 IBM Corporation and others.
+ * Copyright (c) 2004, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -200,6 +200,38 @@ public class LoggerOffThread implements LogFile {
         return this.myWorker.enqueue(data);
     }
 
+    /**
+     * Provide the next batch of data that a subclass queues in some form other
+     * than buffers handed to log(WsByteBuffer). This is called on the worker
+     * thread each time it wakes up, until it returns null, and the returned
+     * buffer is written out before the next call.
+     *
+     * @return ByteBuffer, or null if there is nothing more to write
+     */
+    protected ByteBuffer nextPendingBatch() {
+        return null;
+    }
+
+    /**
+     * Query whether a subclass has data queued for nextPendingBatch.
+     *
+     * @return boolean
+     */
+    protected boolean hasPendingBatch() {
+        return false;
+    }
+
+    /**
+     * Wake up the worker thread after a subclass has queued data for
+     * nextPendingBatch. This only takes a lock if the worker is waiting.
+     */
+    protected void signalWorker() {
+        WorkerThread worker = this.myWorker;
+        if (null != worker) {
+            worker.signal();
+        }
+    }
+
     /**
      * @see LogFile#start()
      */
@@ -375,6 +407,8 @@ public class LoggerOffThread implements LogFile {
         private String extensioninfo = null;
         /** Formatter to use when saving backup files */
         private SimpleDateFormat myFormat = null;
+        /** Whether the worker thread is waiting for work */
+        private volatile boolean waiting = false;
 
         private long bytesWritten = 0;
 
@@ -441,6 +475,17 @@ public class LoggerOffThread implements LogFile {
             return true;
         }
 
+        /**
+         * Wake up this worker thread if it is waiting for work.
+         */
+        protected void signal() {
+            if (this.waiting) {
+                synchronized (this.lock) {
+                    this.lock.notify();
+                }
+            }
+        }
+
         /**
          * Notify this worker thread that a shutdown is in progress and to not
          * accept new requests and to stop once the last data is flushed. This
@@ -603,7 +648,21 @@ public class LoggerOffThread implements LogFile {
          * @param data
          */
         private void logData(WsByteBuffer data) {
-            int length = data.remaining();
+            try {
+                writeData(data.getWrappedByteBuffer());
+            } finally {
+                data.release();
+            }
+        }
+
+        /**
+         * Write the remaining data of the buffer to the file, rotating the
+         * file first if it would go over the maximum size.
+         *
+         * @param buffer
+         */
+        private void writeData(ByteBuffer buffer) {
+            int length = buffer.remaining();
             if (isOverFileLimit(length)) {
                 if (TraceComponent.isAnyTracingEnabled() && tc.isDebugEnabled()) {
                     Tr.debug(tc, "logData, rotate");
@@ -613,8 +672,6 @@ public class LoggerOffThread implements LogFile {
 
             int written = 0;
             try {
-
-                ByteBuffer buffer = data.getWrappedByteBuffer();
                 while (written < length) {
                     written += getChannel().write(buffer);
                 }
@@ -625,7 +682,6 @@ public class LoggerOffThread implements LogFile {
                 }
             } finally {
                 this.bytesWritten += written;
-                data.release();
             }
         }
 
@@ -664,6 +720,18 @@ public class LoggerOffThread implements LogFile {
                         }
                     }
                 }
+                // write whatever the subclass has queued in its own form
+                try {
+                    ByteBuffer batch;
+                    while (null != (batch = nextPendingBatch())) {
+                        writeData(batch);
+                    }
+                } catch (Throwable t) {
+                    FFDCFilter.processException(t, getClass().getName() + ".run", "595", this);
+                    if (tc.isDebugEnabled()) {
+                        Tr.debug(tc, getFileName() + ": Unexpected exception in nextPendingBatch; " + t);
+                    }
+                }
                 // if we're in the process of stopping then exit the while loop
                 if (WorkerState.RUNNING != this.workerState) {
                     break;
@@ -672,13 +740,19 @@ public class LoggerOffThread implements LogFile {
                 if (this.queue.isEmpty()) {
                     try {
                         synchronized (this.lock) {
-                            // if there's already work on the queue, loop back around
-                            if (!this.queue.isEmpty()) {
+                            // if there's already work queued, loop back around; the
+                            // flag is set first so a subclass queueing data at the
+                            // same time either sees it or has its data seen here
+                            this.waiting = true;
+                            if (!this.queue.isEmpty() || hasPendingBatch()) {
+                                this.waiting = false;
                                 continue;
                             }
                             this.lock.wait(TIMEOUT);
+                            this.waiting = false;
                         }
                     } catch (InterruptedException ie) {
+                        this.waiting = false;
                         FFDCFilter.processException(ie, getClass().getName() + ".run", "278", this);
                     }
                 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 IBM Corporation and others.
+ * Copyright (c) 2015, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,10 @@
  *******************************************************************************/
 package com.ibm.wsspi.http;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 /**
@@ -74,6 +76,34 @@ public abstract class HttpOutputStream extends OutputStream {
      */
     public abstract void writeFile(FileChannel fc) throws IOException;
 
+    /**
+     * Write a region of a file channel onto the output stream. By default the
+     * region is read from the file and written as bytes; a stream that can hand
+     * the file channel to the transport overrides this.
+     * 
+     * @param fc
+     * @param offset position in the file of the first byte to write
+     * @param length number of bytes to write
+     * @throws IOException
+     */
+    public void writeFile(FileChannel fc, long offset, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, 32768L));
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            buffer.clear();
+            if (end - position < buffer.capacity()) {
+                buffer.limit((int) (end - position));
+            }
+            int read = fc.read(buffer, position);
+            if (read == -1) {
+                throw new EOFException("End of file at " + position + " before the end of the region at " + end);
+            }
+            write(buffer.array(), 0, read);
+            position += read;
+        }
+    }
+
     /**
      * Write the current set of response headers. If the headers have already
      * been sent, this is a no-op.
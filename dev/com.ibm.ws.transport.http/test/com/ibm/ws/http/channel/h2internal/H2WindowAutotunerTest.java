@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.channel.h2internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test the sizing of HTTP/2 receive windows from the bandwidth-delay product.
+ */
+public class H2WindowAutotunerTest {
+
+    private static final long MS = 1000000L;
+
+    /**
+     * Run one round trip sample in which the provided bytes arrive.
+     */
+    private static void sample(H2WindowAutotuner tuner, long start, long bytes, long rtt) {
+        byte[] ping = tuner.dataReceived(bytes / 2, start);
+        assertNotNull(ping);
+        assertNull(tuner.dataReceived(bytes - bytes / 2, start + rtt / 2));
+        assertFalse(tuner.pingAckReceived(new byte[8], start + rtt));
+        assertTrue(tuner.pingAckReceived(ping, start + rtt));
+    }
+
+    /**
+     * A connection that fills its window within a round trip grows to twice the sample.
+     */
+    @Test
+    public void testGrowWithBandwidthDelayProduct() {
+        H2WindowAutotuner tuner = new H2WindowAutotuner(65535, 1024 * 1024 * 1024L);
+        try {
+            sample(tuner, 0, 60000, 50 * MS);
+            assertEquals(120000, tuner.getWindowSize());
+            assertEquals(50 * MS, tuner.getRoundTripTime());
+
+            sample(tuner, 100 * MS, 100000, 50 * MS);
+            assertEquals(200000, tuner.getWindowSize());
+
+            // no growth without an increase in bandwidth
+            sample(tuner, 200 * MS, 150000, 100 * MS);
+            assertEquals(200000, tuner.getWindowSize());
+        } finally {
+            tuner.release();
+        }
+    }
+
+    /**
+     * A connection that only carries small requests keeps its initial window.
+     */
+    @Test
+    public void testSmallRequestsKeepWindow() {
+        H2WindowAutotuner tuner = new H2WindowAutotuner(65535, 1024 * 1024 * 1024L);
+        try {
+            for (int i = 0; i < 5; i++) {
+                sample(tuner, i * 100 * MS, 2000, 10 * MS);
+            }
+            assertEquals(65535, tuner.getWindowSize());
+        } finally {
+            tuner.release();
+        }
+    }
+
+    /**
+     * Growth is limited by the memory budget and given back when the connection closes.
+     */
+    @Test
+    public void testMemoryBudget() {
+        long before = H2WindowAutotuner.getReservedBytes();
+        H2WindowAutotuner first = new H2WindowAutotuner(65535, before + 100000);
+        H2WindowAutotuner second = new H2WindowAutotuner(65535, before + 100000);
+
+        sample(first, 0, 65535, 10 * MS);
+        assertEquals(131070, first.getWindowSize());
+        sample(second, 0, 65535, 10 * MS);
+        assertEquals(100000, second.getWindowSize());
+        assertEquals(before + 100000, H2WindowAutotuner.getReservedBytes());
+
+        first.release();
+        second.release();
+        assertEquals(before, H2WindowAutotuner.getReservedBytes());
+        assertNull(first.dataReceived(1000, 0));
+    }
+}
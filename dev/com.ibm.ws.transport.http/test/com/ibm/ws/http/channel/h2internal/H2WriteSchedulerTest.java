@@ -0,0 +1,326 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.channel.h2internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ibm.ws.http.channel.h2internal.frames.Frame;
+import com.ibm.ws.http.channel.h2internal.frames.FrameHeaders;
+import com.ibm.ws.http.channel.h2internal.hpack.H2HeaderField;
+import com.ibm.ws.http.channel.h2internal.hpack.H2HeaderTable;
+import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.channelfw.ChannelFrameworkFactory;
+import com.ibm.wsspi.channelfw.VirtualConnection;
+import com.ibm.wsspi.tcpchannel.TCPRequestContext;
+import com.ibm.wsspi.tcpchannel.TCPWriteCompletedCallback;
+import com.ibm.wsspi.tcpchannel.TCPWriteRequestContext;
+
+/**
+ * Test the batching HTTP/2 write scheduler.
+ */
+public class H2WriteSchedulerTest {
+
+    /**
+     * Write context that records what it is asked to write, and holds the first
+     * write until told to continue.
+     */
+    private static class RecordingWriteContext implements InvocationHandler {
+        final List<WsByteBuffer[]> writes = new ArrayList<WsByteBuffer[]>();
+        // content of each write, taken when it is made
+        final List<byte[]> written = new ArrayList<byte[]>();
+        final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        IOException error;
+        final VirtualConnection vc = (VirtualConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { VirtualConnection.class }, this);
+        WsByteBuffer[] current;
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            if (m.getName().equals("setBuffer")) {
+                current = new WsByteBuffer[] { (WsByteBuffer) args[0] };
+            } else if (m.getName().equals("setBuffers")) {
+                current = (WsByteBuffer[]) args[0];
+            } else if (m.getName().equals("write") && args.length == 4) {
+                writes.add(current);
+                written.add(contentOf(current));
+                if (writes.size() == 1) {
+                    firstWriteStarted.countDown();
+                    releaseFirstWrite.await();
+                }
+                if (error != null) {
+                    // the write did not complete right away, and then failed
+                    ((TCPWriteCompletedCallback) args[1]).error(vc, (TCPWriteRequestContext) proxy, error);
+                    return null;
+                }
+                return vc;
+            }
+            return null;
+        }
+    }
+
+    private static byte[] contentOf(WsByteBuffer[] buffers) {
+        int length = 0;
+        for (WsByteBuffer b : buffers) {
+            length += b.remaining();
+        }
+        byte[] content = new byte[length];
+        int offset = 0;
+        for (WsByteBuffer b : buffers) {
+            int remaining = b.remaining();
+            b.get(content, offset, remaining);
+            b.position(b.position() - remaining);
+            offset += remaining;
+        }
+        return content;
+    }
+
+    private static H2WriteQEntry entry(WsByteBuffer buffer, int streamID) {
+        H2WriteQEntry e = new H2WriteQEntry(buffer, null, 10, TCPRequestContext.NO_TIMEOUT, H2WriteQEntry.WRITE_TYPE.SYNC, FrameTypes.HEADERS, 0, streamID);
+        e.armWriteCompleteLatch();
+        return e;
+    }
+
+    /**
+     * Entries added while a write is outstanding go out together in one write, connection
+     * frames first and then by descending stream weight.
+     */
+    @Test
+    public void testBatchByWeight() throws Exception {
+        RecordingWriteContext recorder = new RecordingWriteContext();
+        TCPWriteRequestContext twc = (TCPWriteRequestContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { TCPWriteRequestContext.class },
+                                                                                     recorder);
+        final H2WriteScheduler scheduler = new H2WriteScheduler(null);
+        scheduler.init(twc, new H2MuxTCPWriteCallback());
+        scheduler.addNewNodeToQ(3, 0, 16, false);
+        scheduler.addNewNodeToQ(5, 0, 16, false);
+        scheduler.addNewNodeToQ(7, 0, 16, false);
+        scheduler.updateNodeFrameParameters(3, 200, 0, false);
+        scheduler.updateNodeFrameParameters(7, 100, 0, false);
+
+        WsByteBuffer[] b = new WsByteBuffer[5];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = ChannelFrameworkFactory.getBufferManager().allocate(10);
+        }
+        final H2WriteQEntry first = entry(b[0], 1);
+        final Throwable[] failure = new Throwable[1];
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    scheduler.writeOrAddToQ(first);
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        };
+        writer.start();
+        assertTrue(recorder.firstWriteStarted.await(10, TimeUnit.SECONDS));
+
+        // the writer is busy, so these are only queued
+        H2WriteQEntry[] queued = new H2WriteQEntry[] { entry(b[1], 5), entry(b[2], 7), entry(b[3], 3), entry(b[4], 0) };
+        for (H2WriteQEntry e : queued) {
+            assertEquals(H2WorkQInterface.WRITE_ACTION.QUEUED, scheduler.writeOrAddToQ(e));
+        }
+        assertEquals(5, scheduler.getQueueDepth());
+
+        recorder.releaseFirstWrite.countDown();
+        writer.join(10000);
+        assertFalse(writer.isAlive());
+        assertNull(failure[0]);
+        for (H2WriteQEntry e : queued) {
+            e.waitWriteCompleteLatch();
+        }
+
+        assertEquals(2, recorder.writes.size());
+        assertArrayEquals(new WsByteBuffer[] { b[0] }, recorder.writes.get(0));
+        assertArrayEquals(new WsByteBuffer[] { b[4], b[3], b[2], b[1] }, recorder.writes.get(1));
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals(5, scheduler.getMaxQueueDepth());
+        assertEquals(2, scheduler.getBatchCount());
+        assertEquals(5, scheduler.getFrameCount());
+    }
+
+    /**
+     * When a write fails, its entries and the entries queued behind it get the error,
+     * and no more writes are made.
+     */
+    @Test
+    public void testWriteFailure() throws Exception {
+        RecordingWriteContext recorder = new RecordingWriteContext();
+        recorder.error = new IOException("connection reset");
+        TCPWriteRequestContext twc = (TCPWriteRequestContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { TCPWriteRequestContext.class },
+                                                                                     recorder);
+        final H2WriteScheduler scheduler = new H2WriteScheduler(null);
+        scheduler.init(twc, new H2MuxTCPWriteCallback());
+
+        final H2WriteQEntry first = entry(ChannelFrameworkFactory.getBufferManager().allocate(10), 1);
+        final Throwable[] failure = new Throwable[1];
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    scheduler.writeOrAddToQ(first);
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        };
+        writer.start();
+        assertTrue(recorder.firstWriteStarted.await(10, TimeUnit.SECONDS));
+        H2WriteQEntry second = entry(ChannelFrameworkFactory.getBufferManager().allocate(10), 3);
+        assertEquals(H2WorkQInterface.WRITE_ACTION.QUEUED, scheduler.writeOrAddToQ(second));
+
+        recorder.releaseFirstWrite.countDown();
+        writer.join(10000);
+        assertFalse(writer.isAlive());
+        assertNull(failure[0]);
+        second.waitWriteCompleteLatch();
+
+        assertEquals(1, recorder.writes.size());
+        assertSame(recorder.error, first.getWriteError());
+        assertSame(recorder.error, second.getWriteError());
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals(0, scheduler.getBatchCount());
+        assertEquals(H2WorkQInterface.WRITE_ACTION.CONNECTION_QUIT, scheduler.writeOrAddToQ(entry(null, 5)));
+    }
+
+    /**
+     * Entries that are still queued when told to quit without draining are failed, not written.
+     */
+    @Test
+    public void testQuitWithoutDrain() throws Exception {
+        RecordingWriteContext recorder = new RecordingWriteContext();
+        TCPWriteRequestContext twc = (TCPWriteRequestContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { TCPWriteRequestContext.class },
+                                                                                     recorder);
+        final H2WriteScheduler scheduler = new H2WriteScheduler(null);
+        scheduler.init(twc, new H2MuxTCPWriteCallback());
+
+        final H2WriteQEntry first = entry(ChannelFrameworkFactory.getBufferManager().allocate(10), 1);
+        final Throwable[] failure = new Throwable[1];
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    scheduler.writeOrAddToQ(first);
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        };
+        writer.start();
+        assertTrue(recorder.firstWriteStarted.await(10, TimeUnit.SECONDS));
+        H2WriteQEntry second = entry(ChannelFrameworkFactory.getBufferManager().allocate(10), 3);
+        assertEquals(H2WorkQInterface.WRITE_ACTION.QUEUED, scheduler.writeOrAddToQ(second));
+        scheduler.setToQuit(false);
+
+        recorder.releaseFirstWrite.countDown();
+        writer.join(10000);
+        assertFalse(writer.isAlive());
+        assertNull(failure[0]);
+        second.waitWriteCompleteLatch();
+
+        assertEquals(1, recorder.writes.size());
+        assertNull(first.getWriteError());
+        assertTrue(second.getWriteError() != null);
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    /**
+     * Header blocks queued as headers frames are encoded by the writer in the order the
+     * frames go out, so the one written first adds the entry that the next one refers to.
+     */
+    @Test
+    public void testEncodeHeadersInWriteOrder() throws Exception {
+        RecordingWriteContext recorder = new RecordingWriteContext();
+        TCPWriteRequestContext twc = (TCPWriteRequestContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { TCPWriteRequestContext.class },
+                                                                                     recorder);
+        final H2WriteScheduler scheduler = new H2WriteScheduler(null);
+        scheduler.init(twc, new H2MuxTCPWriteCallback());
+        scheduler.addNewNodeToQ(3, 0, 16, false);
+        scheduler.addNewNodeToQ(5, 0, 16, false);
+        scheduler.updateNodeFrameParameters(3, 200, 0, false);
+
+        final H2WriteQEntry first = entry(ChannelFrameworkFactory.getBufferManager().allocate(10), 1);
+        final Throwable[] failure = new Throwable[1];
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    scheduler.writeOrAddToQ(first);
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        };
+        writer.start();
+        assertTrue(recorder.firstWriteStarted.await(10, TimeUnit.SECONDS));
+
+        // stream 5 is queued first, but stream 3 is heavier and written first
+        H2HeaderTable writeTable = new H2HeaderTable();
+        H2ConnectionSettings settings = new H2ConnectionSettings();
+        List<H2HeaderField> fields = Arrays.asList(new H2HeaderField(":status", "200"), new H2HeaderField("content-type", "text/html"));
+        H2WriteQEntry[] queued = new H2WriteQEntry[] { entry(null, 5), entry(null, 3) };
+        for (H2WriteQEntry e : queued) {
+            e.setHeadersFrame(new FrameHeaders(e.getStreamID(), fields, writeTable, settings, true));
+            assertEquals(H2WorkQInterface.WRITE_ACTION.QUEUED, scheduler.writeOrAddToQ(e));
+        }
+
+        recorder.releaseFirstWrite.countDown();
+        writer.join(10000);
+        assertFalse(writer.isAlive());
+        assertNull(failure[0]);
+        for (H2WriteQEntry e : queued) {
+            e.waitWriteCompleteLatch();
+            assertNull(e.getWriteError());
+        }
+
+        assertEquals(2, recorder.writes.size());
+        assertEquals(1, writeTable.getDynamicEntryCount());
+        byte[] content = recorder.written.get(1);
+        // the frame of stream 3 adds content-type to the table
+        int length = ((content[1] & 0xff) << 8) | (content[2] & 0xff);
+        assertEquals(3, content[8]);
+        assertTrue(length > 2);
+        // and the frame of stream 5 refers to it
+        int next = Frame.SIZE_FRAME_BEFORE_PAYLOAD + length;
+        assertEquals(5, content[next + 8]);
+        assertArrayEquals(new byte[] { 0, 0, 2, 1, 5, 0, 0, 0, 5, (byte) 0x88, (byte) 0xbe },
+                          Arrays.copyOfRange(content, next, content.length));
+    }
+
+    /**
+     * Once told to quit, new writes are refused.
+     */
+    @Test
+    public void testQuit() throws Exception {
+        H2WriteScheduler scheduler = new H2WriteScheduler(null);
+        scheduler.init(null, new H2MuxTCPWriteCallback());
+        scheduler.setToQuit(true);
+        assertEquals(H2WorkQInterface.WRITE_ACTION.CONNECTION_QUIT, scheduler.writeOrAddToQ(entry(null, 1)));
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017 IBM Corporation and others.
+ * Copyright (c) 2017, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -1523,6 +1523,23 @@ public class HttpRequestMessageImplTest {
                          getRequest().getContentEncoding()[0]);
             buff1.release();
 
+            // test values left in the parse buffers until they are requested,
+            // with names that straddle bytecaches
+            getRequest().clear();
+            buff1 = mgr.allocateDirect(1024);
+            buff1.put(("GET /index.html HTTP/1.1\r\nHost: localhost\r\n"
+                       + "X-Some-Rather-Long-Custom-Header-Name : long\r\n"
+                       + "Content-Length: 12\r\nAccept: */*\r\n\r\n").getBytes());
+            buff1.flip();
+            getRequest().addParseBuffer(buff1);
+            assertTrue(getRequest().parseMessage(buff1, false));
+            assertEquals(12, getRequest().getContentLength());
+            assertEquals("localhost", getRequest().getHeader(HttpHeaderKeys.HDR_HOST).asString());
+            assertEquals("long", getRequest().getHeader("X-Some-Rather-Long-Custom-Header-Name").asString());
+            assertEquals("*/*", getRequest().getHeader("Accept").asString());
+            assertEquals("localhost", GenericUtils.getEnglishString(getRequest().getHeader("Host").asBytes()));
+            buff1.release();
+
             // *****************************************************************
             // Test the query parameter APIs
             // *****************************************************************
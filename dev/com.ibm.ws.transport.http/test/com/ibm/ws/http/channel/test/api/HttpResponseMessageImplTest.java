@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017 IBM Corporation and others.
+ * Copyright (c) 2017, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -31,6 +31,8 @@ import test.common.SharedOutputManager;
 
 import com.ibm.ws.channelfw.internal.ChannelDataImpl;
 import com.ibm.ws.channelfw.internal.InboundVirtualConnectionFactoryImpl;
+import com.ibm.ws.genericbnf.internal.GenericUtils;
+import com.ibm.ws.genericbnf.internal.HeaderBlockCache;
 import com.ibm.ws.http.channel.internal.HttpChannelConfig;
 import com.ibm.ws.http.channel.internal.HttpConfigConstants;
 import com.ibm.ws.http.channel.internal.HttpResponseMessageImpl;
@@ -825,4 +827,48 @@ public class HttpResponseMessageImplTest {
         }
     }
 
-}
\ No newline at end of file
+    private String marshallHeaders(String type, String date, long length) {
+        getResponse().clear();
+        getResponse().setHeader(HttpHeaderKeys.HDR_CONTENT_TYPE, type);
+        getResponse().setHeader(HttpHeaderKeys.HDR_DATE, date);
+        getResponse().setHeader("Cache-Control", "no-cache");
+        getResponse().setContentLength(length);
+        getResponse().setHeader("X-Empty", "");
+        // the buffers are released when the message is cleared
+        return GenericUtils.getEnglishString(getResponse().marshallHeaders(null));
+    }
+
+    /**
+     * Test that responses marshalled from the header block cache match the
+     * headers of the message.
+     */
+    @Test
+    public void testHeaderBlockCache() {
+        try {
+            createNewMessage(HttpConfigConstants.PROPNAME_HEADER_BLOCK_CACHE_SIZE, "16");
+            HeaderBlockCache cache = this.config.getHeaderBlockCache();
+            assertNotNull(cache);
+
+            for (int i = 0; i < 4; i++) {
+                String date = "Thu, 0" + i + " Feb 2018 10:00:00 GMT";
+                assertEquals("Content-Type: application/json\r\nDate: " + date + "\r\nCache-Control: no-cache\r\n"
+                             + "Content-Length: " + (i * 100) + "\r\nX-Empty: \r\n\r\n",
+                             marshallHeaders("application/json", date, i * 100));
+            }
+            assertEquals(2, cache.getHitCount());
+            assertEquals(1, cache.getStoreCount());
+
+            // a different value must not be answered from the cached block
+            assertEquals("Content-Type: text/plain\r\nDate: now\r\nCache-Control: no-cache\r\n"
+                         + "Content-Length: 5\r\nX-Empty: \r\n\r\n",
+                         marshallHeaders("text/plain", "now", 5));
+            assertEquals(2, cache.getHitCount());
+
+            createNewMessage(HttpConfigConstants.PROPNAME_HEADER_BLOCK_CACHE_SIZE, "0");
+            assertNull(this.config.getHeaderBlockCache());
+        } catch (Throwable t) {
+            outputMgr.failWithThrowable("testHeaderBlockCache", t);
+        }
+    }
+
+}
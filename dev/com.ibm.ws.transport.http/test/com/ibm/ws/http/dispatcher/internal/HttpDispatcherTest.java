@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014, 2017 IBM Corporation and others.
+ * Copyright (c) 2014, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -157,6 +157,49 @@ public class HttpDispatcherTest {
         Assert.assertTrue("Trust private headers by default", HttpDispatcher.usePrivateHeaders("a.b.c"));
     }
 
+    /**
+     * Requests are only dispatched to virtual threads when they are enabled and supported,
+     * and the same executor is kept while the configuration changes.
+     */
+    @Test
+    public void testVirtualThreadDispatch() throws Exception {
+        HttpDispatcher d = new HttpDispatcher();
+        Map<String, Object> map = buildMap(true, null, (String) null);
+        d.activate(map);
+        Assert.assertNull("Virtual threads should be disabled by default", HttpDispatcher.getVirtualThreadExecutor());
+
+        map.put(HttpDispatcher.PROP_USE_VIRTUAL_THREADS, true);
+        map.put(HttpDispatcher.PROP_MAX_VIRTUAL_THREADS, 20);
+        d.modified(map);
+        VirtualThreadExecutor executor = HttpDispatcher.getVirtualThreadExecutor();
+        if (!VirtualThreadExecutor.isSupported()) {
+            Assert.assertNull("Requests should run on the executor when virtual threads are not supported", executor);
+            return;
+        }
+        Assert.assertNotNull("Virtual threads should be enabled", executor);
+        Assert.assertEquals(20, executor.getMaxConcurrency());
+
+        map.put(HttpDispatcher.PROP_MAX_VIRTUAL_THREADS, 30);
+        d.modified(map);
+        Assert.assertSame("Executor should be kept when the limit changes", executor, HttpDispatcher.getVirtualThreadExecutor());
+        Assert.assertEquals(30, executor.getMaxConcurrency());
+
+        map.put(HttpDispatcher.PROP_USE_VIRTUAL_THREADS, false);
+        d.modified(map);
+        Assert.assertNull("Virtual threads should be disabled", HttpDispatcher.getVirtualThreadExecutor());
+
+        map.put(HttpDispatcher.PROP_USE_VIRTUAL_THREADS, true);
+        d.modified(map);
+        Assert.assertSame("Executor should be kept when re-enabled", executor, HttpDispatcher.getVirtualThreadExecutor());
+
+        map.put(HttpDispatcher.PROP_MAX_VIRTUAL_THREADS, 0);
+        d.modified(map);
+        Assert.assertNull("A limit of 0 should disable virtual threads", HttpDispatcher.getVirtualThreadExecutor());
+
+        d.deactivate(map, 0);
+        Assert.assertNull("No virtual threads without a dispatcher", HttpDispatcher.getVirtualThreadExecutor());
+    }
+
     @Test
     public void testRestrictPrivateHeaders() throws Exception {
         HttpDispatcher d = new HttpDispatcher();
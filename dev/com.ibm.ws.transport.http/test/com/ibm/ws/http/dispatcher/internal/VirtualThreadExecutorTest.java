@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.dispatcher.internal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import junit.framework.Assert;
+import test.common.SharedOutputManager;
+
+/**
+ * Tests the limit on concurrent requests of the virtual thread executor. Tasks run on platform
+ * threads, so that the tests do not depend on the Java level.
+ */
+public class VirtualThreadExecutorTest {
+    private static SharedOutputManager outputMgr = SharedOutputManager.getInstance();
+
+    @Rule
+    public TestRule rule = outputMgr;
+
+    private static final ThreadFactory platformThreads = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "VirtualThreadExecutorTest");
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
+    /** Released to let the tasks that are running complete */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * Task that runs until the test releases it.
+     */
+    private class BlockingTask implements Runnable {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException x) {
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    private BlockingTask start(VirtualThreadExecutor executor) throws Exception {
+        BlockingTask task = new BlockingTask();
+        Assert.assertTrue("Task should start", executor.tryExecute(task));
+        Assert.assertTrue(task.started.await(30, TimeUnit.SECONDS));
+        return task;
+    }
+
+    /**
+     * Wait for the permits of completed tasks to be returned.
+     */
+    private static void awaitActive(VirtualThreadExecutor executor, int active) throws Exception {
+        for (long end = System.currentTimeMillis() + 30000; executor.getActiveCount() != active && System.currentTimeMillis() < end;)
+            Thread.sleep(10);
+        Assert.assertEquals(active, executor.getActiveCount());
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(2, null, platformThreads);
+        start(executor);
+        start(executor);
+        Assert.assertEquals(2, executor.getActiveCount());
+        Assert.assertFalse("Task should be declined at the limit", executor.tryExecute(new BlockingTask()));
+
+        release.countDown();
+        awaitActive(executor, 0);
+        Assert.assertTrue("Task should run once the others complete", executor.tryExecute(new BlockingTask()));
+    }
+
+    @Test
+    public void testIncreaseLimit() throws Exception {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(1, null, platformThreads);
+        start(executor);
+        Assert.assertFalse(executor.tryExecute(new BlockingTask()));
+
+        executor.setMaxConcurrency(2);
+        Assert.assertEquals(2, executor.getMaxConcurrency());
+        start(executor);
+        Assert.assertEquals(2, executor.getActiveCount());
+        Assert.assertFalse(executor.tryExecute(new BlockingTask()));
+    }
+
+    /**
+     * Reducing the limit below the number of running tasks holds back new tasks until enough of them complete.
+     */
+    @Test
+    public void testReduceLimit() throws Exception {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(3, null, platformThreads);
+        start(executor);
+        start(executor);
+        start(executor);
+
+        executor.setMaxConcurrency(1);
+        Assert.assertEquals(1, executor.getMaxConcurrency());
+        Assert.assertEquals(3, executor.getActiveCount());
+        Assert.assertFalse("Task should be declined while over the reduced limit", executor.tryExecute(new BlockingTask()));
+
+        release.countDown();
+        awaitActive(executor, 0);
+        Assert.assertTrue(executor.tryExecute(new BlockingTask()));
+        Assert.assertFalse("Only one task should run at the reduced limit", executor.tryExecute(new BlockingTask()));
+    }
+
+    /**
+     * The permit is returned when the thread can not be started.
+     */
+    @Test
+    public void testThreadNotStarted() throws Exception {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(1, null, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                throw new IllegalStateException("no threads for this test");
+            }
+        });
+        Assert.assertFalse(executor.tryExecute(new BlockingTask()));
+        Assert.assertEquals(0, executor.getActiveCount());
+    }
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.http.logging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import test.common.SharedOutputManager;
+
+/**
+ * Test the ring of access log entries that are formatted on the logging thread.
+ */
+public class AccessLogRingTest {
+    private static SharedOutputManager outputMgr = SharedOutputManager.getInstance();
+
+    @Rule
+    public TestRule rule = outputMgr;
+
+    /**
+     * Entries are polled in the order they were claimed, once they are published.
+     */
+    @Test
+    public void testClaimAndPoll() {
+        AccessLogRing ring = new AccessLogRing(3);
+        assertEquals(4, ring.getCapacity());
+
+        AccessLogRing.Slot first = ring.claim();
+        AccessLogRing.Slot second = ring.claim();
+        first.set(AccessLogRing.URI, "/first");
+        ring.publish(second);
+        // the first entry holds up the second until it is published
+        assertNull(ring.poll());
+        ring.publish(first);
+
+        assertSame(first, ring.poll());
+        assertEquals("/first", new String(first.data, first.offset[AccessLogRing.URI], first.length[AccessLogRing.URI], StandardCharsets.ISO_8859_1));
+        assertEquals(-1, first.length[AccessLogRing.QUERY]);
+        ring.release();
+        assertSame(second, ring.poll());
+        ring.release();
+        assertNull(ring.poll());
+    }
+
+    /**
+     * Entries are dropped once the ring is full.
+     */
+    @Test
+    public void testDropWhenFull() {
+        AccessLogRing ring = new AccessLogRing(2);
+        for (int i = 0; i < 2; i++) {
+            ring.publish(ring.claim());
+        }
+        assertNull(ring.claim());
+        assertEquals(1, ring.getDroppedCount());
+        assertEquals(1, ring.getWaitCount());
+
+        ring.poll();
+        ring.release();
+        assertNotNull(ring.claim());
+        assertEquals(3, ring.getClaimedCount());
+    }
+
+    /**
+     * A value that does not fit in the slot is not copied, and the slot can be
+     * skipped so that the entry is written without the ring.
+     */
+    @Test
+    public void testValueTooLarge() {
+        AccessLogRing ring = new AccessLogRing(2);
+        AccessLogRing.Slot slot = ring.claim();
+        assertTrue(slot.set(AccessLogRing.METHOD, "GET"));
+        char[] uri = new char[AccessLogRing.SLOT_DATA_SIZE];
+        Arrays.fill(uri, 'a');
+        assertFalse(slot.set(AccessLogRing.URI, new String(uri)));
+        assertEquals(-1, slot.length[AccessLogRing.URI]);
+        assertEquals(3, slot.getUsed());
+        // the rest of the slot is still available
+        assertTrue(slot.set(AccessLogRing.QUERY, new String(uri, 0, AccessLogRing.SLOT_DATA_SIZE - 3)));
+        assertEquals(AccessLogRing.SLOT_DATA_SIZE, slot.getUsed());
+
+        ring.skip(slot);
+        assertSame(slot, ring.poll());
+        assertTrue(slot.isSkipped());
+        ring.release();
+
+        // the slot is reused for a later entry
+        ring.publish(ring.claim());
+        slot = ring.claim();
+        assertFalse(slot.isSkipped());
+        assertEquals(0, slot.getUsed());
+    }
+
+    /**
+     * Password values of a query string are masked.
+     */
+    @Test
+    public void testMaskPasswords() {
+        byte[] data = "a=1&Password=secret&client_secret=xy".getBytes(StandardCharsets.ISO_8859_1);
+        AccessLogRing.maskPasswords(data, 0, data.length);
+        assertEquals("a=1&Password=******&client_secret=**", new String(data, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Entries in the ring are formatted and written by the logging thread.
+     */
+    @Test
+    public void testWriteFromRing() throws Exception {
+        File file = File.createTempFile("access", ".log");
+        file.deleteOnExit();
+        AccessLogger logger = new AccessLogger(file.getPath());
+        logger.setFormatString("%h \"%r\" %s %b");
+        logger.setBufferedEntries(4);
+        logger.start();
+        for (int i = 0; i < 3; i++) {
+            logger.log(null, null, "HTTP/1.1", null, "127.0.0.1", 10);
+        }
+        logger.stop();
+        logger.disable();
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.ISO_8859_1);
+        assertEquals(3, lines.size());
+        assertEquals("- \"- - -\" - 10", lines.get(0));
+    }
+}
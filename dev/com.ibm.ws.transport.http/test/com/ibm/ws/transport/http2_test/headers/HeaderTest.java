@@ -14,6 +14,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -31,6 +33,7 @@ import com.ibm.ws.http.channel.h2internal.hpack.HpackConstants;
 import com.ibm.ws.http.channel.h2internal.hpack.HpackConstants.LiteralIndexType;
 import com.ibm.ws.http.channel.h2internal.hpack.HpackUtils;
 import com.ibm.ws.http.channel.h2internal.hpack.IntegerRepresentation;
+import com.ibm.ws.http.channel.h2internal.huffman.HuffmanEncoder;
 import com.ibm.wsspi.bytebuffer.WsByteBuffer;
 import com.ibm.wsspi.channelfw.ChannelFrameworkFactory;
 
@@ -527,6 +530,110 @@ public class HeaderTest {
         }
     }
 
+    @Test
+    public void testHuffmanOnlyWhenShorter() throws Exception {
+        byte[] common = "text/html;charset=UTF-8".getBytes(HpackConstants.HPACK_CHAR_SET);
+        byte[] uncommon = "{\"a\":[1,2]}".getBytes(HpackConstants.HPACK_CHAR_SET);
+        Assert.assertEquals(HuffmanEncoder.convertAsciiToHuffman(common).length, HuffmanEncoder.getHuffmanLength(common));
+        Assert.assertEquals(HuffmanEncoder.convertAsciiToHuffman(uncommon).length, HuffmanEncoder.getHuffmanLength(uncommon));
+        Assert.assertTrue(HuffmanEncoder.getHuffmanLength(uncommon) > uncommon.length);
+
+        //The value is sent as a plain string, so its length prefix does not have the Huffman bit set
+        H2HeaderTable writeTable = new H2HeaderTable();
+        byte[] encoded = H2Headers.encodeHeader(writeTable, "x-json", "{\"a\":[1,2]}", LiteralIndexType.NOINDEXING, true);
+        Assert.assertEquals(uncommon.length, encoded[encoded.length - uncommon.length - 1]);
+
+        WsByteBuffer buffer = ChannelFrameworkFactory.getBufferManager().allocate(encoded.length);
+        buffer.put(encoded);
+        buffer.flip();
+        H2HeaderField decoded = H2Headers.decodeHeader(buffer, new H2HeaderTable());
+        Assert.assertEquals(new H2HeaderField("x-json", "{\"a\":[1,2]}"), decoded);
+        buffer.release();
+    }
+
+    @Test
+    public void testReuseEncodedField() throws Exception {
+        H2HeaderTable writeTable = new H2HeaderTable();
+        byte[] first = H2Headers.encodeHeader(writeTable, "cache-control", "no-cache", LiteralIndexType.NOINDEXING);
+        byte[] second = H2Headers.encodeHeader(writeTable, "Cache-Control", "no-cache", LiteralIndexType.NOINDEXING);
+        Assert.assertSame(first, second);
+
+        //Once the table changes, the field is encoded again and may now refer to the new entry
+        writeTable.addHeaderEntry(new H2HeaderField("cache-control", "no-cache"));
+        byte[] third = H2Headers.encodeHeader(writeTable, "cache-control", "no-cache", LiteralIndexType.NOINDEXING);
+        Assert.assertNotSame(first, third);
+        Assert.assertArrayEquals(new byte[] { (byte) 0xbe }, third);
+    }
+
+    @Test
+    public void testEncodeHeaderBlock() throws Exception {
+        H2HeaderTable writeTable = new H2HeaderTable();
+        H2HeaderTable readTable = new H2HeaderTable();
+        List<H2HeaderField> fields = Arrays.asList(new H2HeaderField(":status", "200"),
+                                                   new H2HeaderField("content-type", "text/html"),
+                                                   new H2HeaderField("x-request-id", "1"));
+
+        //Repeatable fields are added to the table, other fields are not
+        byte[] first = H2Headers.encodeHeaderBlock(writeTable, fields, 4096);
+        Assert.assertEquals(1, writeTable.getDynamicEntryCount());
+        Assert.assertEquals(fields, decodeHeaderBlock(first, readTable));
+
+        //The next block refers to the entry, and the read table follows the write table
+        byte[] second = H2Headers.encodeHeaderBlock(writeTable, fields, 4096);
+        Assert.assertEquals((byte) 0x88, second[0]);
+        Assert.assertEquals((byte) 0xbe, second[1]);
+        Assert.assertEquals(1, writeTable.getDynamicEntryCount());
+        Assert.assertEquals(fields, decodeHeaderBlock(second, readTable));
+    }
+
+    @Test
+    public void testEncodeHeaderBlockTableSizeUpdate() throws Exception {
+        H2HeaderTable writeTable = new H2HeaderTable();
+        H2HeaderTable readTable = new H2HeaderTable();
+        List<H2HeaderField> fields = Arrays.asList(new H2HeaderField(":status", "200"),
+                                                   new H2HeaderField("cache-control", "no-cache"));
+        Assert.assertEquals(fields, decodeHeaderBlock(H2Headers.encodeHeaderBlock(writeTable, fields, 4096), readTable));
+        Assert.assertEquals(1, readTable.getDynamicEntryCount());
+
+        //A smaller table size from the peer starts the next block with the size update
+        byte[] block = H2Headers.encodeHeaderBlock(writeTable, fields, 0);
+        Assert.assertEquals((byte) 0x20, block[0]);
+        Assert.assertEquals(0, writeTable.getDynamicTableSize());
+        Assert.assertEquals(fields, decodeHeaderBlock(block, readTable));
+        Assert.assertEquals(0, readTable.getDynamicEntryCount());
+
+        //Only once
+        Assert.assertEquals((byte) 0x88, H2Headers.encodeHeaderBlock(writeTable, fields, 0)[0]);
+    }
+
+    @Test
+    public void testEncodeHeaderSameHash() throws Exception {
+        //"Aa" and "BB" have the same hash code, but are different values
+        Assert.assertEquals("Aa".hashCode(), "BB".hashCode());
+        H2HeaderTable writeTable = new H2HeaderTable();
+        H2HeaderTable readTable = new H2HeaderTable();
+        List<H2HeaderField> fields = Arrays.asList(new H2HeaderField("content-type", "Aa"),
+                                                   new H2HeaderField("content-type", "BB"));
+        Assert.assertEquals(fields, decodeHeaderBlock(H2Headers.encodeHeaderBlock(writeTable, fields, 4096), readTable));
+    }
+
+    private List<H2HeaderField> decodeHeaderBlock(byte[] block, H2HeaderTable readTable) throws CompressionException {
+        WsByteBuffer buffer = ChannelFrameworkFactory.getBufferManager().allocate(block.length);
+        buffer.put(block);
+        buffer.flip();
+        List<H2HeaderField> fields = new ArrayList<H2HeaderField>();
+        boolean first = true;
+        while (buffer.hasRemaining()) {
+            H2HeaderField field = H2Headers.decodeHeader(buffer, readTable, first, false, null);
+            if (field != null) {
+                fields.add(field);
+            }
+            first = false;
+        }
+        buffer.release();
+        return fields;
+    }
+
     private void verifyHeaderEncodeDecode(WsByteBuffer buffer, H2HeaderTable readTable, H2HeaderTable writeTable, H2HeaderField expectedHeader,
                                           LiteralIndexType indexingType, byte[] expected) {
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2008 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,7 @@
 package com.ibm.ws.webcontainer;
 
 import com.ibm.wsspi.webcontainer.IPlatformHelper;
+import com.ibm.wsspi.webcontainer.WCCustomProperties;
 
 public class PlatformHelper implements IPlatformHelper {
 	/* (non-Javadoc)
@@ -38,7 +39,8 @@ public class PlatformHelper implements IPlatformHelper {
     	return true;
     }
 	public boolean isTransferToOS() {
-		// TODO Auto-generated method stub
-		return false;
+		// static files may be written with FileChannel.transferTo, bypassing
+		// the response buffers, only when enabled by custom property
+		return WCCustomProperties.ENABLE_ZERO_COPY_FILE_SERVING;
 	}
 }
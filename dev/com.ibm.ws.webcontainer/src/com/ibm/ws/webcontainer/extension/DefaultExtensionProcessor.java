@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2008 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -113,6 +113,9 @@ public abstract class DefaultExtensionProcessor extends WebExtensionProcessor im
 	
 	private int optimizeFileServingSize=1000000;
 //	private int mappedByteBufferSize=-1;
+
+	// content of static resources of this web application, null if disabled
+	private StaticResourceCache staticResourceCache=null;
 	
 	private static boolean useOriginalRequestState = WCCustomProperties.USE_ORIGINAL_REQUEST_STATE; //PM88028 
 	private static boolean handlingRequestWithOverridenPath = WCCustomProperties.HANDLING_REQUEST_WITH_OVERRIDDEN_PATH; // PM88028 // will be a custom property to revert PM71901 if required
@@ -253,6 +256,9 @@ private ICollaboratorHelper collabHelper;
 			redirectToWelcomeFile =  redirectToWelcomeFileStr.equalsIgnoreCase("true");	
 		}
 		optimizeFileServingSize=getFileServingIntegerAttribute("com.ibm.ws.webcontainer.optimizefileservingsize",optimizeFileServingSizeGlobal);
+		if (WCCustomProperties.STATIC_RESOURCE_CACHE_SIZE > 0 && WCCustomProperties.STATIC_RESOURCE_CACHE_MAX_ENTRY_SIZE > 0) {
+			staticResourceCache = new StaticResourceCache(WCCustomProperties.STATIC_RESOURCE_CACHE_SIZE, WCCustomProperties.STATIC_RESOURCE_CACHE_MAX_ENTRY_SIZE);
+		}
 //		mappedByteBufferSize=getFileServingIntegerAttribute("mappedByteBufferSize",mappedByteBufferSizeGlobal);
 		// end pq70834
 	}
@@ -1572,6 +1578,15 @@ private ICollaboratorHelper collabHelper;
 		return optimizeFileServingSize;
 	}
 
+	/**
+	 * Access the cache of static resource content of this web application.
+	 * 
+	 * @return StaticResourceCache, or null if caching is disabled
+	 */
+	public StaticResourceCache getStaticResourceCache() {
+		return staticResourceCache;
+	}
+
 
 	public void destroy() {
 		// TODO Auto-generated method stub
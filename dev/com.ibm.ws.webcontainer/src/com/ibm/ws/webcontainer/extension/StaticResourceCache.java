@@ -0,0 +1,303 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.webcontainer.extension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.ibm.wsspi.webcontainer.logging.LoggerFactory;
+
+/**
+ * Bounded in-memory cache of the content of static resources served by the
+ * DefaultExtensionProcessor of a web application.
+ *
+ * Each entry holds the content of one resource along with gzip and deflate
+ * encoded variants, which are computed once when the entry is created, for
+ * content types that compress. An entry is only used while the last modified
+ * time and size of the resource still match those it was created with, so a
+ * changed resource is read again on its next request. The least recently used
+ * entries are evicted to keep the total size of all variants within the limit.
+ */
+public class StaticResourceCache {
+    protected static final Logger logger = LoggerFactory.getInstance().getLogger("com.ibm.ws.webcontainer.extension");
+    private static final String CLASS_NAME = "com.ibm.ws.webcontainer.extension.StaticResourceCache";
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * Cached content of a single resource.
+     */
+    public static final class Entry {
+        private final long lastModified;
+        private final byte[] identity;
+        private final byte[] gzip;
+        private final byte[] deflate;
+        private final boolean compressible;
+
+        Entry(long lastModified, byte[] identity, byte[] gzip, byte[] deflate, boolean compressible) {
+            this.lastModified = lastModified;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.deflate = deflate;
+            this.compressible = compressible;
+        }
+
+        /**
+         * Query whether the content type compresses, in which case the response
+         * varies by the Accept-Encoding of the request.
+         */
+        public boolean isCompressible() {
+            return compressible;
+        }
+
+        /**
+         * Access the content in the provided encoding.
+         *
+         * @param encoding GZIP, DEFLATE or null for the content itself
+         * @return byte[], or null if there is no variant for the encoding
+         */
+        public byte[] getContent(String encoding) {
+            if (GZIP.equals(encoding)) {
+                return gzip;
+            }
+            if (DEFLATE.equals(encoding)) {
+                return deflate;
+            }
+            return identity;
+        }
+
+        long getSize() {
+            return identity.length + (gzip == null ? 0 : gzip.length) + (deflate == null ? 0 : deflate.length);
+        }
+    }
+
+    private final long maxSize;
+    private final int maxEntrySize;
+
+    // access ordered, so iteration starts with the least recently used entry
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+    private long size = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Create a cache.
+     *
+     * @param maxSize limit on the total size of all cached variants in bytes
+     * @param maxEntrySize largest resource that is cached, in bytes
+     */
+    public StaticResourceCache(long maxSize, int maxEntrySize) {
+        this.maxSize = maxSize;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Query the size of the largest resource that is cached.
+     *
+     * @return int
+     */
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Find the entry of a resource, if it is cached and has not changed.
+     *
+     * @param key identifies the resource
+     * @param lastModified current last modified time of the resource
+     * @param resourceSize current size of the resource
+     * @return Entry, or null if the resource has to be read
+     */
+    public synchronized Entry get(Object key, long lastModified, long resourceSize) {
+        Entry entry = entries.get(key);
+        if (entry != null && (entry.lastModified != lastModified || entry.identity.length != resourceSize)) {
+            if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+                logger.logp(Level.FINE, CLASS_NAME, "get", "resource changed, removing " + key);
+            }
+            entries.remove(key);
+            size -= entry.getSize();
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Create the entry of a resource, along with its encoded variants if
+     * the content type compresses, and cache it if it fits.
+     *
+     * @param key identifies the resource
+     * @param lastModified last modified time of the resource when it was read
+     * @param content the content of the resource
+     * @param compressible whether the content type of the resource compresses
+     * @return Entry, which is returned even if it was not cached
+     * @throws IOException
+     */
+    public Entry put(Object key, long lastModified, byte[] content, boolean compressible) throws IOException {
+        byte[] gzip = null;
+        byte[] deflate = null;
+        if (compressible) {
+            // encode outside of the lock; variants that do not save space are dropped
+            gzip = encode(content, true);
+            if (gzip.length >= content.length) {
+                gzip = null;
+            }
+            deflate = encode(content, false);
+            if (deflate.length >= content.length) {
+                deflate = null;
+            }
+        }
+        Entry entry = new Entry(lastModified, content, gzip, deflate, compressible);
+        long entrySize = entry.getSize();
+        if (entrySize > maxSize) {
+            return entry;
+        }
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                size -= previous.getSize();
+            }
+            size += entrySize;
+            Iterator<Map.Entry<Object, Entry>> it = entries.entrySet().iterator();
+            while (size > maxSize && it.hasNext()) {
+                Map.Entry<Object, Entry> eldest = it.next();
+                if (eldest.getValue() == entry) {
+                    continue;
+                }
+                it.remove();
+                size -= eldest.getValue().getSize();
+                evictions++;
+            }
+        }
+        return entry;
+    }
+
+    private static byte[] encode(byte[] content, boolean gzip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 64);
+        DeflaterOutputStream encoder = gzip ? new GZIPOutputStream(out) : new DeflaterOutputStream(out);
+        encoder.write(content);
+        encoder.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Remove the entry of a resource.
+     *
+     * @param key identifies the resource
+     */
+    public synchronized void invalidate(Object key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            size -= entry.getSize();
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Query the total size of all cached variants in bytes.
+     *
+     * @return long
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StaticResourceCache[entries=" + entries.size() + " size=" + size + " maxSize=" + maxSize
+               + " hits=" + hits + " misses=" + misses + " evictions=" + evictions + "]";
+    }
+
+    /**
+     * Determine whether content of the provided type is worth compressing.
+     *
+     * @param contentType the Content-Type of the response, which may be null
+     * @return boolean
+     */
+    public static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/")
+               || type.startsWith("application/javascript")
+               || type.startsWith("application/json")
+               || type.startsWith("application/xml")
+               || type.startsWith("application/xhtml+xml")
+               || type.startsWith("image/svg+xml");
+    }
+
+    /**
+     * Select the encoding to respond with from an Accept-Encoding header,
+     * preferring gzip over deflate. Encodings with a quality value of 0 are
+     * not acceptable.
+     *
+     * @param acceptEncoding the Accept-Encoding header, which may be null
+     * @return GZIP, DEFLATE or null for the content itself
+     */
+    public static String selectEncoding(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        boolean any = false;
+        for (String element : acceptEncoding.split(",")) {
+            String coding = element;
+            boolean acceptable = true;
+            int semi = element.indexOf(';');
+            if (semi != -1) {
+                coding = element.substring(0, semi);
+                String param = element.substring(semi + 1).trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        acceptable = Float.parseFloat(param.substring(2).trim()) > 0f;
+                    } catch (NumberFormatException nfe) {
+                        acceptable = false;
+                    }
+                }
+            }
+            coding = coding.trim();
+            if (GZIP.equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+                gzip = acceptable;
+            } else if (DEFLATE.equalsIgnoreCase(coding)) {
+                deflate = acceptable;
+            } else if ("*".equals(coding)) {
+                any = acceptable;
+            }
+        }
+        if (gzip || (any && acceptEncoding.toLowerCase().indexOf(GZIP) == -1)) {
+            return GZIP;
+        }
+        return deflate ? DEFLATE : null;
+    }
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.webcontainer.filter;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.wsspi.webcontainer.logging.LoggerFactory;
+
+/**
+ * Bounded cache of the filter chains of a web application, keyed by the
+ * request URI or servlet name the chain was built for.
+ *
+ * Lookups do not lock and do not reorder anything; they only stamp the entry
+ * with the current value of a clock that advances each time a chain is added.
+ * Once the cache grows past its size, one thread evicts the entries with the
+ * oldest stamps, along with a tenth of the size more, so that the scan of the
+ * entries is only done once every so many additions. Eviction is therefore
+ * close to, but not exactly, least recently used.
+ *
+ * The hit and miss counts are striped by thread, so that lookups from
+ * different threads do not contend on one counter; they are summed when read.
+ */
+class FilterChainCache {
+    protected static final Logger logger = LoggerFactory.getInstance().getLogger("com.ibm.ws.webcontainer.filter");
+    private static final String CLASS_NAME = "com.ibm.ws.webcontainer.filter.FilterChainCache";
+
+    private static final class Node {
+        final FilterChainContents value;
+        volatile long lastAccess;
+
+        Node(FilterChainContents value, long lastAccess) {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * A count spread over cells picked by the id of the counting thread. The
+     * cells are spaced a cache line apart.
+     */
+    private static final class StripedCounter {
+        private static final int STRIPES = 16;
+        private static final int SPACING = 8;
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPES * SPACING);
+
+        void increment() {
+            int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+            cells.incrementAndGet(stripe * SPACING);
+        }
+
+        long sum() {
+            long sum = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                sum += cells.get(i * SPACING);
+            }
+            return sum;
+        }
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final int evictBatch;
+    private final ConcurrentHashMap<String, Node> entries;
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Create a cache.
+     *
+     * @param name identifies the cache in trace
+     * @param maxSize the number of chains to keep, or 0 to keep none
+     */
+    FilterChainCache(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = Math.max(maxSize, 0);
+        this.evictBatch = this.maxSize / 10;
+        this.entries = new ConcurrentHashMap<String, Node>(Math.min(this.maxSize, 256));
+    }
+
+    /**
+     * Find the chain built for a request URI or servlet name.
+     *
+     * @param key
+     * @return FilterChainContents, or null if the chain has to be built
+     */
+    FilterChainContents get(String key) {
+        Node node = entries.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        // only write to the entry when the clock has moved, so that hot entries stay read only
+        long now = clock.get();
+        if (node.lastAccess != now) {
+            node.lastAccess = now;
+        }
+        hits.increment();
+        return node.value;
+    }
+
+    /**
+     * Add the chain built for a request URI or servlet name.
+     *
+     * @param key
+     * @param fcc
+     */
+    void put(String key, FilterChainContents fcc) {
+        if (maxSize == 0) {
+            return;
+        }
+        entries.put(key, new Node(fcc, clock.incrementAndGet()));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        // a thread that finds another one evicting goes on, the cache is briefly over its size
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int size = entries.size();
+            int excess = size - maxSize + evictBatch;
+            if (size <= maxSize) {
+                return;
+            }
+
+            long[] stamps = new long[size];
+            int count = 0;
+            for (Node node : entries.values()) {
+                if (count == stamps.length) {
+                    break;
+                }
+                stamps[count++] = node.lastAccess;
+            }
+            if (count == 0) {
+                // cleared while the entries were being scanned
+                return;
+            }
+            Arrays.sort(stamps, 0, count);
+            long threshold = stamps[Math.min(excess, count) - 1];
+
+            int removed = 0;
+            Iterator<Node> it = entries.values().iterator();
+            while (removed < excess && it.hasNext()) {
+                if (it.next().lastAccess <= threshold) {
+                    it.remove();
+                    removed++;
+                }
+            }
+            evictions.addAndGet(removed);
+
+            if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+                logger.logp(Level.FINE, CLASS_NAME, "evict", "evicted " + removed + " entries, " + this);
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Remove all chains.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Query the number of cached chains.
+     *
+     * @return int
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Query the number of lookups that found a chain.
+     *
+     * @return long
+     */
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Query the number of lookups that did not find a chain.
+     *
+     * @return long
+     */
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Query the number of chains that were evicted.
+     *
+     * @return long
+     */
+    long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "FilterChainCache[" + name + " entries=" + entries.size() + " maxSize=" + maxSize
+               + " hits=" + getHitCount() + " misses=" + getMissCount() + " evictions=" + getEvictionCount() + "]";
+    }
+}
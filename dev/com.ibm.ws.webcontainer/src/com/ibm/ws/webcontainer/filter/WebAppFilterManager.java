@@ -18,15 +18,12 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -96,26 +93,11 @@ import com.ibm.wsspi.webcontainer.util.ThreadContextHelper;
 public class WebAppFilterManager implements com.ibm.wsspi.webcontainer.filter.WebAppFilterManager {
     protected Hashtable _filterWrappers = new Hashtable();
 
-    private Map chainCache = (Map) Collections.synchronizedMap(new LinkedHashMap(20, .75f, true) {
-        public boolean removeEldestEntry(Map.Entry eldest) {
-            return size() > 200;
-        }
-    });
-    private Map forwardChainCache = (Map) Collections.synchronizedMap(new LinkedHashMap(10, .75f, true) {
-        public boolean removeEldestEntry(Map.Entry eldest) {
-            return size() > 100;
-        }
-    });
-    private Map includeChainCache = (Map) Collections.synchronizedMap(new LinkedHashMap(5, .75f, true) {
-        public boolean removeEldestEntry(Map.Entry eldest) {
-            return size() > 100;
-        }
-    });
-    private Map errorChainCache = (Map) Collections.synchronizedMap(new LinkedHashMap(2, .75f, true) {
-        public boolean removeEldestEntry(Map.Entry eldest) {
-            return size() > 100;
-        }
-    });
+    // chains by request URI or servlet name, for each dispatcher type
+    private final FilterChainCache chainCache;
+    private final FilterChainCache forwardChainCache;
+    private final FilterChainCache includeChainCache;
+    private final FilterChainCache errorChainCache;
 
     public boolean _filtersDefined = false;
 
@@ -159,6 +141,13 @@ public class WebAppFilterManager implements com.ibm.wsspi.webcontainer.filter.We
         this.webAppConfig = webGroupConfig;
         this.webApp = webApp;
 
+        // the other dispatcher types share the request size, as they are used less
+        int cacheSize = webGroupConfig.getFilterChainCacheSize();
+        this.chainCache = new FilterChainCache("request", cacheSize);
+        this.forwardChainCache = new FilterChainCache("forward", cacheSize / 2);
+        this.includeChainCache = new FilterChainCache("include", cacheSize / 2);
+        this.errorChainCache = new FilterChainCache("error", cacheSize / 2);
+
         // LIDB-3598: begin
         _evtSource = (WebAppEventSource) webApp.getServletContextEventSource();
 
@@ -422,6 +411,11 @@ public class WebAppFilterManager implements com.ibm.wsspi.webcontainer.filter.We
      * 
      */
     public void shutdown() {
+        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+            logger.logp(Level.FINE, CLASS_NAME, "shutdown", "filter chain caches " + chainCache + " " + forwardChainCache + " "
+                                                            + includeChainCache + " " + errorChainCache);
+        }
+
         // call destroy on each filter instance wrapper
         Enumeration filterWrappers = _filterWrappers.elements();
 
@@ -708,22 +702,22 @@ public class WebAppFilterManager implements com.ibm.wsspi.webcontainer.filter.We
             // see if the chain has been previously constructed (look for a
             // filter contents object)
             if (dispatcherType == DispatcherType.REQUEST) {
-                fcc = (FilterChainContents) chainCache.get(strippedUri);
+                fcc = chainCache.get(strippedUri);
                 if (isTraceOn && logger.isLoggable(Level.FINE)) {
                     logger.logp(Level.FINE, CLASS_NAME, "getFilterChainContents", "filter request mode, get cache entry fcc->" + fcc);
                 }
             } else if (dispatcherType == DispatcherType.FORWARD) {
-                fcc = (FilterChainContents) forwardChainCache.get(strippedUri);
+                fcc = forwardChainCache.get(strippedUri);
                 if (isTraceOn && logger.isLoggable(Level.FINE)) {
                     logger.logp(Level.FINE, CLASS_NAME, "getFilterChainContents", "filter forward mode, get cache entry fcc->" + fcc);
                 }
             } else if (dispatcherType == DispatcherType.INCLUDE) {
-                fcc = (FilterChainContents) includeChainCache.get(strippedUri);
+                fcc = includeChainCache.get(strippedUri);
                 if (isTraceOn && logger.isLoggable(Level.FINE)) {
                     logger.logp(Level.FINE, CLASS_NAME, "getFilterChainContents", "filter include mode, get cache entry fcc->" + fcc);
                 }
             } else if (dispatcherType == DispatcherType.ERROR) {
-                fcc = (FilterChainContents) errorChainCache.get(strippedUri);
+                fcc = errorChainCache.get(strippedUri);
                 if (isTraceOn && logger.isLoggable(Level.FINE)) {
                     logger.logp(Level.FINE, CLASS_NAME, "getFilterChainContents", "filter error mode, get cache entry fcc->" + fcc);
                 }
@@ -731,22 +725,22 @@ public class WebAppFilterManager implements com.ibm.wsspi.webcontainer.filter.We
 
         } else {
             if (dispatcherType == DispatcherType.REQUEST) {
-                fcc = (FilterChainContents) chainCache.get(reqServletName);
+                fcc = chainCache.get(reqServletName);
                 if (isTraceOn && logger.isLoggable(Level.FINE)) {
                     logger.logp(Level.FINE, CLASS_NAME, "getFilterChainContents", "filter request mode, get cache entry fcc->" + fcc);
                 }
             } else if (dispatcherType == DispatcherType.FORWARD) {
-                fcc = (FilterChainContents) forwardChainCache.get(reqServletName);
+                fcc = forwardChainCache.get(reqServletName);
                 if (isTraceOn && logger.isLoggable(Level.FINE)) {
                     logger.logp(Level.FINE, CLASS_NAME, "getFilterChainContents", "filter forward mode, get cache entry fcc->" + fcc);
                 }
             } else if (dispatcherType == DispatcherType.INCLUDE) {
-                fcc = (FilterChainContents) includeChainCache.get(reqServletName);
+                fcc = includeChainCache.get(reqServletName);
                 if (isTraceOn && logger.isLoggable(Level.FINE)) {
                     logger.logp(Level.FINE, CLASS_NAME, "getFilterChainContents", "filter include mode, get cache entry fcc->" + fcc);
                 }
             } else if (dispatcherType == DispatcherType.ERROR) {
-                fcc = (FilterChainContents) errorChainCache.get(reqServletName);
+                fcc = errorChainCache.get(reqServletName);
                 if (isTraceOn && logger.isLoggable(Level.FINE)) {
                     logger.logp(Level.FINE, CLASS_NAME, "getFilterChainContents", "filter error mode, get cache entry fcc->" + fcc);
                 }
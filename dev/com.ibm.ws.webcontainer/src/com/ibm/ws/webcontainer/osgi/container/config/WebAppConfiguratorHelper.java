@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2016 IBM Corporation and others.
+ * Copyright (c) 2011, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -529,6 +529,7 @@ public class WebAppConfiguratorHelper implements ServletConfiguratorHelper {
             config.setSTSHeaderValue(); //PI67099
             config.setEncodeDispatchedRequestURI(); //PI67942
             config.setMultiReadOfPostDataValue(); //MultiRead
+            config.setFilterChainCacheSize();
         }
         
         public void setVirtualHostName(VirtualHost virtualHost) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2008 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,7 @@
 package com.ibm.ws.webcontainer.servlet;
 
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -30,6 +31,7 @@ import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -40,11 +42,12 @@ import com.ibm.websphere.servlet.event.ServletErrorEvent;
 import com.ibm.websphere.servlet.event.ServletEvent;
 import com.ibm.websphere.servlet.filter.ChainedResponse;
 import com.ibm.ws.http2.upgrade.H2Exception;
+import com.ibm.ws.http.channel.outstream.HttpOutputStreamConnectWeb;
 import com.ibm.ws.kernel.security.thread.ThreadIdentityManager;
 import com.ibm.ws.webcontainer.extension.DefaultExtensionProcessor;
-import com.ibm.ws.webcontainer.srt.SRTOutputStream;
+import com.ibm.ws.webcontainer.extension.StaticResourceCache;
+import com.ibm.ws.webcontainer.osgi.response.WCOutputStream;
 import com.ibm.ws.webcontainer.srt.SRTServletRequest;
-import com.ibm.ws.webcontainer.srt.SRTServletResponse;
 import com.ibm.ws.webcontainer.srt.WriteBeyondContentLengthException;
 import com.ibm.ws.webcontainer.webapp.WebApp;
 import com.ibm.ws.webcontainer.webapp.WebAppDispatcherContext;
@@ -72,7 +75,6 @@ import com.ibm.wsspi.webcontainer.util.EncodingUtils;
 import com.ibm.wsspi.webcontainer.util.IResponseOutput;
 import com.ibm.wsspi.webcontainer.util.ServletUtil;
 import com.ibm.wsspi.webcontainer.util.ThreadContextHelper;
-import com.ibm.wsspi.webcontainer.util.WSServletOutputStream;
 
 /**
  * @author asisin
@@ -122,6 +124,10 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
 
   private static boolean invokeFlushAfterServiceForStaticFile = WCCustomProperties.INVOKE_FLUSH_AFTER_SERVICE_FOR_STATIC_FILE; //PI38116
   private static boolean invokeFlushAfterServiceForStaticFileResponseWrapper = WCCustomProperties.INVOKE_FLUSH_AFTER_SERVICE_FOR_STATIC_FILE_RESPONSE_WRAPPER; //PI63193
+
+  private static boolean fileServingRanges = WCCustomProperties.ENABLE_FILE_SERVING_RANGES;
+  // returned by parseByteRange when none of the requested range is within the file
+  static final long[] RANGE_NOT_SATISFIABLE = new long[0];
   
   // *** Uncomment for doing Mapped Byte Buffers
   // private int syncFileServingSize;
@@ -685,14 +691,19 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
                 nServicing++;
             }
             boolean isInclude = dispatchContext.isInclude();
+            long[] range = null;
             if (!isInclude) {
                 writeResponseBody = setResponseHeaders(request, response);
+                if (writeResponseBody && fileServingRanges) {
+                    range = setRangeHeaders(request, response);
+                    writeResponseBody = (range != RANGE_NOT_SATISFIABLE);
+                }
             }
             if (writeResponseBody) {
 
                 // begin pq65763
                 // <!-- move response writing into separate method -->
-                writeResponseToClient(request, response, wasreq);
+                writeResponseToClient(request, response, wasreq, range);
                 // end pq65763
             }
 
@@ -871,8 +882,126 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
     return true;
   }
 
+    /**
+     * Handle the Range header of a GET request. A single byte range that is
+     * within the file is answered with a 206 status and only that part of the
+     * file; multiple ranges, or a range with an If-Range that does not match the
+     * last modified date, are answered with the whole file.
+     *
+     * @return the first byte and the length of the range to write, null to write
+     *         the whole file, or RANGE_NOT_SATISFIABLE if a 416 status was set
+     */
+    private long[] setRangeHeaders(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        long fileSize = this.getFileSize(false);
+        if (fileSize > Integer.MAX_VALUE || !"GET".equals(req.getMethod())) {
+            return null;
+        }
+        resp.setHeader("Accept-Ranges", "bytes");
+
+        String rangeHeader = req.getHeader("Range");
+        if (rangeHeader == null) {
+            return null;
+        }
+        String ifRange = req.getHeader("If-Range");
+        if (ifRange != null) {
+            long ifRangeDate = -1;
+            try {
+                ifRangeDate = req.getDateHeader("If-Range");
+            } catch (IllegalArgumentException iae) {
+                // an entity tag, and this servlet does not produce any
+            }
+            if (ifRangeDate == -1 || ifRangeDate / 1000 != getLastModified() / 1000) {
+                return null;
+            }
+        }
+
+        long[] range = parseByteRange(rangeHeader, fileSize);
+        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+            logger.logp(Level.FINE, CLASS_NAME, "setRangeHeaders", "range->" + rangeHeader + ", fileSize->" + fileSize
+                        + ", satisfiable->" + (range != RANGE_NOT_SATISFIABLE));
+        }
+        if (range == RANGE_NOT_SATISFIABLE) {
+            resp.setStatus(416); // Requested Range Not Satisfiable
+            resp.setHeader("Content-Range", "bytes */" + fileSize);
+            resp.setContentLength(0);
+        } else if (range != null) {
+            resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            resp.setHeader("Content-Range", "bytes " + range[0] + "-" + (range[0] + range[1] - 1) + "/" + fileSize);
+            resp.setContentLength((int) range[1]);
+        }
+        return range;
+    }
+
+    /**
+     * Parse the value of a Range header that asks for a single byte range,
+     * as first-last, first- or -suffixLength.
+     *
+     * @return the first byte and the length of the range, null if the header
+     *         is not a single byte range, or RANGE_NOT_SATISFIABLE if the range
+     *         does not overlap the file
+     */
+    static long[] parseByteRange(String rangeHeader, long fileSize) {
+        String value = rangeHeader.trim();
+        if (!value.regionMatches(true, 0, "bytes=", 0, 6) || value.indexOf(',') != -1) {
+            return null;
+        }
+        value = value.substring(6).trim();
+        int dash = value.indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+        long first;
+        long last;
+        try {
+            if (dash == 0) {
+                long suffix = Long.parseLong(value.substring(1).trim());
+                if (suffix <= 0) {
+                    return RANGE_NOT_SATISFIABLE;
+                }
+                first = Math.max(0, fileSize - suffix);
+                last = fileSize - 1;
+            } else {
+                first = Long.parseLong(value.substring(0, dash).trim());
+                String lastStr = value.substring(dash + 1).trim();
+                if (lastStr.length() == 0) {
+                    last = fileSize - 1;
+                } else {
+                    last = Long.parseLong(lastStr);
+                    if (last < first) {
+                        // syntactically invalid, so the header is ignored
+                        return null;
+                    }
+                    last = Math.min(last, fileSize - 1);
+                }
+            }
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+        if (first < 0) {
+            return null;
+        }
+        if (first >= fileSize) {
+            return RANGE_NOT_SATISFIABLE;
+        }
+        return new long[] { first, last - first + 1 };
+    }
+
     protected void writeResponseToClient(HttpServletRequest request, HttpServletResponse resp, IExtendedRequest wasreq) throws ServletException,
             IOException {
+        writeResponseToClient(request, resp, wasreq, null);
+    }
+
+    /**
+     * Write the file, or a range of it, to the client.
+     *
+     * @param range the first byte and the length of the range to write, or null to write the whole file
+     */
+    protected void writeResponseToClient(HttpServletRequest request, HttpServletResponse resp, IExtendedRequest wasreq, long[] range) throws ServletException,
+            IOException {
+    StaticResourceCache cache = parentProcessor.getStaticResourceCache();
+    if (cache != null && range == null && writeFromCache(cache, request, resp, wasreq)) {
+        return;
+    }
     // LIBERTY InputStream in = null;
     boolean isWritten = false;
     boolean rethrowIOException = false;
@@ -883,18 +1012,20 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
                             +" contentLength->"+getContentLength(false)+ ", fileSize->" + this.getFileSize(false) + ", isZip->"+isZip);      
       }
 
-            if (!isZip && os instanceof WSServletOutputStream) {
-        WSServletOutputStream wsos = ((WSServletOutputStream) os);
-        int bufferSize = wsos.getBufferSize();
-        int totalWritten = ((WSServletOutputStream) os).getTotal();
+            if (!isZip && os instanceof WCOutputStream) {
+        // the response stream writes to the HTTP channel, which can be handed the file channel
+        HttpOutputStreamConnectWeb out = ((WCOutputStream) os).getOutput();
+        int bufferSize = out.getBufferSize();
+        boolean written = resp.isCommitted() || out.hasBufferedContent();
         long fileSize = this.getFileSize(false); // PM92967, change from getContentLength to getFileSize
+        long writeSize = (range == null) ? fileSize : range[1];
 
         RandomAccessFile raf = null;
         FileChannel channel = null;
 
                 try {
 
-                    // remove check for filters. being a WSServletOutputStream
+                    // remove check for filters. being a WCOutputStream
                     // is good enough.
           // WebContainerRequestState reqState =
           // WebContainerRequestState.getInstance(false);
@@ -903,23 +1034,23 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
           // //Therefore do this check first.
           // if (reqState==null||!reqState.isInvokedFilters()||){
                     if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
-                        logger.logp(Level.FINE, CLASS_NAME, "writeResponseToClient", "totalWritten->" + totalWritten + " bufferSize->" + bufferSize
+                        logger.logp(Level.FINE, CLASS_NAME, "writeResponseToClient", "written->" + written + " bufferSize->" + bufferSize
                                 + ", actual file size->" + fileSize + ", isTransferToOS->" + platformHelper.isTransferToOS());
           }
-                    if (totalWritten == 0 // don't write out if somebody (a
+                    if (!written // don't write out if somebody (a
                             // filter?) has written stuff
-                            && (bufferSize < fileSize) // don't write out if the
+                            && (bufferSize < writeSize) // don't write out if the
                             // file size is less than
                             // the buffer size. They
                             // could technically
                             // still clear the buffer
                             // afterwards if this was
                             // the case.
-                            && bufferSize == SRTServletResponse.DEFAULT_BUFFER_SIZE
                             && optimizeFileServingSize != -1
-              && (fileSize >= optimizeFileServingSize)
+              && (writeSize >= optimizeFileServingSize)
               && platformHelper.isTransferToOS()
-                            && request.getProtocol().equalsIgnoreCase("http")) {
+                            && request.getScheme().equalsIgnoreCase("http") // TLS needs the bytes
+                            && request.getProtocol().startsWith("HTTP/1")) {
 
             WebAppDispatcherContext dispatchCtx = (WebAppDispatcherContext) wasreq.getWebAppDispatcherContext();
                         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
@@ -935,7 +1066,11 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
               }
               isWritten = true;
               // LIBERTY WI #3179 BEGIN
-              ((SRTOutputStream) os).write(channel);
+              if (range == null) {
+                  out.writeFile(channel);
+              } else {
+                  out.writeFile(channel, range[0], range[1]);
+              }
               // WsByteBuffer[] wsBufArray = new WsByteBuffer[1];
               //
               // //fcw.setBufferSize(maxBufferSize);
@@ -959,7 +1094,7 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
             if (!isWritten) {
         isWritten = true;
         rethrowIOException = true;
-        writeByBytes(resp, os);
+        writeByBytes(resp, os, range);
       }
 
       // END ZHJ
@@ -969,7 +1104,7 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
                     logger.logp(Level.FINE, CLASS_NAME, "writeResponseToClient", "going to try to use the response writer");
                 }
         isWritten = true;
-        writeByBytes(resp, null);
+        writeByBytes(resp, null, range);
             } else {
             	//this should not happen since I believe the IllegalStateException can only be thrown before isWritten is set
             	com.ibm.wsspi.webcontainer.util.FFDCWrapper.processException(isEx,
@@ -989,13 +1124,97 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
     }
   }
 
-    private void writeByBytes(HttpServletResponse resp, ServletOutputStream os) throws IOException {
+    /**
+     * Write the response from the static resource cache, reading the file into
+     * the cache first if it is not there or has changed. When the content type
+     * compresses and the client accepts it, the gzip or deflate variant is
+     * written instead of the content itself.
+     *
+     * @return true if the response was written, false if the file has to be written some other way
+     */
+    private boolean writeFromCache(StaticResourceCache cache, HttpServletRequest request, HttpServletResponse resp, IExtendedRequest wasreq) throws IOException {
+        WebAppDispatcherContext dispatchCtx = (WebAppDispatcherContext) wasreq.getWebAppDispatcherContext();
+        long fileSize = this.getFileSize(false);
+        // includes can't set headers, and a wrapped response (a filter) may encode the response itself
+        if (dispatchCtx.isInclude() || fileSize > cache.getMaxEntrySize() || resp instanceof ServletResponseWrapper || resp.isCommitted()) {
+            return false;
+        }
+        ServletOutputStream os;
+        try {
+            os = resp.getOutputStream();
+        } catch (IllegalStateException ise) {
+            return false;
+        }
+
+        long lastModified = getLastModified();
+        StaticResourceCache.Entry entry = cache.get(this, lastModified, fileSize);
+        if (entry == null) {
+            byte[] content = readContent((int) fileSize);
+            if (content == null) {
+                // the file changed while it was read
+                return false;
+            }
+            entry = cache.put(this, lastModified, content, StaticResourceCache.isCompressible(resp.getContentType()));
+        }
+
+        String encoding = null;
+        if (entry.isCompressible()) {
+            resp.addHeader("Vary", "Accept-Encoding");
+            encoding = StaticResourceCache.selectEncoding(request.getHeader("Accept-Encoding"));
+        }
+        byte[] body = entry.getContent(encoding);
+        if (body == null) {
+            // the encoded variant would have been larger
+            encoding = null;
+            body = entry.getContent(null);
+        }
+        if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
+            logger.logp(Level.FINE, CLASS_NAME, "writeFromCache", "encoding->" + encoding + ", length->" + body.length + ", " + cache);
+        }
+        if (encoding != null) {
+            resp.setHeader("Content-Encoding", encoding);
+        }
+        resp.setContentLength(body.length);
+        os.write(body, 0, body.length);
+        return true;
+    }
+
+    /**
+     * Read the whole file.
+     *
+     * @return byte[], or null if the file is no longer the expected size
+     */
+    private byte[] readContent(int size) throws IOException {
+        byte[] content = new byte[size];
+        InputStream in = getInputStream();
+        try {
+            int total = 0;
+            while (total < size) {
+                int n = in.read(content, total, size - total);
+                if (n == -1) {
+                    return null;
+                }
+                total += n;
+            }
+            if (in.read() != -1) {
+                return null;
+            }
+        } finally {
+            in.close();
+        }
+        return content;
+    }
+
+    private void writeByBytes(HttpServletResponse resp, ServletOutputStream os, long[] range) throws IOException {
         if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled() && logger.isLoggable(Level.FINE)) {
       logger.logp(Level.FINE, CLASS_NAME, "writeByBytes", "resp->" + resp + " os->" + os);
     }
     InputStream in = null;
         try {
       in = getInputStream();
+            if (range != null) {
+                in = new RangeInputStream(in, range[0], range[1]);
+            }
             if (os != null) {
         int bufferSize = parentProcessor.getDefaultBufferSize();
                 if (in instanceof FileInputStream) { // PK90207
@@ -1177,4 +1396,50 @@ public abstract class FileServletWrapper implements IServletWrapper, IServletWra
       return false;
   }
 
+
+    /**
+     * Input stream over a range of the underlying stream.
+     */
+    private static class RangeInputStream extends FilterInputStream {
+        private long remaining;
+
+        RangeInputStream(InputStream in, long offset, long length) throws IOException {
+            super(in);
+            while (offset > 0) {
+                long skipped = in.skip(offset);
+                if (skipped <= 0) {
+                    if (in.read() == -1) {
+                        break;
+                    }
+                    skipped = 1;
+                }
+                offset -= skipped;
+            }
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2010 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -28,6 +28,10 @@ public class URIMatcher {
     protected ClauseNode defaultNode;
     protected static int range = 91;
 
+    // compiled form of the mappings, dropped whenever they change
+    private volatile URIMatcherIndex index;
+    private int modCount = 0;
+
     public static int computeHash(String key) {
         int hash = 0;
         for (int i = 0; i < key.length(); i++) {
@@ -100,11 +104,13 @@ public class URIMatcher {
     public void put(String uri, Object target) throws Exception {
         if (uri.startsWith("*.")) {
             extensions.put(uri.substring(2), target);
+            invalidate();
             return;
         }
         //Special case for Servlet spec "" mapping to only the context root of app
         if(uri.equals("")){
             root.setTarget(target);
+            invalidate();
             return;
         }
 
@@ -139,6 +145,34 @@ public class URIMatcher {
         if (root.getStarTarget() != null) {
             defaultNode = root; // PM06111
         }
+        invalidate();
+    }
+
+    private synchronized void invalidate() {
+        modCount++;
+        index = null;
+    }
+
+    /**
+     * Access the compiled form of the mappings, building it if the mappings
+     * changed since it was last built.
+     */
+    protected URIMatcherIndex getIndex() {
+        URIMatcherIndex current = index;
+        if (current == null) {
+            int startCount;
+            synchronized (this) {
+                startCount = modCount;
+            }
+            current = new URIMatcherIndex(root, defaultNode, extensions, WCCustomProperties.URI_MATCH_CACHE_SIZE);
+            synchronized (this) {
+                // only keep it if no mapping changed while it was built
+                if (startCount == modCount) {
+                    index = current;
+                }
+            }
+        }
+        return current;
     }
 
     public Iterator iterator() {
@@ -149,6 +183,10 @@ public class URIMatcher {
     }
 
     public Object match(String uri) {
+        if (WCCustomProperties.ENABLE_COMPILED_URI_MATCHING) {
+            return getIndex().match(uri);
+        }
+
         Result result = findNode(uri);
 
         // if we have the default (/*) node, we need to check extensions first, e.g., /foo.jsp 
@@ -173,6 +211,10 @@ public class URIMatcher {
      * @param uri
      */
     protected Object findByExtension(String uri) {
+        if (WCCustomProperties.ENABLE_COMPILED_URI_MATCHING) {
+            return getIndex().findByExtension(uri);
+        }
+
         // extension matching
         //
         int dot = uri.lastIndexOf(".");
@@ -187,6 +229,10 @@ public class URIMatcher {
     }
 
     protected Result findNode(String uri) {
+        if (WCCustomProperties.ENABLE_COMPILED_URI_MATCHING) {
+            return getIndex().findNode(uri);
+        }
+
         Result result = null;
         ClauseNode currentNode = root;
         ClauseNode starNode = defaultNode;
@@ -326,6 +372,7 @@ public class URIMatcher {
             extensions.remove(path.substring(2));
         }
         root.remove(path);
+        invalidate();
     }
 
     public static void main(String[] args) {
@@ -436,10 +483,15 @@ public class URIMatcher {
             String extension = uri.substring(2);
             if (extensions.containsKey(extension))
                 oldTarget = extensions.put(extension, newTarget);
+            invalidate();
             return oldTarget;
         }
 
-        return root.replace(uri, newTarget);
+        try {
+            return root.replace(uri, newTarget);
+        } finally {
+            invalidate();
+        }
     }
 
     /**
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.webcontainer.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ibm.ws.webcontainer.util.URIMatcher.Result;
+import com.ibm.wsspi.webcontainer.WCCustomProperties;
+
+/**
+ * Immutable, compiled form of the mappings of a URIMatcher.
+ *
+ * The clause tree and the extension mappings are copied into open addressed
+ * tables that are searched with regions of the request URI, so that matching
+ * does not create a substring for every path segment, and the results of the
+ * exact and wildcard mappings of every node are created up front. The most
+ * recent results of match(String) are kept in a bounded cache.
+ *
+ * An index is never changed once it is built. The URIMatcher drops its index
+ * whenever a mapping is added, removed or replaced, and builds a new one on
+ * the next match.
+ */
+public final class URIMatcherIndex {
+
+    /** Cached result of a URI that does not match anything */
+    private static final Object NO_MATCH = new Object();
+
+    /**
+     * Compiled form of one ClauseNode.
+     */
+    private static final class Node {
+        final Result exact;
+        final Result star;
+        final RegionTable children;
+
+        Node(ClauseNode node) {
+            Object target = node.getTarget();
+            Object starTarget = node.getStarTarget();
+            exact = (target == null) ? null : new Result(node, target);
+            star = (starTarget == null) ? null : new Result(node, starTarget);
+
+            List<ClauseNode> list = node.children.getList();
+            String[] keys = new String[list.size()];
+            Object[] values = new Object[list.size()];
+            int i = 0;
+            for (ClauseNode child : list) {
+                if (child != null) {
+                    keys[i] = child.getClause();
+                    values[i] = new Node(child);
+                    i++;
+                }
+            }
+            children = new RegionTable(keys, values, i);
+        }
+    }
+
+    /**
+     * Open addressed table of strings, which is searched with a region of a
+     * string, using the same hash as String.hashCode().
+     */
+    private static final class RegionTable {
+        private final String[] keys;
+        private final Object[] values;
+        private final int mask;
+
+        RegionTable(String[] srcKeys, Object[] srcValues, int count) {
+            int capacity = 2;
+            while (capacity < count * 2) {
+                capacity <<= 1;
+            }
+            keys = new String[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+            for (int i = 0; i < count; i++) {
+                int slot = spread(srcKeys[i].hashCode()) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = srcKeys[i];
+                values[slot] = srcValues[i];
+            }
+        }
+
+        Object get(String s, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + s.charAt(i);
+            }
+            int len = end - start;
+            int slot = spread(hash) & mask;
+            String key;
+            while ((key = keys[slot]) != null) {
+                if (key.length() == len && s.regionMatches(start, key, 0, len)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    private final Node root;
+    private final ClauseNode defaultNode;
+    private final Result defaultResult;
+    private final RegionTable extensions;
+
+    private final ConcurrentHashMap<String, Object> cache;
+    private final int cacheSize;
+
+    /**
+     * Compile the mappings of a URIMatcher.
+     *
+     * @param root the root of the clause tree
+     * @param defaultNode the node of the /* mapping, or null
+     * @param extensionMap the *.xxx mappings by extension
+     * @param cacheSize number of results of match(String) to keep, or 0 for none
+     */
+    URIMatcherIndex(ClauseNode root, ClauseNode defaultNode, Map<String, Object> extensionMap, int cacheSize) {
+        this.root = new Node(root);
+        this.defaultNode = defaultNode;
+        this.defaultResult = (defaultNode == null) ? null : new Result(defaultNode, defaultNode.getStarTarget());
+
+        String[] keys = new String[extensionMap.size()];
+        Object[] values = new Object[extensionMap.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> entry : extensionMap.entrySet()) {
+            if (entry.getValue() != null) {
+                keys[i] = entry.getKey();
+                values[i] = entry.getValue();
+                i++;
+            }
+        }
+        this.extensions = new RegionTable(keys, values, i);
+
+        this.cacheSize = cacheSize;
+        this.cache = (cacheSize > 0) ? new ConcurrentHashMap<String, Object>(cacheSize) : null;
+    }
+
+    /**
+     * Find the most specific exact or wildcard mapping of a URI, in the same way
+     * as URIMatcher.findNode(String).
+     *
+     * @param uri
+     * @return Result, or null if nothing matches
+     */
+    Result findNode(String uri) {
+        Node currentNode = root;
+        Result starResult = defaultResult;
+
+        int length = uri.length();
+        int startIdx = 1;
+        while (true) {
+            int slashIdx = uri.indexOf('/', startIdx);
+            boolean last = (slashIdx == -1);
+            if (last) {
+                slashIdx = length;
+            }
+
+            if (!last || startIdx < slashIdx) {
+                currentNode = (Node) currentNode.children.get(uri, startIdx, slashIdx);
+                if (currentNode == null) {
+                    // no exact match
+                    break;
+                } else if (last && currentNode.exact != null) {
+                    // we have an exact match (last segment) with a target
+                    return currentNode.exact;
+                } else if (currentNode.star != null) {
+                    starResult = currentNode.star;
+                }
+                if (last) {
+                    break;
+                }
+                startIdx = slashIdx + 1;
+            } else {
+                // we walked past the current node with an ending /
+                Result result = WCCustomProperties.STRICT_SERVLET_MAPPING ? currentNode.star : currentNode.exact;
+                if (result != null) {
+                    return result;
+                }
+                break;
+            }
+        }
+
+        return starResult;
+    }
+
+    /**
+     * Find the *.xxx mapping of a URI.
+     *
+     * @param uri
+     * @return the target, or null if there is none
+     */
+    Object findByExtension(String uri) {
+        int dot = uri.lastIndexOf('.');
+        if (dot != -1) {
+            return extensions.get(uri, dot + 1, uri.length());
+        }
+        return null;
+    }
+
+    /**
+     * Match a URI in the same way as URIMatcher.match(String), using the
+     * cached result if the URI was matched before.
+     *
+     * @param uri
+     * @return the target, or null if nothing matches
+     */
+    Object match(String uri) {
+        if (cache != null) {
+            Object target = cache.get(uri);
+            if (target != null) {
+                return (target == NO_MATCH) ? null : target;
+            }
+        }
+
+        Object target = resolve(uri);
+
+        if (cache != null) {
+            if (cache.size() >= cacheSize) {
+                // start over rather than keep the URIs that happened to come first
+                cache.clear();
+            }
+            cache.put(uri, (target == null) ? NO_MATCH : target);
+        }
+        return target;
+    }
+
+    private Object resolve(String uri) {
+        Result result = findNode(uri);
+
+        // if we have the default (/*) node, we need to check extensions first
+        if (result != null && result.node != defaultNode) {
+            return result.target;
+        }
+
+        Object target = findByExtension(uri);
+        if (target != null) {
+            return target;
+        }
+
+        return (defaultResult == null) ? null : defaultResult.target;
+    }
+
+    /**
+     * Query the number of cached results.
+     *
+     * @return int
+     */
+    public int getCachedCount() {
+        return (cache == null) ? 0 : cache.size();
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2014 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -196,6 +196,7 @@ public abstract class WebAppConfiguration extends BaseConfiguration implements W
     private Map jspCachedLocations = null;
     private String primedSTSHeader = null;
     private boolean enablemultireadofpostdata = false; //MultiRead
+    private int filterChainCacheSize = WCCustomProperties.FILTER_CHAIN_CACHE_SIZE;
     //since servlet40
     private String requestEncoding = null;
     private String responseEncoding = null;
@@ -2140,6 +2141,28 @@ public abstract class WebAppConfiguration extends BaseConfiguration implements W
     }
     //MultiRead End
 
+    public int getFilterChainCacheSize() {
+        return this.filterChainCacheSize;
+    }
+
+    public void setFilterChainCacheSize() {
+        if (this.contextParams != null){
+            String value = (String) this.contextParams.get("com.ibm.ws.webcontainer.FILTER_CHAIN_CACHE_SIZE");
+            if (value != null){
+                try {
+                    this.filterChainCacheSize = Integer.parseInt(value.trim());
+                    if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled()&&logger.isLoggable (Level.FINE))
+                        logger.logp(Level.FINE, CLASS_NAME,"setFilterChainCacheSize", "cxtParam provided for FILTER_CHAIN_CACHE_SIZE: "+value+" in web application -> "+ applicationName);
+                    return;
+                } catch (NumberFormatException nfe) {
+                    if (com.ibm.ejs.ras.TraceComponent.isAnyTracingEnabled()&&logger.isLoggable (Level.FINE))
+                        logger.logp(Level.FINE, CLASS_NAME,"setFilterChainCacheSize", "Invalid value set for context param [com.ibm.ws.webcontainer.FILTER_CHAIN_CACHE_SIZE] in application -> "+ applicationName);
+                }
+            }
+        }
+        this.filterChainCacheSize = WCCustomProperties.FILTER_CHAIN_CACHE_SIZE;
+    }
+
     public String getModuleRequestEncoding(){
         return this.requestEncoding;
     }
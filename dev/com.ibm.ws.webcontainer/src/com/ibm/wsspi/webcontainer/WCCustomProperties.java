@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 1997, 2008 IBM Corporation and others.
+ * Copyright (c) 1997, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -307,6 +307,15 @@ public class WCCustomProperties {
     //18.0.0.3
     public static String SERVLET_PATH_FOR_DEFAULT_MAPPING;
 
+    //18.0.0.4
+    public static boolean ENABLE_ZERO_COPY_FILE_SERVING;
+    public static boolean ENABLE_FILE_SERVING_RANGES;
+    public static long STATIC_RESOURCE_CACHE_SIZE;
+    public static int STATIC_RESOURCE_CACHE_MAX_ENTRY_SIZE;
+    public static boolean ENABLE_COMPILED_URI_MATCHING;
+    public static int URI_MATCH_CACHE_SIZE;
+    public static int FILTER_CHAIN_CACHE_SIZE;
+
     static {
         setCustomPropertyVariables(); //initilizes all the variables
     }
@@ -778,6 +787,15 @@ public class WCCustomProperties {
 	//18.0.0.3
 	SERVLET_PATH_FOR_DEFAULT_MAPPING = customProps.getProperty("com.ibm.ws.webcontainer.servletpathfordefaultmapping"); //4666
 
+        //18.0.0.4
+        ENABLE_ZERO_COPY_FILE_SERVING = Boolean.valueOf(WebContainer.getWebContainerProperties().getProperty("com.ibm.ws.webcontainer.enablezerocopyfileserving")).booleanValue();
+        ENABLE_FILE_SERVING_RANGES = Boolean.valueOf(WebContainer.getWebContainerProperties().getProperty("com.ibm.ws.webcontainer.enablefileservingranges")).booleanValue();
+        STATIC_RESOURCE_CACHE_SIZE = Long.valueOf(WebContainer.getWebContainerProperties().getProperty("com.ibm.ws.webcontainer.staticresourcecachesize", "0")).longValue();
+        STATIC_RESOURCE_CACHE_MAX_ENTRY_SIZE = Integer.valueOf(WebContainer.getWebContainerProperties().getProperty("com.ibm.ws.webcontainer.staticresourcecachemaxentrysize", "262144")).intValue();
+        ENABLE_COMPILED_URI_MATCHING = Boolean.valueOf(WebContainer.getWebContainerProperties().getProperty("com.ibm.ws.webcontainer.enablecompiledurimatching")).booleanValue();
+        URI_MATCH_CACHE_SIZE = Integer.valueOf(WebContainer.getWebContainerProperties().getProperty("com.ibm.ws.webcontainer.urimatchcachesize", "1024")).intValue();
+        FILTER_CHAIN_CACHE_SIZE = Integer.valueOf(WebContainer.getWebContainerProperties().getProperty("com.ibm.ws.webcontainer.filterchaincachesize", "200")).intValue();
+
     }
 
 }
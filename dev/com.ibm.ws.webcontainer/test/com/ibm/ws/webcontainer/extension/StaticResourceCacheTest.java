@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.webcontainer.extension;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+public class StaticResourceCacheTest {
+
+    private static byte[] text(int length) {
+        byte[] content = new byte[length];
+        Arrays.fill(content, (byte) 'a');
+        return content;
+    }
+
+    @Test
+    public void testGetAndStale() throws Exception {
+        StaticResourceCache cache = new StaticResourceCache(1024 * 1024, 4096);
+        Object key = new Object();
+        assertNull(cache.get(key, 1000, 100));
+        StaticResourceCache.Entry entry = cache.put(key, 1000, text(100), false);
+        assertSame(entry, cache.get(key, 1000, 100));
+        assertNull(entry.getContent(StaticResourceCache.GZIP));
+
+        // a changed last modified time or size removes the entry
+        assertNull(cache.get(key, 2000, 100));
+        assertEquals(0, cache.getSize());
+        cache.put(key, 1000, text(100), false);
+        assertNull(cache.get(key, 1000, 101));
+    }
+
+    @Test
+    public void testCompressedVariants() throws Exception {
+        StaticResourceCache cache = new StaticResourceCache(1024 * 1024, 4096);
+        byte[] content = text(1000);
+        StaticResourceCache.Entry entry = cache.put("a", 1000, content, true);
+        assertTrue(entry.isCompressible());
+        byte[] gzip = entry.getContent(StaticResourceCache.GZIP);
+        assertNotNull(gzip);
+        assertTrue(gzip.length < content.length);
+        assertNotNull(entry.getContent(StaticResourceCache.DEFLATE));
+
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[256];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        assertArrayEquals(content, out.toByteArray());
+
+        // variants that do not save space are not kept
+        entry = cache.put("b", 1000, new byte[] { 1 }, true);
+        assertNull(entry.getContent(StaticResourceCache.GZIP));
+        assertNull(entry.getContent(StaticResourceCache.DEFLATE));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        StaticResourceCache cache = new StaticResourceCache(250, 4096);
+        cache.put("a", 1, text(100), false);
+        cache.put("b", 1, text(100), false);
+        assertNotNull(cache.get("a", 1, 100));
+        cache.put("c", 1, text(100), false);
+
+        // b was the least recently used
+        assertNull(cache.get("b", 1, 100));
+        assertNotNull(cache.get("a", 1, 100));
+        assertNotNull(cache.get("c", 1, 100));
+        assertEquals(200, cache.getSize());
+
+        // larger than the whole cache, returned but not cached
+        assertNotNull(cache.put("d", 1, text(300), false));
+        assertNull(cache.get("d", 1, 300));
+    }
+
+    @Test
+    public void testSelectEncoding() {
+        assertEquals(StaticResourceCache.GZIP, StaticResourceCache.selectEncoding("gzip, deflate, br"));
+        assertEquals(StaticResourceCache.DEFLATE, StaticResourceCache.selectEncoding("deflate"));
+        assertEquals(StaticResourceCache.DEFLATE, StaticResourceCache.selectEncoding("gzip;q=0, deflate"));
+        assertEquals(StaticResourceCache.GZIP, StaticResourceCache.selectEncoding("*"));
+        assertNull(StaticResourceCache.selectEncoding("identity"));
+        assertNull(StaticResourceCache.selectEncoding(null));
+    }
+
+    @Test
+    public void testIsCompressible() {
+        assertTrue(StaticResourceCache.isCompressible("text/html; charset=UTF-8"));
+        assertTrue(StaticResourceCache.isCompressible("application/javascript"));
+        assertFalse(StaticResourceCache.isCompressible("image/png"));
+        assertFalse(StaticResourceCache.isCompressible(null));
+    }
+}
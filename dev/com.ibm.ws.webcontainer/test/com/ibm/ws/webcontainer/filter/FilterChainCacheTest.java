@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.webcontainer.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FilterChainCacheTest {
+
+    @Test
+    public void testGetAndPut() throws Exception {
+        FilterChainCache cache = new FilterChainCache("request", 10);
+        assertNull(cache.get("/a"));
+        FilterChainContents fcc = new FilterChainContents();
+        cache.put("/a", fcc);
+        assertSame(fcc, cache.get("/a"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        cache.clear();
+        assertNull(cache.get("/a"));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        FilterChainCache cache = new FilterChainCache("request", 20);
+        for (int i = 0; i < 20; i++) {
+            cache.put("/" + i, new FilterChainContents());
+        }
+        assertEquals(20, cache.size());
+
+        // the entries that are used stay, the oldest unused ones are evicted along with a tenth of the size
+        cache.get("/0");
+        cache.get("/1");
+        cache.put("/20", new FilterChainContents());
+        assertEquals(18, cache.size());
+        assertEquals(3, cache.getEvictionCount());
+        assertNotNull(cache.get("/0"));
+        assertNotNull(cache.get("/1"));
+        assertNotNull(cache.get("/20"));
+        assertNull(cache.get("/2"));
+        assertNull(cache.get("/4"));
+
+        for (int i = 100; i < 200; i++) {
+            cache.put("/" + i, new FilterChainContents());
+            assertTrue(cache.size() <= 20);
+        }
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        final FilterChainCache cache = new FilterChainCache("request", 10);
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 1000; i++) {
+                            String key = "/" + id + "/" + i;
+                            cache.put(key, new FilterChainContents());
+                            cache.get(key);
+                            if (id == 0 && i % 10 == 0) {
+                                cache.clear();
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure[0]);
+        // a lookup either finds the chain or misses when it was evicted or cleared
+        assertEquals(4000, cache.getHitCount() + cache.getMissCount());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        FilterChainCache cache = new FilterChainCache("error", 0);
+        cache.put("/a", new FilterChainContents());
+        assertNull(cache.get("/a"));
+        assertEquals(0, cache.size());
+    }
+}
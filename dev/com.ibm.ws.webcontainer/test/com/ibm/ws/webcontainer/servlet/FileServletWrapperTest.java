@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.webcontainer.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.ws.http.channel.outstream.HttpOutputStreamConnectWeb;
+import com.ibm.ws.webcontainer.core.Response;
+import com.ibm.ws.webcontainer.extension.DefaultExtensionProcessor;
+import com.ibm.ws.webcontainer.osgi.response.WCOutputStream;
+import com.ibm.ws.webcontainer.session.IHttpSessionContext;
+import com.ibm.ws.webcontainer.webapp.WebApp;
+import com.ibm.ws.webcontainer.webapp.WebAppDispatcherContext;
+import com.ibm.ws.webcontainer.webapp.WebAppEventSource;
+import com.ibm.wsspi.webcontainer.IPlatformHelper;
+import com.ibm.wsspi.webcontainer.WebContainer;
+import com.ibm.wsspi.webcontainer.collaborator.ICollaboratorHelper;
+import com.ibm.wsspi.webcontainer.servlet.IExtendedRequest;
+
+public class FileServletWrapperTest {
+
+    /**
+     * The response of the web container, as seen by the file servlet.
+     */
+    private interface TestResponse extends HttpServletResponse, Response {}
+
+    private final Mockery mock = new JUnit4Mockery() {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    private File file;
+    private Field webContainerField;
+    private Field rangesField;
+    private boolean ranges;
+
+    @Before
+    public void setUp() throws Exception {
+        byte[] content = new byte[100000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        file = File.createTempFile("FileServletWrapperTest", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content);
+        out.close();
+
+        webContainerField = WebContainer.class.getDeclaredField("self");
+        webContainerField.setAccessible(true);
+        rangesField = FileServletWrapper.class.getDeclaredField("fileServingRanges");
+        rangesField.setAccessible(true);
+        ranges = rangesField.getBoolean(null);
+        rangesField.setBoolean(null, true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        webContainerField.set(null, null);
+        rangesField.setBoolean(null, ranges);
+        file.delete();
+    }
+
+    @Test
+    public void testSingleByteRange() {
+        assertArrayEquals(new long[] { 0, 100 }, FileServletWrapper.parseByteRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[] { 100, 900 }, FileServletWrapper.parseByteRange("bytes=100-", 1000));
+        assertArrayEquals(new long[] { 950, 50 }, FileServletWrapper.parseByteRange("bytes=-50", 1000));
+        assertArrayEquals(new long[] { 0, 1000 }, FileServletWrapper.parseByteRange("bytes=-5000", 1000));
+        // the last byte is limited to the end of the file
+        assertArrayEquals(new long[] { 990, 10 }, FileServletWrapper.parseByteRange("bytes=990-2000", 1000));
+    }
+
+    @Test
+    public void testUnsatisfiableRange() {
+        assertSame(FileServletWrapper.RANGE_NOT_SATISFIABLE, FileServletWrapper.parseByteRange("bytes=1000-", 1000));
+        assertSame(FileServletWrapper.RANGE_NOT_SATISFIABLE, FileServletWrapper.parseByteRange("bytes=-0", 1000));
+    }
+
+    @Test
+    public void testIgnoredRange() {
+        assertNull(FileServletWrapper.parseByteRange("bytes=5-3", 1000));
+        assertNull(FileServletWrapper.parseByteRange("bytes=0-1,5-6", 1000));
+        assertNull(FileServletWrapper.parseByteRange("items=0-1", 1000));
+        assertNull(FileServletWrapper.parseByteRange("bytes=abc", 1000));
+    }
+
+    /**
+     * A range of a plain http file request is handed to the HTTP channel as a region of
+     * the file channel, after the partial content headers are set.
+     */
+    @Test
+    public void testZeroCopyRange() throws Exception {
+        final WebApp webApp = mock.mock(WebApp.class);
+        final ICollaboratorHelper collabHelper = mock.mock(ICollaboratorHelper.class);
+        final IHttpSessionContext sessionContext = mock.mock(IHttpSessionContext.class);
+        final WebAppEventSource eventSource = new WebAppEventSource();
+        final WebContainer webContainer = mock.mock(WebContainer.class);
+        final IPlatformHelper platformHelper = mock.mock(IPlatformHelper.class);
+        final DefaultExtensionProcessor processor = mock.mock(DefaultExtensionProcessor.class);
+        final IExtendedRequest request = mock.mock(IExtendedRequest.class);
+        final WebAppDispatcherContext dispatchContext = mock.mock(WebAppDispatcherContext.class);
+        final TestResponse response = mock.mock(TestResponse.class);
+        final HttpOutputStreamConnectWeb output = mock.mock(HttpOutputStreamConnectWeb.class);
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        mock.checking(new Expectations() {
+            {
+                // called by the FileServletWrapper ctor
+                allowing(webApp).getCollaboratorHelper();
+                will(returnValue(collabHelper));
+                allowing(collabHelper).getWebAppNameSpaceCollaborator();
+                allowing(collabHelper).getSecurityCollaborator();
+                allowing(webApp).getSessionContext();
+                will(returnValue(sessionContext));
+                allowing(sessionContext).getIntegrateWASSecurity();
+                will(returnValue(false));
+                allowing(webContainer).getPlatformHelper();
+                will(returnValue(platformHelper));
+                allowing(processor).getOptimizeFileServingSize();
+                will(returnValue(1));
+                allowing(webApp).getServletContextEventSource();
+                will(returnValue(eventSource));
+
+                // the request
+                allowing(request).getWebAppDispatcherContext();
+                will(returnValue(dispatchContext));
+                allowing(dispatchContext).isInclude();
+                will(returnValue(false));
+                allowing(dispatchContext).isForward();
+                will(returnValue(false));
+                allowing(request).getRequestURI();
+                will(returnValue("/file.bin"));
+                allowing(request).getDateHeader("If-Modified-Since");
+                will(returnValue(-1L));
+                allowing(request).getMethod();
+                will(returnValue("GET"));
+                allowing(request).getHeader("Range");
+                will(returnValue("bytes=1000-50999"));
+                allowing(request).getHeader("If-Range");
+                will(returnValue(null));
+                allowing(request).getScheme();
+                will(returnValue("http"));
+                allowing(request).getProtocol();
+                will(returnValue("HTTP/1.1"));
+                allowing(webApp).getMimeType("/file.bin");
+                will(returnValue("application/octet-stream"));
+                allowing(processor).getEsiControl();
+                will(returnValue(null));
+                allowing(processor).getStaticResourceCache();
+                will(returnValue(null));
+                allowing(platformHelper).isTransferToOS();
+                will(returnValue(true));
+
+                // the response headers
+                allowing(response).setDateHeader(with(any(String.class)), with(any(long.class)));
+                allowing(response).setHeader("Content-Type", "application/octet-stream");
+                one(response).setContentLength(100000);
+                one(response).setHeader("Accept-Ranges", "bytes");
+                one(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                one(response).setHeader("Content-Range", "bytes 1000-50999/100000");
+                one(response).setContentLength(50000);
+
+                // the body goes to the HTTP channel as a region of the file
+                allowing(response).getOutputStream();
+                will(returnValue(new WCOutputStream(output)));
+                allowing(response).isCommitted();
+                will(returnValue(false));
+                allowing(output).getBufferSize();
+                will(returnValue(32768));
+                allowing(output).hasBufferedContent();
+                will(returnValue(false));
+                one(output).writeFile(with(any(FileChannel.class)), with(equal(1000L)), with(equal(50000L)));
+                will(new CustomAction("transfer the region") {
+                    @Override
+                    public Object invoke(Invocation invocation) throws Throwable {
+                        FileChannel fc = (FileChannel) invocation.getParameter(0);
+                        long offset = (Long) invocation.getParameter(1);
+                        long length = (Long) invocation.getParameter(2);
+                        fc.transferTo(offset, length, Channels.newChannel(written));
+                        return null;
+                    }
+                });
+            }
+        });
+        webContainerField.set(null, webContainer);
+
+        FileServletWrapper wrapper = new StaticFileServletWrapper(webApp, processor, file);
+        wrapper.service(request, response, null);
+
+        byte[] expected = new byte[50000];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        raf.seek(1000);
+        raf.readFully(expected);
+        raf.close();
+        assertArrayEquals(expected, written.toByteArray());
+    }
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.webcontainer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.ibm.wsspi.webcontainer.WCCustomProperties;
+
+/**
+ * Test that the compiled URIMatcherIndex matches in the same way as the clause tree.
+ */
+public class URIMatcherTest {
+
+    private static final String[] MAPPINGS = { "/a/*", "/a/b/c", "/a/b/*", "*.jsp", "/x", "/x/y/", "/*", "", "/a//d" };
+
+    private static final String[] URIS = { "/", "", "/a", "/a/", "/a/b", "/a/b/", "/a/b/c", "/a/b/c/", "/a/b/c.jsp",
+                                           "/z.jsp", "/x", "/x/", "/x/y", "/x/y/", "/nothing", "/a//d", "//", "/a/b/c/d/e.jsp" };
+
+    @After
+    public void tearDown() {
+        WCCustomProperties.ENABLE_COMPILED_URI_MATCHING = false;
+    }
+
+    private static String matchAll(URIMatcher matcher, boolean compiled) {
+        WCCustomProperties.ENABLE_COMPILED_URI_MATCHING = compiled;
+        StringBuilder sb = new StringBuilder();
+        // twice, so that the second pass is answered from the cache
+        for (int pass = 0; pass < 2; pass++) {
+            for (String uri : URIS) {
+                sb.append(uri).append('=').append(matcher.match(uri)).append(',').append(matcher.exists(uri)).append(';');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testCompiledMatchesClauseTree() throws Exception {
+        for (int count = 0; count <= MAPPINGS.length; count++) {
+            URIMatcher matcher = new URIMatcher();
+            for (int i = 0; i < count; i++) {
+                matcher.put(MAPPINGS[i], "target" + MAPPINGS[i]);
+            }
+            assertEquals("mappings " + count, matchAll(matcher, false), matchAll(matcher, true));
+        }
+    }
+
+    @Test
+    public void testCompiledFollowsChanges() throws Exception {
+        WCCustomProperties.ENABLE_COMPILED_URI_MATCHING = true;
+        URIMatcher matcher = new URIMatcher();
+        matcher.put("/a/*", "wildcard");
+        matcher.put("*.jsp", "jsp");
+        assertEquals("wildcard", matcher.match("/a/b"));
+        assertNull(matcher.match("/b"));
+
+        matcher.put("/b", "exact");
+        assertEquals("exact", matcher.match("/b"));
+
+        matcher.replace("*.jsp", "jsp2");
+        assertEquals("jsp2", matcher.match("/c.jsp"));
+
+        matcher.remove("/a/*");
+        assertNull(matcher.match("/a/b"));
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 IBM Corporation and others.
+ * Copyright (c) 2015, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,11 +11,14 @@
 package com.ibm.websphere.wsoc;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.websocket.Session;
 import javax.websocket.server.ServerContainer;
 import javax.websocket.server.ServerEndpointConfig;
 
@@ -51,4 +54,26 @@ public interface WsWsocServerContainer extends ServerContainer {
      */
     public void doUpgrade(HttpServletRequest req, HttpServletResponse resp, ServerEndpointConfig sec, Map<String, String> pathParams) throws ServletException, IOException;
 
+    /**
+     * Sends a text message to each of the provided sessions. The message is framed once and the same frame is
+     * written to every session asynchronously, in batches with other broadcast messages for the same session.
+     * This method does not wait for the writes. A session that is not open, or that still has too many earlier
+     * broadcast messages waiting to be written because its client is reading slowly, does not get the message.
+     * 
+     * @param sessions - the sessions of this container to send the message to
+     * @param text - the message
+     * @return the number of sessions the message was queued to
+     */
+    public int broadcast(Collection<Session> sessions, String text);
+
+    /**
+     * Sends a binary message to each of the provided sessions, in the same way as {@link #broadcast(Collection, String)}.
+     * The data is copied from the position to the limit of the buffer, which is not changed.
+     * 
+     * @param sessions - the sessions of this container to send the message to
+     * @param data - the message
+     * @return the number of sessions the message was queued to
+     */
+    public int broadcast(Collection<Session> sessions, ByteBuffer data);
+
 }
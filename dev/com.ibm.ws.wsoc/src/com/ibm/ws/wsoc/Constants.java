@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017 IBM Corporation and others.
+ * Copyright (c) 2017, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -44,4 +44,8 @@ public class Constants {
     public static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
 
     public static final int MAX_PING_SIZE = 125;
+
+    // EndpointConfig user property. When set to true, binary messages that arrive in one buffer are passed to the
+    // endpoint as a view of the read buffer instead of a copy, so the endpoint must not use them after onMessage returns.
+    public static final String BINARY_BUFFER_VIEW_PROPERTY = "com.ibm.websphere.wsoc.binaryBufferView";
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017 IBM Corporation and others.
+ * Copyright (c) 2017, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,6 +30,8 @@ public class FrameReadProcessor {
     // private static final byte FIN_SHIFT = 7;
     private static final byte RSV_MASK = (byte) 0x70;
     private static final byte RSV_SHIFT = 4;
+    /** RSV1 after the shift, which marks a compressed message when permessage-deflate is in use */
+    public static final byte RSV1 = 0x04;
     private static final byte OPCODE_MASK = (byte) 0x0F;
     private static final byte MASK_FLAG_MASK = (byte) 0x80;
     // private static final byte MASK_FLAG_SHIFT = 7;
@@ -71,6 +73,7 @@ public class FrameReadProcessor {
     OpcodeType controlOpcodeType;
 
     boolean shouldReadMaskedData = false;
+    byte allowedRsv = 0;
 
     private WsByteBuffer[] frameBuffers = new WsByteBuffer[BUFFER_ARRAY_INITIAL_SIZE];
 
@@ -80,6 +83,11 @@ public class FrameReadProcessor {
         this.shouldReadMaskedData = shouldReadMaskedData;
     }
 
+    public void initialize(boolean shouldReadMaskedData, byte allowedRsv) {
+        this.shouldReadMaskedData = shouldReadMaskedData;
+        this.allowedRsv = allowedRsv;
+    }
+
     public void reset(boolean releaseBuffers) {
         if (releaseBuffers) {
             releaseBuffers();
@@ -167,7 +175,7 @@ public class FrameReadProcessor {
             // fin = (byte) ((byte) (controlByte1 & FIN_MASK) >>> FIN_SHIFT); 
 
             rsv = (byte) ((byte) (controlByte1 & RSV_MASK) >>> RSV_SHIFT);
-            if (rsv != 0) {
+            if ((rsv & ~allowedRsv) != 0) {
                 throw new FrameFormatException("Reserved frame must be 0.");
             }
             opcode = (byte) (controlByte1 & OPCODE_MASK);
@@ -192,6 +200,11 @@ public class FrameReadProcessor {
                 throw new FrameFormatException("Control frames must have FIN bit set to 1.");
             }
 
+            // extensions only apply to data frames
+            if (controlFrame && (rsv != 0)) {
+                throw new FrameFormatException("Reserved frame must be 0.");
+            }
+
             controlByte2 = grabNextByte();
 
             // maskFlag = (byte) ((byte) (controlByte2 & MASK_FLAG_MASK) >>> MASK_FLAG_SHIFT);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017 IBM Corporation and others.
+ * Copyright (c) 2017, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -37,16 +37,40 @@ public class FrameWriteProcessor {
     private final WebSocketContainerManager wcManager = WebSocketContainerManager.getRef();
 
     private WsByteBuffer formatBuffer = null;
+    private WsByteBuffer compressedBuffer = null;
+
+    /** RSV1, which marks a compressed message when permessage-deflate is in use */
+    private final static byte RSV1_BIT = (byte) 0x40;
 
     private final Object safetySync = new Object() {};
 
     @Sensitive
     public WsByteBuffer[] formatForFrameMessage(@Sensitive WsByteBuffer[] bufs, OpcodeType op, boolean shouldMaskData) {
+        return formatForFrameMessage(bufs, op, shouldMaskData, null);
+    }
 
-        if (bufs == null) {
+    /**
+     * Format a frame, compressing the payload first if permessage-deflate is in use and this is a whole message.
+     * Fragmented messages are always sent uncompressed, which is allowed by the extension.
+     */
+    @Sensitive
+    public WsByteBuffer[] formatForFrameMessage(@Sensitive WsByteBuffer[] _bufs, OpcodeType op, boolean shouldMaskData, PerMessageDeflate pmd) {
+
+        if (_bufs == null) {
             return null;
         }
 
+        WsByteBuffer[] bufs = _bufs;
+        boolean compressed = false;
+        if ((pmd != null) && ((op == OpcodeType.TEXT_WHOLE) || (op == OpcodeType.BINARY_WHOLE)) && pmd.shouldCompress(bytesRemaining(bufs))) {
+            WsByteBuffer buf = pmd.compress(bufs, getBufferManager());
+            synchronized (safetySync) {
+                compressedBuffer = buf;
+            }
+            bufs = new WsByteBuffer[] { buf };
+            compressed = true;
+        }
+
         // build controlByte1
         // set to fin = 1 if this is last (or only) frame to write for this message, rsv = 0.
 
@@ -97,6 +121,10 @@ public class FrameWriteProcessor {
                 break;
         }
 
+        if (compressed) {
+            controlByte1 = (byte) (controlByte1 | RSV1_BIT);
+        }
+
         // build controlByte2
         payloadLength = bytesRemaining(bufs);
 
@@ -181,6 +209,40 @@ public class FrameWriteProcessor {
 
     }
 
+    /**
+     * Format a whole, unmasked message into one frame, which can then be written to many connections.
+     */
+    @Sensitive
+    public static byte[] formatSharedFrame(@Sensitive byte[] payload, OpcodeType op) {
+        int length = payload.length;
+        int headerSize;
+        if (length < 126) {
+            headerSize = SIZE_FORMAT_8_NO_MASK;
+        } else if ((length >> 16) == 0) {
+            headerSize = SIZE_FORMAT_16_NO_MASK;
+        } else {
+            headerSize = SIZE_FORMAT_64_NO_MASK;
+        }
+
+        byte[] frame = new byte[headerSize + length];
+        frame[0] = (op == OpcodeType.TEXT_WHOLE) ? (byte) 0x81 : (byte) 0x82;
+        if (headerSize == SIZE_FORMAT_8_NO_MASK) {
+            frame[1] = (byte) length;
+        } else if (headerSize == SIZE_FORMAT_16_NO_MASK) {
+            frame[1] = (byte) 126;
+            frame[2] = (byte) ((length >> 8) & 0xFF);
+            frame[3] = (byte) (length & 0xFF);
+        } else {
+            frame[1] = (byte) 127;
+            long l = length;
+            for (int i = 0; i < 8; i++) {
+                frame[2 + i] = (byte) ((l >> (56 - (8 * i))) & 0xFF);
+            }
+        }
+        System.arraycopy(payload, 0, frame, headerSize, length);
+        return frame;
+    }
+
     public long getFrameLength() {
         return frameLength;
     }
@@ -208,6 +270,10 @@ public class FrameWriteProcessor {
                 formatBuffer.release();
                 formatBuffer = null;
             }
+            if (compressedBuffer != null) {
+                compressedBuffer.release();
+                compressedBuffer = null;
+            }
         }
     }
 
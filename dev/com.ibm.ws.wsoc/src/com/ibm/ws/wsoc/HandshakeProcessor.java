@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017 IBM Corporation and others.
+ * Copyright (c) 2017, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -309,7 +309,7 @@ public class HandshakeProcessor {
 
     public void determineAndSetExtensions() {
 
-        // Even though we have no built in extensions, we will read the ServerEndpoingConfig to see what they configure
+        // permessage-deflate is the only built in extension, but we will read the ServerEndpoingConfig to see what they configure
         //  COudl be an extension that looks at headers...
         configuredExtensions = endpointConfig.getExtensions();
         if (configuredExtensions == null) {
@@ -321,6 +321,7 @@ public class HandshakeProcessor {
         }
 
         List<Extension> agreedExtensions = endpointConfigurator.getNegotiatedExtensions(configuredExtensions, clientExtensions);
+        agreedExtensions = negotiatePerMessageDeflate(agreedExtensions);
         if (agreedExtensions != null) {
             if (agreedExtensions.size() > 0) {
                 StringBuffer buf = new StringBuffer();
@@ -336,7 +337,10 @@ public class HandshakeProcessor {
                     if (li != null) {
                         if (li.size() > 0) {
                             for (Parameter p : li) {
-                                buf.append("; " + p.getName() + "=" + p.getValue());
+                                buf.append("; " + p.getName());
+                                if ((p.getValue() != null) && (p.getValue().length() > 0)) {
+                                    buf.append("=" + p.getValue());
+                                }
                             }
                         }
                     }
@@ -348,6 +352,42 @@ public class HandshakeProcessor {
         }
     }
 
+    /**
+     * permessage-deflate is implemented here rather than by the application, so if it was agreed on, replace the
+     * client's offers that the configurator returned with the one response this server can honor.
+     */
+    private List<Extension> negotiatePerMessageDeflate(List<Extension> agreedExtensions) {
+        if (agreedExtensions == null) {
+            return null;
+        }
+
+        Extension configured = null;
+        for (Extension ext : configuredExtensions) {
+            if (PerMessageDeflate.EXTENSION_NAME.equalsIgnoreCase(ext.getName())) {
+                configured = ext;
+            }
+        }
+
+        List<Extension> result = new ArrayList<Extension>(agreedExtensions.size());
+        boolean deflateAgreed = false;
+        for (Extension ext : agreedExtensions) {
+            if (PerMessageDeflate.EXTENSION_NAME.equalsIgnoreCase(ext.getName().trim())) {
+                deflateAgreed = true;
+            } else {
+                result.add(ext);
+            }
+        }
+        if (!deflateAgreed) {
+            return agreedExtensions;
+        }
+
+        Extension response = PerMessageDeflate.negotiate(clientExtensions, configured);
+        if (response != null) {
+            result.add(response);
+        }
+        return result;
+    }
+
     public void verifyHeaders() throws Exception {
 
         // Require HTTP/1.1 or above...
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013 IBM Corporation and others.
+ * Copyright (c) 2013, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -90,6 +90,7 @@ public class LinkRead {
     private WsocConnLink connLink = null;
 
     private boolean shouldReadMaskedData = false;
+    private boolean binaryBufferView = false;
 
     private enum PartialState {
         NOT_ATTEMPTED,
@@ -107,6 +108,11 @@ public class LinkRead {
         connLink = _link;
         shouldReadMaskedData = _shouldReadMaskedData;
 
+        if ((_epc != null) && (_epc.getUserProperties() != null)) {
+            Object value = _epc.getUserProperties().get(Constants.BINARY_BUFFER_VIEW_PROPERTY);
+            binaryBufferView = Boolean.TRUE.equals(value) || "true".equals(value);
+        }
+
         // can not allow message handlers to be added, if annotated ones already exist.
         if (_ep instanceof AnnotatedEndpoint) {
             AnnotatedEndpoint ae = (AnnotatedEndpoint) _ep;
@@ -132,6 +138,10 @@ public class LinkRead {
 
     }
 
+    public void setPerMessageDeflate(PerMessageDeflate pmd) {
+        messageReader.setPerMessageDeflate(pmd);
+    }
+
     public boolean processRead(TCPReadRequestContext rrc, Endpoint appEndPoint) {
 
         DATA_TYPE dt = DATA_TYPE.UNKNOWN;
@@ -1372,6 +1382,12 @@ public class LinkRead {
             size = messageReader.getMessageCompletePayloadSize_Control();
         }
 
+        // if the endpoint only uses the message during onMessage, and the payload is in one buffer, then hand out a view of
+        // the payload, which has already been unmasked in place. The read buffer is released once the message is processed.
+        if ((!controlFrame) && binaryBufferView && (buffers.length == 1)) {
+            return buffers[0].getWrappedByteBuffer().slice();
+        }
+
         // allocate a buffer not from the pool, so it is exactly the right capacity
         result = ByteBuffer.allocate(size);
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013 IBM Corporation and others.
+ * Copyright (c) 2013, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -59,6 +59,8 @@ public class LinkWrite {
     private final SendResult SendResultGood = new SendResult();
     private EndpointConfig endpointConfig = null;
     private boolean shouldMaskData = false;
+    private PerMessageDeflate perMessageDeflate = null;
+    private volatile boolean fragmentInProgress = false;
 
     private WsocConnLink connLink = null;
 
@@ -70,6 +72,13 @@ public class LinkWrite {
 
     }
 
+    public void setPerMessageDeflate(PerMessageDeflate pmd) {
+        perMessageDeflate = pmd;
+        if (messageWriter != null) {
+            messageWriter.setPerMessageDeflate(pmd);
+        }
+    }
+
     public void frameCleanup() {
         messageWriter.frameCleanup();
     }
@@ -159,12 +168,34 @@ public class LinkWrite {
 
     }
 
+    /**
+     * @return true if the application has sent the first part of a message, but not the last part yet
+     */
+    public boolean isFragmentInProgress() {
+        return fragmentInProgress;
+    }
+
+    /**
+     * Write frames that have already been formatted, such as broadcast frames, asynchronously.
+     */
+    public void writeFrames(@Sensitive WsByteBuffer[] frames) {
+        if (messageWriter == null) {
+            WsocWriteCallback writeCallback = connLink.getWriteCallback();
+            messageWriter = new MessageWriter();
+            messageWriter.initialize(tcpWriteContext, writeCallback, shouldMaskData);
+            messageWriter.setPerMessageDeflate(perMessageDeflate);
+        }
+
+        messageWriter.WriteFrames(frames, TCPWriteRequestContext.NO_TIMEOUT);
+    }
+
     @FFDCIgnore(IOException.class)
     public void writeBuffer(@Sensitive WsByteBuffer buffer, OpcodeType ot, WRITE_TYPE writeType, SendHandler handler, int timeout) throws IOException {
         if (messageWriter == null) {
             WsocWriteCallback writeCallback = connLink.getWriteCallback();
             messageWriter = new MessageWriter();
             messageWriter.initialize(tcpWriteContext, writeCallback, shouldMaskData);
+            messageWriter.setPerMessageDeflate(perMessageDeflate);
         }
 
         try {
@@ -173,6 +204,12 @@ public class LinkWrite {
                 wsocSendOutstanding = true;
             }
 
+            if ((ot == OpcodeType.TEXT_PARTIAL_FIRST) || (ot == OpcodeType.BINARY_PARTIAL_FIRST)) {
+                fragmentInProgress = true;
+            } else if ((ot == OpcodeType.TEXT_PARTIAL_LAST) || (ot == OpcodeType.BINARY_PARTIAL_LAST)) {
+                fragmentInProgress = false;
+            }
+
             messageWriter.WriteMessage(buffer, ot, timeout, writeType);
 
         } catch (IOException x) {
@@ -209,6 +246,7 @@ public class LinkWrite {
             WsocWriteCallback writeCallback = connLink.getWriteCallback();
             messageWriter = new MessageWriter();
             messageWriter.initialize(this.tcpWriteContext, writeCallback, shouldMaskData);
+            messageWriter.setPerMessageDeflate(perMessageDeflate);
         }
 
         if (writeType == WRITE_TYPE.ASYNC) {
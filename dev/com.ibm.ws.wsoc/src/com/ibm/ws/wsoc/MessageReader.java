@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017 IBM Corporation and others.
+ * Copyright (c) 2017, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,8 @@ package com.ibm.ws.wsoc;
 import java.io.InputStream;
 import java.io.Reader;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
 
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
@@ -29,6 +31,8 @@ public class MessageReader {
     private static final int BUFFER_ARRAY_INITIAL_SIZE = 10;
     /** starting minimum growth size of the pending buffer array */
     private static final int BUFFER_ARRAY_GROWTH_SIZE = 10;
+    /** size of the buffers that a compressed payload is inflated into */
+    private static final int INFLATE_BUFFER_SIZE = 8192;
 
     boolean shouldReadMaskedData = true;
 
@@ -67,6 +71,15 @@ public class MessageReader {
     WsocReadCallback callback = null;
     WsocConnLink connLink = null;
 
+    // permessage-deflate state. Inflated buffers are owned by this reader, not by the frame processors,
+    // and hold the payload of the frames in fpList up to inflatedFrameCount.
+    PerMessageDeflate perMessageDeflate = null;
+    boolean messageCompressed = false;
+    WsByteBuffer[] inflatedBuffers = null;
+    int inflatedCountOfBuffers = 0;
+    int inflatedPayloadSize = 0;
+    int inflatedFrameCount = 0;
+
     public MessageReader() {}
 
     public void initialize(WsocReadCallback _cb, WsocConnLink _link, boolean _shouldReadMaskedData) {
@@ -76,6 +89,15 @@ public class MessageReader {
         frameProcessor.initialize(shouldReadMaskedData);
     }
 
+    public void setPerMessageDeflate(PerMessageDeflate pmd) {
+        perMessageDeflate = pmd;
+        frameProcessor.initialize(shouldReadMaskedData, getAllowedRsv());
+    }
+
+    private byte getAllowedRsv() {
+        return (perMessageDeflate != null) ? FrameReadProcessor.RSV1 : 0;
+    }
+
     public void resetControlFrameParameters(boolean releaseBuffers) {
         payloadCountOfBuffers_Control = 0;
         messageCompletePayloadSize_Control = 0;
@@ -103,6 +125,8 @@ public class MessageReader {
         firstFrameOpcodeType = null;
         payloadCountOfBuffers = 0;
         messageCompletePayloadSize = 0;
+        messageCompressed = false;
+        releaseInflatedBuffers();
 
         if (countOfIOFrames > 0) {
             for (int i = 0; i < countOfIOFrames; i++) {
@@ -148,7 +172,7 @@ public class MessageReader {
                 Tr.debug(tc, "creating a new FrameReadProcessor");
             }
             frameProcessor = new FrameReadProcessor();
-            frameProcessor.initialize(shouldReadMaskedData);
+            frameProcessor.initialize(shouldReadMaskedData, getAllowedRsv());
             needNewFrameProcessor = false;
         }
 
@@ -271,11 +295,32 @@ public class MessageReader {
         countOfIOFrames = 0;
         payloadCountOfBuffers = 0;
         messageCompletePayloadSize = 0;
+        releaseInflatedBuffers();
+    }
+
+    private void releaseInflatedBuffers() {
+        if (inflatedBuffers != null) {
+            for (int i = 0; i < inflatedCountOfBuffers; i++) {
+                inflatedBuffers[i].release();
+            }
+            if (payloadBuffers == inflatedBuffers) {
+                payloadBuffers = null;
+            }
+            inflatedBuffers = null;
+        }
+        inflatedCountOfBuffers = 0;
+        inflatedPayloadSize = 0;
+        inflatedFrameCount = 0;
     }
 
     // This is never called, except in an exception case.  frame buffers should be cleaned up when reset is called on the FrameReadProcessor 
     public void releaseBuffers() {
         // release buffers is desired
+        if (messageCompressed) {
+            // the payload was inflated from the frame buffers, so both need to be released
+            releaseInflatedBuffers();
+            payloadBuffers = null;
+        }
         if (payloadBuffers != null) {
             if (tc.isDebugEnabled()) {
                 Tr.debug(tc, "release payload buffers.  number to release is: " + payloadCountOfBuffers);
@@ -350,7 +395,12 @@ public class MessageReader {
         }
     }
 
-    private void gatherUpAllFramesAndPayload() {
+    private void gatherUpAllFramesAndPayload() throws FrameFormatException, MaxMessageException {
+
+        if (messageCompressed) {
+            inflateAllFramesAndPayload();
+            return;
+        }
 
         int countOfBuffers = 0;
 
@@ -385,6 +435,99 @@ public class MessageReader {
         }
     }
 
+    /**
+     * Inflate the payload of the frames that have not been inflated yet, and make the inflated
+     * buffers the payload of the message. Once the last frame is inflated, the end of the flush
+     * that the sender left off is inflated as well.
+     */
+    private void inflateAllFramesAndPayload() throws FrameFormatException, MaxMessageException {
+
+        try {
+            for (int i = inflatedFrameCount; i < countOfIOFrames; i++) {
+                int size = fpList[i].getFrameBufferListSize();
+                for (int j = 0; j < size; j++) {
+                    WsByteBuffer buf = fpList[i].getBufferAtIndex(j);
+                    int length = buf.limit() - buf.position();
+                    if (length > 0) {
+                        if (buf.hasArray()) {
+                            perMessageDeflate.decompressInput(buf.array(), buf.arrayOffset() + buf.position(), length);
+                        } else {
+                            byte[] ba = new byte[length];
+                            buf.getWrappedByteBuffer().duplicate().get(ba);
+                            perMessageDeflate.decompressInput(ba, 0, length);
+                        }
+                        inflateInput();
+                    }
+                }
+            }
+            inflatedFrameCount = countOfIOFrames;
+
+            if ((frameSequenceState == FSeqState.FIRST_AND_LAST) || (frameSequenceState == FSeqState.LAST_OF_MULTIPLE)) {
+                perMessageDeflate.decompressTail();
+                inflateInput();
+                perMessageDeflate.messageDecompressed();
+            }
+        } catch (DataFormatException dfe) {
+            if (tc.isDebugEnabled()) {
+                Tr.debug(tc, "Exception inflating compressed message: " + dfe.getMessage());
+            }
+            FrameFormatException ffe = new FrameFormatException("Compressed message could not be inflated.");
+            throw ffe;
+        }
+
+        if (inflatedBuffers == null) {
+            inflatedBuffers = new WsByteBuffer[0];
+        } else if (inflatedBuffers.length != inflatedCountOfBuffers) {
+            inflatedBuffers = Arrays.copyOf(inflatedBuffers, inflatedCountOfBuffers);
+        }
+        payloadBuffers = inflatedBuffers;
+        payloadCountOfBuffers = inflatedCountOfBuffers;
+        messageCompletePayloadSize = inflatedPayloadSize;
+
+        if (tc.isDebugEnabled()) {
+            Tr.debug(tc, "inflated payload size: " + inflatedPayloadSize + " buffers: " + inflatedCountOfBuffers);
+        }
+    }
+
+    private void inflateInput() throws DataFormatException, MaxMessageException {
+        while (!perMessageDeflate.decompressNeedsInput()) {
+            WsByteBuffer out = null;
+            if (inflatedCountOfBuffers > 0) {
+                out = inflatedBuffers[inflatedCountOfBuffers - 1];
+                // the last buffer was flipped for reading, so set it back to append to it
+                if (out.limit() < out.capacity()) {
+                    out.position(out.limit());
+                    out.limit(out.capacity());
+                } else {
+                    out = null;
+                }
+            }
+            if (out == null) {
+                out = getBufferManager().allocate(INFLATE_BUFFER_SIZE);
+                if (inflatedBuffers == null) {
+                    inflatedBuffers = new WsByteBuffer[BUFFER_ARRAY_INITIAL_SIZE];
+                } else if (inflatedCountOfBuffers >= inflatedBuffers.length) {
+                    WsByteBuffer[] temp = new WsByteBuffer[inflatedBuffers.length + BUFFER_ARRAY_GROWTH_SIZE];
+                    System.arraycopy(inflatedBuffers, 0, temp, 0, inflatedBuffers.length);
+                    inflatedBuffers = temp;
+                }
+                inflatedBuffers[inflatedCountOfBuffers] = out;
+                inflatedCountOfBuffers++;
+            }
+
+            int count = perMessageDeflate.decompress(out);
+            out.flip();
+            inflatedPayloadSize += count;
+
+            // the size limits apply to the inflated message
+            processMaxMessageSize(inflatedPayloadSize);
+
+            if (count == 0) {
+                break;
+            }
+        }
+    }
+
     private void verifyAndSetFrameVariables(FrameReadProcessor fp) throws FrameFormatException {
 
         boolean embeddedControlFrame = false;
@@ -497,6 +640,15 @@ public class MessageReader {
                 throw ffe;
             }
 
+            // RSV1 is only allowed on the first frame of a message, where it marks the message as compressed
+            if (opcode == 0) {
+                if (fp.getRsv() != 0) {
+                    throw new FrameFormatException("Reserved frame must be 0.");
+                }
+            } else {
+                messageCompressed = ((fp.getRsv() & FrameReadProcessor.RSV1) != 0);
+            }
+
             // if this is the first frame, store the opcode type for later processing
             if (opcode == 0x01)
                 firstFrameOpcodeType = OpcodeType.TEXT_WHOLE;
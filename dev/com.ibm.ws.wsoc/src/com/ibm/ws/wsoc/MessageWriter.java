@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017 IBM Corporation and others.
+ * Copyright (c) 2017, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -26,6 +26,7 @@ public class MessageWriter {
     WsocWriteCallback callback = null;
     TCPWriteRequestContext tcpWriteContext = null;
     boolean shouldMaskData = false;
+    PerMessageDeflate perMessageDeflate = null;
 
     @Trivial
     public static enum WRITE_TYPE {
@@ -40,6 +41,10 @@ public class MessageWriter {
         shouldMaskData = _shouldMaskData;
     }
 
+    public void setPerMessageDeflate(PerMessageDeflate pmd) {
+        perMessageDeflate = pmd;
+    }
+
     public void WriteMessage(@Sensitive WsByteBuffer buffer, OpcodeType opcode, int timeout, WRITE_TYPE type) throws IOException {
 
         WsByteBuffer[] buffers = null;
@@ -62,7 +67,7 @@ public class MessageWriter {
             frameWriteProcessor = new FrameWriteProcessor();
         }
 
-        messageBuffers = frameWriteProcessor.formatForFrameMessage(buffers, opcode, shouldMaskData);
+        messageBuffers = frameWriteProcessor.formatForFrameMessage(buffers, opcode, shouldMaskData, perMessageDeflate);
 
         tcpWriteContext.setBuffers(messageBuffers);
 
@@ -85,8 +90,17 @@ public class MessageWriter {
         }
     }
 
+    public void WriteFrames(@Sensitive WsByteBuffer[] frames, int timeout) {
+        // the frames are already formatted, so write them as they are
+        messageBuffers = frames;
+        tcpWriteContext.setBuffers(messageBuffers);
+        WriteMessageASync(timeout);
+    }
+
     public void frameCleanup() {
-        frameWriteProcessor.cleanup();
+        if (frameWriteProcessor != null) {
+            frameWriteProcessor.cleanup();
+        }
     }
 
     public void cancelMessageAsync() throws IOException {
@@ -0,0 +1,441 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.wsoc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.websocket.Extension;
+import javax.websocket.Extension.Parameter;
+
+import com.ibm.websphere.ras.Tr;
+import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.websphere.ras.annotation.Sensitive;
+import com.ibm.ws.wsoc.external.ExtensionExt;
+import com.ibm.ws.wsoc.external.ParameterExt;
+import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.bytebuffer.WsByteBufferPoolManager;
+
+/**
+ * The permessage-deflate extension (RFC 7692) of one connection.
+ *
+ * Deflater and Inflater instances hold a large amount of native memory, so they
+ * are kept in pools that are shared by all connections. When the peers agreed to
+ * "no context takeover" for a direction, the instance for that direction is only
+ * borrowed from the pool for the length of one message. Otherwise it keeps the
+ * compression context from one message to the next, and is only returned to the
+ * pool when the connection is destroyed.
+ */
+public class PerMessageDeflate {
+
+    private static final TraceComponent tc = Tr.register(PerMessageDeflate.class);
+
+    public static final String EXTENSION_NAME = "permessage-deflate";
+    public static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    public static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+    public static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+    public static final String CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+
+    /** the window size of java.util.zip, which can not be made smaller */
+    private static final int MAX_WINDOW_BITS = 15;
+    private static final int MIN_WINDOW_BITS = 8;
+
+    /** the empty stored block that ends a sync flush, which is left off the end of a compressed message */
+    private static final byte[] TAIL = { 0x00, 0x00, (byte) 0xFF, (byte) 0xFF };
+
+    /** messages smaller than this are not worth compressing */
+    private static final int COMPRESSION_THRESHOLD = 64;
+    /** the most instances of each type kept in the pools */
+    private static final int POOL_SIZE = 64;
+
+    private static final Queue<Deflater> deflaterPool = new ConcurrentLinkedQueue<Deflater>();
+    private static final Queue<Inflater> inflaterPool = new ConcurrentLinkedQueue<Inflater>();
+    private static final AtomicInteger deflaterPoolCount = new AtomicInteger();
+    private static final AtomicInteger inflaterPoolCount = new AtomicInteger();
+
+    private final boolean compressEnabled;
+    private final boolean compressContextTakeover;
+    private final boolean decompressContextTakeover;
+
+    private Deflater deflater = null;
+    private Inflater inflater = null;
+    private boolean released = false;
+
+    private final Object deflateSync = new Object() {};
+    private final Object inflateSync = new Object() {};
+
+    /**
+     * @param compressEnabled false if outgoing messages can not be compressed with the agreed parameters
+     * @param compressNoContextTakeover true if each outgoing message is compressed with a new context
+     * @param decompressNoContextTakeover true if each incoming message was compressed with a new context
+     */
+    public PerMessageDeflate(boolean compressEnabled, boolean compressNoContextTakeover, boolean decompressNoContextTakeover) {
+        this.compressEnabled = compressEnabled;
+        this.compressContextTakeover = !compressNoContextTakeover;
+        this.decompressContextTakeover = !decompressNoContextTakeover;
+    }
+
+    /**
+     * Create the extension of a connection, if permessage-deflate is one of the
+     * extensions agreed on in the handshake.
+     *
+     * @param negotiated the agreed extensions
+     * @param clientSide true for the client end of the connection
+     * @return the extension, or null if permessage-deflate was not agreed on
+     */
+    public static PerMessageDeflate create(List<Extension> negotiated, boolean clientSide) {
+        if (negotiated == null) {
+            return null;
+        }
+
+        for (Extension ext : negotiated) {
+            if (EXTENSION_NAME.equalsIgnoreCase(ext.getName().trim())) {
+                boolean serverNoContextTakeover = false;
+                boolean clientNoContextTakeover = false;
+                boolean compressEnabled = true;
+                List<Parameter> params = ext.getParameters();
+                if (params != null) {
+                    for (Parameter p : params) {
+                        String name = p.getName().trim();
+                        if (SERVER_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(name)) {
+                            serverNoContextTakeover = true;
+                        } else if (CLIENT_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(name)) {
+                            clientNoContextTakeover = true;
+                        } else if (clientSide && CLIENT_MAX_WINDOW_BITS.equalsIgnoreCase(name) && windowBits(p.getValue()) != MAX_WINDOW_BITS) {
+                            // the server asked for a smaller window than the client can compress with, so send uncompressed messages
+                            compressEnabled = false;
+                        }
+                    }
+                }
+
+                if (tc.isDebugEnabled()) {
+                    Tr.debug(tc, "permessage-deflate agreed: clientSide: " + clientSide + " server_no_context_takeover: " + serverNoContextTakeover
+                                 + " client_no_context_takeover: " + clientNoContextTakeover + " compressEnabled: " + compressEnabled);
+                }
+
+                if (clientSide) {
+                    return new PerMessageDeflate(compressEnabled, clientNoContextTakeover, serverNoContextTakeover);
+                }
+                return new PerMessageDeflate(compressEnabled, serverNoContextTakeover, clientNoContextTakeover);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Pick the first permessage-deflate offer of the client that the server can
+     * accept, and build the response to it.
+     *
+     * @param offers the extensions offered by the client
+     * @param configured the permessage-deflate extension configured on the server endpoint, whose
+     *            context takeover parameters are added to the response
+     * @return the extension to respond with, or null if none of the offers can be accepted
+     */
+    public static Extension negotiate(List<Extension> offers, Extension configured) {
+        boolean configuredServerNoContextTakeover = hasParameter(configured, SERVER_NO_CONTEXT_TAKEOVER);
+        boolean configuredClientNoContextTakeover = hasParameter(configured, CLIENT_NO_CONTEXT_TAKEOVER);
+
+        for (Extension offer : offers) {
+            if (!EXTENSION_NAME.equalsIgnoreCase(offer.getName().trim())) {
+                continue;
+            }
+
+            boolean acceptable = true;
+            boolean serverNoContextTakeover = configuredServerNoContextTakeover;
+            boolean clientNoContextTakeover = configuredClientNoContextTakeover;
+            List<Parameter> params = offer.getParameters();
+            if (params != null) {
+                for (Parameter p : params) {
+                    String name = p.getName().trim();
+                    if (SERVER_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(name)) {
+                        serverNoContextTakeover = true;
+                    } else if (CLIENT_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(name)) {
+                        clientNoContextTakeover = true;
+                    } else if (SERVER_MAX_WINDOW_BITS.equalsIgnoreCase(name)) {
+                        // the server can not compress with a window smaller than the java.util.zip default
+                        acceptable = windowBits(p.getValue()) == MAX_WINDOW_BITS;
+                    } else if (CLIENT_MAX_WINDOW_BITS.equalsIgnoreCase(name)) {
+                        // the client may use any window, since the server inflates with the largest one
+                        String value = p.getValue();
+                        acceptable = (value == null) || (value.trim().length() == 0) || (windowBits(value) >= MIN_WINDOW_BITS);
+                    } else {
+                        acceptable = false;
+                    }
+                    if (!acceptable) {
+                        break;
+                    }
+                }
+            }
+
+            if (acceptable) {
+                List<Parameter> response = new ArrayList<Parameter>(2);
+                if (serverNoContextTakeover) {
+                    response.add(new ParameterExt(SERVER_NO_CONTEXT_TAKEOVER, ""));
+                }
+                if (clientNoContextTakeover) {
+                    response.add(new ParameterExt(CLIENT_NO_CONTEXT_TAKEOVER, ""));
+                }
+                return new ExtensionExt(EXTENSION_NAME, response);
+            }
+
+            if (tc.isDebugEnabled()) {
+                Tr.debug(tc, "declining permessage-deflate offer with parameters: " + params);
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasParameter(Extension ext, String name) {
+        if ((ext != null) && (ext.getParameters() != null)) {
+            for (Parameter p : ext.getParameters()) {
+                if (name.equalsIgnoreCase(p.getName().trim())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the window bits of a parameter value, or -1 if it is not valid
+     */
+    private static int windowBits(String value) {
+        if (value == null) {
+            return -1;
+        }
+        String s = value.trim();
+        if ((s.length() > 1) && (s.charAt(0) == '"') && (s.charAt(s.length() - 1) == '"')) {
+            s = s.substring(1, s.length() - 1);
+        }
+        try {
+            int bits = Integer.parseInt(s);
+            return ((bits >= MIN_WINDOW_BITS) && (bits <= MAX_WINDOW_BITS)) ? bits : -1;
+        } catch (NumberFormatException x) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return true if an outgoing message of this size should be compressed
+     */
+    public boolean shouldCompress(long payloadSize) {
+        return compressEnabled && (payloadSize >= COMPRESSION_THRESHOLD);
+    }
+
+    /**
+     * Compress the payload of a whole message. The input buffers are read from
+     * their position to their limit, and are not changed.
+     *
+     * @return a buffer from the pool holding the compressed payload, which the caller has to release
+     */
+    @Sensitive
+    public WsByteBuffer compress(@Sensitive WsByteBuffer[] buffers, WsByteBufferPoolManager mgr) {
+        int inputSize = 0;
+        for (WsByteBuffer buf : buffers) {
+            inputSize += buf.remaining();
+        }
+
+        byte[] out = new byte[inputSize / 2 + 64];
+        int outCount = 0;
+
+        synchronized (deflateSync) {
+            Deflater d = deflater;
+            if (d == null) {
+                d = getDeflater();
+            }
+
+            try {
+                for (WsByteBuffer buf : buffers) {
+                    int length = buf.remaining();
+                    if (length == 0) {
+                        continue;
+                    }
+                    if (buf.hasArray()) {
+                        d.setInput(buf.array(), buf.arrayOffset() + buf.position(), length);
+                    } else {
+                        byte[] in = new byte[length];
+                        buf.getWrappedByteBuffer().duplicate().get(in);
+                        d.setInput(in);
+                    }
+                    while (!d.needsInput()) {
+                        if (outCount == out.length) {
+                            out = grow(out);
+                        }
+                        outCount += d.deflate(out, outCount, out.length - outCount, Deflater.NO_FLUSH);
+                    }
+                }
+
+                // flush until the deflater has room left over, which means all the output is out
+                do {
+                    if (outCount == out.length) {
+                        out = grow(out);
+                    }
+                    outCount += d.deflate(out, outCount, out.length - outCount, Deflater.SYNC_FLUSH);
+                } while (outCount == out.length);
+
+            } finally {
+                if (compressContextTakeover && !released) {
+                    deflater = d;
+                } else {
+                    returnDeflater(d);
+                }
+            }
+        }
+
+        // the flush ends with an empty stored block, which the receiver adds back on
+        if ((outCount >= TAIL.length) && (out[outCount - 4] == TAIL[0]) && (out[outCount - 3] == TAIL[1])
+            && (out[outCount - 2] == TAIL[2]) && (out[outCount - 1] == TAIL[3])) {
+            outCount -= TAIL.length;
+        }
+
+        WsByteBuffer result = mgr.allocate(outCount);
+        result.put(out, 0, outCount);
+        result.flip();
+        return result;
+    }
+
+    private static byte[] grow(byte[] a) {
+        byte[] temp = new byte[a.length * 2];
+        System.arraycopy(a, 0, temp, 0, a.length);
+        return temp;
+    }
+
+    /**
+     * Pass the next part of the payload of an incoming message to the inflater. The
+     * array is read by the following calls to decompress, until decompressNeedsInput
+     * returns true.
+     */
+    public void decompressInput(@Sensitive byte[] input, int offset, int length) {
+        synchronized (inflateSync) {
+            if (inflater == null) {
+                inflater = getInflater();
+            }
+            inflater.setInput(input, offset, length);
+        }
+    }
+
+    /**
+     * Pass the end of the flush that the sender left off the message to the inflater,
+     * once all of the payload of the message has been passed in.
+     */
+    public void decompressTail() {
+        decompressInput(TAIL, 0, TAIL.length);
+    }
+
+    /**
+     * Inflate into a buffer, from its position up to its limit.
+     *
+     * @return the number of bytes inflated into the buffer
+     * @throws DataFormatException if the payload is not valid deflate data
+     */
+    public int decompress(@Sensitive WsByteBuffer out) throws DataFormatException {
+        synchronized (inflateSync) {
+            if ((inflater == null) || inflater.needsInput()) {
+                return 0;
+            }
+
+            int count;
+            if (out.hasArray()) {
+                count = inflater.inflate(out.array(), out.arrayOffset() + out.position(), out.remaining());
+                out.position(out.position() + count);
+            } else {
+                byte[] temp = new byte[out.remaining()];
+                count = inflater.inflate(temp);
+                out.put(temp, 0, count);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * @return true if all the input passed to the inflater has been inflated
+     */
+    public boolean decompressNeedsInput() {
+        synchronized (inflateSync) {
+            return (inflater == null) || inflater.needsInput();
+        }
+    }
+
+    /**
+     * Called once the whole of an incoming message has been inflated.
+     */
+    public void messageDecompressed() {
+        synchronized (inflateSync) {
+            if ((inflater != null) && (!decompressContextTakeover || released)) {
+                returnInflater(inflater);
+                inflater = null;
+            }
+        }
+    }
+
+    /**
+     * Return the instances held by this connection to the pools.
+     */
+    public void release() {
+        synchronized (deflateSync) {
+            released = true;
+            if (deflater != null) {
+                returnDeflater(deflater);
+                deflater = null;
+            }
+        }
+        synchronized (inflateSync) {
+            if (inflater != null) {
+                returnInflater(inflater);
+                inflater = null;
+            }
+        }
+    }
+
+    private static Deflater getDeflater() {
+        Deflater d = deflaterPool.poll();
+        if (d == null) {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+        deflaterPoolCount.decrementAndGet();
+        return d;
+    }
+
+    private static void returnDeflater(Deflater d) {
+        if (deflaterPoolCount.incrementAndGet() <= POOL_SIZE) {
+            d.reset();
+            deflaterPool.add(d);
+        } else {
+            deflaterPoolCount.decrementAndGet();
+            d.end();
+        }
+    }
+
+    private static Inflater getInflater() {
+        Inflater i = inflaterPool.poll();
+        if (i == null) {
+            return new Inflater(true);
+        }
+        inflaterPoolCount.decrementAndGet();
+        return i;
+    }
+
+    private static void returnInflater(Inflater i) {
+        if (inflaterPoolCount.incrementAndGet() <= POOL_SIZE) {
+            i.reset();
+            inflaterPool.add(i);
+        } else {
+            inflaterPoolCount.decrementAndGet();
+            i.end();
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017 IBM Corporation and others.
+ * Copyright (c) 2017, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -35,6 +35,7 @@ import javax.websocket.server.ServerEndpointConfig;
 
 import com.ibm.websphere.ras.Tr;
 import com.ibm.websphere.ras.TraceComponent;
+import com.ibm.websphere.ras.annotation.Sensitive;
 import com.ibm.ws.runtime.metadata.ComponentMetaData;
 import com.ibm.ws.threadContext.ComponentMetaDataAccessorImpl;
 import com.ibm.ws.transport.access.TransportConnectionAccess;
@@ -389,6 +390,15 @@ public class SessionImpl {
         return epm.getOpenSessions(endpoint);
     }
 
+    /**
+     * Queue a frame that is being broadcast to many sessions.
+     *
+     * @return false if the frame was not queued, because the session is not open or is too far behind
+     */
+    public boolean broadcast(@Sensitive byte[] frame) {
+        return connLink.broadcast(frame);
+    }
+
     public boolean isOpen() {
         if (connLink.getLinkStatus() == LINK_STATUS.IO_OK) {
             return true;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017 IBM Corporation and others.
+ * Copyright (c) 2017, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@ package com.ibm.ws.wsoc;
 
 import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
 import java.util.Set;
 
 import javax.servlet.http.HttpSession;
@@ -64,7 +65,7 @@ public class WsocConnLink {
 
     @Trivial
     public static enum WRITE_LINK_STATUS {
-        OK_TO_WRITE, WRITING, WRITING_PONG, WRITE_NOT_OK
+        OK_TO_WRITE, WRITING, WRITING_PONG, WRITING_BROADCAST, WRITE_NOT_OK
     };
 
     @Trivial
@@ -94,6 +95,8 @@ public class WsocConnLink {
     public Object linkSync = new Object() {};
     public boolean readNotifyTriggered = false;
     public boolean writeNotifyTriggered = false;
+    // writers waiting in okToWrite, which get the write link ahead of broadcast frames
+    private int writersWaiting = 0;
 
     private Endpoint appEndPoint = null;
     private SessionExt wsocSession = null;
@@ -110,6 +113,8 @@ public class WsocConnLink {
 
     private EndpointManager endpointManager = null;
     private ParametersOfInterest things = null;
+    private PerMessageDeflate perMessageDeflate = null;
+    private boolean clientSide = false;
 
     boolean readWrite = false;
 
@@ -126,6 +131,15 @@ public class WsocConnLink {
 
     private static final int READ_BUFFER_SIZE = 8192;
 
+    /** the most broadcast frames waiting to be written to one connection, beyond which a slow client misses messages */
+    private static final int MAX_BROADCAST_BACKLOG = 64;
+    /** the most broadcast frames written to one connection by one write */
+    private static final int MAX_BROADCAST_BATCH = 16;
+
+    private final Object broadcastSync = new Object() {};
+    private final ArrayDeque<byte[]> broadcastQueue = new ArrayDeque<byte[]>();
+    private WsByteBuffer[] broadcastBuffersToRelease = null;
+
     public WsocConnLink() {
 
     }
@@ -141,6 +155,7 @@ public class WsocConnLink {
         tcpConnection = access.getTCPConnectionContext();
         deviceConnLink = access.getDeviceConnLink();
         vConnection = access.getVirtualConnection();
+        this.clientSide = clientSide;
 
         TCPWriteRequestContext tcpWriteContext = tcpConnection.getWriteInterface();
         tcpReadContext = tcpConnection.getReadInterface();
@@ -162,6 +177,15 @@ public class WsocConnLink {
 
     public void setParametersOfInterest(ParametersOfInterest value) {
         things = value;
+
+        // permessage-deflate is the one extension that is built in
+        if (value != null) {
+            perMessageDeflate = PerMessageDeflate.create(value.getNegotiatedExtensions(), clientSide);
+            if (perMessageDeflate != null) {
+                linkRead.setPerMessageDeflate(perMessageDeflate);
+                linkWrite.setPerMessageDeflate(perMessageDeflate);
+            }
+        }
     }
 
     public ParametersOfInterest getParametersOfInterest() {
@@ -281,7 +305,8 @@ public class WsocConnLink {
                     }
                 }
 
-                if ((okToWait) || (writeLinkStatus == WRITE_LINK_STATUS.WRITING_PONG)) {
+                if ((okToWait) || (writeLinkStatus == WRITE_LINK_STATUS.WRITING_PONG) || (writeLinkStatus == WRITE_LINK_STATUS.WRITING_BROADCAST)) {
+                    writersWaiting++;
                     try {
                         if (tc.isDebugEnabled()) {
                             Tr.debug(tc, "writeSync.wait()");
@@ -319,6 +344,8 @@ public class WsocConnLink {
                         if (calledFromClose) {
                             return RETURN_STATUS.OK;
                         }
+                    } finally {
+                        writersWaiting--;
                     }
 
                 } else {
@@ -351,7 +378,8 @@ public class WsocConnLink {
                     Tr.debug(tc, "linkStatus: " + linkStatus + "  writeLinkStatus: " + writeLinkStatus);
                 }
 
-                if ((writeLinkStatus != WRITE_LINK_STATUS.WRITING) && (writeLinkStatus != WRITE_LINK_STATUS.WRITING_PONG)) {
+                if ((writeLinkStatus != WRITE_LINK_STATUS.WRITING) && (writeLinkStatus != WRITE_LINK_STATUS.WRITING_PONG)
+                    && (writeLinkStatus != WRITE_LINK_STATUS.WRITING_BROADCAST)) {
                     return;
                 }
 
@@ -503,6 +531,15 @@ public class WsocConnLink {
     }
 
     public void signalNotWriting() {
+        releaseWriteLink();
+
+        // give the write link to broadcast messages that were waiting for it
+        if (hasBroadcastPending()) {
+            writeBroadcastFrames();
+        }
+    }
+
+    private void releaseWriteLink() {
         synchronized (linkSync) {
             if (tc.isDebugEnabled()) {
                 Tr.debug(tc, "signalNotWriting WsocConnLink: " + this.hashCode());
@@ -584,6 +621,17 @@ public class WsocConnLink {
         }
     }
 
+    /**
+     * Query the number of writers that are waiting for the write link.
+     *
+     * @return int
+     */
+    int getWritersWaiting() {
+        synchronized (linkSync) {
+            return writersWaiting;
+        }
+    }
+
     public LINK_STATUS getLinkStatus() {
         synchronized (linkSync) {
             return linkStatus;
@@ -933,6 +981,10 @@ public class WsocConnLink {
 
         this.linkRead.destroy(e);
         this.linkWrite.destroy(e);
+
+        if (perMessageDeflate != null) {
+            perMessageDeflate.release();
+        }
     }
 
     public WsByteBufferPoolManager getBufferManager() {
@@ -1156,6 +1208,7 @@ public class WsocConnLink {
             writeBufferToRelease.release();
             writeBufferToRelease = null;
         }
+        releaseBroadcastBuffers();
         signalNotWriting();
 
         linkWrite.processWrite(wsc);
@@ -1171,11 +1224,124 @@ public class WsocConnLink {
             writeBufferToRelease.release();
             writeBufferToRelease = null;
         }
+        releaseBroadcastBuffers();
+        clearBroadcastQueue();
         signalNotWriting();
 
         linkWrite.processError(wsc, ioe);
     }
 
+    /**
+     * Queue a broadcast frame to be written to this connection. The frame is shared by all the connections
+     * it is broadcast to, so it is never changed. It is written once the write link is idle, after the write
+     * of the application that is in progress and any that are waiting for the link. The broadcasting thread
+     * never waits for the link, so a slow client can not hold it up. An application write that comes along
+     * while broadcast frames are being written waits for them, as it does for a pong.
+     *
+     * @param frame a whole, unmasked frame
+     * @return false if the connection is not open, or the client is too far behind to take more messages
+     */
+    public boolean broadcast(@Sensitive byte[] frame) {
+        if (clientSide || (getLinkStatus() != LINK_STATUS.IO_OK)) {
+            return false;
+        }
+
+        synchronized (broadcastSync) {
+            if (broadcastQueue.size() >= MAX_BROADCAST_BACKLOG) {
+                if (tc.isDebugEnabled()) {
+                    Tr.debug(tc, "broadcast backlog full, dropping message for WsocConnLink: " + this.hashCode());
+                }
+                return false;
+            }
+            broadcastQueue.add(frame);
+        }
+
+        writeBroadcastFrames();
+        return true;
+    }
+
+    private boolean hasBroadcastPending() {
+        synchronized (broadcastSync) {
+            return !broadcastQueue.isEmpty();
+        }
+    }
+
+    private void clearBroadcastQueue() {
+        synchronized (broadcastSync) {
+            broadcastQueue.clear();
+        }
+    }
+
+    private void releaseBroadcastBuffers() {
+        WsByteBuffer[] buffers = broadcastBuffersToRelease;
+        broadcastBuffersToRelease = null;
+        if (buffers != null) {
+            for (WsByteBuffer buf : buffers) {
+                buf.release();
+            }
+        }
+    }
+
+    /**
+     * Take the write link for broadcast frames, if it is idle and no other writer is waiting for it.
+     */
+    private RETURN_STATUS okToWriteBroadcast() {
+        synchronized (linkSync) {
+            if ((linkStatus == LINK_STATUS.IO_NOT_OK) || (linkStatus == LINK_STATUS.LOCAL_CLOSING)) {
+                return RETURN_STATUS.IO_NOT_OK;
+            }
+            if ((linkStatus == LINK_STATUS.IO_OK) && (writeLinkStatus == WRITE_LINK_STATUS.OK_TO_WRITE) && (writersWaiting == 0)) {
+                writeLinkStatus = WRITE_LINK_STATUS.WRITING_BROADCAST;
+                return RETURN_STATUS.OK;
+            }
+            return RETURN_STATUS.WRITE_IN_PROGRESS;
+        }
+    }
+
+    /**
+     * Write the queued broadcast frames, in one write, if the write link is idle. Otherwise the writer that has
+     * the link, or gets it next, will call back in here once it is done.
+     */
+    private void writeBroadcastFrames() {
+        while (true) {
+            RETURN_STATUS status = okToWriteBroadcast();
+            if (status != RETURN_STATUS.OK) {
+                if (status == RETURN_STATUS.IO_NOT_OK) {
+                    clearBroadcastQueue();
+                }
+                return;
+            }
+
+            // frames can not be written in the middle of a message that the application is sending in parts
+            WsByteBuffer[] buffers = null;
+            if (!linkWrite.isFragmentInProgress()) {
+                synchronized (broadcastSync) {
+                    int count = Math.min(broadcastQueue.size(), MAX_BROADCAST_BATCH);
+                    if (count > 0) {
+                        buffers = new WsByteBuffer[count];
+                        for (int i = 0; i < count; i++) {
+                            buffers[i] = getBufferManager().wrap(broadcastQueue.poll());
+                        }
+                    }
+                }
+            }
+
+            if (buffers != null) {
+                broadcastBuffersToRelease = buffers;
+                writeBufferToRelease = null;
+                linkWrite.writeFrames(buffers);
+                return;
+            }
+
+            releaseWriteLink();
+
+            // a frame may have been queued after the check above, by a thread that could not get the link from us
+            if (linkWrite.isFragmentInProgress() || !hasBroadcastPending()) {
+                return;
+            }
+        }
+    }
+
     public Session getWsocSession() {
         return this.wsocSession;
     }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017 IBM Corporation and others.
+ * Copyright (c) 2017, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,8 +11,10 @@
 package com.ibm.ws.wsoc.external;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Map;
 
 import javax.servlet.ServletException;
@@ -21,6 +23,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.websocket.Decoder;
 import javax.websocket.DeploymentException;
 import javax.websocket.Encoder;
+import javax.websocket.Session;
 import javax.websocket.server.ServerEndpoint;
 import javax.websocket.server.ServerEndpointConfig;
 import javax.websocket.server.ServerEndpointConfig.Builder;
@@ -32,6 +35,10 @@ import com.ibm.ws.ffdc.annotation.FFDCIgnore;
 import com.ibm.ws.wsoc.AnnotatedEndpoint;
 import com.ibm.ws.wsoc.EndpointHelper;
 import com.ibm.ws.wsoc.EndpointManager;
+import com.ibm.ws.wsoc.FrameWriteProcessor;
+import com.ibm.ws.wsoc.OpcodeType;
+import com.ibm.ws.wsoc.SessionImpl;
+import com.ibm.ws.wsoc.util.Utils;
 
 public class ServerContainerExt extends WebSocketContainerExt implements WsWsocServerContainer {
 
@@ -302,4 +309,44 @@ public class ServerContainerExt extends WebSocketContainerExt implements WsWsocS
 
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.ibm.websphere.wsoc.WsWsocServerContainer#broadcast(java.util.Collection, java.lang.String)
+     */
+    @Override
+    public int broadcast(Collection<Session> sessions, String text) {
+        byte[] payload = text.getBytes(Utils.UTF8_CHARSET);
+        return broadcastFrame(sessions, FrameWriteProcessor.formatSharedFrame(payload, OpcodeType.TEXT_WHOLE));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.ibm.websphere.wsoc.WsWsocServerContainer#broadcast(java.util.Collection, java.nio.ByteBuffer)
+     */
+    @Override
+    public int broadcast(Collection<Session> sessions, ByteBuffer data) {
+        byte[] payload = new byte[data.remaining()];
+        data.duplicate().get(payload);
+        return broadcastFrame(sessions, FrameWriteProcessor.formatSharedFrame(payload, OpcodeType.BINARY_WHOLE));
+    }
+
+    private int broadcastFrame(Collection<Session> sessions, byte[] frame) {
+        int count = 0;
+        for (Session session : sessions) {
+            if (session instanceof SessionExt) {
+                SessionImpl impl = ((SessionExt) session).getSessionImpl();
+                if ((impl != null) && impl.broadcast(frame)) {
+                    count++;
+                }
+            }
+        }
+
+        if (tc.isDebugEnabled()) {
+            Tr.debug(tc, "broadcast frame of " + frame.length + " bytes queued to " + count + " of " + sessions.size() + " sessions");
+        }
+        return count;
+    }
+
 }
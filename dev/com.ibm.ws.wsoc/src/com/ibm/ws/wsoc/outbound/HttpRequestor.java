@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 IBM Corporation and others.
+ * Copyright (c) 2014, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -144,7 +144,10 @@ public class HttpRequestor {
                         if (li != null) {
                             if (li.size() > 0) {
                                 for (Parameter p : li) {
-                                    buf.append("; " + p.getName() + "=" + p.getValue());
+                                    buf.append("; " + p.getName());
+                                    if ((p.getValue() != null) && (p.getValue().length() > 0)) {
+                                        buf.append("=" + p.getValue());
+                                    }
                                 }
                             }
                         }
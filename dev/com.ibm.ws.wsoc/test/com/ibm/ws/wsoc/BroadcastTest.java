@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.wsoc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import test.common.SharedOutputManager;
+
+import com.ibm.ws.transport.access.TransportConnectionAccess;
+import com.ibm.ws.wsoc.external.ServerContainerExt;
+import com.ibm.ws.wsoc.external.SessionExt;
+import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.channelfw.VirtualConnection;
+import com.ibm.wsspi.tcpchannel.TCPConnectionContext;
+import com.ibm.wsspi.tcpchannel.TCPWriteCompletedCallback;
+import com.ibm.wsspi.tcpchannel.TCPWriteRequestContext;
+
+/**
+ * Test that broadcast frames and the writes of the application share the write link of a session.
+ */
+public class BroadcastTest {
+    static final SharedOutputManager outputMgr = SharedOutputManager.getInstance();
+    @Rule
+    public TestRule managerRule = outputMgr;
+
+    /**
+     * Write context that records the bytes of each write. Sync writes complete right away, async writes
+     * complete when the test calls completeAsyncWrite.
+     */
+    private static class RecordingWriteContext implements InvocationHandler {
+        final List<byte[]> writes = new ArrayList<byte[]>();
+        final TCPWriteRequestContext twc = (TCPWriteRequestContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                                                           new Class<?>[] { TCPWriteRequestContext.class }, this);
+        final VirtualConnection vc = (VirtualConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { VirtualConnection.class }, this);
+        WsByteBuffer[] current;
+        TCPWriteCompletedCallback pending;
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            if (m.getName().equals("setBuffer")) {
+                current = new WsByteBuffer[] { (WsByteBuffer) args[0] };
+            } else if (m.getName().equals("setBuffers")) {
+                current = (WsByteBuffer[]) args[0];
+            } else if (m.getName().equals("write")) {
+                synchronized (this) {
+                    writes.add(bytes(current));
+                    if (args.length == 4) {
+                        pending = (TCPWriteCompletedCallback) args[1];
+                        notifyAll();
+                        return null;
+                    }
+                    return 0L;
+                }
+            } else if (m.getName().equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (m.getName().equals("equals")) {
+                return proxy == args[0];
+            } else if (m.getName().equals("toString")) {
+                return "RecordingWriteContext";
+            }
+            return null;
+        }
+
+        synchronized int writeCount() {
+            return writes.size();
+        }
+
+        synchronized byte[] write(int i) {
+            return writes.get(i);
+        }
+
+        void completeAsyncWrite() throws InterruptedException {
+            TCPWriteCompletedCallback callback;
+            synchronized (this) {
+                long end = System.currentTimeMillis() + 10000;
+                while (pending == null && System.currentTimeMillis() < end) {
+                    wait(100);
+                }
+                callback = pending;
+                pending = null;
+            }
+            callback.complete(vc, twc);
+        }
+
+        private static byte[] bytes(WsByteBuffer[] buffers) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (WsByteBuffer b : buffers) {
+                if (b != null) {
+                    int position = b.position();
+                    byte[] data = new byte[b.remaining()];
+                    b.get(data);
+                    b.position(position);
+                    out.write(data, 0, data.length);
+                }
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static class ResultHandler implements SendHandler {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile SendResult result;
+
+        @Override
+        public void onResult(SendResult r) {
+            result = r;
+            done.countDown();
+        }
+    }
+
+    private static byte[] textFrame(String text) {
+        byte[] payload = text.getBytes();
+        byte[] frame = new byte[payload.length + 2];
+        frame[0] = (byte) 0x81;
+        frame[1] = (byte) payload.length;
+        System.arraycopy(payload, 0, frame, 2, payload.length);
+        return frame;
+    }
+
+    private static SessionExt openSession(ServerContainerExt container, RecordingWriteContext recorder) {
+        final TCPWriteRequestContext twc = recorder.twc;
+        InvocationHandler connection = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method m, Object[] args) {
+                if (m.getName().equals("getWriteInterface")) {
+                    return twc;
+                } else if (m.getName().equals("getTCPConnectionContext")) {
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { TCPConnectionContext.class }, this);
+                } else if (m.getName().equals("getUserProperties")) {
+                    return new HashMap<String, Object>();
+                } else if (m.getReturnType() == List.class) {
+                    return Collections.emptyList();
+                }
+                return null;
+            }
+        };
+        TransportConnectionAccess access = (TransportConnectionAccess) Proxy.newProxyInstance(BroadcastTest.class.getClassLoader(),
+                                                                                              new Class<?>[] { TransportConnectionAccess.class }, connection);
+        EndpointConfig epc = (EndpointConfig) Proxy.newProxyInstance(BroadcastTest.class.getClassLoader(), new Class<?>[] { EndpointConfig.class }, connection);
+        Endpoint endpoint = new Endpoint() {
+            @Override
+            public void onOpen(Session session, EndpointConfig config) {}
+        };
+
+        SessionExt session = new SessionExt();
+        SessionImpl impl = new SessionImpl();
+        impl.initialize(endpoint, epc, access, session, container);
+        session.initialize(impl);
+        // write completions run on the thread that completes the write
+        ParametersOfInterest things = new ParametersOfInterest();
+        things.setExecutor(null);
+        impl.setParametersOfInterest(things);
+        impl.connLink.setLinkStatusesToOK();
+        return session;
+    }
+
+    /**
+     * A send of the application that is made while broadcast frames are being written waits for them,
+     * rather than failing because another write is in progress.
+     */
+    @Test
+    public void testSendDuringBroadcast() throws Exception {
+        ServerContainerExt container = new ServerContainerExt();
+        RecordingWriteContext recorder = new RecordingWriteContext();
+        final SessionExt session = openSession(container, recorder);
+
+        assertEquals(1, container.broadcast(Collections.<Session> singleton(session), "news"));
+        assertEquals(1, recorder.writeCount());
+        assertArrayEquals(textFrame("news"), recorder.write(0));
+
+        final Throwable[] failure = new Throwable[1];
+        Thread sender = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    session.getBasicRemote().sendText("mine");
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        };
+        sender.start();
+
+        // the send waits for the broadcast write
+        WsocConnLink link = session.getSessionImpl().connLink;
+        long end = System.currentTimeMillis() + 10000;
+        while (link.getWritersWaiting() == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, link.getWritersWaiting());
+        assertEquals(1, recorder.writeCount());
+
+        recorder.completeAsyncWrite();
+        sender.join(10000);
+        assertFalse(sender.isAlive());
+        assertNull(failure[0]);
+        assertEquals(2, recorder.writeCount());
+        assertArrayEquals(textFrame("mine"), recorder.write(1));
+    }
+
+    /**
+     * A broadcast that is made while a send of the application is in progress is queued, and written
+     * once the send completes.
+     */
+    @Test
+    public void testBroadcastBehindSend() throws Exception {
+        ServerContainerExt container = new ServerContainerExt();
+        RecordingWriteContext recorder = new RecordingWriteContext();
+        SessionExt session = openSession(container, recorder);
+
+        ResultHandler handler = new ResultHandler();
+        session.getAsyncRemote().sendText("mine", handler);
+        assertEquals(1, recorder.writeCount());
+
+        assertEquals(1, container.broadcast(Collections.<Session> singleton(session), "news"));
+        assertEquals(1, recorder.writeCount());
+
+        recorder.completeAsyncWrite();
+        assertTrue(handler.done.await(10, TimeUnit.SECONDS));
+        assertTrue(handler.result.isOK());
+        assertEquals(2, recorder.writeCount());
+        assertArrayEquals(textFrame("mine"), recorder.write(0));
+        assertArrayEquals(textFrame("news"), recorder.write(1));
+
+        recorder.completeAsyncWrite();
+    }
+
+    /**
+     * A client that is too far behind misses the broadcast messages past the backlog, and gets the
+     * messages that were queued, in batches, once its write link is free.
+     */
+    @Test
+    public void testBroadcastBacklogFull() throws Exception {
+        ServerContainerExt container = new ServerContainerExt();
+        RecordingWriteContext recorder = new RecordingWriteContext();
+        SessionExt session = openSession(container, recorder);
+        Collection<Session> sessions = Collections.<Session> singleton(session);
+
+        ResultHandler handler = new ResultHandler();
+        session.getAsyncRemote().sendText("mine", handler);
+        for (int i = 0; i < 64; i++) {
+            assertEquals(1, container.broadcast(sessions, "m" + i));
+        }
+        assertEquals(0, container.broadcast(sessions, "dropped"));
+        assertEquals(1, recorder.writeCount());
+
+        // the send completes, then the queued messages are written sixteen at a time
+        for (int batch = 0; batch < 4; batch++) {
+            recorder.completeAsyncWrite();
+            assertEquals(batch + 2, recorder.writeCount());
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            for (int i = batch * 16; i < (batch + 1) * 16; i++) {
+                expected.write(textFrame("m" + i));
+            }
+            assertArrayEquals(expected.toByteArray(), recorder.write(batch + 1));
+        }
+        recorder.completeAsyncWrite();
+        assertTrue(handler.done.await(10, TimeUnit.SECONDS));
+        assertEquals(5, recorder.writeCount());
+
+        // with the backlog written, messages are taken again
+        assertEquals(1, container.broadcast(sessions, "again"));
+        assertEquals(6, recorder.writeCount());
+        assertArrayEquals(textFrame("again"), recorder.write(5));
+        recorder.completeAsyncWrite();
+    }
+}
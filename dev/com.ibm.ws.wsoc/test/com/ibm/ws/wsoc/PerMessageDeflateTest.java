@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.ws.wsoc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.websocket.Extension;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import test.common.SharedOutputManager;
+
+import com.ibm.ws.wsoc.external.ExtensionExt;
+import com.ibm.ws.wsoc.external.ParameterExt;
+import com.ibm.wsspi.bytebuffer.WsByteBuffer;
+import com.ibm.wsspi.bytebuffer.WsByteBufferPoolManager;
+import com.ibm.wsspi.channelfw.ChannelFrameworkFactory;
+
+/**
+ * Test the negotiation and the compression of the permessage-deflate extension.
+ */
+public class PerMessageDeflateTest {
+    static final SharedOutputManager outputMgr = SharedOutputManager.getInstance();
+    @Rule
+    public TestRule managerRule = outputMgr;
+
+    private static Extension deflate(String... params) {
+        List<Extension.Parameter> list = new ArrayList<Extension.Parameter>();
+        for (String p : params) {
+            String[] nv = p.split("=");
+            list.add(new ParameterExt(nv[0], (nv.length > 1) ? nv[1] : ""));
+        }
+        return new ExtensionExt(PerMessageDeflate.EXTENSION_NAME, list);
+    }
+
+    private static List<String> names(Extension ext) {
+        List<String> names = new ArrayList<String>();
+        for (Extension.Parameter p : ext.getParameters()) {
+            names.add(p.getName());
+        }
+        return names;
+    }
+
+    /**
+     * The first offer the server can honor is accepted.
+     */
+    @Test
+    public void testNegotiate() {
+        List<Extension> offers = Arrays.asList(deflate(PerMessageDeflate.SERVER_MAX_WINDOW_BITS + "=10"),
+                                               deflate(PerMessageDeflate.CLIENT_MAX_WINDOW_BITS));
+        Extension response = PerMessageDeflate.negotiate(offers, null);
+        assertNotNull(response);
+        assertTrue(response.getParameters().isEmpty());
+
+        // the configured context takeover parameters are added to the response
+        response = PerMessageDeflate.negotiate(Arrays.asList(deflate(PerMessageDeflate.CLIENT_NO_CONTEXT_TAKEOVER)),
+                                               deflate(PerMessageDeflate.SERVER_NO_CONTEXT_TAKEOVER));
+        assertEquals(Arrays.asList(PerMessageDeflate.SERVER_NO_CONTEXT_TAKEOVER, PerMessageDeflate.CLIENT_NO_CONTEXT_TAKEOVER), names(response));
+
+        // unknown parameters and a small server window are declined
+        assertNull(PerMessageDeflate.negotiate(Arrays.asList(deflate("x_unknown"), deflate(PerMessageDeflate.SERVER_MAX_WINDOW_BITS + "=9")), null));
+        assertNull(PerMessageDeflate.create(Collections.<Extension> emptyList(), false));
+    }
+
+    private static byte[] drain(PerMessageDeflate pmd, byte[] result, WsByteBufferPoolManager mgr) throws Exception {
+        byte[] data = result;
+        WsByteBuffer out = mgr.allocate(100);
+        try {
+            while (!pmd.decompressNeedsInput()) {
+                out.clear();
+                int count = pmd.decompress(out);
+                out.flip();
+                byte[] temp = Arrays.copyOf(data, data.length + count);
+                out.get(temp, data.length, count);
+                data = temp;
+            }
+        } finally {
+            out.release();
+        }
+        return data;
+    }
+
+    private static byte[] inflate(PerMessageDeflate pmd, WsByteBuffer compressed, WsByteBufferPoolManager mgr) throws Exception {
+        byte[] in = new byte[compressed.remaining()];
+        compressed.get(in);
+        pmd.decompressInput(in, 0, in.length);
+        byte[] result = drain(pmd, new byte[0], mgr);
+        pmd.decompressTail();
+        result = drain(pmd, result, mgr);
+        pmd.messageDecompressed();
+        return result;
+    }
+
+    private static void roundTrip(boolean noContextTakeover) throws Exception {
+        WsByteBufferPoolManager mgr = ChannelFrameworkFactory.getBufferManager();
+        List<Extension> agreed = noContextTakeover ? Arrays.asList(deflate(PerMessageDeflate.SERVER_NO_CONTEXT_TAKEOVER,
+                                                                           PerMessageDeflate.CLIENT_NO_CONTEXT_TAKEOVER)) : Arrays.asList(deflate());
+        PerMessageDeflate server = PerMessageDeflate.create(agreed, false);
+        PerMessageDeflate client = PerMessageDeflate.create(agreed, true);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("{\"price\":").append(i % 7).append(",\"symbol\":\"IBM\"}");
+        }
+        byte[] message = sb.toString().getBytes("UTF-8");
+        assertTrue(server.shouldCompress(message.length));
+
+        int[] sizes = new int[2];
+        for (int i = 0; i < 2; i++) {
+            WsByteBuffer compressed = server.compress(new WsByteBuffer[] { mgr.wrap(message) }, mgr);
+            try {
+                sizes[i] = compressed.remaining();
+                assertArrayEquals(message, inflate(client, compressed, mgr));
+            } finally {
+                compressed.release();
+            }
+        }
+
+        if (noContextTakeover) {
+            assertEquals(sizes[0], sizes[1]);
+        } else {
+            // the second message refers back to the first one
+            assertTrue(sizes[1] < sizes[0]);
+        }
+        server.release();
+        client.release();
+    }
+
+    /**
+     * Messages compressed with context takeover reuse the context of the previous message.
+     */
+    @Test
+    public void testContextTakeover() throws Exception {
+        roundTrip(false);
+    }
+
+    /**
+     * Messages compressed without context takeover are compressed on their own.
+     */
+    @Test
+    public void testNoContextTakeover() throws Exception {
+        roundTrip(true);
+    }
+}